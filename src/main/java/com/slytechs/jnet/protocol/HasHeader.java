@@ -75,6 +75,16 @@ public sealed interface HasHeader permits Packet {
 	 */
 	boolean hasHeader(int headerId, int depth);
 
+	/**
+	 * Number of protocol headers with a particular numerical id, such as the number
+	 * of stacked VLAN headers or tunneled IP headers. A header is available at
+	 * every depth from 0 to {@code headerCount(headerId) - 1}.
+	 *
+	 * @param headerId the numerical header id for the requested header
+	 * @return the number of headers, 0 if not available
+	 */
+	int headerCount(int headerId);
+
 	/**
 	 * Checks and performs memory binding if a particular protocol header is
 	 * available. If a header is not available, no memory binding to protocol header
@@ -18,6 +18,7 @@
 package com.slytechs.jnet.protocol;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
@@ -57,6 +58,12 @@ public abstract class Header extends MemoryBinding implements DetailedString, To
 	/** Some important header attributes. */
 	private int headerOffset, headerLength, payloadLength;
 
+	/** Offset of header fields within the bound buffer. */
+	private int base;
+
+	/** True if bound directly to the packet buffer. */
+	private boolean inPlace;
+
 	/**
 	 * A pretty pring formatted, if will be used to generated {@code toString()}
 	 * output.
@@ -122,7 +129,7 @@ public abstract class Header extends MemoryBinding implements DetailedString, To
 		this.payloadLength = calcPayloadLength(packet, descriptor, this.headerOffset, this.headerLength);
 		this.descriptor = descriptor;
 
-		super.bind(packet.slice(this.headerOffset, this.headerLength));
+		bindHeaderBuffer(packet);
 	}
 
 	final void bindHeaderToPacket(ByteBuffer packet, PacketDescriptor descriptor, int offset, int length) {
@@ -131,7 +138,165 @@ public abstract class Header extends MemoryBinding implements DetailedString, To
 		this.payloadLength = calcPayloadLength(packet, descriptor, offset, length);
 		this.descriptor = descriptor;
 
-		super.bind(packet.slice(offset, length));
+		bindHeaderBuffer(packet);
+	}
+
+	/**
+	 * Binds to the packet buffer, either directly if the header reads its fields in
+	 * place or to a slice containing just the header.
+	 *
+	 * @param packet the packet
+	 */
+	private void bindHeaderBuffer(ByteBuffer packet) {
+		if (isBoundInPlace()) {
+			this.base = this.headerOffset;
+			this.inPlace = true;
+			super.bind(packet);
+
+		} else {
+			super.bind(packet.slice(this.headerOffset, this.headerLength));
+		}
+	}
+
+	/**
+	 * Offset of the first header field within the bound buffer. Headers bound in
+	 * place must add this base to every field offset.
+	 *
+	 * @return the base offset in bytes
+	 * @see #isBoundInPlace()
+	 */
+	protected final int base() {
+		return base;
+	}
+
+	/**
+	 * Checks if this header is bound in place. Headers bound in place are bound
+	 * directly to the packet buffer and read every field at {@link #base()} plus
+	 * the field offset, so that rebinding the header to another packet does not
+	 * create a new buffer view. Other headers are bound to a slice of the packet
+	 * buffer containing just the header.
+	 *
+	 * @return true, if bound in place
+	 */
+	protected boolean isBoundInPlace() {
+		return false;
+	}
+
+	/**
+	 * Reads an unsigned 8-bit field at {@link #base()} plus the field offset.
+	 *
+	 * @param field the field offset
+	 * @return the unsigned value
+	 */
+	protected final int getUInt8(int field) {
+		return Byte.toUnsignedInt(buffer().get(base + field));
+	}
+
+	/**
+	 * Reads an unsigned 16-bit field in network byte order at {@link #base()} plus
+	 * the field offset.
+	 *
+	 * @param field the field offset
+	 * @return the unsigned value
+	 */
+	protected final int getUInt16(int field) {
+		ByteBuffer buf = buffer();
+		short v = buf.getShort(base + field);
+
+		return Short.toUnsignedInt((buf.order() == ByteOrder.BIG_ENDIAN) ? v : Short.reverseBytes(v));
+	}
+
+	/**
+	 * Reads a 32-bit field in network byte order at {@link #base()} plus the field
+	 * offset.
+	 *
+	 * @param field the field offset
+	 * @return the value
+	 */
+	protected final int getInt32(int field) {
+		ByteBuffer buf = buffer();
+		int v = buf.getInt(base + field);
+
+		return (buf.order() == ByteOrder.BIG_ENDIAN) ? v : Integer.reverseBytes(v);
+	}
+
+	/**
+	 * Reads a 64-bit field in network byte order at {@link #base()} plus the field
+	 * offset.
+	 *
+	 * @param field the field offset
+	 * @return the value
+	 */
+	protected final long getInt64(int field) {
+		ByteBuffer buf = buffer();
+		long v = buf.getLong(base + field);
+
+		return (buf.order() == ByteOrder.BIG_ENDIAN) ? v : Long.reverseBytes(v);
+	}
+
+	/**
+	 * Writes an 8-bit field at {@link #base()} plus the field offset.
+	 *
+	 * @param field the field offset
+	 * @param value the value
+	 */
+	protected final void setInt8(int field, int value) {
+		buffer().put(base + field, (byte) value);
+	}
+
+	/**
+	 * Writes a 16-bit field in network byte order at {@link #base()} plus the field
+	 * offset.
+	 *
+	 * @param field the field offset
+	 * @param value the value
+	 */
+	protected final void setInt16(int field, int value) {
+		ByteBuffer buf = buffer();
+		short v = (short) value;
+
+		buf.putShort(base + field, (buf.order() == ByteOrder.BIG_ENDIAN) ? v : Short.reverseBytes(v));
+	}
+
+	/**
+	 * Writes a 32-bit field in network byte order at {@link #base()} plus the field
+	 * offset.
+	 *
+	 * @param field the field offset
+	 * @param value the value
+	 */
+	protected final void setInt32(int field, int value) {
+		ByteBuffer buf = buffer();
+
+		buf.putInt(base + field, (buf.order() == ByteOrder.BIG_ENDIAN) ? value : Integer.reverseBytes(value));
+	}
+
+	/**
+	 * The buffer this header is bound to. For headers bound in place, such as
+	 * Ethernet, Ip4, Tcp and Udp, this is the entire packet buffer and the header
+	 * starts at {@link #base()}, not at position 0. Use {@link #headerBuffer()}
+	 * for a buffer containing just the header.
+	 *
+	 * @return the bound buffer
+	 * @see #isBoundInPlace()
+	 * @see com.slytechs.jnet.jnetruntime.MemoryBinding#buffer()
+	 */
+	@Override
+	public ByteBuffer buffer() {
+		return super.buffer();
+	}
+
+	/**
+	 * A buffer view containing just this header. For headers bound in place, a new
+	 * view is created on every call.
+	 *
+	 * @return the header buffer
+	 */
+	public final ByteBuffer headerBuffer() {
+		if (!inPlace)
+			return buffer();
+
+		return buffer().slice(base, headerLength);
 	}
 
 	/**
@@ -215,7 +380,8 @@ public abstract class Header extends MemoryBinding implements DetailedString, To
 	 */
 	@Override
 	protected void onUnbind() {
-		headerOffset = headerLength = payloadLength = 0;
+		headerOffset = headerLength = payloadLength = base = 0;
+		inPlace = false;
 		descriptor = null;
 	}
 
@@ -306,7 +472,7 @@ public abstract class Header extends MemoryBinding implements DetailedString, To
 				offset,
 				length,
 				HexStrings.toHexTextDump(
-						buffer(),
+						headerBuffer(),
 						i -> "%04X: ".formatted(i + offset)));
 
 		case TRACE, DEBUG -> "%s [offset=%d, length=%d, payload=%d, id=%04X]"
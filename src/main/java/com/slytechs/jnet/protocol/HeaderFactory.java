@@ -48,6 +48,19 @@ public interface HeaderFactory {
 		return new HeaderFactorySyncLocalImpl();
 	}
 
+	/**
+	 * A reusable instance of each header will be created and cached, for use by a
+	 * single thread only. No thread synchronization is performed, which suits
+	 * pipelines where each thread owns its own packets. The factory is confined to
+	 * the thread which created it, which is only checked when assertions are
+	 * enabled ({@code -ea}).
+	 *
+	 * @return the header factory
+	 */
+	static HeaderFactory threadConfined() {
+		return new HeaderFactoryThreadConfinedImpl();
+	}
+
 	/**
 	 * Gets the header.
 	 *
@@ -0,0 +1,142 @@
+/*
+ * Sly Technologies Free License
+ * 
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static com.slytechs.jnet.protocol.pack.PackId.*;
+
+import com.slytechs.jnet.protocol.pack.PackId;
+
+/**
+ * A header factory confined to a single thread. A reusable instance of each
+ * header is created and cached, like {@link HeaderFactorySyncLocalImpl}, but no
+ * locks are taken when headers are handed out or released. The factory is
+ * owned by the thread which created it.
+ * <p>
+ * Thread confinement is only checked when assertions are enabled, for example
+ * with the {@code -ea} JVM option, in which case every access from any other
+ * thread fails with an {@code AssertionError}. Without assertions there is no
+ * check at all, and access from another thread silently shares the cached
+ * headers.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+class HeaderFactoryThreadConfinedImpl implements HeaderFactory {
+
+	/** The allocator. */
+	private final HeaderFactory allocator = HeaderFactory.newInstance();
+
+	/** The cache 0, ordinal tables allocated on first use of each pack. */
+	private final Header[][] cache0 = new Header[PACK_MAXCOUNT_PACKS][];
+
+	/** The cache 1, tables allocated on first use of each pack and primary. */
+	private final Header[][][] cache1 = new Header[PACK_MAXCOUNT_PACKS][][];
+
+	/** The owner thread. */
+	private final Thread owner = Thread.currentThread();
+
+	/**
+	 * Checks if the calling thread is the owner of this factory.
+	 *
+	 * @return true, if called by the owner thread
+	 */
+	private boolean isConfined() {
+		return Thread.currentThread() == owner;
+	}
+
+	/**
+	 * Gets the.
+	 *
+	 * @param id the id
+	 * @return the header
+	 * @see com.slytechs.jnet.protocol.HeaderFactory#get(int)
+	 */
+	@Override
+	public Header get(int id) {
+		assert isConfined() : "header factory accessed outside of owner thread " + owner.getName();
+
+		int proto = PackId.decodeIdOrdinal(id);
+		int pack = PackId.decodePackOrdinal(id);
+
+		Header[] headers = cache0[pack];
+		if (headers == null)
+			cache0[pack] = headers = new Header[PACK_MAXCOUNT_ORDINALS];
+
+		Header header = headers[proto];
+		if (header == null)
+			headers[proto] = header = allocator.get(id);
+
+		return header;
+	}
+
+	/**
+	 * Gets the extension.
+	 *
+	 * @param primaryId   the primary id
+	 * @param extensionId the extension id
+	 * @return the extension
+	 * @see com.slytechs.jnet.protocol.HeaderFactory#getExtension(int, int)
+	 */
+	@Override
+	public Header getExtension(int primaryId, int extensionId) {
+		assert isConfined() : "header factory accessed outside of owner thread " + owner.getName();
+
+		int proto0 = PackId.decodeIdOrdinal(primaryId);
+		int pack0 = PackId.decodePackOrdinal(primaryId);
+		int proto1 = PackId.decodeIdOrdinal(extensionId);
+
+		Header[][] primaries = cache1[pack0];
+		if (primaries == null)
+			cache1[pack0] = primaries = new Header[PACK_MAXCOUNT_ORDINALS][];
+
+		Header[] headers = primaries[proto0];
+		if (headers == null)
+			primaries[proto0] = headers = new Header[PACK_MAXCOUNT_ORDINALS];
+
+		Header header = headers[proto1];
+		if (header == null)
+			headers[proto1] = header = allocator.getExtension(primaryId, extensionId);
+
+		return header;
+	}
+
+	/**
+	 * Checks if is release supported.
+	 *
+	 * @return true, if is release supported
+	 * @see com.slytechs.jnet.protocol.HeaderFactory#isReleaseSupported()
+	 */
+	@Override
+	public boolean isReleaseSupported() {
+		return true;
+	}
+
+	/**
+	 * Release.
+	 *
+	 * @param header the header
+	 * @see com.slytechs.jnet.protocol.HeaderFactory#release(com.slytechs.jnet.protocol.Header)
+	 */
+	@Override
+	public void release(Header header) {
+		assert isConfined() : "header factory accessed outside of owner thread " + owner.getName();
+
+		header.unbind();
+	}
+}
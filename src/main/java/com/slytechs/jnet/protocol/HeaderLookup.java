@@ -37,6 +37,21 @@ public interface HeaderLookup {
 	 */
 	boolean isHeaderExtensionSupported();
 
+	/**
+	 * Number of times a primary header is repeated within a descriptor, such as
+	 * stacked VLAN or MPLS headers or tunneled IP headers.
+	 *
+	 * @param id a header id
+	 * @return the number of headers found, 0 if none
+	 */
+	default int headerCount(int id) {
+		int count = 0;
+		while (lookupHeader(id, count, HeaderDescriptor.EMPTY))
+			count++;
+
+		return count;
+	}
+
 	/**
 	 * List headers recorded within a descriptor or lookup source.
 	 *
@@ -71,6 +86,45 @@ public interface HeaderLookup {
 	 */
 	boolean lookupHeader(int id, int depth, HeaderDescriptor descriptor);
 
+	/**
+	 * Lookup several primary headers at once. A header id which is repeated within
+	 * {@code ids} is looked up at the next depth for each repetition, so that
+	 * {@code ids[i]} is looked up at a depth equal to the number of times the same
+	 * id appears before index {@code i}.
+	 *
+	 * @param ids         the header ids
+	 * @param descriptors (out) the header descriptors, one for each header id,
+	 *                    where matched header information will be stored
+	 * @param count       the number of header ids to lookup, at most 64
+	 * @return a bitmask where bit {@code i} is set if {@code ids[i]} was found
+	 */
+	default long lookupHeaders(int[] ids, HeaderDescriptor[] descriptors, int count) {
+		long found = 0;
+
+		for (int i = 0; i < count; i++)
+			if (lookupHeader(ids[i], depthOf(ids, i), descriptors[i]))
+				found |= (1L << i);
+
+		return found;
+	}
+
+	/**
+	 * The depth of a header within a multi-header lookup, the number of times the
+	 * same header id appears before it.
+	 *
+	 * @param ids   the header ids
+	 * @param index the index of the header id
+	 * @return the depth
+	 */
+	static int depthOf(int[] ids, int index) {
+		int depth = 0;
+		for (int j = 0; j < index; j++)
+			if (ids[j] == ids[index])
+				depth++;
+
+		return depth;
+	}
+
 	/**
 	 * Lookup a header extension and at specific inner tunnel depth.
 	 *
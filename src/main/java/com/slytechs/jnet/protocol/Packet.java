@@ -17,6 +17,9 @@
  */
 package com.slytechs.jnet.protocol;
 
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Objects;
@@ -30,11 +33,13 @@ import com.slytechs.jnet.jnetruntime.util.DetailedString;
 import com.slytechs.jnet.jnetruntime.util.HexStrings;
 import com.slytechs.jnet.jnetruntime.util.ToHexdump;
 import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.core.constants.IpfDescriptorType;
 import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
 import com.slytechs.jnet.protocol.descriptor.CompactDescriptor;
 import com.slytechs.jnet.protocol.descriptor.Descriptor;
 import com.slytechs.jnet.protocol.descriptor.DescriptorType;
 import com.slytechs.jnet.protocol.descriptor.HeaderDescriptor;
+import com.slytechs.jnet.protocol.descriptor.IpfBuffer;
 import com.slytechs.jnet.protocol.descriptor.PacketDescriptor;
 import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
 import com.slytechs.jnet.protocol.meta.Meta;
@@ -68,6 +73,15 @@ public final class Packet
 	/** The Constant MAX_PACKET_LENGTH. */
 	public static final int MAX_PACKET_LENGTH = 1538;
 
+	/** Max length of a jumbo frame. */
+	public static final int MAX_JUMBO_FRAME_LENGTH = 9216;
+
+	/**
+	 * Max length of a GRO/LRO/TSO super-frame. Frames longer than 64KB require
+	 * type2 descriptors, which keep their lengths in an optional extension word.
+	 */
+	public static final int MAX_SUPER_FRAME_LENGTH = 256 * 1024;
+
 	/** The descriptor. */
 	private PacketDescriptor descriptor;
 
@@ -77,6 +91,21 @@ public final class Packet
 	/** The formatter. */
 	private PacketFormat formatter;
 
+	/** The pool slot, if this packet is owned by a {@link PacketPool}. */
+	private PacketPool.Slot poolSlot;
+
+	/** Scratch header ids used by bindHeaders. */
+	private int[] bindIds = new int[0];
+
+	/** Scratch header descriptors used by bindHeaders. */
+	private HeaderDescriptor[] bindDescriptors = new HeaderDescriptor[0];
+
+	/** Scratch header descriptor used by snapLength. */
+	private HeaderDescriptor snapDescriptor = new HeaderDescriptor();
+
+	/** Scratch header descriptor used by hasHeader for reassembled lookups. */
+	private HeaderDescriptor reassembledDescriptor = new HeaderDescriptor();
+
 	/**
 	 * Instantiates a new packet.
 	 */
@@ -152,6 +181,81 @@ public final class Packet
 		frame.bindDescriptor(descriptor);
 	}
 
+	/**
+	 * Binds several headers at once, resolving all of them with a single lookup in
+	 * the packet descriptor. This is more efficient than calling
+	 * {@link #hasHeader(Header)} for each header in turn, for example to access
+	 * the L2, L3 and L4 headers of a packet. If the same header type is requested
+	 * more than once, each repetition is bound to the next inner header of that
+	 * type.
+	 *
+	 * @param headers the headers to bind, at most 64
+	 * @return a bitmask where bit {@code i} is set if {@code headers[i]} was bound
+	 * @throws IllegalArgumentException if more than 64 headers are given
+	 */
+	public long bindHeaders(Header... headers) {
+		final int count = headers.length;
+		if (count > Long.SIZE)
+			throw new IllegalArgumentException("too many headers to bind [%d]".formatted(count));
+
+		if (bindIds.length < count) {
+			bindIds = new int[count];
+			bindDescriptors = new HeaderDescriptor[count];
+		}
+
+		for (int i = 0; i < count; i++) {
+			Header header = Objects.requireNonNull(headers[i], "header"); // User error
+			header.unbind();
+
+			bindIds[i] = header.id();
+			bindDescriptors[i] = header.getHeaderDescriptor();
+		}
+
+		try {
+			long found = lookup.lookupHeaders(bindIds, bindDescriptors, count);
+
+			for (int i = 0; i < count; i++) {
+				final long bit = (1L << i);
+				final Header header = headers[i];
+
+				if ((found & bit) != 0)
+					bindHeader(header);
+
+				else if (bindSpecialHeader(header, HeaderLookup.depthOf(bindIds, i)))
+					found |= bit;
+			}
+
+			return found;
+
+		} finally {
+			Arrays.fill(bindDescriptors, 0, count, null);
+		}
+	}
+
+	/**
+	 * Bind a header which is not recorded in the packet descriptor, such as the
+	 * frame or payload pseudo headers, or a header found in the reassembled IP
+	 * datagram.
+	 *
+	 * @param header the header
+	 * @param depth  the depth
+	 * @return true, if header was bound
+	 */
+	private boolean bindSpecialHeader(Header header, int depth) {
+		final int id = header.id();
+
+		if ((id == CoreId.CORE_ID_FRAME) && (header instanceof Frame frame)) {
+			bindFrameHeader(frame);
+			return true;
+
+		} else if ((id == CoreId.CORE_ID_PAYLOAD) && (header instanceof Payload payload)) {
+			bindPayloadHeader(payload);
+			return true;
+		}
+
+		return bindReassembledHeader(header, id, depth);
+	}
+
 	private <T extends Header> boolean bindHeader(T header) {
 		ByteBuffer buffer = buffer();
 
@@ -210,6 +314,11 @@ public final class Packet
 	@Override
 	public Packet clone() {
 		Packet clone = (Packet) super.clone();
+		clone.poolSlot = null;
+		clone.reassembledDescriptor = new HeaderDescriptor();
+		clone.bindIds = new int[0];
+		clone.bindDescriptors = new HeaderDescriptor[0];
+		clone.snapDescriptor = new HeaderDescriptor();
 
 		return clone;
 	}
@@ -225,6 +334,11 @@ public final class Packet
 		PacketDescriptor cloneDsc = (PacketDescriptor) descriptor.cloneTo(dst);
 		Packet clone = (Packet) super.cloneTo(dst);
 		clone.descriptor = cloneDsc;
+		clone.poolSlot = null;
+		clone.reassembledDescriptor = new HeaderDescriptor();
+		clone.bindIds = new int[0];
+		clone.bindDescriptors = new HeaderDescriptor[0];
+		clone.snapDescriptor = new HeaderDescriptor();
 
 		return clone;
 	}
@@ -290,7 +404,35 @@ public final class Packet
 	 */
 	@Override
 	public final boolean hasHeader(int headerId, int depth) {
-		return lookupHeader(headerId, depth, HeaderDescriptor.EMPTY);
+		return lookupHeader(headerId, depth, HeaderDescriptor.EMPTY)
+				|| (lookupReassembledHeader(headerId, depth, reassembledDescriptor) != null);
+	}
+
+	/**
+	 * Header count. Headers are counted in the payload of the reassembled IP
+	 * datagram, if none are found in this packet and it completed the reassembly
+	 * of one.
+	 *
+	 * @param headerId the header id
+	 * @return the number of headers
+	 * @see com.slytechs.jnet.protocol.HasHeader#headerCount(int)
+	 */
+	@Override
+	public int headerCount(int headerId) {
+		int count = lookup.headerCount(headerId);
+		if (count > 0)
+			return count;
+
+		IpfBuffer ipfBuffer = (IpfBuffer) descriptor.peekDescriptor(IpfDescriptorType.IPF_BUFFER);
+		if ((ipfBuffer == null) || (ipfBuffer.frameDescriptor() == null))
+			return 0;
+
+		PacketDescriptor frameDescriptor = ipfBuffer.frameDescriptor();
+		for (int depth = 0; frameDescriptor.lookupHeader(headerId, depth, reassembledDescriptor); depth++)
+			if (reassembledDescriptor.getOffset() >= ipfBuffer.framePayloadOffset())
+				count++;
+
+		return count;
 	}
 
 	/**
@@ -304,6 +446,15 @@ public final class Packet
 		return payloadLength() > 0;
 	}
 
+	/**
+	 * Checks if this packet is owned by a {@link PacketPool}.
+	 *
+	 * @return true, if pooled
+	 */
+	public boolean isPooled() {
+		return poolSlot != null;
+	}
+
 	/**
 	 * Checks if the packet is truncated. If {@code caplen < wirelen} there were
 	 * fewer bytes captured than there were original seen on the network.
@@ -322,7 +473,77 @@ public final class Packet
 	 * @return the long
 	 */
 	private final boolean lookupHeader(int id, int depth, HeaderDescriptor headerDescriptor) {
-		return lookup.lookupHeader(id, 0, headerDescriptor);
+		return lookup.lookupHeader(id, depth, headerDescriptor);
+	}
+
+	/**
+	 * Lookup a header in the reassembled IP datagram, if this packet completed the
+	 * reassembly of one. Only headers within the fragmented IP payload are
+	 * accepted, as the link and IP headers of the reassembled frame are those of
+	 * the first fragment, not of this packet.
+	 *
+	 * @param id               the id
+	 * @param depth            the depth
+	 * @param headerDescriptor the header descriptor
+	 * @return the ipf buffer holding the reassembled frame, or null if not found
+	 */
+	private IpfBuffer lookupReassembledHeader(int id, int depth, HeaderDescriptor headerDescriptor) {
+		IpfBuffer ipfBuffer = (IpfBuffer) descriptor.peekDescriptor(IpfDescriptorType.IPF_BUFFER);
+		if ((ipfBuffer == null) || (ipfBuffer.frameDescriptor() == null))
+			return null;
+
+		if (!ipfBuffer.frameDescriptor().lookupHeader(id, depth, headerDescriptor))
+			return null;
+
+		if (headerDescriptor.getOffset() < ipfBuffer.framePayloadOffset())
+			return null;
+
+		return ipfBuffer;
+	}
+
+	/**
+	 * Bind a header found in the reassembled IP datagram, such as a transport
+	 * header which was only present in the first fragment. The header is bound to
+	 * the reassembler's frame and is only valid until its next reassembly.
+	 *
+	 * @param <T>    the generic type
+	 * @param header the header
+	 * @param id     the id
+	 * @param depth  the depth
+	 * @return true, if header was found and bound
+	 */
+	private <T extends Header> boolean bindReassembledHeader(T header, int id, int depth) {
+		IpfBuffer ipfBuffer = lookupReassembledHeader(id, depth, header.getHeaderDescriptor());
+		if (ipfBuffer == null)
+			return false;
+
+		ByteBuffer frame = ipfBuffer.frame();
+		PacketDescriptor frameDescriptor = ipfBuffer.frameDescriptor();
+
+		header.bindHeaderToPacket(frame, frameDescriptor);
+		header.bindOptionsToPacket(frame, frameDescriptor);
+
+		header.setFormatter(formatter);
+
+		return true;
+	}
+
+	/**
+	 * The pool slot.
+	 *
+	 * @return the pool slot, or null if not pooled
+	 */
+	PacketPool.Slot poolSlot() {
+		return poolSlot;
+	}
+
+	/**
+	 * Attach this packet to a pool slot.
+	 *
+	 * @param slot the slot
+	 */
+	void poolSlot(PacketPool.Slot slot) {
+		this.poolSlot = slot;
 	}
 
 	/**
@@ -371,7 +592,7 @@ public final class Packet
 
 			} else if (lookupHeader(id, depth, header.getHeaderDescriptor()))
 				bindHeader(header); // HeaderDescriptor is filled in
-			else
+			else if (!bindReassembledHeader(header, id, depth))
 				return null;
 
 			return header;
@@ -386,6 +607,98 @@ public final class Packet
 		}
 	}
 
+	/**
+	 * Number of references held on a pooled packet.
+	 *
+	 * @return the reference count
+	 * @throws IllegalStateException if this packet is not pooled
+	 */
+	public int refCount() {
+		return checkPooled().refCount();
+	}
+
+	/**
+	 * Release a reference on a pooled packet. When the last reference is released,
+	 * the packet is returned to its pool and must no longer be used.
+	 *
+	 * @return true, if this was the last reference and the packet was returned to
+	 *         its pool
+	 * @throws IllegalStateException if this packet is not pooled or was already
+	 *                               released
+	 */
+	public boolean release() {
+		return checkPooled().release(this);
+	}
+
+	/**
+	 * Retain an additional reference on a pooled packet, for example before
+	 * handing it off to another thread. Each retain must be matched by a
+	 * {@link #release()}.
+	 *
+	 * @return this packet
+	 * @throws IllegalStateException if this packet is not pooled or was already
+	 *                               released
+	 */
+	public Packet retain() {
+		checkPooled().retain();
+
+		return this;
+	}
+
+	/**
+	 * Check that this packet is pooled.
+	 *
+	 * @return the pool slot
+	 * @throws IllegalStateException if this packet is not pooled
+	 */
+	private PacketPool.Slot checkPooled() {
+		if (poolSlot == null)
+			throw new IllegalStateException("packet is not pooled");
+
+		return poolSlot;
+	}
+
+	/**
+	 * Copies this packet into memory allocated from an arena, so that it can be
+	 * kept beyond the lifetime of the original packet buffers. The descriptor and
+	 * the packet data are copied once into a single contiguous off-heap block,
+	 * descriptor first, and a new packet is returned as a view over that block.
+	 * Header offsets within the descriptor are relative to the start of the packet
+	 * data and remain valid in the copy. Only the primary packet descriptor is
+	 * copied.
+	 * <p>
+	 * The returned packet is valid until the arena is closed, which releases all
+	 * packets retained in it at once, without any involvement of the garbage
+	 * collector.
+	 * </p>
+	 *
+	 * @param arena the arena to allocate from
+	 * @return a new packet backed by arena memory
+	 */
+	public Packet retainIn(Arena arena) {
+		final ByteBuffer srcData = buffer();
+		final ByteBuffer srcDesc = descriptor.buffer();
+		final int caplen = captureLength();
+		final int descLen = descriptor.byteSize();
+		final int dataOffset = (descLen + Long.BYTES - 1) & -Long.BYTES;
+
+		MemorySegment block = arena.allocate(dataOffset + caplen, Long.BYTES);
+
+		ByteBuffer desc = block.asSlice(0, descLen).asByteBuffer().order(srcDesc.order());
+		ByteBuffer data = block.asSlice(dataOffset, caplen).asByteBuffer().order(srcData.order());
+
+		desc.put(0, srcDesc, 0, descLen);
+		data.put(0, srcData, 0, caplen);
+
+		PacketDescriptor copy = descriptor.type().newDescriptor();
+		copy.bind(desc);
+
+		Packet retained = new Packet(data, copy);
+		retained.setFormatter(formatter);
+
+		return retained;
+	}
+
 	/**
 	 * Sets the descriptor.
 	 *
@@ -416,6 +729,59 @@ public final class Packet
 		return this.formatter;
 	}
 
+	/**
+	 * Copies this packet into data and descriptor buffers, at their positions,
+	 * truncated to a snap length, such as one computed by
+	 * {@link #snapLength(int, int, int)}. The copied descriptor has its capture
+	 * length reduced and the header records past the snap length dropped, so the
+	 * copy does not need to be dissected again. Both buffer positions are advanced
+	 * past the copies.
+	 *
+	 * @param snaplen the snap length
+	 * @param dstData the destination data buffer
+	 * @param dstDesc the destination descriptor buffer
+	 * @return the number of data bytes copied
+	 * @throws BufferOverflowException       if a buffer has insufficient space
+	 * @throws UnsupportedOperationException if the descriptor is not a type 2
+	 *                                       descriptor
+	 */
+	public int sliceTo(int snaplen, ByteBuffer dstData, ByteBuffer dstDesc) {
+		if (!(descriptor instanceof Type2Descriptor type2))
+			throw new UnsupportedOperationException("slicing not supported by %s descriptor"
+					.formatted(descriptor.type()));
+
+		final int len = Math.min(snaplen, captureLength());
+		final int pos = dstData.position();
+		if (dstData.remaining() < len)
+			throw new BufferOverflowException();
+
+		type2.sliceTo(len, dstDesc);
+
+		dstData.put(pos, buffer(), 0, len);
+		dstData.position(pos + len);
+
+		return len;
+	}
+
+	/**
+	 * Computes a snap length which keeps all headers up to and including a header,
+	 * followed by a number of payload bytes. The result never exceeds the capture
+	 * length.
+	 *
+	 * @param headerId     the id of the last header to keep
+	 * @param depth        the depth of the header
+	 * @param payloadBytes the number of bytes to keep after the header
+	 * @return the snap length, or -1 if the header is not present
+	 */
+	public int snapLength(int headerId, int depth, int payloadBytes) {
+		if (!lookupHeader(headerId, depth, snapDescriptor))
+			return -1;
+
+		int end = snapDescriptor.getOffset() + snapDescriptor.getLength() + payloadBytes;
+
+		return Math.min(end, captureLength());
+	}
+
 	/**
 	 * Timestamp.
 	 *
@@ -0,0 +1,587 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.slytechs.jnet.protocol.core.InetChecksum;
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.core.constants.TcpOptionId;
+import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+import com.slytechs.jnet.protocol.pack.PackId;
+
+/**
+ * Builds packets by encoding headers directly into a target buffer. Headers
+ * are added outermost first, for example:
+ *
+ * <pre>
+ * int len = builder.reset(buffer)
+ * 		.ethernet(dstMac, srcMac)
+ * 		.ip4(srcIp, dstIp)
+ * 		.tcp(1024, 80, seq, 0, TcpFlag.TCP_FLAG_SYN)
+ * 		.payload(data)
+ * 		.build(descriptor);
+ * </pre>
+ * <p>
+ * Fields which depend on following headers, such as EtherTypes, IP protocol
+ * numbers, lengths and checksums, are filled in automatically. A header record
+ * is kept for each header as it is added, so that {@link #build(Type2Descriptor)}
+ * can write a matching type2 descriptor without dissecting the packet.
+ * </p>
+ * <p>
+ * A builder is reusable and does not allocate once created. It is not thread
+ * safe.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class PacketBuilder {
+
+	/** The default IPv4 TTL and IPv6 hop limit. */
+	public static final int DEFAULT_TTL = 64;
+
+	/** The default TCP window. */
+	public static final int DEFAULT_TCP_WINDOW = 0xFFFF;
+
+	/** The target buffer. */
+	private ByteBuffer buf;
+
+	/** Start of the packet within the target buffer. */
+	private int start;
+
+	/** Current length of the packet. */
+	private int length;
+
+	/** Offset of the EtherType field to fill with the next header type, or -1. */
+	private int typeOffset;
+
+	/** Offset of the IP protocol field to fill with the next header type, or -1. */
+	private int protocolOffset;
+
+	/** The l3 offset or -1. */
+	private int l3Offset;
+
+	/** The IP version of the l3 header. */
+	private int l3Version;
+
+	/** The l4 offset or -1. */
+	private int l4Offset;
+
+	/** The l4 IP protocol number. */
+	private int l4Protocol;
+
+	/** The index of the l4 record, updated when tcp options are added. */
+	private int l4Record;
+
+	/** Set once a payload has been added. */
+	private boolean hasPayload;
+
+	/** The header records. */
+	private final long[] records = new long[DESC_TYPE2_RECORD_MAX_COUNT];
+
+	/** The record count. */
+	private int recordCount;
+
+	/**
+	 * Instantiates a new packet builder, which must be reset to a target buffer
+	 * before use.
+	 */
+	public PacketBuilder() {
+	}
+
+	/**
+	 * Instantiates a new packet builder writing into the given buffer.
+	 *
+	 * @param target the target buffer, starting at its current position
+	 */
+	public PacketBuilder(ByteBuffer target) {
+		reset(target);
+	}
+
+	/**
+	 * Adds a header record.
+	 *
+	 * @param id     the header id
+	 * @param offset the header offset
+	 * @param len    the header length
+	 * @return the record index
+	 */
+	private int addRecord(int id, int offset, int len) {
+		if (recordCount == DESC_TYPE2_RECORD_MAX_COUNT)
+			throw new IllegalStateException("too many headers");
+
+		records[recordCount] = PackId.encodeRecord(id, offset, len);
+
+		return recordCount++;
+	}
+
+	/**
+	 * Reserves space at the end of the packet.
+	 *
+	 * @param len the length to reserve
+	 * @return the offset of the reserved space, relative to the packet start
+	 */
+	private int append(int len) {
+		if (buf == null)
+			throw new IllegalStateException("no target buffer");
+
+		if (start + length + len > buf.limit())
+			throw new BufferOverflowException();
+
+		int offset = length;
+		length += len;
+
+		return offset;
+	}
+
+	/**
+	 * Reserves space for the next header.
+	 *
+	 * @param len the header length
+	 * @return the offset of the header, relative to the packet start
+	 */
+	private int appendHeader(int len) {
+		if (hasPayload)
+			throw new IllegalStateException("headers can not follow the payload");
+
+		return append(len);
+	}
+
+	/**
+	 * Finishes the packet. Length fields, the IPv4 header checksum and the TCP or
+	 * UDP checksum are filled in, and the target buffer position is advanced past
+	 * the packet.
+	 *
+	 * @return the packet length in bytes
+	 */
+	public int build() {
+		padTcpOptions();
+
+		if (l3Offset != -1) {
+			int l3Len = length - l3Offset;
+
+			if (l3Version == 4) {
+				putShort(l3Offset + IPv4_FIELD_TOTAL_LEN, lengthField(l3Len));
+				putShort(l3Offset + IPv4_FIELD_CHECKSUM, 0);
+				putShort(l3Offset + IPv4_FIELD_CHECKSUM, ~InetChecksum.sum(buf, start + l3Offset, IPv4_HEADER_LEN));
+
+			} else {
+				putShort(l3Offset + IPv6_FIELD_PAYLOAD_LENGTH, lengthField(l3Len - IPv6_HEADER_LEN));
+			}
+		}
+
+		if (l4Offset != -1)
+			l4Checksum();
+
+		buf.position(start + length);
+
+		return length;
+	}
+
+	/**
+	 * Finishes the packet, see {@link #build()}, and writes a matching type2
+	 * descriptor with a zero timestamp.
+	 *
+	 * @param descriptor the descriptor, bound to a descriptor buffer
+	 * @return the packet length in bytes
+	 */
+	public int build(Type2Descriptor descriptor) {
+		return build(descriptor, 0);
+	}
+
+	/**
+	 * Finishes the packet, see {@link #build()}, and writes a matching type2
+	 * descriptor.
+	 *
+	 * @param descriptor the descriptor, bound to a descriptor buffer
+	 * @param timestamp  the timestamp
+	 * @return the packet length in bytes
+	 * @throws BufferOverflowException if a large frame does not leave room for the
+	 *                                 descriptor extension word, see
+	 *                                 {@link Type2Descriptor#isLargeFrame()}
+	 */
+	public int build(Type2Descriptor descriptor, long timestamp) {
+		int len = build();
+
+		descriptor.encode(timestamp, len, len, records, recordCount);
+
+		return len;
+	}
+
+	/**
+	 * Adds an Ethernet II header.
+	 *
+	 * @param dst the destination MAC address
+	 * @param src the source MAC address
+	 * @return this builder
+	 */
+	public PacketBuilder ethernet(byte[] dst, byte[] src) {
+		int offset = appendHeader(ETHER_HEADER_LEN);
+
+		buf.put(start + offset + ETHER_FIELD_DST, dst, 0, ETHER_FIELD_DST_LEN);
+		buf.put(start + offset + ETHER_FIELD_SRC, src, 0, ETHER_FIELD_SRC_LEN);
+		putShort(offset + ETHER_FIELD_TYPE, 0);
+
+		typeOffset = offset + ETHER_FIELD_TYPE;
+		addRecord(CoreId.CORE_ID_ETHER, offset, ETHER_HEADER_LEN);
+
+		return this;
+	}
+
+	/**
+	 * Adds an IPv4 header, without options.
+	 *
+	 * @param src the source address
+	 * @param dst the destination address
+	 * @return this builder
+	 */
+	public PacketBuilder ip4(int src, int dst) {
+		int offset = appendHeader(IPv4_HEADER_LEN);
+		nextType(ETHER_TYPE_IPv4);
+
+		putInt(offset + 0, 0x45000000); // Version 4, 5 words, no DS field, length set on build
+		putInt(offset + IPv4_FIELD_IDENT, 0);
+		putShort(offset + IPv4_FIELD_TTL, DEFAULT_TTL << 8);
+		putShort(offset + IPv4_FIELD_CHECKSUM, 0);
+		putInt(offset + IPv4_FIELD_SRC, src);
+		putInt(offset + IPv4_FIELD_DST, dst);
+
+		l3(offset, 4, offset + IPv4_FIELD_PROTOCOL);
+		addRecord(CoreId.CORE_ID_IPv4, offset, IPv4_HEADER_LEN);
+
+		return this;
+	}
+
+	/**
+	 * Adds an IPv6 header, without extension headers.
+	 *
+	 * @param src the 16 byte source address
+	 * @param dst the 16 byte destination address
+	 * @return this builder
+	 */
+	public PacketBuilder ip6(byte[] src, byte[] dst) {
+		int offset = appendHeader(IPv6_HEADER_LEN);
+		nextType(ETHER_TYPE_IPv6);
+
+		putInt(offset + 0, 0x60000000); // Version 6, no traffic class or flow label
+		putInt(offset + IPv6_FIELD_PAYLOAD_LENGTH, DEFAULT_TTL); // Length, next header set later, hop limit
+		buf.put(start + offset + IPv6_FIELD_SRC, src, 0, IPv6_FIELD_SRC_LEN);
+		buf.put(start + offset + IPv6_FIELD_DST, dst, 0, IPv6_FIELD_DST_LEN);
+
+		l3(offset, 6, offset + IPv6_FIELD_NEXT_HOP);
+		addRecord(CoreId.CORE_ID_IPv6, offset, IPv6_HEADER_LEN);
+
+		return this;
+	}
+
+	/**
+	 * Records a new l3 header.
+	 *
+	 * @param offset         the l3 offset
+	 * @param version        the IP version
+	 * @param protocolOffset the offset of the next protocol field
+	 */
+	private void l3(int offset, int version, int protocolOffset) {
+		if (l3Offset != -1)
+			throw new IllegalStateException("IP tunnels are not supported by the builder");
+
+		this.l3Offset = offset;
+		this.l3Version = version;
+		this.protocolOffset = protocolOffset;
+		this.typeOffset = -1;
+	}
+
+	/**
+	 * Records a new l4 header.
+	 *
+	 * @param id       the header id
+	 * @param offset   the l4 offset
+	 * @param len      the l4 header length
+	 * @param protocol the IP protocol number
+	 */
+	private void l4(int id, int offset, int len, int protocol) {
+		if (protocolOffset == -1)
+			throw new IllegalStateException("no IP header");
+
+		buf.put(start + protocolOffset, (byte) protocol);
+
+		this.protocolOffset = -1;
+		this.l4Offset = offset;
+		this.l4Protocol = protocol;
+		this.l4Record = addRecord(id, offset, len);
+	}
+
+	/**
+	 * Fills the UDP length and computes the TCP or UDP checksum over the pseudo
+	 * header and segment.
+	 */
+	private void l4Checksum() {
+		int l4Len = length - l4Offset;
+		int field = l4Offset + ((l4Protocol == IP_TYPE_TCP) ? TCP_FIELD_CHECKSUM : UDP_FIELD_CHECKSUM);
+
+		if (l4Protocol == IP_TYPE_UDP)
+			putShort(l4Offset + UDP_FIELD_LENGTH, lengthField(l4Len));
+
+		int sum = (l3Version == 4)
+				? InetChecksum.sum(buf, start + l3Offset + IPv4_FIELD_SRC, IPv4_FIELD_SRC_LEN + IPv4_FIELD_DST_LEN)
+				: InetChecksum.sum(buf, start + l3Offset + IPv6_FIELD_SRC, IPv6_FIELD_SRC_LEN + IPv6_FIELD_DST_LEN);
+
+		putShort(field, 0);
+
+		sum += l4Protocol + l4Len;
+		sum += InetChecksum.sum(buf, start + l4Offset, l4Len);
+
+		int checksum = ~InetChecksum.fold(sum) & 0xFFFF;
+		if (checksum == 0 && l4Protocol == IP_TYPE_UDP)
+			checksum = 0xFFFF;
+
+		putShort(field, checksum);
+	}
+
+	/**
+	 * A 16-bit length field value. Lengths of super-frames which do not fit are
+	 * set to 0, as GRO and BIG TCP do for IPv4 and IPv6 lengths.
+	 *
+	 * @param len the length
+	 * @return the field value
+	 */
+	private static int lengthField(int len) {
+		return (len > 0xFFFF) ? 0 : len;
+	}
+
+	/**
+	 * Fills the EtherType field of the previous l2 header.
+	 *
+	 * @param type the EtherType of the next header
+	 */
+	private void nextType(int type) {
+		if (typeOffset == -1)
+			throw new IllegalStateException("no Ethernet header");
+
+		putShort(typeOffset, type);
+	}
+
+	/**
+	 * Pads TCP options to a multiple of 4 bytes with end of option list bytes and
+	 * updates the TCP data offset and record.
+	 */
+	private void padTcpOptions() {
+		if (l4Offset == -1 || l4Protocol != IP_TYPE_TCP || hasPayload)
+			return;
+
+		int hlen = length - l4Offset;
+		int pad = (-hlen) & 3;
+
+		for (int i = 0; i < pad; i++)
+			buf.put(start + append(1), (byte) TCP_OPTION_KIND_EOL);
+
+		hlen += pad;
+		int ihl = start + l4Offset + TCP_FIELD_IHL;
+		buf.put(ihl, (byte) (((hlen >> 2) << 4) | (buf.get(ihl) & 0x0F)));
+		records[l4Record] = PackId.encodeRecord(CoreId.CORE_ID_TCP, l4Offset, hlen);
+	}
+
+	/**
+	 * Adds a payload copied from an array. No further headers may be added.
+	 *
+	 * @param data the payload data
+	 * @return this builder
+	 */
+	public PacketBuilder payload(byte[] data) {
+		padTcpOptions();
+
+		int offset = append(data.length);
+		buf.put(start + offset, data);
+		hasPayload = true;
+
+		return this;
+	}
+
+	/**
+	 * Adds a zero filled payload. No further headers may be added.
+	 *
+	 * @param len the payload length
+	 * @return this builder
+	 */
+	public PacketBuilder payload(int len) {
+		padTcpOptions();
+
+		int offset = append(len);
+		for (int i = 0; i < len; i++)
+			buf.put(start + offset + i, (byte) 0);
+
+		hasPayload = true;
+
+		return this;
+	}
+
+	/**
+	 * Writes a 32-bit value in network byte order.
+	 *
+	 * @param offset the offset relative to the packet start
+	 * @param value  the value
+	 */
+	private void putInt(int offset, int value) {
+		buf.putInt(start + offset, (buf.order() == ByteOrder.BIG_ENDIAN) ? value : Integer.reverseBytes(value));
+	}
+
+	/**
+	 * Writes a 16-bit value in network byte order.
+	 *
+	 * @param offset the offset relative to the packet start
+	 * @param value  the value
+	 */
+	private void putShort(int offset, int value) {
+		short v = (short) value;
+
+		buf.putShort(start + offset, (buf.order() == ByteOrder.BIG_ENDIAN) ? v : Short.reverseBytes(v));
+	}
+
+	/**
+	 * Number of header records added so far.
+	 *
+	 * @return the int
+	 */
+	public int recordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Resets the builder to start a new packet at the current position of the
+	 * target buffer.
+	 *
+	 * @param target the target buffer
+	 * @return this builder
+	 */
+	public PacketBuilder reset(ByteBuffer target) {
+		this.buf = target;
+		this.start = target.position();
+		this.length = 0;
+		this.typeOffset = this.protocolOffset = this.l3Offset = this.l4Offset = -1;
+		this.l3Version = this.l4Protocol = 0;
+		this.hasPayload = false;
+		this.recordCount = 0;
+
+		return this;
+	}
+
+	/**
+	 * Resets the builder to start a new packet at the start of the target memory
+	 * segment.
+	 *
+	 * @param target the target memory segment
+	 * @return this builder
+	 */
+	public PacketBuilder reset(MemorySegment target) {
+		return reset(target.asByteBuffer());
+	}
+
+	/**
+	 * Adds a TCP header, without options.
+	 *
+	 * @param srcPort the source port
+	 * @param dstPort the destination port
+	 * @param seq     the sequence number
+	 * @param ack     the acknowledgment number
+	 * @param flags   the TCP flags
+	 * @return this builder
+	 */
+	public PacketBuilder tcp(int srcPort, int dstPort, long seq, long ack, int flags) {
+		int offset = appendHeader(TCP_HEADER_LEN);
+
+		putShort(offset + TCP_FIELD_SRC, srcPort);
+		putShort(offset + TCP_FIELD_DST, dstPort);
+		putInt(offset + TCP_FIELD_SEQ, (int) seq);
+		putInt(offset + TCP_FIELD_ACK, (int) ack);
+		putShort(offset + TCP_FIELD_IHL, ((TCP_HEADER_LEN >> 2) << 12) | (flags & 0x1FF));
+		putShort(offset + TCP_FIELD_WINDOW, DEFAULT_TCP_WINDOW);
+		putInt(offset + TCP_FIELD_CHECKSUM, 0); // Checksum and urgent pointer
+
+		l4(CoreId.CORE_ID_TCP, offset, TCP_HEADER_LEN, IP_TYPE_TCP);
+
+		return this;
+	}
+
+	/**
+	 * Adds a TCP option, copied as is including its kind and length bytes. Options
+	 * are padded to a multiple of 4 bytes when the payload is added or the packet
+	 * is built.
+	 *
+	 * @param option the encoded option
+	 * @return this builder
+	 */
+	public PacketBuilder tcpOption(byte[] option) {
+		if (l4Offset == -1 || l4Protocol != IP_TYPE_TCP)
+			throw new IllegalStateException("no TCP header");
+
+		if (length - l4Offset + option.length > TCP_HEADER_LEN + 40)
+			throw new IllegalStateException("TCP options exceed 40 bytes");
+
+		int offset = appendHeader(option.length);
+
+		buf.put(start + offset, option);
+		addRecord(TcpOptionId.mapKindToId(Byte.toUnsignedInt(option[0])), offset, option.length);
+
+		return this;
+	}
+
+	/**
+	 * Adds a UDP header.
+	 *
+	 * @param srcPort the source port
+	 * @param dstPort the destination port
+	 * @return this builder
+	 */
+	public PacketBuilder udp(int srcPort, int dstPort) {
+		int offset = appendHeader(UDP_HEADER_LEN);
+
+		putShort(offset + UDP_FIELD_SRC, srcPort);
+		putShort(offset + UDP_FIELD_DST, dstPort);
+		putInt(offset + UDP_FIELD_LENGTH, 0); // Length and checksum set on build
+
+		l4(CoreId.CORE_ID_UDP, offset, UDP_HEADER_LEN, IP_TYPE_UDP);
+
+		return this;
+	}
+
+	/**
+	 * Adds an 802.1Q VLAN tag.
+	 *
+	 * @param priority the priority code point
+	 * @param vlanId   the VLAN id
+	 * @return this builder
+	 */
+	public PacketBuilder vlan(int priority, int vlanId) {
+		int offset = appendHeader(VLAN_HEADER_LEN);
+		nextType(ETHER_TYPE_VLAN);
+
+		putShort(offset, ((priority & 0x7) << 13) | (vlanId & 0xFFF));
+		putShort(offset + VLAN_FIELD_TYPE, 0);
+
+		typeOffset = offset + VLAN_FIELD_TYPE;
+		addRecord(CoreId.CORE_ID_VLAN, offset, VLAN_HEADER_LEN);
+
+		return this;
+	}
+}
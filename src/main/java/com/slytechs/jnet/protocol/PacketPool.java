@@ -0,0 +1,444 @@
+/*
+ * Sly Technologies Free License
+ * 
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.descriptor.PacketDescriptor;
+
+/**
+ * A pool of reusable, reference counted packets. Each pooled packet owns a
+ * pre-allocated data buffer and a descriptor bound to its own pre-allocated
+ * descriptor buffer, so that steady state processing does not allocate any
+ * packets, descriptors or buffers.
+ * <p>
+ * A packet obtained from the pool has a reference count of 1. Each
+ * {@link Packet#retain()} increments and each {@link Packet#release()}
+ * decrements the count. When the count reaches 0, the packet is returned to the
+ * pool's free list. The free list is a bounded, lock-free queue shared by all
+ * threads, so no locks are taken when packets are allocated or recycled.
+ * Packets may be released on a different thread than the one which allocated
+ * them, for example at the end of a pipeline, and are then reused by any
+ * allocating thread.
+ * </p>
+ * <p>
+ * Releasing a packet more times than it was retained, or retaining a packet
+ * after its last release, fails with an {@code IllegalStateException}. In debug
+ * mode, released packets are also unbound from their buffers, so any other use
+ * after release fails instead of silently reading the data of another packet.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class PacketPool {
+
+	/**
+	 * Pool state attached to each pooled packet.
+	 */
+	static final class Slot {
+
+		/** The owning pool. */
+		private final PacketPool pool;
+
+		/** The packet data buffer. */
+		private final ByteBuffer data;
+
+		/** The descriptor buffer. */
+		private final ByteBuffer desc;
+
+		/** The reference count. */
+		private final AtomicInteger refCount = new AtomicInteger();
+
+		/**
+		 * Instantiates a new slot.
+		 *
+		 * @param pool the pool
+		 */
+		private Slot(PacketPool pool) {
+			this.pool = pool;
+			this.data = ByteBuffer.allocateDirect(pool.bufferSize);
+			this.desc = ByteBuffer.allocateDirect(DESC_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+		}
+
+		/**
+		 * Increment the reference count.
+		 */
+		void retain() {
+			int count = refCount.getAndIncrement();
+			if (count <= 0) {
+				refCount.getAndDecrement();
+
+				throw new IllegalStateException("packet retained after release");
+			}
+		}
+
+		/**
+		 * Decrement the reference count and recycle the packet when no references
+		 * remain.
+		 *
+		 * @param packet the packet
+		 * @return true, if the packet was returned to the pool
+		 */
+		boolean release(Packet packet) {
+			int count = refCount.decrementAndGet();
+			if (count > 0)
+				return false;
+
+			if (count < 0) {
+				refCount.incrementAndGet();
+
+				throw new IllegalStateException("packet released more than once");
+			}
+
+			pool.recycle(packet);
+
+			return true;
+		}
+
+		/**
+		 * Current reference count.
+		 *
+		 * @return the int
+		 */
+		int refCount() {
+			return refCount.get();
+		}
+	}
+
+	/**
+	 * A bounded, lock-free, multi-producer multi-consumer queue of free packets.
+	 * Entries are handed over using a per-entry sequence number, as in D. Vyukov's
+	 * bounded queue.
+	 */
+	private static final class FreeList {
+
+		/** The mask. */
+		private final int mask;
+
+		/** The entry sequence numbers. */
+		private final AtomicLongArray sequence;
+
+		/** The free packets. */
+		private final AtomicReferenceArray<Packet> packets;
+
+		/** The next position to offer to. */
+		private final AtomicLong tail = new AtomicLong();
+
+		/** The next position to poll from. */
+		private final AtomicLong head = new AtomicLong();
+
+		/**
+		 * Instantiates a new free list.
+		 *
+		 * @param capacity the capacity, rounded up to a power of 2
+		 */
+		FreeList(int capacity) {
+			final int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+
+			this.mask = size - 1;
+			this.sequence = new AtomicLongArray(size);
+			this.packets = new AtomicReferenceArray<>(size);
+
+			for (int i = 0; i < size; i++)
+				sequence.set(i, i);
+		}
+
+		/**
+		 * Add a free packet.
+		 *
+		 * @param packet the packet
+		 * @return true, if added or false if the list is full
+		 */
+		boolean offer(Packet packet) {
+			long pos = tail.get();
+
+			while (true) {
+				final int index = (int) pos & mask;
+				final long dif = sequence.get(index) - pos;
+
+				if (dif == 0) {
+					if (tail.compareAndSet(pos, pos + 1)) {
+						packets.lazySet(index, packet);
+						sequence.set(index, pos + 1);
+
+						return true;
+					}
+
+					pos = tail.get();
+
+				} else if (dif < 0) {
+					return false;
+
+				} else {
+					pos = tail.get();
+				}
+			}
+		}
+
+		/**
+		 * Take a free packet.
+		 *
+		 * @return the packet or null if the list is empty
+		 */
+		Packet poll() {
+			long pos = head.get();
+
+			while (true) {
+				final int index = (int) pos & mask;
+				final long dif = sequence.get(index) - (pos + 1);
+
+				if (dif == 0) {
+					if (head.compareAndSet(pos, pos + 1)) {
+						Packet packet = packets.get(index);
+						packets.lazySet(index, null);
+						sequence.set(index, pos + mask + 1);
+
+						return packet;
+					}
+
+					pos = head.get();
+
+				} else if (dif < 0) {
+					return null;
+
+				} else {
+					pos = head.get();
+				}
+			}
+		}
+	}
+
+	/** The Constant DEFAULT_FREE_LIST_SIZE. */
+	public static final int DEFAULT_FREE_LIST_SIZE = 1024;
+
+	/** Large enough for any primary packet descriptor. */
+	private static final int DESC_BUFFER_SIZE = Math.max(
+			CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX,
+			CoreConstants.DESC_TYPE3_BYTE_SIZE_MAX);
+
+	/** Used to clear descriptor buffers. */
+	private static final byte[] ZEROS = new byte[DESC_BUFFER_SIZE];
+
+	/** The descriptor type. */
+	private final PacketDescriptorType type;
+
+	/** The data buffer size. */
+	private final int bufferSize;
+
+	/** The debug flag. */
+	private final boolean debug;
+
+	/** The shared free list, or null if released packets are not kept. */
+	private final FreeList freeList;
+
+	/** Number of packets allocated by this pool. */
+	private final LongAdder allocated = new LongAdder();
+
+	/**
+	 * Instantiates a new packet pool with type2 descriptors, max packet length
+	 * buffers and default free list size.
+	 */
+	public PacketPool() {
+		this(PacketDescriptorType.TYPE2, Packet.MAX_PACKET_LENGTH, DEFAULT_FREE_LIST_SIZE, false);
+	}
+
+	/**
+	 * Instantiates a new packet pool.
+	 *
+	 * @param type         the descriptor type of pooled packets
+	 * @param bufferSize   the data buffer size of each packet
+	 * @param freeListSize the max number of free packets kept by the pool,
+	 *                     rounded up to a power of 2, packets released beyond
+	 *                     that are left to the garbage collector
+	 * @param debug        if true, enables use after release checks
+	 */
+	public PacketPool(PacketDescriptorType type, int bufferSize, int freeListSize, boolean debug) {
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("invalid buffer size " + bufferSize);
+
+		if ((freeListSize < 0) || (freeListSize > (1 << 30)))
+			throw new IllegalArgumentException("invalid free list size " + freeListSize);
+
+		if ((bufferSize > CoreConstants.DESC_TYPE2_LENGTH_MAX) && (type != PacketDescriptorType.TYPE2))
+			throw new IllegalArgumentException("buffer size %d requires %s descriptors"
+					.formatted(bufferSize, PacketDescriptorType.TYPE2));
+
+		this.type = type;
+		this.bufferSize = bufferSize;
+		this.freeList = (freeListSize == 0) ? null : new FreeList(freeListSize);
+		this.debug = debug;
+	}
+
+	/**
+	 * Allocate a packet from the pool, with a reference count of 1. The packet is
+	 * bound to its full data buffer and to a cleared descriptor.
+	 *
+	 * @return the packet
+	 */
+	public Packet allocate() {
+		Packet packet = obtain();
+		Slot slot = packet.poolSlot();
+
+		slot.desc.clear().put(0, ZEROS);
+
+		bind(packet, slot.data.clear(), slot.desc);
+
+		return packet;
+	}
+
+	/**
+	 * Number of packets allocated by this pool since it was created, including
+	 * those which were not returned to a free list.
+	 *
+	 * @return the long
+	 */
+	public long allocatedCount() {
+		return allocated.sum();
+	}
+
+	/**
+	 * Bind a packet and its descriptor to new buffers.
+	 *
+	 * @param packet the packet
+	 * @param data   the data
+	 * @param desc   the desc
+	 */
+	private void bind(Packet packet, ByteBuffer data, ByteBuffer desc) {
+		PacketDescriptor descriptor = packet.descriptor();
+
+		descriptor.unbind();
+		descriptor.bind(desc);
+
+		packet.unbind();
+		packet.bind(data);
+	}
+
+	/**
+	 * Data buffer size of each packet.
+	 *
+	 * @return the int
+	 */
+	public int bufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Copy a packet and its descriptor into a pooled packet, with a reference
+	 * count of 1.
+	 *
+	 * @param src the source packet
+	 * @return the pooled copy
+	 * @throws IllegalArgumentException if the source packet does not fit in the
+	 *                                  pool's buffers or has a different
+	 *                                  descriptor type
+	 */
+	public Packet copyOf(Packet src) {
+		PacketDescriptor srcDesc = src.descriptor();
+		if (srcDesc.type() != type)
+			throw new IllegalArgumentException("descriptor type %s does not match pool type %s"
+					.formatted(srcDesc.type(), type));
+
+		final int caplen = srcDesc.captureLength();
+		if (caplen > bufferSize)
+			throw new IllegalArgumentException("packet length %d exceeds pool buffer size %d"
+					.formatted(caplen, bufferSize));
+
+		Packet packet = obtain();
+		Slot slot = packet.poolSlot();
+
+		final int descLen = srcDesc.byteSize();
+		slot.data.clear().put(0, src.buffer(), 0, caplen);
+		slot.desc.clear().put(0, srcDesc.buffer(), 0, descLen);
+
+		bind(packet, slot.data.limit(caplen), slot.desc);
+
+		return packet;
+	}
+
+	/**
+	 * Checks if debug mode is enabled.
+	 *
+	 * @return true, if debug
+	 */
+	public boolean isDebug() {
+		return debug;
+	}
+
+	/**
+	 * Allocate a new pooled packet.
+	 *
+	 * @return the packet
+	 */
+	private Packet newPacket() {
+		Packet packet = new Packet(type);
+		packet.poolSlot(new Slot(this));
+
+		allocated.increment();
+
+		return packet;
+	}
+
+	/**
+	 * Take a packet from the free list, or allocate a new one, with a reference
+	 * count of 1.
+	 *
+	 * @return the packet
+	 */
+	private Packet obtain() {
+		Packet packet = (freeList == null) ? null : freeList.poll();
+		if (packet == null)
+			packet = newPacket();
+
+		packet.poolSlot().refCount.set(1);
+
+		return packet;
+	}
+
+	/**
+	 * Return a packet, with no remaining references, to the free list.
+	 *
+	 * @param packet the packet
+	 */
+	private void recycle(Packet packet) {
+		if (debug) {
+			packet.unbind();
+			packet.descriptor().unbind();
+		}
+
+		if (freeList != null)
+			freeList.offer(packet);
+	}
+
+	/**
+	 * Descriptor type of pooled packets.
+	 *
+	 * @return the packet descriptor type
+	 */
+	public PacketDescriptorType type() {
+		return type;
+	}
+}
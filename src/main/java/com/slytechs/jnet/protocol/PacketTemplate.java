@@ -0,0 +1,491 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.slytechs.jnet.protocol.core.InetChecksum;
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.descriptor.HeaderDescriptor;
+import com.slytechs.jnet.protocol.descriptor.PacketDescriptor;
+
+/**
+ * A packet template used to generate many packets which differ only in a few
+ * fields. The template captures the data and descriptor of a packet once. Each
+ * new packet is a block copy of the template followed by a few field patches:
+ *
+ * <pre>
+ * PacketTemplate template = new PacketTemplate(packet);
+ * int seq = template.field("tcp.seq");
+ * int id = template.field("ip.id");
+ *
+ * for (int i = 0; i &lt; count; i++)
+ * 	template.copyTo(data, desc)
+ * 			.set(seq, i * mss)
+ * 			.set(id, i);
+ * </pre>
+ * <p>
+ * Fields are named as in the {@code Ip4Struct}, {@code TcpStruct} and
+ * {@link com.slytechs.jnet.protocol.core.UdpStruct} layouts, and are resolved
+ * to byte offsets once, when {@link #field(String)} is called. Patching a field
+ * incrementally updates the IPv4 header checksum and the TCP or UDP checksum
+ * covering it (RFC 1624), so the template checksums must be valid.
+ * </p>
+ * <p>
+ * A template does not allocate once created. It keeps a reference to the last
+ * copy being patched and is not thread safe.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class PacketTemplate {
+
+	/**
+	 * Patchable fields.
+	 */
+	private enum Field {
+
+		/** The IPv4 DS field. */
+		IP_DSFIELD("ip.dsfield", CoreId.CORE_ID_IPv4, IPv4_FIELD_DSFIELD, 1),
+
+		/** The IPv4 identification. */
+		IP_ID("ip.id", CoreId.CORE_ID_IPv4, IPv4_FIELD_IDENT, 2),
+
+		/** The IPv4 TTL. */
+		IP_TTL("ip.ttl", CoreId.CORE_ID_IPv4, IPv4_FIELD_TTL, 1),
+
+		/** The IPv4 source address, also covered by the layer4 checksum. */
+		IP_SRC("ip.src", CoreId.CORE_ID_IPv4, IPv4_FIELD_SRC, 4),
+
+		/** The IPv4 destination address, also covered by the layer4 checksum. */
+		IP_DST("ip.dst", CoreId.CORE_ID_IPv4, IPv4_FIELD_DST, 4),
+
+		/** The TCP source port. */
+		TCP_SRCPORT("tcp.srcport", CoreId.CORE_ID_TCP, TCP_FIELD_SRC, 2),
+
+		/** The TCP destination port. */
+		TCP_DSTPORT("tcp.dstport", CoreId.CORE_ID_TCP, TCP_FIELD_DST, 2),
+
+		/** The TCP sequence number. */
+		TCP_SEQ("tcp.seq", CoreId.CORE_ID_TCP, TCP_FIELD_SEQ, 4),
+
+		/** The TCP acknowledgment number. */
+		TCP_ACK("tcp.ack", CoreId.CORE_ID_TCP, TCP_FIELD_ACK, 4),
+
+		/** The TCP window. */
+		TCP_WINDOW("tcp.window_size_value", CoreId.CORE_ID_TCP, TCP_FIELD_WINDOW, 2),
+
+		/** The TCP urgent pointer. */
+		TCP_URGENT("tcp.urgent_pointer", CoreId.CORE_ID_TCP, TCP_FIELD_URGENT, 2),
+
+		/** The TCP timestamp option value, offset within the option. */
+		TCP_TS_SEND("tcp.opt.ts.send_ts", CoreId.CORE_ID_TCP, 2, 4),
+
+		/** The TCP timestamp option echo reply, offset within the option. */
+		TCP_TS_RECV("tcp.opt.ts.recv_ts", CoreId.CORE_ID_TCP, 6, 4),
+
+		/** The UDP source port. */
+		UDP_SRCPORT("udp.srcport", CoreId.CORE_ID_UDP, UDP_FIELD_SRC, 2),
+
+		/** The UDP destination port. */
+		UDP_DSTPORT("udp.dstport", CoreId.CORE_ID_UDP, UDP_FIELD_DST, 2),
+
+		;
+
+		/** The field name. */
+		private final String fieldName;
+
+		/** The id of the header containing the field. */
+		private final int headerId;
+
+		/** The field offset within its header. */
+		private final int offset;
+
+		/** The field width in bytes. */
+		private final int width;
+
+		/**
+		 * Instantiates a new field.
+		 *
+		 * @param fieldName the field name
+		 * @param headerId  the header id
+		 * @param offset    the offset
+		 * @param width     the width
+		 */
+		Field(String fieldName, int headerId, int offset, int width) {
+			this.fieldName = fieldName;
+			this.headerId = headerId;
+			this.offset = offset;
+			this.width = width;
+		}
+
+		/**
+		 * Looks up a field by name.
+		 *
+		 * @param name the name
+		 * @return the field
+		 * @throws IllegalArgumentException if the field is not patchable
+		 */
+		static Field of(String name) {
+			for (Field f : values())
+				if (f.fieldName.equals(name))
+					return f;
+
+			throw new IllegalArgumentException("field %s can not be patched".formatted(name));
+		}
+	}
+
+	/** Maximum number of resolved fields. */
+	private static final int MAX_FIELDS = 32;
+
+	/** The template data. */
+	private final ByteBuffer data;
+
+	/** The template descriptor. */
+	private final ByteBuffer desc;
+
+	/** The IPv4 header offset, or -1. */
+	private final int ip4Offset;
+
+	/** The IPv4 or IPv6 header offset, or -1. */
+	private final int l3Offset;
+
+	/** The TCP or UDP header offset, or -1. */
+	private final int l4Offset;
+
+	/** The TCP or UDP checksum offset, or -1. */
+	private final int l4Checksum;
+
+	/** True if the layer4 checksum is a UDP checksum. */
+	private final boolean udp;
+
+	/** The TCP timestamp option offset, or -1. */
+	private final int tsOffset;
+
+	/** Absolute offset of each resolved field within the packet. */
+	private final int[] fieldOffset = new int[MAX_FIELDS];
+
+	/** Width of each resolved field. */
+	private final int[] fieldWidth = new int[MAX_FIELDS];
+
+	/** Base of each resolved field, to which checksum words are aligned. */
+	private final int[] fieldBase = new int[MAX_FIELDS];
+
+	/** IPv4 checksum offset covering each resolved field, or -1. */
+	private final int[] fieldIpChecksum = new int[MAX_FIELDS];
+
+	/** Layer4 checksum offset covering each resolved field, or -1. */
+	private final int[] fieldL4Checksum = new int[MAX_FIELDS];
+
+	/** The number of resolved fields. */
+	private int fieldCount;
+
+	/** The buffer of the last copy. */
+	private ByteBuffer target;
+
+	/** The start of the last copy within the target buffer. */
+	private int start;
+
+	/**
+	 * Captures a new template from a dissected packet.
+	 *
+	 * @param packet the packet
+	 */
+	public PacketTemplate(Packet packet) {
+		PacketDescriptor descriptor = packet.descriptor();
+		int caplen = descriptor.captureLength();
+		int descLen = descriptor.byteSize();
+
+		this.data = ByteBuffer.allocateDirect(caplen)
+				.put(0, packet.buffer(), 0, caplen);
+		this.desc = ByteBuffer.allocateDirect(descLen)
+				.order(descriptor.buffer().order())
+				.put(0, descriptor.buffer(), 0, descLen);
+
+		HeaderDescriptor hd = new HeaderDescriptor();
+
+		this.ip4Offset = descriptor.lookupHeader(CoreId.CORE_ID_IPv4, 0, hd) ? hd.getOffset() : -1;
+		int ip6Offset = descriptor.lookupHeader(CoreId.CORE_ID_IPv6, 0, hd) ? hd.getOffset() : -1;
+		this.l3Offset = (ip4Offset != -1) ? ip4Offset : ip6Offset;
+
+		if (descriptor.lookupHeader(CoreId.CORE_ID_TCP, 0, hd)) {
+			this.l4Offset = hd.getOffset();
+			this.l4Checksum = l4Offset + TCP_FIELD_CHECKSUM;
+			this.udp = false;
+			this.tsOffset = findTimestampOption(l4Offset, hd.getLength());
+
+		} else if (descriptor.lookupHeader(CoreId.CORE_ID_UDP, 0, hd)) {
+			this.l4Offset = hd.getOffset();
+			this.l4Checksum = l4Offset + UDP_FIELD_CHECKSUM;
+			this.udp = true;
+			this.tsOffset = -1;
+
+		} else {
+			this.l4Offset = this.l4Checksum = this.tsOffset = -1;
+			this.udp = false;
+		}
+	}
+
+	/**
+	 * Copies the template data into a buffer, at its position, and makes the copy
+	 * the target of following patches. The buffer position is advanced past the
+	 * copy.
+	 *
+	 * @param dst the destination buffer
+	 * @return this template
+	 * @throws BufferOverflowException if the buffer has insufficient space
+	 */
+	public PacketTemplate copyTo(ByteBuffer dst) {
+		int len = data.capacity();
+		int pos = dst.position();
+		if (dst.limit() - pos < len)
+			throw new BufferOverflowException();
+
+		dst.put(pos, data, 0, len);
+		dst.position(pos + len);
+
+		this.target = dst;
+		this.start = pos;
+
+		return this;
+	}
+
+	/**
+	 * Copies the template data and descriptor into buffers, at their positions.
+	 * See {@link #copyTo(ByteBuffer)}.
+	 *
+	 * @param dst     the destination data buffer
+	 * @param dstDesc the destination descriptor buffer
+	 * @return this template
+	 * @throws BufferOverflowException if a buffer has insufficient space
+	 */
+	public PacketTemplate copyTo(ByteBuffer dst, ByteBuffer dstDesc) {
+		int len = desc.capacity();
+		int pos = dstDesc.position();
+		if (dstDesc.limit() - pos < len)
+			throw new BufferOverflowException();
+
+		copyTo(dst);
+
+		dstDesc.put(pos, desc, 0, len);
+		dstDesc.position(pos + len);
+
+		return this;
+	}
+
+	/**
+	 * Resolves a field by name, for use with {@link #set(int, long)}. Supported
+	 * names are {@code ip.dsfield}, {@code ip.id}, {@code ip.ttl}, {@code ip.src},
+	 * {@code ip.dst}, {@code tcp.srcport}, {@code tcp.dstport}, {@code tcp.seq},
+	 * {@code tcp.ack}, {@code tcp.window_size_value}, {@code tcp.urgent_pointer},
+	 * {@code tcp.opt.ts.send_ts}, {@code tcp.opt.ts.recv_ts}, {@code udp.srcport}
+	 * and {@code udp.dstport}.
+	 *
+	 * @param name the field name
+	 * @return the field handle
+	 * @throws IllegalArgumentException if the field is not supported or its header
+	 *                                  is not present in the template
+	 */
+	public int field(String name) {
+		Field f = Field.of(name);
+
+		int base = switch (f.headerId) {
+		case CoreId.CORE_ID_IPv4 -> ip4Offset;
+		case CoreId.CORE_ID_TCP -> udp ? -1 : l4Offset;
+		case CoreId.CORE_ID_UDP -> udp ? l4Offset : -1;
+		default -> -1;
+		};
+
+		int offset = base + f.offset;
+		if (f == Field.TCP_TS_SEND || f == Field.TCP_TS_RECV)
+			offset = (tsOffset == -1) ? -1 : tsOffset + f.offset;
+
+		if (base == -1 || offset < 0)
+			throw new IllegalArgumentException("field %s not found in template".formatted(name));
+
+		if (fieldCount == MAX_FIELDS)
+			throw new IllegalStateException("too many fields");
+
+		boolean inIpHeader = (f.headerId == CoreId.CORE_ID_IPv4);
+		boolean inPseudoHeader = (f == Field.IP_SRC || f == Field.IP_DST);
+
+		int i = fieldCount++;
+		fieldOffset[i] = offset;
+		fieldWidth[i] = f.width;
+		fieldBase[i] = base;
+		fieldIpChecksum[i] = inIpHeader ? ip4Offset + IPv4_FIELD_CHECKSUM : -1;
+		fieldL4Checksum[i] = (!inIpHeader || inPseudoHeader) ? l4Checksum : -1;
+
+		return i;
+	}
+
+	/**
+	 * Finds the TCP timestamp option.
+	 *
+	 * @param tcp    the TCP header offset
+	 * @param length the TCP header length
+	 * @return the option offset or -1
+	 */
+	private int findTimestampOption(int tcp, int length) {
+		int offset = tcp + TCP_HEADER_LEN;
+		int end = tcp + length;
+
+		while (offset < end) {
+			int kind = Byte.toUnsignedInt(data.get(offset));
+			if (kind == TCP_OPTION_KIND_EOL)
+				break;
+
+			if (kind == TCP_OPTION_KIND_NOP) {
+				offset++;
+				continue;
+			}
+
+			int len = Byte.toUnsignedInt(data.get(offset + 1));
+			if (kind == TCP_OPTION_KIND_TIMESTAMP)
+				return offset;
+
+			if (len < 2)
+				break;
+
+			offset += len;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Template packet length.
+	 *
+	 * @return the int
+	 */
+	public int length() {
+		return data.capacity();
+	}
+
+	/**
+	 * Patches a field of the last copy and incrementally updates the checksums
+	 * covering it.
+	 *
+	 * @param field the field handle returned by {@link #field(String)}
+	 * @param value the new value, truncated to the field width
+	 * @return this template
+	 * @throws IllegalStateException if no copy was made yet
+	 */
+	public PacketTemplate set(int field, long value) {
+		if (target == null)
+			throw new IllegalStateException("no template copy to patch");
+
+		int offset = start + fieldOffset[field];
+		int width = fieldWidth[field];
+
+		/* Checksum words are aligned relative to the start of the header */
+		int wordStart = offset - ((fieldOffset[field] - fieldBase[field]) & 1);
+		int wordLen = (offset + width - wordStart + 1) & ~1;
+
+		int oldSum = InetChecksum.sum(target, wordStart, wordLen);
+
+		switch (width) {
+		case 1 -> target.put(offset, (byte) value);
+		case 2 -> putShort(offset, (int) value);
+		default -> putInt(offset, (int) value);
+		}
+
+		int newSum = InetChecksum.sum(target, wordStart, wordLen);
+
+		if (fieldIpChecksum[field] != -1)
+			updateChecksum(start + fieldIpChecksum[field], oldSum, newSum, false);
+
+		if (fieldL4Checksum[field] != -1)
+			updateChecksum(start + fieldL4Checksum[field], oldSum, newSum, udp);
+
+		return this;
+	}
+
+	/**
+	 * Gets the descriptor buffer of the template.
+	 *
+	 * @return a read only view of the template descriptor
+	 */
+	public ByteBuffer descriptorBuffer() {
+		return desc.asReadOnlyBuffer().order(desc.order());
+	}
+
+	/**
+	 * Writes a 16-bit value in network byte order.
+	 *
+	 * @param offset the absolute offset
+	 * @param value  the value
+	 */
+	private void putShort(int offset, int value) {
+		short v = (short) value;
+
+		target.putShort(offset, (target.order() == ByteOrder.BIG_ENDIAN) ? v : Short.reverseBytes(v));
+	}
+
+	/**
+	 * Writes a 32-bit value in network byte order.
+	 *
+	 * @param offset the absolute offset
+	 * @param value  the value
+	 */
+	private void putInt(int offset, int value) {
+		target.putInt(offset, (target.order() == ByteOrder.BIG_ENDIAN) ? value : Integer.reverseBytes(value));
+	}
+
+	/**
+	 * Updates a checksum in the last copy.
+	 *
+	 * @param offset the absolute checksum offset
+	 * @param oldSum the old sum of the changed words
+	 * @param newSum the new sum of the changed words
+	 * @param udp    true for a UDP checksum, where zero means no checksum
+	 */
+	private void updateChecksum(int offset, int oldSum, int newSum, boolean udp) {
+		int checksum = Short.toUnsignedInt(target.getShort(offset));
+		if (target.order() != ByteOrder.BIG_ENDIAN)
+			checksum = Short.toUnsignedInt(Short.reverseBytes((short) checksum));
+
+		if (udp && checksum == 0)
+			return;
+
+		checksum = InetChecksum.update16(checksum, oldSum, newSum);
+		if (udp && checksum == 0)
+			checksum = 0xFFFF;
+
+		putShort(offset, checksum);
+	}
+
+	/**
+	 * To string.
+	 *
+	 * @return the string
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "PacketTemplate [length=" + length()
+				+ ", fields=" + Arrays.toString(Arrays.copyOf(fieldOffset, fieldCount))
+				+ "]";
+	}
+}
@@ -45,6 +45,9 @@ public final class CorePackDefinition extends Pack<CoreId> {
 		return true;
 	}
 
+	/** Core headers indexed by ordinal, cached to avoid cloning on each lookup. */
+	private static final CoreId[] HEADERS = CoreId.values();
+
 	/** Core Protocol Pack singleton definition. */
 	private static final CorePackDefinition SINGLETON = new CorePackDefinition();
 
@@ -78,12 +81,10 @@ public final class CorePackDefinition extends Pack<CoreId> {
 		if (packId != ProtocolPackTable.PACK_ID_CORE)
 			return Optional.empty();
 
-		var headers = CoreId.values();
-
-		if (hdrOrdinal > headers.length)
+		if (hdrOrdinal >= HEADERS.length)
 			return Optional.empty();
 
-		return Optional.of(CoreId.values()[hdrOrdinal]);
+		return Optional.of(HEADERS[hdrOrdinal]);
 	}
 
 }
@@ -71,12 +71,6 @@ public final class Ethernet extends Header {
 	 */
 	private boolean preambleFlag;
 
-	/**
-	 * The ethernet frame buffer spanning all of ethernet data (preamble + header +
-	 * data + CRC).
-	 */
-	private ByteBuffer frameBuffer;
-
 	/**
 	 * A flag which indicates if caplen < wirelen or packet was truncated and not
 	 * all data captured.
@@ -112,12 +106,6 @@ public final class Ethernet extends Header {
 		this.preambleFlag = (flags & CoreConstants.DESC_PKT_FLAG_PREAMBLE) > 0;
 		this.crcFlag = (flags & CoreConstants.DESC_PKT_FLAG_CRC) > 0 && !isTruncated;
 
-		/*
-		 * Preserve the frameBuffer so we can access these outside fields and/or used to
-		 * recalculate this frames CRC
-		 */
-		frameBuffer = packet.slice();
-
 		int payloadLength = captureLength - (offset + length);
 		if (preambleFlag)
 			payloadLength -= CoreConstants.ETHER_FIELD_LEN_PREAMBLE;
@@ -138,12 +126,13 @@ public final class Ethernet extends Header {
 		if (isTruncated)
 			return 0; // Do not have all of the data to make the calculation
 
-		frameBuffer
+		ByteBuffer frame = buffer()
+				.duplicate()
 				.clear()
-				.limit(headerOffset() + headerLength() + payloadLength())
-				.position(headerOffset());
+				.limit(base() + headerLength() + payloadLength())
+				.position(base());
 
-		return Checksums.crc32(buffer());
+		return Checksums.crc32(frame);
 	}
 
 	/**
@@ -159,7 +148,7 @@ public final class Ethernet extends Header {
 			return 0;
 
 		return Integer.toUnsignedLong(
-				frameBuffer.getInt(payloadLength()));
+				getInt32(headerLength() + payloadLength()));
 	}
 
 	/**
@@ -197,14 +186,14 @@ public final class Ethernet extends Header {
 	 * @see HexStrings#toMacString(byte[])
 	 */
 	public byte[] dst(byte[] dst, int offset) {
-		buffer().get(CoreConstants.ETHER_FIELD_DST, dst, offset, CoreConstants.ETHER_FIELD_DST_LEN);
+		buffer().get(base() + CoreConstants.ETHER_FIELD_DST, dst, offset, CoreConstants.ETHER_FIELD_DST_LEN);
 
 		return dst;
 	}
 
 	@Meta(MetaType.ATTRIBUTE)
 	public long dstAsLong() {
-		return MacAddress.getAsLong(0, buffer());
+		return (getInt64(CoreConstants.ETHER_FIELD_DST) >> 16) & ETHER_FIELD_DST_MASK64;
 	}
 
 	/**
@@ -217,6 +206,19 @@ public final class Ethernet extends Header {
 		return new MacAddress(dst());
 	}
 
+	/**
+	 * Fills a reusable address holder with the destination MAC address, without
+	 * allocating.
+	 *
+	 * @param address the address holder
+	 * @return the address holder
+	 */
+	public MacAddress dstInto(MacAddress address) {
+		dst(address.toArray(), 0);
+
+		return address;
+	}
+
 	/**
 	 * This is a 6-Byte field that contains the MAC address of the machine for which
 	 * data is destined.
@@ -224,17 +226,17 @@ public final class Ethernet extends Header {
 	 * @return MAC address stored in the first 6 LSB bytes of the long primitive
 	 */
 	public int dstGetAsLong() {
-		return buffer().getInt(CoreConstants.ETHER_FIELD_DST);
+		return getInt32(CoreConstants.ETHER_FIELD_DST);
 	}
 
 	@Meta(value = MetaType.ATTRIBUTE, abbr = "g")
 	public int dstGloballyUniqueAddress() {
-		return buffer().get(0) >> 1;
+		return buffer().get(base()) >> 1;
 	}
 
 	@Meta(value = MetaType.ATTRIBUTE, abbr = "u")
 	public int dstIndividualAddress() {
-		return buffer().get(0) >> 0;
+		return buffer().get(base()) >> 0;
 	}
 
 	/**
@@ -246,6 +248,18 @@ public final class Ethernet extends Header {
 		return crcFlag;
 	}
 
+	/**
+	 * Ethernet fields, including the trailing CRC, are read in place from the
+	 * packet buffer.
+	 *
+	 * @return true
+	 * @see com.slytechs.jnet.protocol.Header#isBoundInPlace()
+	 */
+	@Override
+	protected boolean isBoundInPlace() {
+		return true;
+	}
+
 	@Meta(MetaType.ATTRIBUTE)
 	public boolean isDstGBitSet() {
 		return dstGloballyUniqueAddress() != 0;
@@ -268,16 +282,6 @@ public final class Ethernet extends Header {
 		return preambleFlag;
 	}
 
-	/**
-	 * On unbind.
-	 *
-	 * @see com.slytechs.jnet.protocol.Header#onUnbind()
-	 */
-	@Override
-	protected void onUnbind() {
-		frameBuffer = null;
-	}
-
 	/**
 	 * Ethernet frame starts with a 7-Bytes Preamble.
 	 *
@@ -311,7 +315,7 @@ public final class Ethernet extends Header {
 		if (!isPreamblePresent())
 			return null;
 
-		buffer().get(0, dst, CoreConstants.ETHER_FIELD_PREAMBLE, CoreConstants.ETHER_FIELD_LEN_PREAMBLE);
+		buffer().get(base(), dst, CoreConstants.ETHER_FIELD_PREAMBLE, CoreConstants.ETHER_FIELD_LEN_PREAMBLE);
 
 		return dst;
 	}
@@ -351,14 +355,14 @@ public final class Ethernet extends Header {
 	 * @return MAC address
 	 */
 	public byte[] src(byte[] dst, int offset) {
-		buffer().get(CoreConstants.ETHER_FIELD_SRC, dst, offset, CoreConstants.ETHER_FIELD_SRC_LEN);
+		buffer().get(base() + CoreConstants.ETHER_FIELD_SRC, dst, offset, CoreConstants.ETHER_FIELD_SRC_LEN);
 
 		return dst;
 	}
 
 	@Meta(MetaType.ATTRIBUTE)
 	public long srcAsLong() {
-		return MacAddress.getAsLong(6, buffer());
+		return (getInt64(CoreConstants.ETHER_FIELD_SRC) >> 16) & ETHER_FIELD_SRC_MASK64;
 	}
 
 	/**
@@ -369,7 +373,7 @@ public final class Ethernet extends Header {
 	 * @return MAC address stored in the first 6 LSB bytes of the long primitive
 	 */
 	public long srcGetAsLong() {
-		return buffer().getLong(CoreConstants.ETHER_FIELD_SRC) & ETHER_FIELD_SRC_MASK64;
+		return getInt64(CoreConstants.ETHER_FIELD_SRC) & ETHER_FIELD_SRC_MASK64;
 	}
 
 	/**
@@ -383,6 +387,19 @@ public final class Ethernet extends Header {
 		return new MacAddress(src());
 	}
 
+	/**
+	 * Fills a reusable address holder with the source MAC address, without
+	 * allocating.
+	 *
+	 * @param address the address holder
+	 * @return the address holder
+	 */
+	public MacAddress srcInto(MacAddress address) {
+		src(address.toArray(), 0);
+
+		return address;
+	}
+
 	/**
 	 * The EtherType field in the Ethernet frame header identifies the protocol
 	 * carried in the payload of the frame. For example, a value of 0x0800 indicates
@@ -393,7 +410,7 @@ public final class Ethernet extends Header {
 	 */
 	@Meta(formatter = Meta.Formatter.HEX_LOWERCASE_0x, offset = 12, length = 2)
 	public int type() {
-		return Short.toUnsignedInt(buffer().getShort(CoreConstants.ETHER_FIELD_TYPE));
+		return getUInt16(CoreConstants.ETHER_FIELD_TYPE);
 	}
 
 	/**
@@ -173,6 +173,18 @@ public sealed class Icmp extends OptionsHeader
 		return Short.toUnsignedInt(buffer().getShort(ICMPv4_FIELD_CHECKSUM));
 	}
 
+	/**
+	 * Checks the ICMP checksum, as verified by the dissector. The packet is not
+	 * read again.
+	 *
+	 * @return false if the dissector verified checksums and a layer4 checksum
+	 *         in this packet failed, otherwise true
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissector#verifyChecksums(boolean)
+	 */
+	public boolean checksumValid() {
+		return (descriptor().checksumFlags() & DESC_CSUM_FLAG_L4_ERROR) == 0;
+	}
+
 	/**
 	 * On bind.
 	 *
@@ -0,0 +1,137 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Incremental update of the 16-bit one's complement internet checksum, as used
+ * by IPv4, TCP and UDP headers. When a header field is rewritten, the existing
+ * checksum is adjusted for the old and new field values only, using
+ * {@code HC' = ~(~HC + ~m + m')} from RFC 1624, instead of being recomputed over
+ * the whole header and payload. Full checksums are computed by
+ * {@link #sum(ByteBuffer, int, int)}, which adds 64-bit words at a time.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class InetChecksum {
+
+	/**
+	 * Adjusts a checksum for a rewritten 16-bit word.
+	 *
+	 * @param checksum the current checksum
+	 * @param oldWord  the old 16-bit value
+	 * @param newWord  the new 16-bit value
+	 * @return the new checksum
+	 */
+	public static int update16(int checksum, int oldWord, int newWord) {
+		int sum = (~checksum & 0xFFFF)
+				+ (~oldWord & 0xFFFF)
+				+ (newWord & 0xFFFF);
+
+		return ~fold(sum) & 0xFFFF;
+	}
+
+	/**
+	 * Adjusts a checksum for a rewritten 32-bit value, such as an IPv4 address or
+	 * one quarter of an IPv6 address.
+	 *
+	 * @param checksum the current checksum
+	 * @param oldValue the old 32-bit value
+	 * @param newValue the new 32-bit value
+	 * @return the new checksum
+	 */
+	public static int update32(int checksum, int oldValue, int newValue) {
+		int sum = (~checksum & 0xFFFF)
+				+ (~oldValue >>> 16)
+				+ (~oldValue & 0xFFFF)
+				+ (newValue >>> 16)
+				+ (newValue & 0xFFFF);
+
+		return ~fold(sum) & 0xFFFF;
+	}
+
+	/**
+	 * Folds the carries of a 32-bit sum back into 16 bits.
+	 *
+	 * @param sum the sum
+	 * @return the folded sum
+	 */
+	public static int fold(int sum) {
+		sum = (sum & 0xFFFF) + (sum >>> 16);
+		sum = (sum & 0xFFFF) + (sum >>> 16);
+
+		return sum;
+	}
+
+	/**
+	 * Computes the 16-bit one's complement sum of a range of bytes, in network
+	 * byte order. The bytes are read 64 bits at a time, with the two 32-bit halves
+	 * of each word added to a 64-bit accumulator, and folded to 16 bits once at
+	 * the end. An odd trailing byte is padded with zero.
+	 * <p>
+	 * A header or segment, including its checksum field and any pseudo header sum,
+	 * is valid if its folded sum is {@code 0xFFFF}.
+	 * </p>
+	 *
+	 * @param buf    the buffer
+	 * @param offset the offset of the first byte
+	 * @param length the number of bytes
+	 * @return the unsigned 16-bit sum, not complemented
+	 */
+	public static int sum(ByteBuffer buf, int offset, int length) {
+		final boolean swap = (buf.order() != ByteOrder.BIG_ENDIAN);
+		final int end = offset + length;
+
+		long sum = 0;
+		int i = offset;
+
+		for (; i + Long.BYTES <= end; i += Long.BYTES) {
+			long v = buf.getLong(i);
+			if (swap)
+				v = Long.reverseBytes(v);
+
+			sum += (v >>> 32) + (v & 0xFFFFFFFFL);
+		}
+
+		if (i + Integer.BYTES <= end) {
+			int v = buf.getInt(i);
+			sum += Integer.toUnsignedLong(swap ? Integer.reverseBytes(v) : v);
+			i += Integer.BYTES;
+		}
+
+		if (i + Short.BYTES <= end) {
+			short v = buf.getShort(i);
+			sum += Short.toUnsignedInt(swap ? Short.reverseBytes(v) : v);
+			i += Short.BYTES;
+		}
+
+		if (i < end)
+			sum += Byte.toUnsignedInt(buf.get(i)) << 8;
+
+		sum = (sum & 0xFFFFFFFFL) + (sum >>> 32);
+		sum = (sum & 0xFFFFFFFFL) + (sum >>> 32);
+
+		return fold((int) (sum & 0xFFFF) + (int) (sum >>> 16));
+	}
+
+	private InetChecksum() {
+	}
+}
@@ -19,12 +19,11 @@ package com.slytechs.jnet.protocol.core;
 
 import java.nio.ByteBuffer;
 
-import com.slytechs.jnet.jnetruntime.internal.util.collection.IntArrayList;
-import com.slytechs.jnet.jnetruntime.internal.util.collection.IntList;
 import com.slytechs.jnet.protocol.OptionsHeader;
 import com.slytechs.jnet.protocol.core.constants.CoreConstants;
 import com.slytechs.jnet.protocol.core.constants.CoreId;
 import com.slytechs.jnet.protocol.core.constants.IpfDescriptorType;
+import com.slytechs.jnet.protocol.descriptor.IpfBuffer;
 import com.slytechs.jnet.protocol.descriptor.IpfReassembly;
 import com.slytechs.jnet.protocol.descriptor.IpfTracking;
 import com.slytechs.jnet.protocol.descriptor.PacketDescriptor;
@@ -72,6 +71,31 @@ public sealed class Ip
 		super(id);
 	}
 
+	/**
+	 * Length of the IP addresses in this header.
+	 *
+	 * @return 4 for IPv4 or 16 for IPv6
+	 */
+	public int addressLength() {
+		return (version == 4) ? IpAddress.IPv4_ADDRESS_SIZE : IpAddress.IPv6_ADDRESS_SIZE;
+	}
+
+	/**
+	 * Checks that an address holder matches the IP version of this header.
+	 *
+	 * @param address the address holder
+	 * @return the address holder's backing array
+	 * @throws IllegalArgumentException if the holder is for a different IP version
+	 */
+	private byte[] checkAddressHolder(IpAddress address) {
+		byte[] bytes = address.toArray();
+		if (bytes.length != addressLength())
+			throw new IllegalArgumentException("%d byte address holder used with IPv%d header"
+					.formatted(bytes.length, version));
+
+		return bytes;
+	}
+
 	/**
 	 * Gets the IP destination field value.
 	 * <p>
@@ -139,9 +163,9 @@ public sealed class Ip
 	 */
 	public byte[] dst(byte[] dst, int offset) {
 		if (version == 4)
-			buffer().get(CoreConstants.IPv4_FIELD_DST, dst, offset, CoreConstants.IPv4_FIELD_DST_LEN);
+			buffer().get(base() + CoreConstants.IPv4_FIELD_DST, dst, offset, CoreConstants.IPv4_FIELD_DST_LEN);
 		else
-			buffer().get(CoreConstants.IPv6_FIELD_DST, dst, offset, CoreConstants.IPv6_FIELD_DST_LEN);
+			buffer().get(base() + CoreConstants.IPv6_FIELD_DST, dst, offset, CoreConstants.IPv6_FIELD_DST_LEN);
 
 		return dst;
 	}
@@ -156,17 +180,47 @@ public sealed class Ip
 	}
 
 	/**
-	 * A list of reassembled IP fragments.
+	 * Copies the IP destination address into an array, without allocating.
+	 *
+	 * @param dst    the array where the IP address should be written to
+	 * @param offset the offset into the dst array
+	 * @return the number of bytes written, 4 for IPv4 or 16 for IPv6
+	 */
+	public int dstInto(byte[] dst, int offset) {
+		dst(dst, offset);
+
+		return addressLength();
+	}
+
+	/**
+	 * Fills a reusable address holder with the IP destination address, without
+	 * allocating.
+	 *
+	 * @param address an address holder of the same IP version as this header
+	 * @return the address holder
+	 * @throws IllegalArgumentException if the holder is for a different IP version
+	 */
+	public IpAddress dstInto(IpAddress address) {
+		dst(checkAddressHolder(address), 0);
+
+		return address;
+	}
+
+	/**
+	 * A list of reassembled IP fragments. When the reassembler records fragments in
+	 * an {@link com.slytechs.jnet.protocol.ipf.IpfTrackingIndex}, all the
+	 * fragments of the datagram recorded so far are returned, otherwise those
+	 * listed in the tracking descriptor.
 	 *
 	 * @return array of frame numbers for each of the fragments that were used to
 	 *         reassemble this IP datagram. This method never returns null.
 	 */
 	public final long[] getIpfFrameIndexes() {
-		IntList list = new IntArrayList();
-		if (hasIpfTrackingDescriptor())
-			throw new UnsupportedOperationException("tracking retrieval not implemented yet");
-		else
+		IpfTracking tracking = getIpfTrackingDescriptor();
+		if (tracking == null)
 			return new long[0];
+
+		return tracking.frameNumbers();
 	}
 
 	/**
@@ -188,12 +242,18 @@ public sealed class Ip
 	}
 
 	/**
-	 * Gets the reassembled buffer.
+	 * Gets the reassembled buffer. The buffer contains the entire reassembled IP
+	 * datagram, starting with the IP header, with the length and fragmentation
+	 * fields updated to describe the unfragmented datagram.
 	 *
-	 * @return the reassembled buffer
+	 * @return the reassembled buffer or null if this datagram was not reassembled
 	 */
 	public final ByteBuffer getReassembledBuffer() {
-		throw new UnsupportedOperationException("not implemented yet");
+		IpfBuffer ipfBuffer = (IpfBuffer) super.descriptor().peekDescriptor(IpfDescriptorType.IPF_BUFFER);
+		if (ipfBuffer == null)
+			return null;
+
+		return ipfBuffer.datagram();
 	}
 
 	/**
@@ -222,7 +282,7 @@ public sealed class Ip
 	@Override
 	protected void onBind() {
 		/* Common to both v4 and v6 */
-		this.version = Ip4Struct.VERSION.getInt(buffer());
+		this.version = getUInt8(CoreConstants.IPv4_FIELD_VER) >>> 4;
 
 		super.onBind();
 	}
@@ -255,7 +315,7 @@ public sealed class Ip
 	@Meta(MetaType.ATTRIBUTE)
 	public int protocol() {
 		if (version == 4)
-			return Ip4Struct.PROTO.getInt(buffer());
+			return getUInt8(CoreConstants.IPv4_FIELD_PROTOCOL);
 		else
 			return Ip6Layout.NEXT.getInt(buffer());
 	}
@@ -326,9 +386,9 @@ public sealed class Ip
 	 */
 	public byte[] src(byte[] dst, int offset) {
 		if (version == 4)
-			buffer().get(CoreConstants.IPv4_FIELD_SRC, dst, offset, CoreConstants.IPv4_FIELD_SRC_LEN);
+			buffer().get(base() + CoreConstants.IPv4_FIELD_SRC, dst, offset, CoreConstants.IPv4_FIELD_SRC_LEN);
 		else
-			buffer().get(CoreConstants.IPv6_FIELD_SRC, dst, offset, CoreConstants.IPv6_FIELD_SRC_LEN);
+			buffer().get(base() + CoreConstants.IPv6_FIELD_SRC, dst, offset, CoreConstants.IPv6_FIELD_SRC_LEN);
 
 		return dst;
 	}
@@ -345,6 +405,33 @@ public sealed class Ip
 				: new Ip6Address(src());
 	}
 
+	/**
+	 * Copies the IP source address into an array, without allocating.
+	 *
+	 * @param dst    the array where the IP address should be written to
+	 * @param offset the offset into the dst array
+	 * @return the number of bytes written, 4 for IPv4 or 16 for IPv6
+	 */
+	public int srcInto(byte[] dst, int offset) {
+		src(dst, offset);
+
+		return addressLength();
+	}
+
+	/**
+	 * Fills a reusable address holder with the IP source address, without
+	 * allocating.
+	 *
+	 * @param address an address holder of the same IP version as this header
+	 * @return the address holder
+	 * @throws IllegalArgumentException if the holder is for a different IP version
+	 */
+	public IpAddress srcInto(IpAddress address) {
+		src(checkAddressHolder(address), 0);
+
+		return address;
+	}
+
 	/**
 	 * Gets the IP header version number.
 	 * <p>
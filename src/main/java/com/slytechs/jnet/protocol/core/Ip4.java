@@ -83,7 +83,31 @@ public final class Ip4
 
 	@Meta(abbr = "crc", formatter = Meta.Formatter.HEX_LOWERCASE_0x)
 	public int checksum() {
-		return Ip4Struct.CHECKSUM.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.IPv4_FIELD_CHECKSUM);
+	}
+
+	/**
+	 * Sets a new header checksum.
+	 *
+	 * @param newChecksum the new checksum
+	 * @return this ip4 header instance
+	 */
+	public Ip4 checksum(int newChecksum) {
+		setInt16(CoreConstants.IPv4_FIELD_CHECKSUM, newChecksum);
+
+		return this;
+	}
+
+	/**
+	 * Checks the IPv4 header checksum, as verified by the dissector. The packet is not
+	 * read again.
+	 *
+	 * @return false if the dissector verified checksums and a header checksum
+	 *         in this packet failed, otherwise true
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissector#verifyChecksums(boolean)
+	 */
+	public boolean checksumValid() {
+		return (descriptor().checksumFlags() & CoreConstants.DESC_CSUM_FLAG_L3_ERROR) == 0;
 	}
 
 	/**
@@ -127,7 +151,7 @@ public final class Ip4
 	 * @return the int
 	 */
 	public int dsfield() {
-		return Ip4Struct.DSFIELD.getInt(buffer());
+		return getUInt8(CoreConstants.IPv4_FIELD_DSFIELD);
 	}
 
 	/**
@@ -136,7 +160,7 @@ public final class Ip4
 	 * @return the int
 	 */
 	public int dsfieldDscp() {
-		return Ip4Struct.DSFIELD_DSCP.getInt(buffer());
+		return getUInt8(CoreConstants.IPv4_FIELD_DSFIELD) & 0x3F;
 	}
 
 	/**
@@ -145,7 +169,7 @@ public final class Ip4
 	 * @return the int
 	 */
 	public int dsfieldDscpCode() {
-		return Ip4Struct.DSFIELD_DSCP_CODE.getInt(buffer());
+		return (getUInt8(CoreConstants.IPv4_FIELD_DSFIELD) >>> 3) & 0x7;
 	}
 
 	/**
@@ -174,7 +198,7 @@ public final class Ip4
 	 * @return the int
 	 */
 	int dsfieldDscpSelect() {
-		return Ip4Struct.DSFIELD_DSCP_SELECT.getInt(buffer());
+		return getUInt8(CoreConstants.IPv4_FIELD_DSFIELD) & 0x7;
 	}
 
 	/**
@@ -183,7 +207,7 @@ public final class Ip4
 	 * @return the int
 	 */
 	int dsfieldEcn() {
-		return Ip4Struct.DSFIELD_ECN.getInt(buffer());
+		return getUInt8(CoreConstants.IPv4_FIELD_DSFIELD) >>> 6;
 	}
 
 	/**
@@ -241,7 +265,7 @@ public final class Ip4
 	 */
 	@Override
 	public byte[] dst(byte[] dst, int offset) {
-		buffer().get(CoreConstants.IPv4_FIELD_DST, dst, offset, CoreConstants.IPv4_FIELD_DST_LEN);
+		buffer().get(base() + CoreConstants.IPv4_FIELD_DST, dst, offset, CoreConstants.IPv4_FIELD_DST_LEN);
 
 		return dst;
 	}
@@ -263,7 +287,26 @@ public final class Ip4
 	 * @return the int
 	 */
 	public int dstGetAsInt() {
-		return Ip4Struct.DST.getInt(buffer());
+		return getInt32(CoreConstants.IPv4_FIELD_DST);
+	}
+
+	/**
+	 * Sets a new destination address and incrementally updates the header
+	 * checksum. The TCP or UDP checksum, which also covers the address, must be
+	 * updated separately by the caller.
+	 *
+	 * @param newDst the new destination address
+	 * @return this ip4 header instance
+	 * @see Tcp#rewritePseudoHeader(int, int)
+	 * @see Udp#rewritePseudoHeader(int, int)
+	 */
+	public Ip4 dstAsInt(int newDst) {
+		int oldDst = dstGetAsInt();
+
+		setInt32(CoreConstants.IPv4_FIELD_DST, newDst);
+		checksum(InetChecksum.update32(checksum(), oldDst, newDst));
+
+		return this;
 	}
 
 	/**
@@ -273,7 +316,7 @@ public final class Ip4
 	 */
 	@Meta(abbr = "flg")
 	public int flags() {
-		return Ip4Struct.FLAGS.getInt(buffer());
+		return getUInt16(CoreConstants.IPv4_FIELD_FLAGS) >>> 13;
 	}
 
 	/**
@@ -282,7 +325,7 @@ public final class Ip4
 	 * @return the int
 	 */
 	public int flags_DF() {
-		return Ip4Struct.FLAGS_DF.getInt(buffer());
+		return (getUInt16(CoreConstants.IPv4_FIELD_FLAGS) >>> 14) & 1;
 	}
 
 	/**
@@ -291,7 +334,7 @@ public final class Ip4
 	 * @return the int
 	 */
 	public int flags_MF() {
-		return Ip4Struct.FLAGS_MF.getInt(buffer());
+		return (getUInt16(CoreConstants.IPv4_FIELD_FLAGS) >>> 13) & 1;
 	}
 
 	/**
@@ -300,7 +343,7 @@ public final class Ip4
 	 * @return the int
 	 */
 	public int flags_Reserved() {
-		return Ip4Struct.FLAGS_RB.getInt(buffer());
+		return getUInt16(CoreConstants.IPv4_FIELD_FLAGS) >>> 15;
 	}
 
 	public String flagsAsString() {
@@ -344,7 +387,7 @@ public final class Ip4
 	 */
 	@Meta(abbr = "off")
 	public int fragOffset() {
-		return Ip4Struct.FRAG_OFFSET.getInt(buffer());
+		return getUInt16(CoreConstants.IPv4_FIELD_FLAGS) & 0x1FFF;
 	}
 
 	@Meta(value = MetaType.ATTRIBUTE, abbr = "offBytes")
@@ -376,7 +419,7 @@ public final class Ip4
 	 */
 	@Meta(abbr = "ihl")
 	public int hdrLen() {
-		return Ip4Struct.HDR_LEN.getInt(buffer());
+		return getUInt8(CoreConstants.IPv4_FIELD_VER) & 0xF;
 	}
 
 	/**
@@ -396,7 +439,18 @@ public final class Ip4
 	 */
 	@Meta(abbr = "ident", formatter = Meta.Formatter.HEX_LOWERCASE_0x)
 	public int identification() {
-		return Ip4Struct.ID.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.IPv4_FIELD_IDENT);
+	}
+
+	/**
+	 * Ip4 fields are read in place from the packet buffer.
+	 *
+	 * @return true
+	 * @see com.slytechs.jnet.protocol.Header#isBoundInPlace()
+	 */
+	@Override
+	protected boolean isBoundInPlace() {
+		return true;
 	}
 
 	/**
@@ -424,14 +478,19 @@ public final class Ip4
 	}
 
 	/**
-	 * Payload length.
+	 * Payload length. GRO/LRO and BIG TCP super-frames, whose total length does
+	 * not fit and is set to 0, use the capture length from the descriptor instead.
 	 *
 	 * @return the int
 	 * @see com.slytechs.jnet.protocol.core.Ip#payloadLength()
 	 */
 	@Override
 	public int payloadLength() {
-		return totalLength() - hdrLenBytes();
+		final int totalLength = totalLength();
+		if (totalLength == 0)
+			return super.payloadLength();
+
+		return totalLength - hdrLenBytes();
 	}
 
 	/**
@@ -451,7 +510,7 @@ public final class Ip4
 	@Meta(abbr = "proto")
 	@Override
 	public int protocol() {
-		return Ip4Struct.PROTO.getInt(buffer());
+		return getUInt8(CoreConstants.IPv4_FIELD_PROTOCOL);
 	}
 
 	/**
@@ -495,9 +554,7 @@ public final class Ip4
 	 */
 	@Override
 	public byte[] src(byte[] dst, int offset) {
-		byte[] debug = new byte[20];
-		buffer().get(0, debug);
-		buffer().get(CoreConstants.IPv4_FIELD_SRC, dst, offset, CoreConstants.IPv4_FIELD_SRC_LEN);
+		buffer().get(base() + CoreConstants.IPv4_FIELD_SRC, dst, offset, CoreConstants.IPv4_FIELD_SRC_LEN);
 
 		return dst;
 	}
@@ -519,7 +576,26 @@ public final class Ip4
 	 * @return the int
 	 */
 	public int srcAsInt() {
-		return Ip4Struct.SRC.getInt(buffer());
+		return getInt32(CoreConstants.IPv4_FIELD_SRC);
+	}
+
+	/**
+	 * Sets a new source address and incrementally updates the header checksum. The
+	 * TCP or UDP checksum, which also covers the address, must be updated
+	 * separately by the caller.
+	 *
+	 * @param newSrc the new source address
+	 * @return this ip4 header instance
+	 * @see Tcp#rewritePseudoHeader(int, int)
+	 * @see Udp#rewritePseudoHeader(int, int)
+	 */
+	public Ip4 srcAsInt(int newSrc) {
+		int oldSrc = srcAsInt();
+
+		setInt32(CoreConstants.IPv4_FIELD_SRC, newSrc);
+		checksum(InetChecksum.update32(checksum(), oldSrc, newSrc));
+
+		return this;
 	}
 
 	/**
@@ -529,7 +605,7 @@ public final class Ip4
 	 */
 	@Meta(abbr = "len")
 	public int totalLength() {
-		return Ip4Struct.TOTAL_LENGTH.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.IPv4_FIELD_TOTAL_LEN);
 	}
 
 	/**
@@ -538,7 +614,7 @@ public final class Ip4
 	@Meta(abbr = "tos")
 	@Override
 	public int trafficClass() {
-		return buffer().get(1) & DiffServ.TRAFFIC_CLASS;
+		return getUInt8(CoreConstants.IPv4_FIELD_DSFIELD) & DiffServ.TRAFFIC_CLASS;
 	}
 
 	/**
@@ -593,7 +669,41 @@ public final class Ip4
 	 */
 	@Meta
 	public int ttl() {
-		return Ip4Struct.TTL.getUnsignedByte(buffer());
+		return getUInt8(CoreConstants.IPv4_FIELD_TTL);
+	}
+
+	/**
+	 * Sets a new time to live and incrementally updates the header checksum.
+	 *
+	 * @param newTtl the new unsigned 8-bit time to live
+	 * @return this ip4 header instance
+	 */
+	public Ip4 ttl(int newTtl) {
+		int protocol = protocol();
+		int oldWord = (ttl() << 8) | protocol;
+		int newWord = ((newTtl & 0xFF) << 8) | protocol;
+
+		setInt8(CoreConstants.IPv4_FIELD_TTL, newTtl);
+		checksum(InetChecksum.update16(checksum(), oldWord, newWord));
+
+		return this;
+	}
+
+	/**
+	 * Decrements the time to live by one, as done when forwarding, and
+	 * incrementally updates the header checksum.
+	 *
+	 * @return the new time to live
+	 * @throws IllegalStateException if the time to live is already 0
+	 */
+	public int ttlDecrement() {
+		int ttl = ttl();
+		if (ttl == 0)
+			throw new IllegalStateException("ttl already expired");
+
+		ttl(ttl - 1);
+
+		return ttl - 1;
 	}
 
 	/**
@@ -604,7 +714,7 @@ public final class Ip4
 	@Meta(abbr = "ver")
 	@Override
 	public int version() {
-		return Ip4Struct.VERSION.getUnsignedByte(buffer());
+		return getUInt8(CoreConstants.IPv4_FIELD_VER) >>> 4;
 	}
 
 }
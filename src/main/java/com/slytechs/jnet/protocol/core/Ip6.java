@@ -17,6 +17,7 @@
  */
 package com.slytechs.jnet.protocol.core;
 
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
 import com.slytechs.jnet.protocol.core.constants.CoreId;
 import com.slytechs.jnet.protocol.core.constants.DiffServDscp;
 import com.slytechs.jnet.protocol.core.constants.DiffServEcn;
@@ -128,7 +129,7 @@ public final class Ip6 extends Ip implements DiffServ  {
 	 * @return the long
 	 */
 	public long dstAsLong(int index) {
-		return Ip6Layout.DST_AS_LONG.getInt(buffer(), index);
+		return Ip6Layout.DST_AS_LONG.getLong(buffer(), index);
 	}
 
 	/**
@@ -141,6 +142,24 @@ public final class Ip6 extends Ip implements DiffServ  {
 		Ip6Layout.DST_AS_LONG.setLong(dst, buffer(), index);
 	}
 
+	/**
+	 * Upper 64 bits of the destination address, in network byte order.
+	 *
+	 * @return the long
+	 */
+	public long dstHigh() {
+		return getInt64(CoreConstants.IPv6_FIELD_DST);
+	}
+
+	/**
+	 * Lower 64 bits of the destination address, in network byte order.
+	 *
+	 * @return the long
+	 */
+	public long dstLow() {
+		return getInt64(CoreConstants.IPv6_FIELD_DST + Long.BYTES);
+	}
+
 	/**
 	 * Flow.
 	 *
@@ -255,7 +274,7 @@ public final class Ip6 extends Ip implements DiffServ  {
 	 * @param index the index
 	 */
 	public void srcAsInt(int src, int index) {
-		Ip6Layout.DST_AS_INT.setInt(src, buffer(), index);
+		Ip6Layout.SRC_AS_INT.setInt(src, buffer(), index);
 	}
 
 	/**
@@ -275,7 +294,25 @@ public final class Ip6 extends Ip implements DiffServ  {
 	 * @param index the index
 	 */
 	public void srcAsLong(long src, int index) {
-		Ip6Layout.DST_AS_LONG.setLong(src, buffer(), index);
+		Ip6Layout.SRC_AS_LONG.setLong(src, buffer(), index);
+	}
+
+	/**
+	 * Upper 64 bits of the source address, in network byte order.
+	 *
+	 * @return the long
+	 */
+	public long srcHigh() {
+		return getInt64(CoreConstants.IPv6_FIELD_SRC);
+	}
+
+	/**
+	 * Lower 64 bits of the source address, in network byte order.
+	 *
+	 * @return the long
+	 */
+	public long srcLow() {
+		return getInt64(CoreConstants.IPv6_FIELD_SRC + Long.BYTES);
 	}
 
 	/**
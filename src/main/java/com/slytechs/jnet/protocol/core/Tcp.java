@@ -24,6 +24,7 @@ import com.slytechs.jnet.protocol.HasOption;
 import com.slytechs.jnet.protocol.HeaderNotFound;
 import com.slytechs.jnet.protocol.OptionsHeader;
 import com.slytechs.jnet.protocol.Packet;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
 import com.slytechs.jnet.protocol.core.constants.CoreId;
 import com.slytechs.jnet.protocol.core.constants.TcpFlag;
 import com.slytechs.jnet.protocol.meta.Meta;
@@ -236,7 +237,7 @@ public final class Tcp
 	 */
 	@Meta
 	public long ack() {
-		return TcpStruct.ACK.getUnsignedInt(buffer());
+		return Integer.toUnsignedLong(getInt32(CoreConstants.TCP_FIELD_ACK));
 	}
 
 	/**
@@ -271,7 +272,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp ack(long newAck) {
-		TcpStruct.ACK.setInt((int) newAck, buffer());
+		setInt32(CoreConstants.TCP_FIELD_ACK, (int) newAck);
 
 		return this;
 	}
@@ -318,7 +319,7 @@ public final class Tcp
 	 */
 	@Meta
 	public int checksum() {
-		return TcpStruct.CHECKSUM.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.TCP_FIELD_CHECKSUM);
 	}
 
 	/**
@@ -364,11 +365,66 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp checksum(int checksum) {
-		TcpStruct.CHECKSUM.setInt(checksum, buffer());
+		setInt16(CoreConstants.TCP_FIELD_CHECKSUM, checksum);
 
 		return this;
 	}
 
+	/**
+	 * Checks the TCP checksum, as verified by the dissector. The packet is not
+	 * read again.
+	 *
+	 * @return false if the dissector verified checksums and a layer4 checksum
+	 *         in this packet failed, otherwise true
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissector#verifyChecksums(boolean)
+	 */
+	public boolean checksumValid() {
+		return (descriptor().checksumFlags() & CoreConstants.DESC_CSUM_FLAG_L4_ERROR) == 0;
+	}
+
+	/**
+	 * Incrementally updates the checksum after a 32-bit value covered by the
+	 * pseudo header, such as an IPv4 address, was rewritten in the IP header. For
+	 * IPv6 addresses, call once for each of the 4 rewritten 32-bit words.
+	 *
+	 * @param oldValue the old 32-bit value
+	 * @param newValue the new 32-bit value
+	 * @return this tcp header instance
+	 * @see Ip4#srcAsInt(int)
+	 * @see Ip4#dstAsInt(int)
+	 */
+	public Tcp rewritePseudoHeader(int oldValue, int newValue) {
+		return checksum(InetChecksum.update32(checksum(), oldValue, newValue));
+	}
+
+	/**
+	 * Sets a new destination port and incrementally updates the checksum.
+	 *
+	 * @param newPort new unsigned 16-bit port number
+	 * @return this tcp header instance
+	 */
+	public Tcp rewriteDestination(int newPort) {
+		int oldPort = destination();
+
+		destination(newPort);
+
+		return checksum(InetChecksum.update16(checksum(), oldPort, newPort));
+	}
+
+	/**
+	 * Sets a new source port and incrementally updates the checksum.
+	 *
+	 * @param newPort new unsigned 16-bit port number
+	 * @return this tcp header instance
+	 */
+	public Tcp rewriteSource(int newPort) {
+		int oldPort = source();
+
+		source(newPort);
+
+		return checksum(InetChecksum.update16(checksum(), oldPort, newPort));
+	}
+
 	/**
 	 * Gets the TCP 4-bit data offset field (aka. header length) in units of 32-bit
 	 * words.
@@ -401,7 +457,7 @@ public final class Tcp
 	 */
 	@Meta
 	public int dataOffset() {
-		return TcpStruct.HDR_LEN.getUnsignedShort(buffer());
+		return getUInt8(CoreConstants.TCP_FIELD_IHL) >>> 4;
 	}
 
 	/**
@@ -436,7 +492,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp dataOffset(int newOffset) {
-		TcpStruct.HDR_LEN.setInt(newOffset, buffer());
+		setInt8(CoreConstants.TCP_FIELD_IHL, (newOffset << 4) | (getUInt8(CoreConstants.TCP_FIELD_IHL) & 0x0F));
 
 		return this;
 	}
@@ -519,7 +575,7 @@ public final class Tcp
 	 */
 	@Meta
 	public int destination() {
-		return TcpStruct.DST_PORT.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.TCP_FIELD_DST);
 	}
 
 	/**
@@ -566,7 +622,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp destination(int newPort) {
-		TcpStruct.DST_PORT.setInt(newPort, buffer());
+		setInt16(CoreConstants.TCP_FIELD_DST, newPort);
 
 		return this;
 	}
@@ -624,7 +680,7 @@ public final class Tcp
 	 */
 	@Meta
 	public int flags() {
-		return TcpStruct.FLAGS.getUnsignedShort(buffer());
+		return getUInt8(CoreConstants.TCP_FIELD_FLAGS);
 	}
 
 	/**
@@ -680,7 +736,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp flags(int newFlags) {
-		TcpStruct.FLAGS.setInt(newFlags, buffer());
+		setInt8(CoreConstants.TCP_FIELD_FLAGS, newFlags);
 
 		return this;
 	}
@@ -727,7 +783,7 @@ public final class Tcp
 	 * @return true, if the flag bit is set, otherwise false
 	 */
 	public boolean flags_ACK() {
-		return TcpStruct.FLAGS_ACK.getBit(buffer());
+		return (getUInt8(CoreConstants.TCP_FIELD_FLAGS) & TcpFlag.TCP_FLAG_ACK) != 0;
 	}
 
 	/**
@@ -774,7 +830,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp flags_ACK(boolean b) {
-		TcpStruct.FLAGS_ACK.setBoolean(b, buffer());
+		setFlag(TcpFlag.TCP_FLAG_ACK, b);
 		return this;
 	}
 
@@ -818,7 +874,7 @@ public final class Tcp
 	 * @return true, if the CWR flag bit is set, otherwise false
 	 */
 	public boolean flags_CWR() {
-		return TcpStruct.FLAGS_CWR.getBit(buffer());
+		return (getUInt8(CoreConstants.TCP_FIELD_FLAGS) & TcpFlag.TCP_FLAG_CWR) != 0;
 	}
 
 	/**
@@ -862,7 +918,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp flags_CWR(boolean b) {
-		TcpStruct.FLAGS_CWR.setBoolean(b, buffer());
+		setFlag(TcpFlag.TCP_FLAG_CWR, b);
 		return this;
 	}
 
@@ -906,7 +962,7 @@ public final class Tcp
 	 * @return if true the ECE flag bit is set, otherwise false
 	 */
 	public boolean flags_ECE() {
-		return TcpStruct.FLAGS_ECE.getBit(buffer());
+		return (getUInt8(CoreConstants.TCP_FIELD_FLAGS) & TcpFlag.TCP_FLAG_ECE) != 0;
 	}
 
 	/**
@@ -950,7 +1006,7 @@ public final class Tcp
 	 * @return this tcp header instance for Fluent pattern usage
 	 */
 	public Tcp flags_ECE(boolean b) {
-		TcpStruct.FLAGS_ECE.setBoolean(b, buffer());
+		setFlag(TcpFlag.TCP_FLAG_ECE, b);
 		return this;
 	}
 
@@ -991,7 +1047,7 @@ public final class Tcp
 	 * @return true, if the flag bit is set, otherwise false
 	 */
 	public boolean flags_FIN() {
-		return TcpStruct.FLAGS_FIN.getBit(buffer());
+		return (getUInt8(CoreConstants.TCP_FIELD_FLAGS) & TcpFlag.TCP_FLAG_FIN) != 0;
 	}
 
 	/**
@@ -1033,7 +1089,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp flags_FIN(boolean b) {
-		TcpStruct.FLAGS_FIN.setBoolean(b, buffer());
+		setFlag(TcpFlag.TCP_FLAG_FIN, b);
 		return this;
 	}
 
@@ -1072,7 +1128,7 @@ public final class Tcp
 	 * @return true, if the flag bit is set, otherwise false
 	 */
 	public boolean flags_PSH() {
-		return TcpStruct.FLAGS_PSH.getBit(buffer());
+		return (getUInt8(CoreConstants.TCP_FIELD_FLAGS) & TcpFlag.TCP_FLAG_PSH) != 0;
 	}
 
 	/**
@@ -1112,7 +1168,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp flags_PSH(boolean b) {
-		TcpStruct.FLAGS_PSH.setBoolean(b, buffer());
+		setFlag(TcpFlag.TCP_FLAG_PSH, b);
 		return this;
 	}
 
@@ -1156,7 +1212,7 @@ public final class Tcp
 	 * @return true, if the flag bit is set, otherwise false
 	 */
 	public boolean flags_RST() {
-		return TcpStruct.FLAGS_RST.getBit(buffer());
+		return (getUInt8(CoreConstants.TCP_FIELD_FLAGS) & TcpFlag.TCP_FLAG_RST) != 0;
 	}
 
 	/**
@@ -1200,7 +1256,7 @@ public final class Tcp
 	 * @return this tcp header instance
 	 */
 	public Tcp flags_RST(boolean b) {
-		TcpStruct.FLAGS_RST.setBoolean(b, buffer());
+		setFlag(TcpFlag.TCP_FLAG_RST, b);
 		return this;
 	}
 
@@ -1255,7 +1311,7 @@ public final class Tcp
 	 * @return true, if the flag bit is set, otherwise false
 	 */
 	public boolean flags_SYN() {
-		return TcpStruct.FLAGS_SYN.getBit(buffer());
+		return (getUInt8(CoreConstants.TCP_FIELD_FLAGS) & TcpFlag.TCP_FLAG_SYN) != 0;
 	}
 
 	/**
@@ -1311,7 +1367,7 @@ public final class Tcp
 	 * @return this tcp header instance for Fluent pattern usage
 	 */
 	public Tcp flags_SYN(boolean b) {
-		TcpStruct.FLAGS_SYN.setBoolean(b, buffer());
+		setFlag(TcpFlag.TCP_FLAG_SYN, b);
 		return this;
 	}
 
@@ -1361,7 +1417,7 @@ public final class Tcp
 	 * @return true, if the flag bit is set, otherwise false
 	 */
 	public boolean flags_URG() {
-		return TcpStruct.FLAGS_URG.getBit(buffer());
+		return (getUInt8(CoreConstants.TCP_FIELD_FLAGS) & TcpFlag.TCP_FLAG_URG) != 0;
 	}
 
 	/**
@@ -1412,10 +1468,21 @@ public final class Tcp
 	 * @return this tcp header instance for Fluent pattern usage
 	 */
 	public Tcp flags_URG(boolean b) {
-		TcpStruct.FLAGS_URG.setBoolean(b, buffer());
+		setFlag(TcpFlag.TCP_FLAG_URG, b);
 		return this;
 	}
 
+	/**
+	 * Tcp fields are read in place from the packet buffer.
+	 *
+	 * @return true
+	 * @see com.slytechs.jnet.protocol.Header#isBoundInPlace()
+	 */
+	@Override
+	protected boolean isBoundInPlace() {
+		return true;
+	}
+
 	/**
 	 * Checks if is this TCP frame is part of a reassembled TCP stream.
 	 *
@@ -1455,7 +1522,7 @@ public final class Tcp
 	 * @return the int
 	 */
 	public int reserved() {
-		return TcpStruct.RESERVED.getUnsignedShort(buffer());
+		return getUInt8(CoreConstants.TCP_FIELD_IHL) & 0x0F;
 	}
 
 	/**
@@ -1465,7 +1532,7 @@ public final class Tcp
 	 * @return this tcp header instance for Fluent pattern usage
 	 */
 	public Tcp reserved(int res) {
-		TcpStruct.RESERVED.setInt(res, buffer());
+		setInt8(CoreConstants.TCP_FIELD_IHL, (getUInt8(CoreConstants.TCP_FIELD_IHL) & 0xF0) | (res & 0x0F));
 
 		return this;
 	}
@@ -1529,7 +1596,7 @@ public final class Tcp
 	 */
 	@Meta
 	public long seq() {
-		return TcpStruct.SEQ.getUnsignedInt(buffer());
+		return Integer.toUnsignedLong(getInt32(CoreConstants.TCP_FIELD_SEQ));
 	}
 
 	/**
@@ -1591,11 +1658,23 @@ public final class Tcp
 	 * @return this tcp header instance for Fluent pattern usage
 	 */
 	public Tcp seq(long newSeq) {
-		TcpStruct.SEQ.setInt((int) newSeq, buffer());
+		setInt32(CoreConstants.TCP_FIELD_SEQ, (int) newSeq);
 
 		return this;
 	}
 
+	/**
+	 * Sets or clears a single bit in the flags field.
+	 *
+	 * @param mask the flag bitmask
+	 * @param b    true to set the flag, false to clear it
+	 */
+	private void setFlag(int mask, boolean b) {
+		int flags = getUInt8(CoreConstants.TCP_FIELD_FLAGS);
+
+		setInt8(CoreConstants.TCP_FIELD_FLAGS, b ? (flags | mask) : (flags & ~mask));
+	}
+
 	/**
 	 * Gets the TCP source port number.
 	 * <p>
@@ -1640,7 +1719,7 @@ public final class Tcp
 	 */
 	@Meta
 	public int source() {
-		return TcpStruct.SRC_PORT.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.TCP_FIELD_SRC);
 	}
 
 	/**
@@ -1687,7 +1766,7 @@ public final class Tcp
 	 * @return this tcp header instance for Fluent pattern usage
 	 */
 	public Tcp source(int newPort) {
-		TcpStruct.SRC_PORT.setInt(newPort, buffer());
+		setInt16(CoreConstants.TCP_FIELD_SRC, newPort);
 
 		return this;
 	}
@@ -1736,7 +1815,7 @@ public final class Tcp
 	 */
 	@Meta
 	public int urgent() {
-		return TcpStruct.URGENT_POINTER.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.TCP_FIELD_URGENT);
 	}
 
 	/**
@@ -1783,7 +1862,7 @@ public final class Tcp
 	 * @return this tcp header instance for Fluent pattern usage
 	 */
 	public Tcp urgent(int newUrgentPointer) {
-		TcpStruct.URGENT_POINTER.setInt(newUrgentPointer, buffer());
+		setInt16(CoreConstants.TCP_FIELD_URGENT, newUrgentPointer);
 
 		return this;
 	}
@@ -1829,7 +1908,7 @@ public final class Tcp
 	 */
 	@Meta
 	public int window() {
-		return TcpStruct.WIN_SIZE.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.TCP_FIELD_WINDOW);
 	}
 
 	/**
@@ -1874,7 +1953,7 @@ public final class Tcp
 	 * @see #windowScaled()
 	 */
 	public Tcp window(int newSize) {
-		TcpStruct.WIN_SIZE.setInt(newSize, buffer());
+		setInt16(CoreConstants.TCP_FIELD_WINDOW, newSize);
 
 		return this;
 	}
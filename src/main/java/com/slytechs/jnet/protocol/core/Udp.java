@@ -18,6 +18,7 @@
 package com.slytechs.jnet.protocol.core;
 
 import com.slytechs.jnet.protocol.Header;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
 import com.slytechs.jnet.protocol.core.constants.CoreId;
 import com.slytechs.jnet.protocol.meta.Meta;
 
@@ -48,7 +49,7 @@ public final class Udp extends Header {
 	 * @return 16-bit checksum of the header and data or zero if not set
 	 */
 	public int checksum() {
-		return UdpStruct.CHECKSUM.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.UDP_FIELD_CHECKSUM);
 	}
 
 	/**
@@ -57,7 +58,36 @@ public final class Udp extends Header {
 	 * @param newChecksum new CRC16 checksum
 	 */
 	public void checksum(int newChecksum) {
-		UdpStruct.CHECKSUM.setInt(newChecksum, buffer());
+		setInt16(CoreConstants.UDP_FIELD_CHECKSUM, newChecksum);
+	}
+
+	/**
+	 * Checks the UDP checksum, as verified by the dissector. The packet is not
+	 * read again.
+	 *
+	 * @return false if the dissector verified checksums and a layer4 checksum
+	 *         in this packet failed, otherwise true
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissector#verifyChecksums(boolean)
+	 */
+	public boolean checksumValid() {
+		return (descriptor().checksumFlags() & CoreConstants.DESC_CSUM_FLAG_L4_ERROR) == 0;
+	}
+
+	/**
+	 * Incrementally updates the checksum for a rewritten 16-bit word. A zero
+	 * checksum means no checksum was computed and is left unchanged, and a
+	 * computed zero is sent as all ones (RFC 768).
+	 *
+	 * @param oldWord the old word
+	 * @param newWord the new word
+	 */
+	private void updateChecksum16(int oldWord, int newWord) {
+		int checksum = checksum();
+		if (checksum == 0)
+			return;
+
+		checksum = InetChecksum.update16(checksum, oldWord, newWord);
+		checksum(checksum == 0 ? 0xFFFF : checksum);
 	}
 
 	/**
@@ -71,7 +101,7 @@ public final class Udp extends Header {
 	 */
 	@Meta
 	public int dstPort() {
-		return UdpStruct.DST_PORT.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.UDP_FIELD_DST);
 	}
 
 	/**
@@ -80,7 +110,47 @@ public final class Udp extends Header {
 	 * @param dstPort the dst port
 	 */
 	public void dstPort(int dstPort) {
-		UdpStruct.DST_PORT.setInt(dstPort, buffer());
+		setInt16(CoreConstants.UDP_FIELD_DST, dstPort);
+	}
+
+	/**
+	 * Sets a new destination port and incrementally updates the checksum, if
+	 * present.
+	 *
+	 * @param newPort the new port
+	 */
+	public void rewriteDstPort(int newPort) {
+		int oldPort = dstPort();
+
+		dstPort(newPort);
+		updateChecksum16(oldPort, newPort);
+	}
+
+	/**
+	 * Incrementally updates the checksum, if present, after a 32-bit value covered
+	 * by the pseudo header, such as an IPv4 address, was rewritten in the IP
+	 * header. For IPv6 addresses, call once for each of the 4 rewritten 32-bit
+	 * words.
+	 *
+	 * @param oldValue the old 32-bit value
+	 * @param newValue the new 32-bit value
+	 * @see Ip4#srcAsInt(int)
+	 * @see Ip4#dstAsInt(int)
+	 */
+	public void rewritePseudoHeader(int oldValue, int newValue) {
+		updateChecksum16(oldValue >>> 16, newValue >>> 16);
+		updateChecksum16(oldValue & 0xFFFF, newValue & 0xFFFF);
+	}
+
+	/**
+	 * Udp fields are read in place from the packet buffer.
+	 *
+	 * @return true
+	 * @see com.slytechs.jnet.protocol.Header#isBoundInPlace()
+	 */
+	@Override
+	protected boolean isBoundInPlace() {
+		return true;
 	}
 
 	/**
@@ -98,7 +168,7 @@ public final class Udp extends Header {
 	 */
 	@Meta
 	public int length() {
-		return UdpStruct.LENGTH.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.UDP_FIELD_LENGTH);
 	}
 
 	/**
@@ -107,7 +177,7 @@ public final class Udp extends Header {
 	 * @param length the length
 	 */
 	public void length(int length) {
-		UdpStruct.LENGTH.setInt(length, buffer());
+		setInt16(CoreConstants.UDP_FIELD_LENGTH, length);
 	}
 
 	/**
@@ -121,7 +191,7 @@ public final class Udp extends Header {
 	 */
 	@Meta
 	public int srcPort() {
-		return UdpStruct.SRC_PORT.getUnsignedShort(buffer());
+		return getUInt16(CoreConstants.UDP_FIELD_SRC);
 	}
 
 	/**
@@ -130,7 +200,19 @@ public final class Udp extends Header {
 	 * @param srcPort the src port
 	 */
 	public void srcPort(int srcPort) {
-		UdpStruct.SRC_PORT.setInt(srcPort, buffer());
+		setInt16(CoreConstants.UDP_FIELD_SRC, srcPort);
+	}
+
+	/**
+	 * Sets a new source port and incrementally updates the checksum, if present.
+	 *
+	 * @param newPort the new port
+	 */
+	public void rewriteSrcPort(int newPort) {
+		int oldPort = srcPort();
+
+		srcPort(newPort);
+		updateChecksum16(oldPort, newPort);
 	}
 
 }
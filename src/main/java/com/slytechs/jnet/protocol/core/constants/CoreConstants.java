@@ -38,6 +38,15 @@ public final class CoreConstants {
 	 */
 	public static final int DESC_PKT_FLAG_PREAMBLE      = 0x0002;
 
+	/** Checksums were verified by the dissector. */
+	public static final int DESC_CSUM_FLAG_VERIFIED     = 0x0001;
+
+	/** An IPv4 header checksum failed verification. */
+	public static final int DESC_CSUM_FLAG_L3_ERROR     = 0x0002;
+
+	/** A TCP, UDP, ICMPv4 or ICMPv6 checksum failed verification. */
+	public static final int DESC_CSUM_FLAG_L4_ERROR     = 0x0004;
+
 	/** The Constant DESC_TYPE1_BYTE_SIZE. */
 	public static final int DESC_TYPE1_BYTE_SIZE        = 16;
 
@@ -50,6 +59,29 @@ public final class CoreConstants {
 	/** The Constant DESC_TYPE2_RECORD_MAX_COUNT. */
 	public static final int DESC_TYPE2_RECORD_MAX_COUNT = 16;
 	
+	/** Largest header offset or length which can be encoded in a type2 record. */
+	public static final int DESC_TYPE2_RECORD_OFFSET_MAX = 0xFFFF;
+	
+	/** Largest caplen or wirelen which fits the 16-bit type2 length fields. */
+	public static final int DESC_TYPE2_LENGTH_MAX       = 0xFFFF;
+	
+	/** Size of the optional type2 extension word, past the last record. */
+	public static final int DESC_TYPE2_EXT_BYTE_SIZE    = 8;
+	
+	/** The Constant DESC_TYPE3_BYTE_SIZE_MIN. */
+	public static final int DESC_TYPE3_BYTE_SIZE_MIN    = 16;
+
+	/** The Constant DESC_TYPE3_RECORD_BYTE_SIZE. */
+	public static final int DESC_TYPE3_RECORD_BYTE_SIZE = 4;
+
+	/** The Constant DESC_TYPE3_RECORD_MAX_COUNT. */
+	public static final int DESC_TYPE3_RECORD_MAX_COUNT = 16;
+
+	/** The Constant DESC_TYPE3_BYTE_SIZE_MAX. */
+	public static final int DESC_TYPE3_BYTE_SIZE_MAX    = 0
+			+ DESC_TYPE3_BYTE_SIZE_MIN
+			+ (DESC_TYPE3_RECORD_MAX_COUNT * DESC_TYPE3_RECORD_BYTE_SIZE);
+
 	/** The Constant DESC_IPF_FRAG_KEY. */
 	public static final int DESC_IPF_FRAG_KEY = 12;
 	
@@ -72,11 +104,29 @@ public final class CoreConstants {
 	/** The Constant DESC_IPF_REASSEMBLY_BYTE_SIZE. */
 	public static final int DESC_IPF_REASSEMBLY_BYTE_SIZE = 0 
 			+ DESC_IPF_REASSEMBLY_BYTE_MIN_SIZE + DESC_IPF_REASSEMBLY_RECORD_SIZE * 32;
+
+	/** The Constant DESC_IPF_TRACKING_BYTE_MIN_SIZE. */
+	public static final int DESC_IPF_TRACKING_BYTE_MIN_SIZE = 24 ;
+
+	/** The Constant DESC_IPF_TRACKING_RECORD_SIZE. */
+	public static final int DESC_IPF_TRACKING_RECORD_SIZE = 16 ;
+
+	/** The Constant DESC_IPF_TRACKING_BYTE_SIZE. */
+	public static final int DESC_IPF_TRACKING_BYTE_SIZE = 0
+			+ DESC_IPF_TRACKING_BYTE_MIN_SIZE + DESC_IPF_TRACKING_RECORD_SIZE * 32;
 	
 	/** The Constant DESC_TYPE2_BYTE_SIZE_MAX. */
 	public static final int DESC_TYPE2_BYTE_SIZE_MAX    = 0
 			+ DESC_TYPE2_BYTE_SIZE_MIN
 			+ (DESC_TYPE2_RECORD_MAX_COUNT * DESC_TYPE2_RECORD_BYTE_SIZE);
+
+	/** Offset of the optional type2 extension word. */
+	public static final int DESC_TYPE2_EXT_OFFSET       = DESC_TYPE2_BYTE_SIZE_MAX;
+
+	/** Max size of a type2 descriptor with the optional extension word. */
+	public static final int DESC_TYPE2_EXT_BYTE_SIZE_MAX = 0
+			+ DESC_TYPE2_BYTE_SIZE_MAX
+			+ DESC_TYPE2_EXT_BYTE_SIZE;
 	/* @formatter:on - Descriptor type2 constants */
 
 	/* @formatter:off - Descriptor Ethernet II constants */
@@ -407,6 +457,15 @@ public final class CoreConstants {
 	/** The Constant IPv4_FIELD_TOTAL_LEN. */
 	public static final int IPv4_FIELD_TOTAL_LEN = 2;
 
+	/** The Constant IPv4_FIELD_CHECKSUM. */
+	public static final int IPv4_FIELD_CHECKSUM = 10;
+
+	/** The Constant IPv4_FIELD_DSFIELD. */
+	public static final int IPv4_FIELD_DSFIELD = 1;
+
+	/** The Constant IPv4_FIELD_TTL. */
+	public static final int IPv4_FIELD_TTL = 8;
+
 	/** The Constant IPv4_MASK16_FRAGOFF. */
 	public static final int IPv4_MASK16_FRAGOFF = 0x1FFF;
 
@@ -423,10 +482,16 @@ public final class CoreConstants {
 	public static final int IPv6_FIELD_IDENTIFICATION = 4;
 	
 	/** The Constant IPv6_FLAG16_MF. */
-	public static final int IPv6_FLAG16_MF = 0x8000;
+	public static final int IPv6_FLAG16_MF = 0x0001;
 	
-	/** The Constant IPv6_MASK16_FRAGOFF. */
-	public static final int IPv6_MASK16_FRAGOFF = 0x1FFF;
+	/** Fragment offset in units of 8 bytes, already shifted into a byte offset. */
+	public static final int IPv6_MASK16_FRAGOFF = 0xFFF8;
+
+	/** The Constant IPv6_FRAGMENT_HEADER_LEN. */
+	public static final int IPv6_FRAGMENT_HEADER_LEN = 8;
+
+	/** The Constant IPv6_FIELD_PAYLOAD_LENGTH. */
+	public static final int IPv6_FIELD_PAYLOAD_LENGTH = 4;
 
 	/** The Constant IPv4_FIELD_SRC. */
 	public static final int IPv6_FIELD_SRC = 8;
@@ -635,6 +700,24 @@ public final class CoreConstants {
 	/** The Constant TCP_FIELD_DST. */
 	public static final int TCP_FIELD_DST = 2;
 
+	/** The Constant TCP_FIELD_SEQ. */
+	public static final int TCP_FIELD_SEQ = 4;
+
+	/** The Constant TCP_FIELD_ACK. */
+	public static final int TCP_FIELD_ACK = 8;
+
+	/** The Constant TCP_FIELD_FLAGS. */
+	public static final int TCP_FIELD_FLAGS = 13;
+
+	/** The Constant TCP_FIELD_WINDOW. */
+	public static final int TCP_FIELD_WINDOW = 14;
+
+	/** The Constant TCP_FIELD_CHECKSUM. */
+	public static final int TCP_FIELD_CHECKSUM = 16;
+
+	/** The Constant TCP_FIELD_URGENT. */
+	public static final int TCP_FIELD_URGENT = 18;
+
 	/** The Constant TCP_OPTION_FIELD_KIND. */
 	public static final int TCP_OPTION_FIELD_KIND = 0;
 
@@ -720,6 +803,18 @@ public final class CoreConstants {
 	/* Descriptor UDP constants */
 	public static final int UDP_HEADER_LEN = 8;
 
+	/** The Constant UDP_FIELD_SRC. */
+	public static final int UDP_FIELD_SRC = 0;
+
+	/** The Constant UDP_FIELD_DST. */
+	public static final int UDP_FIELD_DST = 2;
+
+	/** The Constant UDP_FIELD_LENGTH. */
+	public static final int UDP_FIELD_LENGTH = 4;
+
+	/** The Constant UDP_FIELD_CHECKSUM. */
+	public static final int UDP_FIELD_CHECKSUM = 6;
+
 	/** The Constant SCTP_HEADER_LEN. */
 	/* Descriptor SCTP constants */
 	public static final int SCTP_HEADER_LEN = 0;
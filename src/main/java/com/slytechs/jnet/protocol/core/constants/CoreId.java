@@ -412,6 +412,9 @@ public enum CoreId implements HeaderInfo, PackId {
 	
 	// @formatter:on
 
+	/** Cached constants, indexed by ordinal, to avoid cloning on each lookup. */
+	private static final CoreId[] VALUES = values();
+
 	/**
 	 * To string id.
 	 *
@@ -419,7 +422,7 @@ public enum CoreId implements HeaderInfo, PackId {
 	 * @return the core header info
 	 */
 	public static CoreId toStringId(int id) {
-		return values()[PackId.decodeIdOrdinal(id)];
+		return VALUES[PackId.decodeIdOrdinal(id)];
 	}
 
 	/**
@@ -431,7 +434,7 @@ public enum CoreId implements HeaderInfo, PackId {
 	public static Set<CoreId> toSetFromBitmask(long bitmask) {
 		var set = EnumSet.noneOf(CoreId.class);
 
-		for (CoreId e : values()) {
+		for (CoreId e : VALUES) {
 			if (PackId.bitmaskCheck(bitmask, e.id))
 				set.add(e);
 		}
@@ -451,7 +454,7 @@ public enum CoreId implements HeaderInfo, PackId {
 			return null;
 
 		int ordinal = PackId.decodeIdOrdinal(id);
-		return values()[ordinal];
+		return VALUES[ordinal];
 	}
 
 	/** The id. */
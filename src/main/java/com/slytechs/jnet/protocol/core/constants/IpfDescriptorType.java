@@ -20,6 +20,7 @@ package com.slytechs.jnet.protocol.core.constants;
 import java.util.function.Supplier;
 
 import com.slytechs.jnet.protocol.descriptor.DescriptorType;
+import com.slytechs.jnet.protocol.descriptor.IpfBuffer;
 import com.slytechs.jnet.protocol.descriptor.IpfFragment;
 import com.slytechs.jnet.protocol.descriptor.IpfReassembly;
 import com.slytechs.jnet.protocol.descriptor.IpfTracking;
@@ -52,6 +53,9 @@ public enum IpfDescriptorType implements DescriptorType<Ipfdescriptor> {
 	/** A descriptor used in IP fragment reassembly. */
 	IPF_REASSEMBLY(DescriptorType.DESCRIPTOR_TYPE_IPF_REASSEMBLY, IpfReassembly::new),
 
+	/** A descriptor bound to the contiguous reassembled IP datagram. */
+	IPF_BUFFER(DescriptorType.DESCRIPTOR_TYPE_IPF_BUFFER, IpfBuffer::new),
+
 	;
 
 	/** The type. */
@@ -24,6 +24,7 @@ import com.slytechs.jnet.protocol.descriptor.PacketDescriptor;
 import com.slytechs.jnet.protocol.descriptor.PcapDescriptor;
 import com.slytechs.jnet.protocol.descriptor.Type1Descriptor;
 import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+import com.slytechs.jnet.protocol.descriptor.Type3Descriptor;
 
 /**
  * A constant table of packet descriptor types supported by jNet modules.
@@ -45,6 +46,12 @@ public enum PacketDescriptorType implements DescriptorType<PacketDescriptor> {
 	 */
 	TYPE2(DESCRIPTOR_TYPE_TYPE2, Type2Descriptor::new),
 
+	/**
+	 * 16-80 byte compact descriptor, providing protocol dissection records packed
+	 * into 32-bits each. Typical packets fit into a single 64 byte cache line.
+	 */
+	TYPE3(DESCRIPTOR_TYPE_TYPE3, Type3Descriptor::new),
+
 	; // EOF Constant table
 
 	/** The type. */
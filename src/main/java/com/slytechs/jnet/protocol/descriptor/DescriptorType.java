@@ -33,6 +33,9 @@ public interface DescriptorType<T extends Descriptor> {
 	/** The Constant DESCRIPTOR_TYPE_TYPE2. */
 	int DESCRIPTOR_TYPE_TYPE2 = 2;
 
+	/** Compact descriptor with 32-bit header records. */
+	int DESCRIPTOR_TYPE_TYPE3 = 3;
+
 	/** IP fragmentation reassembly descriptor. */
 	int DESCRIPTOR_TYPE_IPF_FRAG = 20;
 
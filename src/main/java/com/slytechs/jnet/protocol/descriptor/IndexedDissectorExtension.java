@@ -0,0 +1,359 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.descriptor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector.RecordRecorder;
+
+/**
+ * Dispatches to protocol pack extensions through tables indexed by port,
+ * EtherType and IP protocol number, compiled from the keys each extension
+ * declares. A packet triggers at most one call to a declaring extension, and
+ * none when no extension handles its keys. Extensions which do not declare
+ * their keys of a kind are chained and consulted for every packet, as before.
+ * <p>
+ * When several extensions declare the same key, they are chained in list order
+ * for that key only.
+ * </p>
+ * <p>
+ * Before a port dispatch, the payload prefix is checked against the
+ * {@link PacketDissectorExtension#signature() signature} of each declaring
+ * extension, so that payloads which cannot belong to the extension are
+ * rejected without calling into it.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class IndexedDissectorExtension implements PacketDissectorExtension {
+
+	/** Number of TCP/UDP ports and EtherTypes. */
+	private static final int TABLE_SIZE_16BIT = 1 << 16;
+
+	/** Number of IP protocol numbers. */
+	private static final int TABLE_SIZE_8BIT = 1 << 8;
+
+	/** Slot indexes are stored in bytes, slot 0 means no extension. */
+	private static final int SLOT_MAX_COUNT = 255;
+
+	/** An empty slot. */
+	private static final Guard[] NO_GUARDS = new Guard[0];
+
+	/**
+	 * An extension and its payload signature.
+	 *
+	 * @param ext       the extension
+	 * @param signature the signature, big-endian
+	 * @param mask      the signature mask, or 0 if no signature
+	 * @param length    the number of payload bytes covered by the mask
+	 */
+	private record Guard(PacketDissectorExtension ext, long signature, long mask, int length) {
+
+		/**
+		 * Of.
+		 *
+		 * @param ext the extension
+		 * @return the guard
+		 */
+		static Guard of(PacketDissectorExtension ext) {
+			long mask = ext.signatureMask();
+			long signature = ext.signature();
+
+			if ((signature & ~mask) != 0)
+				throw new IllegalArgumentException("signature 0x%016X has bits outside of mask 0x%016X in %s"
+						.formatted(signature, mask, ext));
+
+			int length = (mask == 0) ? 0 : Long.BYTES - (Long.numberOfTrailingZeros(mask) >>> 3);
+
+			return new Guard(ext, signature, mask, length);
+		}
+
+		/**
+		 * Checks if the payload prefix matches the signature.
+		 *
+		 * @param prefix    the first 8 payload bytes, big-endian and zero padded
+		 * @param remaining the number of payload bytes
+		 * @return true, if the extension should be called
+		 */
+		boolean matches(long prefix, int remaining) {
+			return (remaining >= length) && ((prefix & mask) == signature);
+		}
+	}
+
+	/** All of the extensions, in order. */
+	private final List<PacketDissectorExtension> list;
+
+	/** Chain of all extensions, used for encapsulations. */
+	private final PacketDissectorExtension chain;
+
+	/** Chain of extensions not declaring ports, or null. */
+	private final PacketDissectorExtension portFallback;
+
+	/** Chain of extensions not declaring EtherTypes, or null. */
+	private final PacketDissectorExtension etherTypeFallback;
+
+	/** Chain of extensions not declaring IP protocols, or null. */
+	private final PacketDissectorExtension ipProtocolFallback;
+
+	/** The guarded extensions for each slot. */
+	private final Guard[][] slots;
+
+	/** Port to slot. */
+	private final byte[] portTable = new byte[TABLE_SIZE_16BIT];
+
+	/** EtherType to slot. */
+	private final byte[] etherTypeTable = new byte[TABLE_SIZE_16BIT];
+
+	/** IP protocol to slot. */
+	private final byte[] ipProtocolTable = new byte[TABLE_SIZE_8BIT];
+
+	/**
+	 * Compiles the dispatch tables.
+	 *
+	 * @param list the extensions, in order of precedence
+	 */
+	IndexedDissectorExtension(List<PacketDissectorExtension> list) {
+		this.list = List.copyOf(list);
+		this.chain = PacketDissectorExtension.wrap(this.list);
+
+		List<Guard[]> slotList = new ArrayList<>();
+		slotList.add(NO_GUARDS);
+
+		Map<List<PacketDissectorExtension>, Integer> slotOf = new HashMap<>();
+
+		this.portFallback = compile(PacketDissectorExtension::ports, portTable, slotList, slotOf);
+		this.etherTypeFallback = compile(PacketDissectorExtension::etherTypes, etherTypeTable, slotList, slotOf);
+		this.ipProtocolFallback = compile(PacketDissectorExtension::ipProtocols, ipProtocolTable, slotList, slotOf);
+
+		this.slots = slotList.toArray(Guard[][]::new);
+	}
+
+	/**
+	 * Compiles a single dispatch table.
+	 *
+	 * @param keys     the declared keys of an extension
+	 * @param table    the table to fill with slot indexes
+	 * @param slotList the slots
+	 * @param slotOf   the slot of each distinct chain of extensions
+	 * @return the chain of extensions which did not declare their keys, or null
+	 */
+	private PacketDissectorExtension compile(
+			Function<PacketDissectorExtension, int[]> keys,
+			byte[] table,
+			List<Guard[]> slotList,
+			Map<List<PacketDissectorExtension>, Integer> slotOf) {
+
+		@SuppressWarnings("unchecked")
+		List<PacketDissectorExtension>[] handlers = new List[table.length];
+		List<PacketDissectorExtension> undeclared = new ArrayList<>();
+
+		for (PacketDissectorExtension ext : list) {
+			int[] declared = keys.apply(ext);
+			if (declared == null) {
+				undeclared.add(ext);
+				continue;
+			}
+
+			for (int key : declared) {
+				if ((key < 0) || (key >= table.length))
+					throw new IllegalArgumentException("invalid dispatch key %d declared by %s"
+							.formatted(key, ext));
+
+				if (handlers[key] == null)
+					handlers[key] = new ArrayList<>(1);
+
+				if (!handlers[key].contains(ext))
+					handlers[key].add(ext);
+			}
+		}
+
+		for (int key = 0; key < table.length; key++) {
+			List<PacketDissectorExtension> exts = handlers[key];
+			if (exts == null)
+				continue;
+
+			int slot = slotOf.computeIfAbsent(exts, l -> {
+				if (slotList.size() > SLOT_MAX_COUNT)
+					throw new IllegalStateException("too many distinct extension dispatch slots");
+
+				slotList.add(l.stream()
+						.map(Guard::of)
+						.toArray(Guard[]::new));
+
+				return slotList.size() - 1;
+			});
+
+			table[key] = (byte) slot;
+		}
+
+		return undeclared.isEmpty() ? null : PacketDissectorExtension.wrap(undeclared);
+	}
+
+	/**
+	 * Loads the payload prefix as a big-endian word, zero padded if the payload is
+	 * shorter than 8 bytes.
+	 *
+	 * @param buffer the buffer
+	 * @param offset the payload offset
+	 * @return the payload prefix
+	 */
+	private static long payloadPrefix(ByteBuffer buffer, int offset) {
+		int remaining = buffer.limit() - offset;
+
+		if (remaining >= Long.BYTES) {
+			long word = buffer.getLong(offset);
+
+			return (buffer.order() == ByteOrder.BIG_ENDIAN) ? word : Long.reverseBytes(word);
+		}
+
+		long word = 0;
+		for (int i = 0; i < remaining; i++)
+			word |= Byte.toUnsignedLong(buffer.get(offset + i)) << (56 - (i << 3));
+
+		return word;
+	}
+
+	/**
+	 * Dispatches to the extensions registered for the destination port, then for
+	 * the source port if none of those matched, then to extensions which did not
+	 * declare their ports. Registered extensions whose signature does not match the
+	 * payload prefix are skipped.
+	 *
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#dissectPorts(java.nio.ByteBuffer,
+	 *      int, int, int, int)
+	 */
+	@Override
+	public boolean dissectPorts(ByteBuffer buffer, int offset, int encapsId, int src, int dst) {
+		int dstSlot = Byte.toUnsignedInt(portTable[dst & 0xFFFF]);
+		int srcSlot = Byte.toUnsignedInt(portTable[src & 0xFFFF]);
+
+		if ((dstSlot != 0) || (srcSlot != 0)) {
+			int remaining = buffer.limit() - offset;
+			long prefix = payloadPrefix(buffer, offset);
+
+			if (dissectPortSlot(dstSlot, prefix, remaining, buffer, offset, encapsId, src, dst))
+				return true;
+
+			if ((srcSlot != dstSlot)
+					&& dissectPortSlot(srcSlot, prefix, remaining, buffer, offset, encapsId, src, dst))
+				return true;
+		}
+
+		return (portFallback != null) && portFallback.dissectPorts(buffer, offset, encapsId, src, dst);
+	}
+
+	/**
+	 * Dispatches ports to the extensions of a slot whose signature matches the
+	 * payload prefix.
+	 *
+	 * @param slot      the dispatch slot, 0 for none
+	 * @param prefix    the payload prefix
+	 * @param remaining the payload bytes remaining in the buffer
+	 * @param buffer    the buffer
+	 * @param offset    the payload offset
+	 * @param encapsId  the encapsulating protocol id
+	 * @param src       the source port
+	 * @param dst       the destination port
+	 * @return true, if an extension dissected the payload
+	 */
+	private boolean dissectPortSlot(int slot, long prefix, int remaining, ByteBuffer buffer, int offset,
+			int encapsId, int src, int dst) {
+		for (Guard guard : slots[slot])
+			if (guard.matches(prefix, remaining)
+					&& guard.ext().dissectPorts(buffer, offset, encapsId, src, dst))
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Dispatches an EtherType or IP protocol number to the extension registered
+	 * for it, then to extensions which did not declare their types.
+	 *
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#dissectType(java.nio.ByteBuffer,
+	 *      int, int, int)
+	 */
+	@Override
+	public boolean dissectType(ByteBuffer buffer, int offset, int encapsId, int type) {
+		final byte[] table;
+		final PacketDissectorExtension fallback;
+
+		switch (encapsId) {
+		case CoreId.CORE_ID_ETHER:
+			table = etherTypeTable;
+			fallback = etherTypeFallback;
+			break;
+
+		case CoreId.CORE_ID_IPv4:
+		case CoreId.CORE_ID_IPv6:
+			table = ipProtocolTable;
+			fallback = ipProtocolFallback;
+			break;
+
+		default:
+			return chain.dissectType(buffer, offset, encapsId, type);
+		}
+
+		int slot = Byte.toUnsignedInt(table[type & (table.length - 1)]);
+		for (Guard guard : slots[slot])
+			if (guard.ext().dissectType(buffer, offset, encapsId, type))
+				return true;
+
+		return (fallback != null) && fallback.dissectType(buffer, offset, encapsId, type);
+	}
+
+	/**
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#dissectEncaps(java.nio.ByteBuffer,
+	 *      int, int, int, int)
+	 */
+	@Override
+	public boolean dissectEncaps(ByteBuffer buffer, int offset, int encapsId, int encapsOffset, int encapsLength) {
+		return chain.dissectEncaps(buffer, offset, encapsId, encapsOffset, encapsLength);
+	}
+
+	/**
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#setRecorder(com.slytechs.jnet.protocol.descriptor.PacketDissector.RecordRecorder)
+	 */
+	@Override
+	public void setRecorder(RecordRecorder recorder) {
+		list.forEach(ext -> ext.setRecorder(recorder));
+	}
+
+	/**
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#setExtensions(com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension)
+	 */
+	@Override
+	public void setExtensions(PacketDissectorExtension ext) {
+		list.forEach(e -> e.setExtensions(ext));
+	}
+
+	/**
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#reset()
+	 */
+	@Override
+	public void reset() {
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.descriptor;
+
+import java.nio.ByteBuffer;
+
+import com.slytechs.jnet.jnetruntime.util.Detail;
+import com.slytechs.jnet.protocol.core.constants.IpfDescriptorType;
+
+/**
+ * Ip fragmentation buffer descriptor. Unlike other descriptors, this descriptor
+ * is bound directly to the contiguous reassembled IP datagram, starting with
+ * the IP header followed by the reassembled IP payload.
+ * <p>
+ * The reassembler also re-dissects the reassembled datagram, as an unfragmented
+ * frame with the link layer headers of the first fragment, and records the
+ * frame and its packet descriptor here. This allows headers which are only
+ * present in the first fragment, such as transport headers, to be looked up
+ * from the packet which completed the reassembly. Only headers within the
+ * fragmented IP payload are looked up this way, link and IP headers are always
+ * taken from the packet itself.
+ * </p>
+ * <p>
+ * The frame and its descriptor are owned by the reassembler and are only valid
+ * until its next reassembly, after which they are overwritten.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class IpfBuffer extends Ipfdescriptor {
+
+	/** The reassembled frame. */
+	private ByteBuffer frame;
+
+	/** The reassembled frame descriptor. */
+	private PacketDescriptor frameDescriptor;
+
+	/** Offset of the fragmented IP payload within the frame. */
+	private int framePayloadOffset;
+
+	/**
+	 * Instantiates a new ipf buffer descriptor.
+	 */
+	public IpfBuffer() {
+		super(IpfDescriptorType.IPF_BUFFER);
+	}
+
+	/**
+	 * Instantiates a new ipf buffer descriptor.
+	 *
+	 * @param datagram the reassembled datagram
+	 */
+	public IpfBuffer(ByteBuffer datagram) {
+		super(IpfDescriptorType.IPF_BUFFER);
+
+		bind(datagram);
+	}
+
+	/**
+	 * The reassembled datagram, starting with the IP header.
+	 *
+	 * @return the reassembled datagram buffer
+	 */
+	public ByteBuffer datagram() {
+		return buffer().duplicate();
+	}
+
+	/**
+	 * The reassembled datagram as an unfragmented frame, starting with the link
+	 * layer headers of the first fragment.
+	 *
+	 * @return the frame buffer or null if the datagram was not dissected
+	 */
+	public ByteBuffer frame() {
+		return frame;
+	}
+
+	/**
+	 * Offset of the fragmented IP payload within the reassembled frame. Headers at
+	 * or beyond this offset were not present in every fragment.
+	 *
+	 * @return the payload offset in the frame
+	 */
+	public int framePayloadOffset() {
+		return framePayloadOffset;
+	}
+
+	/**
+	 * The packet descriptor of the reassembled frame.
+	 *
+	 * @return the descriptor or null if the datagram was not dissected
+	 */
+	public PacketDescriptor frameDescriptor() {
+		return frameDescriptor;
+	}
+
+	/**
+	 * Clears the reassembled frame when the descriptor is unbound.
+	 *
+	 * @see com.slytechs.jnet.protocol.descriptor.Descriptor#onUnbind()
+	 */
+	@Override
+	protected void onUnbind() {
+		super.onUnbind();
+
+		this.frame = null;
+		this.frameDescriptor = null;
+		this.framePayloadOffset = 0;
+	}
+
+	/**
+	 * Sets the reassembled frame and its packet descriptor.
+	 *
+	 * @param frame         the frame buffer, starting with the link layer headers
+	 * @param descriptor    the packet descriptor produced by dissecting the frame
+	 * @param payloadOffset offset of the fragmented IP payload within the frame
+	 * @return this ipf buffer
+	 */
+	public IpfBuffer setFrame(ByteBuffer frame, PacketDescriptor descriptor, int payloadOffset) {
+		this.frame = frame;
+		this.frameDescriptor = descriptor;
+		this.framePayloadOffset = payloadOffset;
+
+		return this;
+	}
+
+	/**
+	 * Datagram length.
+	 *
+	 * @return the length of the reassembled datagram in bytes
+	 */
+	public int datagramLength() {
+		return buffer().limit();
+	}
+
+	/**
+	 * @see com.slytechs.jnet.protocol.descriptor.Descriptor#buildDetailedString(java.lang.StringBuilder,
+	 *      com.slytechs.jnet.jnetruntime.util.Detail)
+	 */
+	@Override
+	protected StringBuilder buildDetailedString(StringBuilder b, Detail detail) {
+		if (detail == Detail.LOW)
+			b.append("length=%d".formatted(datagramLength()));
+		else
+			b.append("  length=%d bytes%n".formatted(datagramLength()));
+
+		return b;
+	}
+}
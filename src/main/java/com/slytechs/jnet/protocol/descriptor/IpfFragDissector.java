@@ -95,6 +95,7 @@ public class IpfFragDissector extends PacketL2DissectorJava {
 			return;
 
 		this.ipOffset = offset;
+		this.ipIsFrag = this.ipLastFrag = false;
 
 		int r0 = Byte.toUnsignedInt(buf.get(ipOffset + IPv4_FIELD_VER)); // 07:00 IP header len & version
 		int ver = calcIpVersion((byte) r0); // Common to IPv4 and IPv6
@@ -115,14 +116,15 @@ public class IpfFragDissector extends PacketL2DissectorJava {
 			this.ipIdent = buf.getShort(ipOffset + IPv4_FIELD_IDENT);
 			this.ipTotalLen = buf.getShort(ipOffset + IPv4_FIELD_TOTAL_LEN);
 			this.fragDataOffset = offset + ipHeaderSize;
-			this.fragDataLength = ipTotalLen - ipHeaderSize;
+			this.fragDataLength = Short.toUnsignedInt(ipTotalLen) - ipHeaderSize;
 
 			buf.get(offset + IPv4_FIELD_SRC, ip4_src);
 			buf.get(offset + IPv4_FIELD_DST, ip4_dst);
 
 		} else if (hasRemaining(ipOffset, IPv6_HEADER_LEN)) {
 			this.ipType = L3FrameType.L3_FRAME_TYPE_IPv6;
-			this.ipHeaderSize = IPv6_HEADER_LEN >> 2;
+			this.ipHeaderSize = IPv6_HEADER_LEN;
+			this.ipTotalLen = (short) (buf.getShort(ipOffset + IPv6_FIELD_PAYLOAD_LENGTH) + IPv6_HEADER_LEN);
 
 			nextHeader = Byte.toUnsignedInt(buf.get(ipOffset + IPv6_FIELD_NEXT_HOP));
 
@@ -133,35 +135,44 @@ public class IpfFragDissector extends PacketL2DissectorJava {
 		}
 	}
 
+	/**
+	 * Walks the IPv6 extension header chain looking for a fragment header. The
+	 * unfragmentable part, which is everything up to the fragment header, becomes
+	 * the IP header of the reassembled datagram.
+	 *
+	 * @param offset     the offset of the IPv6 header
+	 * @param nextHeader the next header field of the IPv6 header
+	 */
 	protected void dissectIp6Options(int offset, int nextHeader) {
-
-		int extLen = 0;
+		final int ipStart = offset;
 		offset += IPv6_HEADER_LEN;
 
-		// Calculate IPv6 header size including options
-		LOOP: while (hasRemaining(offset + 2)) {
+		LOOP: while (hasRemaining(offset, 8)) {
 
 			// IPv6 options
 			switch (nextHeader) {
 			case IP_TYPE_IPv6_FRAGMENT_HEADER: {
-				int sword1 = buf.getShort(offset + IPv6_FIELD_FRAG_OFFSET);
-				boolean mf = (sword1 & IPv4_FLAG16_MF) > 0;
-				this.ipFragOffset = (sword1 & IPv4_MASK16_FRAGOFF);
+				int sword1 = Short.toUnsignedInt(buf.getShort(offset + IPv6_FIELD_FRAG_OFFSET));
+				boolean mf = (sword1 & IPv6_FLAG16_MF) != 0;
 
+				this.ipFragOffset = (sword1 & IPv6_MASK16_FRAGOFF); // Already in units of bytes
 				this.ipIsFrag = true;
 				this.ipLastFrag = !mf;
-				this.ipIdent = buf.getInt(IPv6_FIELD_IDENTIFICATION);
+				this.ipIdent = buf.getInt(offset + IPv6_FIELD_IDENTIFICATION);
+				this.ipNextHeader = Byte.toUnsignedInt(buf.get(offset));
+				this.ipHeaderSize = offset - ipStart;
+				this.fragDataOffset = offset + IPv6_FRAGMENT_HEADER_LEN;
+				this.fragDataLength = Short.toUnsignedInt(ipTotalLen) - (fragDataOffset - ipStart);
+
+				break LOOP;
 			}
 
 			case IP_TYPE_IPv6_HOP_BY_HOP:
 			case IP_TYPE_IPv6_DESTINATION_OPTIONS:
 			case IP_TYPE_IPv6_ROUTING_HEADER:
 			case IP_TYPE_IPv6_SHIM6_PROTOCOL: {// Shim6 protocol
-				nextHeader = buf.get(offset + extLen + 0);
-				int len = (buf.get(offset + extLen + 1) << 3) + 8; // (in units of 8 bytes)
-
-				extLen += len;
-				offset += len;
+				nextHeader = Byte.toUnsignedInt(buf.get(offset + 0));
+				offset += (Byte.toUnsignedInt(buf.get(offset + 1)) << 3) + 8; // (in units of 8 bytes)
 				break;
 			}
 
@@ -183,6 +194,10 @@ public class IpfFragDissector extends PacketL2DissectorJava {
 	@Override
 	public void reset() {
 		super.reset();
+
+		ipIsFrag = ipLastFrag = false;
+		ipFragOffset = ipIdent = ipHeaderSize = 0;
+		fragDataOffset = fragDataLength = 0;
 	}
 
 	/**
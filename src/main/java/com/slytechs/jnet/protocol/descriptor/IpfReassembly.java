@@ -157,6 +157,16 @@ public class IpfReassembly extends Ipfdescriptor {
 		return IpfReassemblyLayout.IP_IS_OVERLAP.getBit(buffer());
 	}
 
+	/**
+	 * Checks if the fragment table is truncated. The table holds at most 32
+	 * fragments, those with the lowest offsets, while the datagram may have more.
+	 *
+	 * @return true, if fragments were left out of the table
+	 */
+	public boolean isTableTruncated() {
+		return IpfReassemblyLayout.IP_IS_TABLE_TRUNCATED.getBit(buffer());
+	}
+
 	public int tableSize() {
 		return IpfReassemblyLayout.TABLE_SIZE.getUnsignedByte(buffer());
 	}
@@ -249,6 +259,7 @@ public class IpfReassembly extends Ipfdescriptor {
 					.append("    is timeout     = %s%n".formatted(isTimeout()))
 					.append("    is hole        = %s%n".formatted(isHole()))
 					.append("    is overlap     = %s%n".formatted(isOverlap()))
+					.append("    is truncated   = %s%n".formatted(isTableTruncated()))
 
 					.append("  reassembled      = %,d bytes (%.1f%%)%n".formatted(reassembledBytes(), 100. - perc(
 							holeBytes())))
@@ -43,6 +43,7 @@ public enum IpfReassemblyLayout implements BitField.Proxy {
 	IP_IS_TIMEOUT("ip_is_timeout"),
 	IP_IS_HOLE("ip_is_hole"),
 	IP_IS_OVERLAP("ip_is_overlap"),
+	IP_IS_TABLE_TRUNCATED("ip_is_table_truncated"),
 	TABLE_SIZE("table_size"),
 	REASSEMBLED_BYTES("reassembled_bytes"),
 	REASSEMBLED_MILLI("reassembled_milli"),
@@ -72,7 +73,8 @@ public enum IpfReassemblyLayout implements BitField.Proxy {
 								Int8.BITS_01.withName("ip_is_timeout"),
 								Int8.BITS_01.withName("ip_is_hole"),
 								Int8.BITS_01.withName("ip_is_overlap"),
-								Int8.BITS_02),
+								Int8.BITS_01.withName("ip_is_table_truncated"),
+								Int8.BITS_01),
 						Int8.BITS_08.withName("flags")),
 
 				Int8.BITS_08.withName("table_size"),
@@ -17,18 +17,60 @@
  */
 package com.slytechs.jnet.protocol.descriptor;
 
+import java.nio.ByteBuffer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 import com.slytechs.jnet.jnetruntime.util.Detail;
 import com.slytechs.jnet.protocol.core.constants.IpfDescriptorType;
 
 /**
  * Ip fragmentation descriptor. A fragmentation descriptor provides information
  * about tracking and reassembly of IP fragments.
+ * <p>
+ * A tracking descriptor is attached to every IP fragment processed by the
+ * reassembler. It records the frame numbers of all the fragments of the same
+ * datagram seen so far, including the current one, along with a snapshot of the
+ * reassembly state at the time the fragment was processed.
+ * </p>
+ * <p>
+ * The fragment table of the descriptor has a fixed size. When the reassembler
+ * also records fragments in a capture wide {@link FrameIndex}, the index is
+ * attached to the descriptor and {@link #frameNumbers()} returns every fragment
+ * recorded for the datagram, including duplicates not listed in the table.
+ * </p>
  * 
  * @author Sly Technologies Inc
  * @author repos@slytechs.com
  */
 public class IpfTracking extends Ipfdescriptor {
 
+	/**
+	 * A capture wide index of fragment frame numbers, by datagram ID.
+	 */
+	public interface FrameIndex {
+
+		/**
+		 * Number of fragments recorded for a datagram.
+		 *
+		 * @param datagramId the datagram ID
+		 * @return the int
+		 */
+		int count(int datagramId);
+
+		/**
+		 * Copies the frame numbers of the fragments of a datagram into an array.
+		 *
+		 * @param datagramId the datagram ID
+		 * @param dst        the destination array
+		 * @return the number of frame numbers copied
+		 */
+		int frames(int datagramId, long[] dst);
+	}
+
+	/** The frame index, or null if not indexed. */
+	private FrameIndex frameIndex;
+
 	/**
 	 * Instantiates a new ipf descriptor.
 	 */
@@ -36,16 +78,188 @@ public class IpfTracking extends Ipfdescriptor {
 		super(IpfDescriptorType.IPF_TRACKING);
 	}
 
+	/**
+	 * Instantiates a new ipf tracking descriptor.
+	 *
+	 * @param buffer the descriptor buffer
+	 */
+	public IpfTracking(ByteBuffer buffer) {
+		super(IpfDescriptorType.IPF_TRACKING);
+
+		bind(buffer);
+	}
+
 	public int flags() {
 		return IpfTrackingLayout.FLAGS.getInt(buffer());
 	}
 
+	public boolean isReassembled() {
+		return IpfTrackingLayout.IP_IS_REASSEMBLED.getBit(buffer());
+	}
+
+	public boolean isComplete() {
+		return IpfTrackingLayout.IP_IS_COMPLETE.getBit(buffer());
+	}
+
+	public boolean isTimeout() {
+		return IpfTrackingLayout.IP_IS_TIMEOUT.getBit(buffer());
+	}
+
+	public boolean isHole() {
+		return IpfTrackingLayout.IP_IS_HOLE.getBit(buffer());
+	}
+
+	public boolean isOverlap() {
+		return IpfTrackingLayout.IP_IS_OVERLAP.getBit(buffer());
+	}
+
+	/**
+	 * Checks if the fragment table is truncated. The table holds at most 32
+	 * fragments, those with the lowest offsets, while the datagram may have more.
+	 *
+	 * @return true, if fragments were left out of the table
+	 */
+	public boolean isTableTruncated() {
+		return IpfTrackingLayout.IP_IS_TABLE_TRUNCATED.getBit(buffer());
+	}
+
+	/**
+	 * Datagram ID assigned by the tracking index, unique within a capture.
+	 *
+	 * @return the datagram id or -1 if not indexed
+	 */
+	public int datagramId() {
+		return IpfTrackingLayout.DATAGRAM_ID.getInt(buffer());
+	}
+
+	public int tableSize() {
+		return IpfTrackingLayout.TABLE_SIZE.getUnsignedByte(buffer());
+	}
+
+	public int reassembledBytes() {
+		return IpfTrackingLayout.REASSEMBLED_BYTES.getUnsignedShort(buffer());
+	}
+
+	public int holeBytes() {
+		return IpfTrackingLayout.HOLE_BYTES.getUnsignedShort(buffer());
+	}
+
+	public int overlapBytes() {
+		return IpfTrackingLayout.OVERLAP_BYTES.getUnsignedShort(buffer());
+	}
+
+	public long reassembledInMilli() {
+		return IpfTrackingLayout.REASSEMBLED_MILLI.getLong(buffer());
+	}
+
+	public long fragmentFrameNo(int index) {
+		return IpfTrackingLayout.FRAG_PKT_INDEX.getLong(buffer(), index);
+	}
+
+	public int fragmentOffset(int index) {
+		return IpfTrackingLayout.FRAG_OFFSET.getUnsignedShort(buffer(), index);
+	}
+
+	public int fragmentLength(int index) {
+		return IpfTrackingLayout.FRAG_LENGTH.getUnsignedShort(buffer(), index);
+	}
+
+	/**
+	 * Frame numbers of all the fragments seen so far. If a frame index is
+	 * attached, all fragments recorded in the index in the order they were
+	 * received, otherwise the fragments of the table in fragment offset order.
+	 *
+	 * @return array of frame numbers, never null
+	 */
+	public long[] frameNumbers() {
+		final int id = datagramId();
+
+		if ((frameIndex != null) && (id >= 0)) {
+			long[] frames = new long[frameIndex.count(id)];
+			frameIndex.frames(id, frames);
+
+			return frames;
+		}
+
+		long[] frames = new long[tableSize()];
+
+		for (int i = 0; i < frames.length; i++)
+			frames[i] = fragmentFrameNo(i);
+
+		return frames;
+	}
+
+	/**
+	 * The frame index attached to this descriptor.
+	 *
+	 * @return the frame index or null if not indexed
+	 */
+	public FrameIndex frameIndex() {
+		return frameIndex;
+	}
+
+	/**
+	 * Clears the frame index when the descriptor is unbound.
+	 *
+	 * @see com.slytechs.jnet.protocol.descriptor.Descriptor#onUnbind()
+	 */
+	@Override
+	protected void onUnbind() {
+		super.onUnbind();
+
+		this.frameIndex = null;
+	}
+
+	/**
+	 * Attaches the capture wide frame index, in which the fragments of this
+	 * descriptor's datagram are recorded.
+	 *
+	 * @param frameIndex the frame index, or null
+	 * @return this ipf tracking descriptor
+	 */
+	public IpfTracking setFrameIndex(FrameIndex frameIndex) {
+		this.frameIndex = frameIndex;
+
+		return this;
+	}
+
 	/**
 	 * @see com.slytechs.jnet.protocol.descriptor.Descriptor#buildDetailedString(java.lang.StringBuilder,
 	 *      com.slytechs.jnet.jnetruntime.util.Detail)
 	 */
 	@Override
 	protected StringBuilder buildDetailedString(StringBuilder b, Detail detail) {
-		throw new UnsupportedOperationException("not implemented yet");
+		if (detail == Detail.LOW) {
+			b.append("datagram=%d %d fragments: %s".formatted(
+					datagramId(),
+					tableSize(),
+					IntStream.range(0, tableSize())
+							.mapToObj(i -> "#%d".formatted(fragmentFrameNo(i)))
+							.collect(Collectors.joining(", "))));
+
+		} else {
+			b
+					.append("  datagram id      = %d%n".formatted(datagramId()))
+					.append("  flags            = 0x%02X%n".formatted(flags()))
+					.append("    is reassembled = %s%n".formatted(isReassembled()))
+					.append("    is complete    = %s%n".formatted(isComplete()))
+					.append("    is timeout     = %s%n".formatted(isTimeout()))
+					.append("    is hole        = %s%n".formatted(isHole()))
+					.append("    is overlap     = %s%n".formatted(isOverlap()))
+					.append("    is truncated   = %s%n".formatted(isTableTruncated()))
+					.append("  reassembled      = %,d bytes%n".formatted(reassembledBytes()))
+					.append("  hole             = %,d bytes%n".formatted(holeBytes()))
+					.append("  overlap          = %,d bytes%n".formatted(overlapBytes()))
+					.append("  table size       = %d records%n".formatted(tableSize()));
+
+			for (int i = 0; i < tableSize(); i++)
+				b.append("    [Frame: %3d, payload: %4d-%4d (%4d bytes)]%n".formatted(
+						fragmentFrameNo(i),
+						fragmentOffset(i),
+						fragmentOffset(i) + fragmentLength(i) - 1,
+						fragmentLength(i)));
+		}
+
+		return b;
 	}
 }
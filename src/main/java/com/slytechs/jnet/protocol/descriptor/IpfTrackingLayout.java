@@ -53,7 +53,9 @@ public enum IpfTrackingLayout implements BitField.Proxy {
 	IP_IS_TIMEOUT("ip_is_timeout"),
 	IP_IS_HOLE("ip_is_hole"),
 	IP_IS_OVERLAP("ip_is_overlap"),
+	IP_IS_TABLE_TRUNCATED("ip_is_table_truncated"),
 	TABLE_SIZE("table_size"),
+	DATAGRAM_ID("datagram_id"),
 	REASSEMBLED_BYTES("reassembled_bytes"),
 	HOLE_BYTES("hole_bytes"),
 	OVERLAP_BYTES("overlap_bytes"),
@@ -89,11 +91,16 @@ public enum IpfTrackingLayout implements BitField.Proxy {
 								Int8.BITS_01.withName("ip_is_timeout"),
 								Int8.BITS_01.withName("ip_is_hole"),
 								Int8.BITS_01.withName("ip_is_overlap"),
-								Int8.BITS_03),
+								Int8.BITS_01.withName("ip_is_table_truncated"),
+								Int8.BITS_02),
 						Int8.BITS_08.withName("flags")),
 				Int8.BITS_08.withName("table_size"),
 
-				/* Word3+ */
+				/* Word4&5 */
+				Int32.BITS_32.withName("datagram_id"),
+				Int32.BITS_32,
+
+				/* Word6+ */
 				sequenceLayout(32, structLayout(
 
 						Int64.BITS_64.withName("frag_pkt_index"),
@@ -91,6 +91,24 @@ public abstract class PacketDescriptor
 	 */
 	public abstract int captureLength();
 
+	/**
+	 * Checksum verification flags set by the dissector.
+	 *
+	 * @return the bit flags, 0 if checksums were not verified
+	 * @see com.slytechs.jnet.protocol.core.constants.CoreConstants#DESC_CSUM_FLAG_VERIFIED
+	 */
+	public int checksumFlags() {
+		return 0;
+	}
+
+	/**
+	 * Called after the descriptor has been rewritten in place through its bound
+	 * buffer, for example by a dissector. Values cached from the previous content
+	 * must be discarded, as if the descriptor had been bound again.
+	 */
+	void onRewrite() {
+	}
+
 	/**
 	 * Additional flags copied from the dissector.
 	 *
@@ -22,6 +22,7 @@ import java.nio.ByteBuffer;
 
 import com.slytechs.jnet.jnetruntime.time.TimestampSource;
 import com.slytechs.jnet.protocol.Packet;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
 import com.slytechs.jnet.protocol.core.constants.L2FrameType;
 import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
 
@@ -81,6 +82,7 @@ public interface PacketDissector {
 		return switch (type) {
 		case TYPE1 -> new Type1DissectorJavaImpl();
 		case TYPE2 -> new Type2DissectorJavaImpl();
+		case TYPE3 -> new Type3DissectorJavaImpl();
 
 		default -> throw new UnsupportedOperationException("Not implemented yet, dissector [%s]".formatted(type
 				.name()));
@@ -207,6 +209,52 @@ public interface PacketDissector {
 	 */
 	PacketDissector setDatalinkType(L2FrameType l2Type) throws ProtocolException;
 
+	/**
+	 * Picks up protocol packs loaded or unloaded since this dissector was created
+	 * or last refreshed, by rebuilding its chain of pack dissector extensions. The
+	 * check is a single volatile read when nothing changed, and is meant to be
+	 * called between batches of packets, never during a dissection.
+	 *
+	 * @return true, if the extensions were rebuilt
+	 * @see com.slytechs.jnet.protocol.pack.Pack#registryVersion()
+	 */
+	default boolean refreshExtensions() {
+		return false;
+	}
+
+	/**
+	 * Enables or disables verification of IPv4 header, TCP, UDP, ICMPv4 and ICMPv6
+	 * checksums while packets are dissected. The results are recorded in the
+	 * descriptor, see {@link PacketDescriptor#checksumFlags()}. Checksums of
+	 * truncated segments and IP fragments are not verified. Type2 descriptors keep
+	 * the results in their extension word, so when enabled every descriptor
+	 * written is sized {@link CoreConstants#DESC_TYPE2_EXT_BYTE_SIZE_MAX}.
+	 * Verification is disabled by default.
+	 *
+	 * @param enable true to enable checksum verification
+	 * @return this packet dissector
+	 * @throws UnsupportedOperationException if not supported by this dissector
+	 */
+	default PacketDissector verifyChecksums(boolean enable) {
+		throw new UnsupportedOperationException("checksum verification not supported by " + getClass().getSimpleName());
+	}
+
+	/**
+	 * Enables or disables large frames, such as GRO/LRO super-frames, whose
+	 * capture or wire length does not fit 16 bits. When enabled, every descriptor
+	 * written is sized to hold the full lengths and buffers must be sized
+	 * accordingly, see {@link CoreConstants#DESC_TYPE2_EXT_BYTE_SIZE_MAX}. When
+	 * disabled, the lengths recorded for large frames saturate. Large frames are
+	 * disabled by default.
+	 *
+	 * @param enable true to enable large frames
+	 * @return this packet dissector
+	 * @throws UnsupportedOperationException if not supported by this dissector
+	 */
+	default PacketDissector enableLargeFrames(boolean enable) {
+		throw new UnsupportedOperationException("large frames not supported by " + getClass().getSimpleName());
+	}
+
 	/**
 	 * Write the state of the dissection into the provided descriptor.
 	 *
@@ -216,13 +264,17 @@ public interface PacketDissector {
 	int writeDescriptor(ByteBuffer buffer);
 
 	/**
-	 * Write the state of the dissection into the provided descriptor.
+	 * Write the state of the dissection into the provided descriptor. Values the
+	 * descriptor cached from its previous content are discarded.
 	 *
 	 * @param descriptor the descriptor
 	 * @return number of byte written
 	 */
 	default int writeDescriptor(PacketDescriptor descriptor) {
-		return writeDescriptor(descriptor.buffer());
+		int len = writeDescriptor(descriptor.buffer());
+		descriptor.onRewrite();
+
+		return len;
 	}
 
 }
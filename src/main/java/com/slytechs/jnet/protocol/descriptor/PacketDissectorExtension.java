@@ -46,6 +46,9 @@ public interface PacketDissectorExtension {
 		PacketDissectorExtension newInstance(PacketDescriptorType type);
 	}
 
+	/** Declares that an extension handles no keys of a kind. */
+	static int[] NONE = new int[0];
+
 	/** The empty. */
 	static PacketDissectorExtension EMPTY = new PacketDissectorExtension() {
 
@@ -77,6 +80,22 @@ public interface PacketDissectorExtension {
 		}
 	};
 
+	/**
+	 * Index extensions by the ports, EtherTypes and IP protocol numbers they
+	 * declare, so that each packet is dispatched to at most one declaring
+	 * extension. Extensions which do not declare their keys are chained as by
+	 * {@link #wrap(List)}.
+	 *
+	 * @param list the extensions, in order of precedence
+	 * @return the dissector extension
+	 * @see #ports()
+	 * @see #etherTypes()
+	 * @see #ipProtocols()
+	 */
+	static PacketDissectorExtension index(List<PacketDissectorExtension> list) {
+		return new IndexedDissectorExtension(list);
+	}
+
 	/**
 	 * Wrap.
 	 *
@@ -185,6 +204,90 @@ public interface PacketDissectorExtension {
 		return false;
 	}
 
+	/**
+	 * The TCP and UDP ports handled by {@link #dissectPorts}, as source or
+	 * destination port.
+	 *
+	 * @return the ports, {@link #NONE} or null if the extension must be consulted
+	 *         for every packet
+	 */
+	default int[] ports() {
+		return null;
+	}
+
+	/**
+	 * The EtherTypes handled by {@link #dissectType}.
+	 *
+	 * @return the EtherTypes, {@link #NONE} or null if the extension must be
+	 *         consulted for every unknown EtherType
+	 */
+	default int[] etherTypes() {
+		return null;
+	}
+
+	/**
+	 * The IP protocol numbers handled by {@link #dissectType}.
+	 *
+	 * @return the IP protocol numbers, {@link #NONE} or null if the extension must
+	 *         be consulted for every unknown IP protocol
+	 */
+	default int[] ipProtocols() {
+		return null;
+	}
+
+	/**
+	 * The payload signature checked before {@link #dissectPorts} is called for a
+	 * declared port. The first 8 payload bytes, read big-endian and zero padded,
+	 * are masked with {@link #signatureMask()} and compared to the signature; on
+	 * mismatch the extension is not called. Payloads shorter than the masked
+	 * prefix never match.
+	 *
+	 * @return the signature, with no bits outside of the mask
+	 * @see #prefixSignature(byte...)
+	 */
+	default long signature() {
+		return 0;
+	}
+
+	/**
+	 * The payload signature mask.
+	 *
+	 * @return the signature mask, or 0 if the extension has no signature
+	 * @see #prefixMask(byte...)
+	 */
+	default long signatureMask() {
+		return 0;
+	}
+
+	/**
+	 * Encodes up to 8 leading payload bytes as a {@link #signature()}.
+	 *
+	 * @param prefix the prefix bytes
+	 * @return the signature
+	 */
+	static long prefixSignature(byte... prefix) {
+		if (prefix.length > Long.BYTES)
+			throw new IllegalArgumentException("signature prefix longer than 8 bytes [%d]"
+					.formatted(prefix.length));
+
+		long signature = 0;
+		for (int i = 0; i < prefix.length; i++)
+			signature |= Byte.toUnsignedLong(prefix[i]) << (56 - (i << 3));
+
+		return signature;
+	}
+
+	/**
+	 * Encodes per byte masks, for up to 8 leading payload bytes, as a
+	 * {@link #signatureMask()}.
+	 *
+	 * @param mask the prefix byte masks
+	 * @return the signature mask
+	 */
+	static long prefixMask(byte... mask) {
+		return prefixSignature(mask);
+	}
+
 	/**
 	 * Reset.
 	 */
@@ -111,6 +111,8 @@ abstract class PacketL3DissectorJava extends PacketL2DissectorJava {
 			if (!addRecord(CoreId.CORE_ID_IPv4, l3Offset, len))
 				return;
 
+			verifyIp4Checksum(l3Offset, len);
+
 			int sword3 = buf.getShort(l3Offset + IPv4_FIELD_FLAGS);
 			boolean mf = (sword3 & IPv4_FLAG16_MF) > 0;
 			int fragOff = (sword3 & IPv4_MASK16_FRAGOFF);
@@ -213,6 +215,7 @@ abstract class PacketL3DissectorJava extends PacketL2DissectorJava {
 		int len = l4Size << 2;
 
 		addRecord(CoreId.CORE_ID_TCP, offset, len);
+		verifyL4Checksum(offset, IP_TYPE_TCP);
 
 		dissectTcpOptions(offset, len);
 
@@ -228,4 +231,24 @@ abstract class PacketL3DissectorJava extends PacketL2DissectorJava {
 
 	protected abstract void dissectUdp(int offset);
 
+	/**
+	 * Verifies the checksum of an IPv4 header, if checksum verification is
+	 * enabled. Does nothing by default.
+	 *
+	 * @param offset the IPv4 header offset
+	 * @param length the IPv4 header length
+	 */
+	protected void verifyIp4Checksum(int offset, int length) {
+	}
+
+	/**
+	 * Verifies the checksum of a layer4 segment carried by the current layer3
+	 * header, if checksum verification is enabled. Does nothing by default.
+	 *
+	 * @param offset   the layer4 header offset
+	 * @param protocol the IP protocol number of the layer4 header
+	 */
+	protected void verifyL4Checksum(int offset, int protocol) {
+	}
+
 }
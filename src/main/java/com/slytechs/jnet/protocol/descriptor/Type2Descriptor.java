@@ -20,10 +20,12 @@ package com.slytechs.jnet.protocol.descriptor;
 import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
 import static com.slytechs.jnet.protocol.descriptor.Type2DescriptorLayout.*;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 import com.slytechs.jnet.jnetruntime.util.Bits;
 import com.slytechs.jnet.jnetruntime.util.Detail;
+import com.slytechs.jnet.protocol.HeaderLookup;
 import com.slytechs.jnet.protocol.core.constants.CoreConstants;
 import com.slytechs.jnet.protocol.core.constants.CoreId;
 import com.slytechs.jnet.protocol.core.constants.HashType;
@@ -55,6 +57,20 @@ public class Type2Descriptor extends PacketDescriptor {
 	/** The expanded header arrays. */
 	private long[] recordArray;
 
+	/** Scratch depth counters used by lookupHeaders. */
+	private int[] lookupDepths;
+
+	/** The last header found, used to resume scans for deeper headers. */
+	private int cursorId = -1, cursorDepth = -1, cursorIndex = -1;
+
+	/**
+	 * The record of the last header found. The cursor is cleared whenever the
+	 * descriptor is bound, encoded or written by a dissector; the record is only a
+	 * last line check for buffers rewritten behind the descriptor's back, which
+	 * must be bound again before the next lookup.
+	 */
+	private long cursorRecord;
+
 	/**
 	 * Instantiates a new type 2 descriptor.
 	 */
@@ -83,7 +99,10 @@ public class Type2Descriptor extends PacketDescriptor {
 	 */
 	@Override
 	public int byteSize() {
-		return (recordCount() << 2) + CoreConstants.DESC_TYPE2_BYTE_SIZE_MIN;
+		if (EXT_WORD.getBit(buffer()))
+			return DESC_TYPE2_EXT_BYTE_SIZE_MAX;
+
+		return (recordCount() * DESC_TYPE2_RECORD_BYTE_SIZE) + CoreConstants.DESC_TYPE2_BYTE_SIZE_MIN;
 	}
 
 	/**
@@ -94,9 +113,27 @@ public class Type2Descriptor extends PacketDescriptor {
 	 */
 	@Override
 	public int captureLength() {
+		if (EXT_WORD.getBit(buffer()))
+			return EXT_CAPLEN.getInt(buffer());
+
 		return CAPLEN.getUnsignedShort(buffer());
 	}
 
+	/**
+	 * Checksum verification flags set by the dissector. The flags are kept in the
+	 * optional extension word, written when checksum verification is enabled.
+	 *
+	 * @return the bit flags, 0 if checksums were not verified
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#checksumFlags()
+	 */
+	@Override
+	public int checksumFlags() {
+		if (EXT_WORD.getBit(buffer()))
+			return CSUM_FLAGS.getInt(buffer());
+
+		return 0;
+	}
+
 	/**
 	 * Get user color.
 	 *
@@ -118,6 +155,48 @@ public class Type2Descriptor extends PacketDescriptor {
 		return this;
 	}
 
+	/**
+	 * Encodes a complete descriptor for an Ethernet frame from already known
+	 * header records, such as those of a built packet, without dissecting it. The
+	 * protocol bitmask is derived from the records.
+	 *
+	 * @param timestamp     the timestamp
+	 * @param captureLength the capture length
+	 * @param wireLength    the wire length
+	 * @param records       the header records, encoded with
+	 *                      {@link PackId#encodeRecord(int, int, int)}
+	 * @param recordCount   the number of records
+	 * @return this descriptor
+	 * @throws IllegalArgumentException if there are too many records
+	 * @throws BufferOverflowException  if a large frame does not leave room for
+	 *                                  the extension word in the buffer
+	 * @see #isLargeFrame()
+	 */
+	public Type2Descriptor encode(long timestamp, int captureLength, int wireLength, long[] records,
+			int recordCount) {
+		if (recordCount > DESC_TYPE2_RECORD_MAX_COUNT)
+			throw new IllegalArgumentException("too many header records " + recordCount);
+
+		ByteBuffer buf = buffer();
+		long bitmask = 0;
+
+		for (int i = 0; i < recordCount; i++) {
+			buf.putLong(DESC_TYPE2_BYTE_SIZE_MIN + (i * DESC_TYPE2_RECORD_BYTE_SIZE), records[i]);
+			bitmask = PackId.bitmaskSet(bitmask, PackId.decodeRecordId(records[i]));
+		}
+
+		TIMESTAMP.setLong(timestamp, buf);
+		Type2DescriptorLayout.setLengths(captureLength, wireLength,
+				Type2DescriptorLayout.isLargeFrame(captureLength, wireLength), 0, buf);
+		L2_TYPE.setInt(L2FrameType.L2_FRAME_TYPE_ETHER, buf);
+		RECORD_COUNT.setInt(recordCount, buf);
+		BITMASK.setLong(bitmask, buf);
+
+		onBind();
+
+		return this;
+	}
+
 	/**
 	 * Gets the record.
 	 *
@@ -232,6 +311,20 @@ public class Type2Descriptor extends PacketDescriptor {
 		return Type2DescriptorLayout.L3_LAST_FRAG.getBit(buffer());
 	}
 
+	/**
+	 * A flag which indicates a large frame, such as a GRO/LRO super-frame, whose
+	 * capture or wire length does not fit the 16-bit length fields. The full
+	 * lengths are kept in the optional extension word, and such descriptors use
+	 * {@link CoreConstants#DESC_TYPE2_EXT_BYTE_SIZE_MAX} bytes. Dissectors only
+	 * write it when large frames are enabled, otherwise the lengths saturate.
+	 *
+	 * @return true, if it is a large frame
+	 * @see PacketDissector#enableLargeFrames(boolean)
+	 */
+	public boolean isLargeFrame() {
+		return Type2DescriptorLayout.isLargeFrame(captureLength(), wireLength());
+	}
+
 	/**
 	 * Checks if is header extension supported.
 	 *
@@ -296,6 +389,39 @@ public class Type2Descriptor extends PacketDescriptor {
 		return false;
 	}
 
+	/**
+	 * Number of records for a header.
+	 *
+	 * @param headerId the header id
+	 * @return the number of headers found
+	 * @see com.slytechs.jnet.protocol.HeaderLookup#headerCount(int)
+	 */
+	@Override
+	public int headerCount(int headerId) {
+		if (headerId == CoreId.CORE_ID_PAYLOAD)
+			return 0;
+
+		final long mask = bitmask();
+		if (!PackId.bitmaskCheck(mask, headerId) && PackId.classBitmaskIsEmpty(headerId))
+			return 0;
+
+		int count = 0;
+		final int recordCount = recordCount();
+		for (int i = 0; i < recordCount; i++)
+			if (PackId.recordEqualsId(record(i), headerId))
+				count++;
+
+		return count;
+	}
+
+	/**
+	 * Lookup a header at depth. When the same header was last found at a lower
+	 * depth, the scan resumes past that record instead of starting over, so
+	 * walking all headers of a kind from depth 0 up is a single pass.
+	 *
+	 * @see com.slytechs.jnet.protocol.HeaderLookup#lookupHeader(int, int,
+	 *      com.slytechs.jnet.protocol.descriptor.HeaderDescriptor)
+	 */
 	@Override
 	public boolean lookupHeader(int headerId, int depth, HeaderDescriptor descriptor) {
 		if (headerId == CoreId.CORE_ID_PAYLOAD)
@@ -305,18 +431,81 @@ public class Type2Descriptor extends PacketDescriptor {
 		if (!PackId.bitmaskCheck(mask, headerId) && PackId.classBitmaskIsEmpty(headerId))
 			return false;
 
-		int effectiveDepth = depth;
 		final int recordCount = recordCount();
-		for (int i = 0; i < recordCount; i++) {
+
+		int start = 0;
+		int effectiveDepth = depth;
+		if ((headerId == cursorId) && (depth >= cursorDepth)
+				&& (cursorIndex < recordCount) && (record(cursorIndex) == cursorRecord)) {
+			start = (depth == cursorDepth) ? cursorIndex : cursorIndex + 1;
+			effectiveDepth = (depth == cursorDepth) ? 0 : depth - cursorDepth - 1;
+		}
+
+		for (int i = start; i < recordCount; i++) {
 			final long record = record(i);
 
-			if (PackId.recordEqualsId(record, headerId) && (effectiveDepth-- == 0))
+			if (PackId.recordEqualsId(record, headerId) && (effectiveDepth-- == 0)) {
+				cursorId = headerId;
+				cursorDepth = depth;
+				cursorIndex = i;
+				cursorRecord = record;
+
 				return descriptor.assignFromRecord(record, depth, i, type());
+			}
 		}
 
 		return false;
 	}
 
+	/**
+	 * Lookup several headers in a single pass over the descriptor records.
+	 *
+	 * @see com.slytechs.jnet.protocol.HeaderLookup#lookupHeaders(int[],
+	 *      com.slytechs.jnet.protocol.descriptor.HeaderDescriptor[], int)
+	 */
+	@Override
+	public long lookupHeaders(int[] ids, HeaderDescriptor[] descriptors, int count) {
+		final long mask = bitmask();
+
+		long pending = 0;
+		for (int i = 0; i < count; i++) {
+			final int id = ids[i];
+
+			if ((id != CoreId.CORE_ID_PAYLOAD)
+					&& (PackId.bitmaskCheck(mask, id) || !PackId.classBitmaskIsEmpty(id)))
+				pending |= (1L << i);
+		}
+
+		if ((lookupDepths == null) || (lookupDepths.length < count))
+			lookupDepths = new int[count];
+
+		final int[] depths = lookupDepths;
+		for (long p = pending; p != 0; p &= (p - 1)) {
+			final int i = Long.numberOfTrailingZeros(p);
+			depths[i] = HeaderLookup.depthOf(ids, i);
+		}
+
+		long found = 0;
+		final int recordCount = recordCount();
+		for (int r = 0; (r < recordCount) && (pending != 0); r++) {
+			final long record = record(r);
+
+			/* Every pending id sees every record, each counting down its own depth */
+			for (long p = pending; p != 0; p &= (p - 1)) {
+				final int i = Long.numberOfTrailingZeros(p);
+
+				if (PackId.recordEqualsId(record, ids[i]) && (depths[i]-- == 0)) {
+					pending &= ~(1L << i);
+
+					if (descriptors[i].assignFromRecord(record, HeaderLookup.depthOf(ids, i), r, type()))
+						found |= (1L << i);
+				}
+			}
+		}
+
+		return found;
+	}
+
 	/**
 	 * @see com.slytechs.jnet.protocol.HeaderLookup#lookupHeaderExtension(int, int, int,
 	 *      int, com.slytechs.jnet.protocol.descriptor.HeaderDescriptor)
@@ -370,9 +559,20 @@ public class Type2Descriptor extends PacketDescriptor {
 	@Override
 	protected void onBind() {
 		mask = hashType = hash24 = hash32 = -1;
+		cursorId = cursorDepth = cursorIndex = -1;
 		recordArray = null;
 	}
 
+	/**
+	 * Clears the cached values and the lookup cursor after an in-place rewrite.
+	 *
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#onRewrite()
+	 */
+	@Override
+	void onRewrite() {
+		onBind();
+	}
+
 	/**
 	 * Record.
 	 *
@@ -431,6 +631,37 @@ public class Type2Descriptor extends PacketDescriptor {
 		return (buffer().getInt(byteOffset) >> bits) & mask;
 	}
 
+	/**
+	 * Copies this descriptor into a buffer, at its position, truncated to a snap
+	 * length. The copy has its capture length reduced to the snap length, and only
+	 * the header records which end within the snap length, with a matching
+	 * bitmask. The buffer position is advanced past the copy.
+	 *
+	 * @param snaplen the snap length
+	 * @param dst     the destination buffer
+	 * @return the number of bytes written
+	 * @throws BufferOverflowException if the buffer has insufficient space
+	 * @see #truncate(int)
+	 */
+	public int sliceTo(int snaplen, ByteBuffer dst) {
+		if (snaplen < 0)
+			throw new IllegalArgumentException("negative snap length " + snaplen);
+
+		final ByteBuffer src = buffer();
+		final int pos = dst.position();
+		if (dst.remaining() < DESC_TYPE2_BYTE_SIZE_MIN)
+			throw new BufferOverflowException();
+
+		dst.put(pos, src, 0, DESC_TYPE2_BYTE_SIZE_MIN);
+
+		ByteBuffer slice = dst.slice(pos, dst.limit() - pos).order(src.order());
+		int len = truncateRecords(src, slice, recordCount(), Math.min(snaplen, captureLength()), wireLength());
+
+		dst.position(pos + len);
+
+		return len;
+	}
+
 	/**
 	 * Timestamp.
 	 *
@@ -555,6 +786,71 @@ public class Type2Descriptor extends PacketDescriptor {
 		return b;
 	}
 
+	/**
+	 * Truncates the packet described by this descriptor to a snap length, in
+	 * place. The capture length is reduced to the snap length and header records
+	 * which no longer end within it are dropped, so the descriptor stays
+	 * consistent with the truncated data without a new dissection.
+	 *
+	 * @param snaplen the snap length
+	 * @return this descriptor
+	 */
+	public Type2Descriptor truncate(int snaplen) {
+		if (snaplen < 0)
+			throw new IllegalArgumentException("negative snap length " + snaplen);
+
+		if (snaplen < captureLength()) {
+			ByteBuffer buf = buffer();
+			truncateRecords(buf, buf, recordCount(), snaplen, wireLength());
+
+			onBind();
+		}
+
+		return this;
+	}
+
+	/**
+	 * Copies the records which end within the capture length, and writes the new
+	 * capture length, record count and bitmask. The extension word is kept, with
+	 * the checksum flags, if the source has one. Source and destination may be the
+	 * same buffer.
+	 *
+	 * @param src     the source descriptor
+	 * @param dst     the destination descriptor
+	 * @param count   the source record count
+	 * @param caplen  the new capture length
+	 * @param wirelen the wire length
+	 * @return the destination descriptor size in bytes
+	 */
+	private static int truncateRecords(ByteBuffer src, ByteBuffer dst, int count, int caplen, int wirelen) {
+		final boolean srcExt = EXT_WORD.getBit(src);
+		final boolean ext = srcExt || Type2DescriptorLayout.isLargeFrame(caplen, wirelen);
+		final int csumFlags = srcExt ? CSUM_FLAGS.getInt(src) : 0;
+		long bitmask = 0;
+		int kept = 0;
+
+		for (int i = 0; i < count; i++) {
+			final long record = src.getLong(DESC_TYPE2_BYTE_SIZE_MIN + (i * DESC_TYPE2_RECORD_BYTE_SIZE));
+			if (PackId.decodeRecordOffset(record) + PackId.decodeRecordSize(record) > caplen)
+				continue;
+
+			final int offset = DESC_TYPE2_BYTE_SIZE_MIN + (kept++ * DESC_TYPE2_RECORD_BYTE_SIZE);
+			if (offset + DESC_TYPE2_RECORD_BYTE_SIZE > dst.limit())
+				throw new BufferOverflowException();
+
+			dst.putLong(offset, record);
+			bitmask = PackId.bitmaskSet(bitmask, PackId.decodeRecordId(record));
+		}
+
+		Type2DescriptorLayout.setLengths(caplen, wirelen, ext, csumFlags, dst);
+		RECORD_COUNT.setInt(kept, dst);
+		BITMASK.setLong(bitmask, dst);
+
+		return ext
+				? DESC_TYPE2_EXT_BYTE_SIZE_MAX
+				: DESC_TYPE2_BYTE_SIZE_MIN + (kept * DESC_TYPE2_RECORD_BYTE_SIZE);
+	}
+
 	/**
 	 * Tx crc override.
 	 *
@@ -668,6 +964,9 @@ public class Type2Descriptor extends PacketDescriptor {
 	 */
 	@Override
 	public int wireLength() {
+		if (EXT_WORD.getBit(buffer()))
+			return EXT_WIRELEN.getInt(buffer());
+
 		return WIRELEN.getUnsignedShort(buffer());
 	}
 
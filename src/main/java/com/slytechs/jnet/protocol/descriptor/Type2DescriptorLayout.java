@@ -20,6 +20,9 @@ package com.slytechs.jnet.protocol.descriptor;
 import static com.slytechs.jnet.jnetruntime.internal.layout.BinaryLayout.*;
 import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 import com.slytechs.jnet.jnetruntime.internal.layout.BinaryLayout;
 import com.slytechs.jnet.jnetruntime.internal.layout.BitField;
 import com.slytechs.jnet.jnetruntime.internal.layout.PredefinedLayout.Int16;
@@ -46,6 +49,9 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 	/** is l3 the last fragment. */
 	L3_LAST_FRAG("l3_last_frag"),
 
+	/** the extension word is present. */
+	EXT_WORD("ext_word"),
+
 	/** The color. */
 	COLOR("color"),
 
@@ -67,6 +73,9 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 	/** The hash type. */
 	HASH_TYPE("hash_type"),
 
+	/** The checksum verification flags, in the extension word. */
+	CSUM_FLAGS("csum_flags"),
+
 	/** The tx now. */
 	TX_NOW("tx_now"),
 
@@ -88,6 +97,12 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 	/** The record. */
 	RECORD("record"),
 
+	/** The full caplen, in the extension word. */
+	EXT_CAPLEN("ext_caplen"),
+
+	/** The full wirelen, in the extension word. */
+	EXT_WIRELEN("ext_wirelen"),
+
 	/** The hash32. */
 	HASH32("hash32"),
 
@@ -103,7 +118,7 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 
 		/** The Constant TYPE2_STRUCT. */
 		private static final BinaryLayout TYPE2_STRUCT = unionLayout(
-				/* length: 24-184 bytes */
+				/* length: 28-156 bytes, 164 with the extension word */
 				structLayout(
 
 						/* Word0&1 */
@@ -123,7 +138,7 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 						Int16.BITS_04.withName("l2_type"),
 						Int16.BITS_01.withName("l3_is_frag"),
 						Int16.BITS_01.withName("l3_last_frag"),
-						Int16.BITS_01.withName("reserved"),
+						Int16.BITS_01.withName("ext_word"),
 						Int16.BITS_05.withName("record_count"),
 
 						/* Word4 */
@@ -134,11 +149,17 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 										Int32.BITS_24.withName("hash24"),
 										Int32.BITS_05.withName("hash_type"))),
 
-						/* Word5 */
+						/* Word5&6 */
 						Int64.BITS_64.withName("bitmask"),
 
-						/* Word6-38 */
-						sequenceLayout(DESC_TYPE2_RECORD_MAX_COUNT, Int64.BITS_64).withName("record")
+						/* Word7-38 */
+						sequenceLayout(DESC_TYPE2_RECORD_MAX_COUNT, Int64.BITS_64).withName("record"),
+
+						/* Word39&40, optional extension word, only valid with ext_word */
+						Int32.BITS_32.withName("ext_caplen"),
+						Int32.BITS_24.withName("ext_wirelen"),
+						Int32.BITS_05.withName("ext_reserved"),
+						Int32.BITS_03.withName("csum_flags")
 
 				),
 				sequenceLayout(32 + 6, Int32.BITS_32).withName("array")
@@ -169,6 +190,57 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 		return field;
 	}
 
+	/**
+	 * Checks if either length does not fit the 16-bit caplen and wirelen fields.
+	 *
+	 * @param captureLength the capture length
+	 * @param wireLength    the wire length
+	 * @return true, if it is a large frame
+	 */
+	static boolean isLargeFrame(int captureLength, int wireLength) {
+		return (captureLength > DESC_TYPE2_LENGTH_MAX) || (wireLength > DESC_TYPE2_LENGTH_MAX);
+	}
+
+	/**
+	 * Saturates a length to the 16-bit caplen and wirelen fields.
+	 *
+	 * @param length the length
+	 * @return the 16-bit field value
+	 */
+	static int saturateLength(int length) {
+		return Math.min(length, DESC_TYPE2_LENGTH_MAX);
+	}
+
+	/**
+	 * Writes the capture and wire lengths. The 16-bit caplen and wirelen fields
+	 * are saturated. When the extension word is used, the full lengths, which
+	 * may not fit those fields such as with GRO/LRO super-frames, and the
+	 * checksum verification flags are also written to it past the last record.
+	 *
+	 * @param captureLength the capture length
+	 * @param wireLength    the wire length
+	 * @param extWord       if true, the extension word is written
+	 * @param csumFlags     the checksum verification flags, only kept in the
+	 *                      extension word
+	 * @param desc          the descriptor buffer
+	 * @throws BufferOverflowException if the extension word does not fit the
+	 *                                 buffer
+	 */
+	static void setLengths(int captureLength, int wireLength, boolean extWord, int csumFlags, ByteBuffer desc) {
+		if (extWord && (desc.limit() < DESC_TYPE2_EXT_BYTE_SIZE_MAX))
+			throw new BufferOverflowException();
+
+		CAPLEN.setInt(saturateLength(captureLength), desc);
+		WIRELEN.setInt(saturateLength(wireLength), desc);
+		EXT_WORD.setInt(extWord ? 1 : 0, desc);
+
+		if (extWord) {
+			EXT_CAPLEN.setInt(captureLength, desc);
+			EXT_WIRELEN.setInt(wireLength, desc);
+			CSUM_FLAGS.setInt(csumFlags, desc);
+		}
+	}
+
 	/**
 	 * Encode word 2 BE.
 	 *
@@ -202,12 +274,12 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 	 * @param txCrcOverride the tx crc override
 	 * @param txSetClock    the tx set clock
 	 * @param l2Type        the l 2 type
-	 * @param i             the i
+	 * @param extWord       the extension word flag
 	 * @param recordCount   the record count
 	 * @return the int
 	 */
 	public static int encodeWord3BE(int wireLength, int txNow, int txIgnore, int txCrcOverride, int txSetClock,
-			int l2Type, int i,
+			int l2Type, int extWord,
 			int recordCount) {
 		throw new UnsupportedOperationException("not implemented yet");
 	}
@@ -221,12 +293,12 @@ enum Type2DescriptorLayout implements BitField.Proxy {
 	 * @param txCrcOverride the tx crc override
 	 * @param txSetClock    the tx set clock
 	 * @param l2Type        the l 2 type
-	 * @param i             the i
+	 * @param extWord       the extension word flag
 	 * @param recordCount   the record count
 	 * @return the int
 	 */
 	public static int encodeWord3LE(int wireLength, int txNow, int txIgnore, int txCrcOverride, int txSetClock,
-			int l2Type, int i,
+			int l2Type, int extWord,
 			int recordCount) {
 		throw new UnsupportedOperationException("not implemented yet");
 	}
@@ -28,6 +28,7 @@ import java.util.function.IntConsumer;
 import com.slytechs.jnet.jnetruntime.util.Bits;
 import com.slytechs.jnet.jnetruntime.util.Enums;
 import com.slytechs.jnet.protocol.HeaderOptionInfo;
+import com.slytechs.jnet.protocol.core.InetChecksum;
 import com.slytechs.jnet.protocol.core.Icmp6NeighborAdvertisement;
 import com.slytechs.jnet.protocol.core.Icmp6NeighborSolicitation;
 import com.slytechs.jnet.protocol.core.constants.CoreConstants;
@@ -38,6 +39,7 @@ import com.slytechs.jnet.protocol.core.constants.Ip4IdOptions;
 import com.slytechs.jnet.protocol.core.constants.Ip6ExtType;
 import com.slytechs.jnet.protocol.core.constants.Ip6IdOption;
 import com.slytechs.jnet.protocol.core.constants.L2FrameType;
+import com.slytechs.jnet.protocol.core.constants.L3FrameType;
 import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
 import com.slytechs.jnet.protocol.core.constants.TcpOptionId;
 import com.slytechs.jnet.protocol.pack.Pack;
@@ -67,7 +69,10 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 	private static final int WORD5 = 20;
 
 	/** The extensions. */
-	private final PacketDissectorExtension extensions;
+	private PacketDissectorExtension extensions;
+
+	/** The pack registry version the extensions were built from. */
+	private long extensionsVersion;
 
 	/** The record extensions. */
 	private boolean recordExtensions = true;
@@ -85,7 +90,7 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 	private long defaultBitmask = Bits.BITS_00;
 
 	/** The rx port. */
-	private int rxPort;
+	protected int rxPort;
 
 	/** The tx port. */
 	private int txPort;
@@ -106,7 +111,7 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 	private int hashType;
 
 	/** The record count. */
-	private int recordCount;
+	protected int recordCount;
 
 	/** The hash. */
 	private int hash;
@@ -114,8 +119,20 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 	/** The bitmask. */
 	private long bitmask;
 
+	/** The checksum verification flag. */
+	private boolean verifyChecksums;
+
+	/** The checksum verification results. */
+	private int csumFlags;
+
+	/** Set if large frame lengths are written to the extension word. */
+	private boolean largeFrames;
+
+	/** Set if an IPv6 fragment header was seen, and layer4 is incomplete. */
+	private boolean ip6Frag;
+
 	/** The record. */
-	private final long[] record = new long[DESC_TYPE2_RECORD_MAX_COUNT];
+	protected final long[] record = new long[DESC_TYPE2_RECORD_MAX_COUNT];
 
 	/**
 	 * Instantiates a new java dissector type 2.
@@ -123,6 +140,7 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 	Type2DissectorJavaImpl() {
 		reset();
 
+		this.extensionsVersion = Pack.registryVersion();
 		this.extensions = Pack.wrapAllExtensions(PacketDescriptorType.TYPE2, this);
 		this.l2Type = L2FrameType.L2_FRAME_TYPE_ETHER;
 	}
@@ -140,6 +158,10 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 		if ((recordCount == DESC_TYPE2_RECORD_MAX_COUNT) || ((offset + length) > captureLength))
 			return false;
 
+		/* Headers of super-frames past the 16-bit record offset are left as payload */
+		if ((offset > DESC_TYPE2_RECORD_OFFSET_MAX) || (length > DESC_TYPE2_RECORD_OFFSET_MAX))
+			return false;
+
 		record[recordCount++] = PackId.encodeRecord(id, offset, length);
 		bitmask = PackId.bitmaskSet(bitmask, id);
 
@@ -228,7 +250,19 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 	 * @return the int
 	 */
 	private int descriptorLength() {
-		return CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX;
+		return (largeFrames || verifyChecksums)
+				? CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX
+				: CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX;
+	}
+
+	/**
+	 * Checks if the extension word is written, which holds the full lengths of
+	 * large frames and the checksum verification flags.
+	 *
+	 * @return true, if the extension word is written
+	 */
+	private boolean isExtWord() {
+		return verifyChecksums || (largeFrames && Type2DescriptorLayout.isLargeFrame(captureLength, wireLength));
 	}
 
 	/**
@@ -342,6 +376,8 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 		if (!hasRemaining(offset, ICMPv4_HEADER_LEN))
 			return;
 
+		verifyL4Checksum(offset, IP_TYPE_ICMPv4);
+
 		int code = Byte.toUnsignedInt(buf.get(offset + ICMPv4_FIELD_CODE));
 		int type = Byte.toUnsignedInt(buf.get(offset + ICMPv4_FIELD_TYPE));
 
@@ -369,6 +405,8 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 		if (!hasRemaining(offset, ICMPv6_HEADER_LEN))
 			return;
 
+		verifyL4Checksum(offset, IP_TYPE_ICMPv6);
+
 		int type = Byte.toUnsignedInt(buf.get(offset)); // type field
 		int len = 0;
 
@@ -593,6 +631,9 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 			if (nextHeader == Ip6ExtType.IPv6_EXT_TYPE_HOP_BY_HOP_OPTIONS)
 				dissectIp6OptHopByHop(offset + 2, len - 2);
 
+			if (nextHeader == Ip6ExtType.IPv6_EXT_TYPE_FRAGMENT)
+				ip6Frag = true;
+
 			nextHeader = Byte.toUnsignedInt(buf.get(offset));
 
 			extLen += len;
@@ -686,6 +727,7 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 			return;
 
 		addRecord(CoreId.CORE_ID_UDP, offset, UDP_HEADER_LEN);
+		verifyL4Checksum(offset, IP_TYPE_UDP);
 
 		int src = Short.toUnsignedInt(buf.getShort(offset + TCP_FIELD_SRC));
 		int dst = Short.toUnsignedInt(buf.getShort(offset + TCP_FIELD_DST));
@@ -710,6 +752,57 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 
 		recordCount = 0;
 		bitmask = defaultBitmask;
+
+		csumFlags = verifyChecksums ? DESC_CSUM_FLAG_VERIFIED : 0;
+		ip6Frag = false;
+	}
+
+	/**
+	 * The core dissector handles no ports itself.
+	 *
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#ports()
+	 */
+	@Override
+	public int[] ports() {
+		return NONE;
+	}
+
+	/**
+	 * The core dissector handles no extension EtherTypes itself.
+	 *
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#etherTypes()
+	 */
+	@Override
+	public int[] etherTypes() {
+		return NONE;
+	}
+
+	/**
+	 * The core dissector handles no extension IP protocols itself.
+	 *
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissectorExtension#ipProtocols()
+	 */
+	@Override
+	public int[] ipProtocols() {
+		return NONE;
+	}
+
+	/**
+	 * Rebuilds the pack dissector extensions, if the pack registry changed.
+	 *
+	 * @return true, if the extensions were rebuilt
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissector#refreshExtensions()
+	 */
+	@Override
+	public boolean refreshExtensions() {
+		final long version = Pack.registryVersion();
+		if (version == extensionsVersion)
+			return false;
+
+		this.extensionsVersion = version;
+		this.extensions = Pack.wrapAllExtensions(PacketDescriptorType.TYPE2, this);
+
+		return true;
 	}
 
 	/**
@@ -780,6 +873,101 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 		return true;
 	}
 
+	/**
+	 * Verifies the checksum of an IPv4 header.
+	 *
+	 * @param offset the IPv4 header offset
+	 * @param length the IPv4 header length
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketL3DissectorJava#verifyIp4Checksum(int,
+	 *      int)
+	 */
+	@Override
+	protected void verifyIp4Checksum(int offset, int length) {
+		if (!verifyChecksums)
+			return;
+
+		if (InetChecksum.sum(buf, offset, length) != 0xFFFF)
+			csumFlags |= DESC_CSUM_FLAG_L3_ERROR;
+	}
+
+	/**
+	 * Verifies the checksum of a TCP, UDP, ICMPv4 or ICMPv6 segment. The segment
+	 * length is taken from the enclosing IP header. Segments which are fragmented
+	 * or not fully captured are not verified. ICMPv4 has no pseudo header, and a
+	 * zero UDP checksum over IPv4 means no checksum was sent.
+	 *
+	 * @param offset   the layer4 header offset
+	 * @param protocol the IP protocol number of the layer4 header
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketL3DissectorJava#verifyL4Checksum(int,
+	 *      int)
+	 */
+	@Override
+	protected void verifyL4Checksum(int offset, int protocol) {
+		if (!verifyChecksums || l3IsFrag || ip6Frag)
+			return;
+
+		int length;
+		int sum;
+
+		if (l3Type == L3FrameType.L3_FRAME_TYPE_IPv4) {
+			length = l3Offset + Short.toUnsignedInt(buf.getShort(l3Offset + IPv4_FIELD_TOTAL_LEN)) - offset;
+			sum = (protocol == IP_TYPE_ICMPv4)
+					? 0
+					: InetChecksum.sum(buf, l3Offset + IPv4_FIELD_SRC, IPv4_FIELD_SRC_LEN + IPv4_FIELD_DST_LEN);
+
+			if ((protocol == IP_TYPE_UDP) && (buf.getShort(offset + UDP_FIELD_CHECKSUM) == 0))
+				return;
+
+		} else if (l3Type == L3FrameType.L3_FRAME_TYPE_IPv6) {
+			length = l3Offset + IPv6_HEADER_LEN
+					+ Short.toUnsignedInt(buf.getShort(l3Offset + IPv6_FIELD_PAYLOAD_LENGTH)) - offset;
+			sum = InetChecksum.sum(buf, l3Offset + IPv6_FIELD_SRC, IPv6_FIELD_SRC_LEN + IPv6_FIELD_DST_LEN);
+
+		} else {
+			return;
+		}
+
+		if ((length <= 0) || ((offset + length) > captureLength))
+			return;
+
+		if (protocol != IP_TYPE_ICMPv4)
+			sum += protocol + length;
+
+		sum += InetChecksum.sum(buf, offset, length);
+
+		if (InetChecksum.fold(sum) != 0xFFFF)
+			csumFlags |= DESC_CSUM_FLAG_L4_ERROR;
+	}
+
+	/**
+	 * Enables or disables checksum verification.
+	 *
+	 * @param enable true to enable checksum verification
+	 * @return this dissector
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissector#verifyChecksums(boolean)
+	 */
+	@Override
+	public Type2DissectorJavaImpl verifyChecksums(boolean enable) {
+		this.verifyChecksums = enable;
+		this.csumFlags = enable ? DESC_CSUM_FLAG_VERIFIED : 0;
+
+		return this;
+	}
+
+	/**
+	 * Enables or disables large frames.
+	 *
+	 * @param enable true to enable large frames
+	 * @return this dissector
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDissector#enableLargeFrames(boolean)
+	 */
+	@Override
+	public Type2DissectorJavaImpl enableLargeFrames(boolean enable) {
+		this.largeFrames = enable;
+
+		return this;
+	}
+
 	/**
 	 * Write descriptor.
 	 *
@@ -804,30 +992,39 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 	 */
 	public final int writeDescriptorFastPath(ByteBuffer desc) {
 		final boolean big = (desc.order() == ByteOrder.BIG_ENDIAN);
+		final int ext = isExtWord() ? 1 : 0;
+		final int caplen = Type2DescriptorLayout.saturateLength(captureLength);
+		final int wirelen = Type2DescriptorLayout.saturateLength(wireLength);
 
 		// Struct/Layout class has the private encoders we utilize here
 		int word2 = big
 				? Type2DescriptorLayout
-						.encodeWord2BE(captureLength, rxPort, txPort)
+						.encodeWord2BE(caplen, rxPort, txPort)
 				: Type2DescriptorLayout
-						.encodeWord2LE(captureLength, rxPort, txPort);
+						.encodeWord2LE(caplen, rxPort, txPort);
 
 		int word3 = big
 				? Type2DescriptorLayout
-						.encodeWord3BE(wireLength, txNow, txIgnore, txCrcOverride, txSetClock, l2Type, 0, recordCount)
+						.encodeWord3BE(wirelen, txNow, txIgnore, txCrcOverride, txSetClock, l2Type, ext, recordCount)
 				: Type2DescriptorLayout
-						.encodeWord3LE(wireLength, txNow, txIgnore, txCrcOverride, txSetClock, l2Type, 0, recordCount);
+						.encodeWord3LE(wirelen, txNow, txIgnore, txCrcOverride, txSetClock, l2Type, ext, recordCount);
 
 		// @formatter:off
 		desc.putLong(WORD0_1, timestamp) // 07-00 Word0&1
 				.putInt(WORD2, word2)    // 11-08 Word2
 				.putInt(WORD3, word3)    // 15-12 Word3
 				                         // 19-16 Word4 hash/color2 which is not set by the dissector
-				.putLong(WORD5, bitmask); // 23-20 Word5 recorded protocol bitmask (1 bit per proto)
+				.putLong(WORD5, bitmask); // 27-20 Word5&6 recorded protocol bitmask (1 bit per proto)
 		// @formatter:on
 
 		for (int i = 0, j = RECORD_START; i < recordCount; i++, j += DESC_TYPE2_RECORD_BYTE_SIZE)
-			desc.putLong(j, record[i]); // 152-24 (up to 152 bytes eq. (32 * 4) + 24)
+			desc.putLong(j, record[i]); // 155-28 Word7-38 (up to 16 records)
+
+		if (ext != 0) {
+			desc.putInt(DESC_TYPE2_EXT_OFFSET, captureLength); // 159-156 Word39 full caplen
+			EXT_WIRELEN.setInt(wireLength, desc);              // 163-160 Word40 full wirelen
+			CSUM_FLAGS.setInt(csumFlags, desc);                //         and checksum flags
+		}
 
 		return descriptorLength();
 	}
@@ -841,11 +1038,10 @@ class Type2DissectorJavaImpl extends PacketL3DissectorJava implements PacketDiss
 	public final int writeDescriptorUsingLayout(ByteBuffer desc) {
 		TIMESTAMP.setLong(timestamp, desc);
 
-		CAPLEN.setInt(captureLength, desc);
+		Type2DescriptorLayout.setLengths(captureLength, wireLength, isExtWord(), csumFlags, desc);
 		RX_PORT.setInt(rxPort, desc);
 		TX_PORT.setInt(txPort, desc);
 
-		WIRELEN.setInt(wireLength, desc);
 		TX_NOW.setInt(txNow, desc);
 		TX_IGNORE.setInt(txIgnore, desc);
 		TX_CRC_OVERRIDE.setInt(txCrcOverride, desc);
@@ -0,0 +1,453 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.descriptor;
+
+import static com.slytechs.jnet.protocol.descriptor.Type3DescriptorLayout.*;
+
+import java.nio.ByteBuffer;
+
+import com.slytechs.jnet.jnetruntime.util.Detail;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.core.constants.L2FrameType;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.pack.Pack;
+import com.slytechs.jnet.protocol.pack.PackId;
+import com.slytechs.jnet.protocol.pack.ProtocolPackTable;
+
+/**
+ * A compact packet descriptor with 32-bit header records. The descriptor
+ * header is 16 bytes, followed by up to 16 records of 4 bytes each, which
+ * allows a typical packet with up to 12 headers and options to fit into a
+ * single 64 byte cache line.
+ * <p>
+ * Only headers from the CORE protocol pack and their options can be recorded
+ * in compact form. If the dissector had to drop any records, the
+ * {@link #isTruncated()} flag is set and a {@link Type2Descriptor} should be
+ * used instead.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class Type3Descriptor extends PacketDescriptor {
+
+	/** The Constant RECORD_START. */
+	private static final int RECORD_START = CoreConstants.DESC_TYPE3_BYTE_SIZE_MIN;
+
+	/**
+	 * Instantiates a new type 3 descriptor.
+	 */
+	public Type3Descriptor() {
+		super(PacketDescriptorType.TYPE3);
+	}
+
+	/**
+	 * Byte size.
+	 *
+	 * @return the int
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#byteSize()
+	 */
+	@Override
+	public int byteSize() {
+		return (recordCount() << 2) + CoreConstants.DESC_TYPE3_BYTE_SIZE_MIN;
+	}
+
+	/**
+	 * Byte size max.
+	 *
+	 * @return the int
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#byteSizeMax()
+	 */
+	@Override
+	public int byteSizeMax() {
+		return CoreConstants.DESC_TYPE3_BYTE_SIZE_MAX;
+	}
+
+	/**
+	 * Byte size min.
+	 *
+	 * @return the int
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#byteSizeMin()
+	 */
+	@Override
+	public int byteSizeMin() {
+		return CoreConstants.DESC_TYPE3_BYTE_SIZE_MIN;
+	}
+
+	/**
+	 * Capture length.
+	 *
+	 * @return the int
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#captureLength()
+	 */
+	@Override
+	public int captureLength() {
+		return CAPLEN.getUnsignedShort(buffer());
+	}
+
+	/**
+	 * Gets the raw 32-bit compact record.
+	 *
+	 * @param index the index
+	 * @return the compact record
+	 */
+	public int compactRecord(int index) {
+		if (index >= recordCount())
+			throw new IndexOutOfBoundsException(index);
+
+		return buffer().getInt(RECORD_START + (index << 2));
+	}
+
+	/**
+	 * A flag which indicates if this is packet is part of layer3 fragmented
+	 * datagram.
+	 *
+	 * @return true, if it is a fragment
+	 */
+	public boolean isL3Fragment() {
+		return L3_IS_FRAG.getBit(buffer());
+	}
+
+	/**
+	 * A flag which indicates if this is the last fragment of a fragmented datagram.
+	 *
+	 * @return true, if it is the last fragment
+	 */
+	public boolean isL3LastFragment() {
+		return L3_LAST_FRAG.getBit(buffer());
+	}
+
+	/**
+	 * Checks if the dissector dropped any records which could not be encoded in
+	 * compact form.
+	 *
+	 * @return true, if one or more records were dropped
+	 */
+	public boolean isTruncated() {
+		return TRUNCATED.getBit(buffer());
+	}
+
+	/**
+	 * Checks if is header extension supported.
+	 *
+	 * @return true, if is header extension supported
+	 * @see com.slytechs.jnet.protocol.HeaderLookup#isHeaderExtensionSupported()
+	 */
+	@Override
+	public boolean isHeaderExtensionSupported() {
+		return true;
+	}
+
+	/**
+	 * L 2 frame type.
+	 *
+	 * @return the int
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#l2FrameType()
+	 */
+	@Override
+	public int l2FrameType() {
+		return L2_TYPE.getUnsignedByte(buffer());
+	}
+
+	/**
+	 * List headers, expanded to 64-bit {@link PackId} records.
+	 *
+	 * @return the long[]
+	 * @see com.slytechs.jnet.protocol.HeaderLookup#listHeaders()
+	 */
+	@Override
+	public long[] listHeaders() {
+		final ByteBuffer buf = buffer();
+		final int recordCount = recordCount();
+		final long[] array = new long[recordCount];
+
+		int parentOffset = 0;
+		for (int i = 0, j = RECORD_START; i < recordCount; i++, j += 4) {
+			final int record = buf.getInt(j);
+
+			array[i] = expandRecord(record, parentOffset);
+			if (!isOptionRecord(record))
+				parentOffset = decodeRecordOffset(record);
+		}
+
+		return array;
+	}
+
+	/**
+	 * Lookup extension.
+	 *
+	 * @param extId        the ext id
+	 * @param start        the start
+	 * @param recordCount  the record count
+	 * @param parentOffset the parent offset
+	 * @param descriptor   the descriptor
+	 * @return true, if found
+	 */
+	private boolean lookupExtension(int extId, int start, int recordCount, int parentOffset,
+			HeaderDescriptor descriptor) {
+		final ByteBuffer buf = buffer();
+
+		for (int i = start, j = RECORD_START + (start << 2); i < recordCount; i++, j += 4) {
+			final int record = buf.getInt(j);
+
+			/* Scan until we no longer see OPTIONS records */
+			if (!isOptionRecord(record))
+				break;
+
+			final long expanded = expandRecord(record, parentOffset);
+			if (PackId.recordEqualsId(expanded, extId))
+				return descriptor.assignFromRecord(expanded, 0, i, type());
+		}
+
+		return false;
+	}
+
+	/**
+	 * @see com.slytechs.jnet.protocol.HeaderLookup#lookupHeader(int, int,
+	 *      com.slytechs.jnet.protocol.descriptor.HeaderDescriptor)
+	 */
+	@Override
+	public boolean lookupHeader(int headerId, int depth, HeaderDescriptor descriptor) {
+		if (headerId == CoreId.CORE_ID_PAYLOAD)
+			return false;
+
+		final ByteBuffer buf = buffer();
+		final int recordCount = recordCount();
+
+		int effectiveDepth = depth;
+		int parentOffset = 0;
+		for (int i = 0, j = RECORD_START; i < recordCount; i++, j += 4) {
+			final int record = buf.getInt(j);
+			final long expanded = expandRecord(record, parentOffset);
+
+			if (PackId.recordEqualsId(expanded, headerId) && (effectiveDepth-- == 0))
+				return descriptor.assignFromRecord(expanded, depth, i, type());
+
+			if (!isOptionRecord(record))
+				parentOffset = decodeRecordOffset(record);
+		}
+
+		return false;
+	}
+
+	/**
+	 * @see com.slytechs.jnet.protocol.HeaderLookup#lookupHeaderExtension(int, int, int,
+	 *      int, com.slytechs.jnet.protocol.descriptor.HeaderDescriptor)
+	 */
+	@Override
+	public boolean lookupHeaderExtension(int headerId, int extId, int depth, int recordIndexHint,
+			HeaderDescriptor descriptor) {
+
+		final int recordCount = recordCount();
+
+		/* If we have a hint, then we can skip directly to extension lookup */
+		if ((recordIndexHint > 0) && (recordIndexHint < recordCount)) {
+			int parent = compactRecord(recordIndexHint);
+
+			return lookupExtension(extId, recordIndexHint + 1, recordCount, decodeRecordOffset(parent), descriptor);
+		}
+
+		final ByteBuffer buf = buffer();
+		for (int i = 0, j = RECORD_START; i < recordCount; i++, j += 4) {
+			final int record = buf.getInt(j);
+			if (isOptionRecord(record))
+				continue;
+
+			final long expanded = expandRecord(record, 0);
+			if (PackId.recordEqualsId(expanded, headerId) && (depth-- == 0)) {
+				if (extId == CoreId.CORE_ID_PAYLOAD)
+					return lookupPayload(expanded, descriptor);
+
+				return lookupExtension(extId, i + 1, recordCount, decodeRecordOffset(record), descriptor);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Lookup payload.
+	 *
+	 * @param record     the expanded record
+	 * @param descriptor the descriptor
+	 * @return true, if found
+	 */
+	private boolean lookupPayload(long record, HeaderDescriptor descriptor) {
+		int off = PackId.decodeRecordOffset(record);
+		int len = PackId.decodeRecordSize(record);
+		int poff = off + len;
+
+		return descriptor.assign(CoreId.CORE_ID_PAYLOAD, off, poff, len, type());
+	}
+
+	/**
+	 * Gets a record expanded to a 64-bit {@link PackId} record, with option
+	 * offsets resolved against their parent header.
+	 *
+	 * @param index the index
+	 * @return the 64-bit record
+	 */
+	public long record(int index) {
+		final int record = compactRecord(index);
+		if (!isOptionRecord(record))
+			return expandRecord(record, 0);
+
+		/* Find the parent, nearest preceding non-option record */
+		for (int i = index - 1; i >= 0; i--) {
+			int parent = compactRecord(i);
+			if (!isOptionRecord(parent))
+				return expandRecord(record, decodeRecordOffset(parent));
+		}
+
+		return expandRecord(record, 0);
+	}
+
+	/**
+	 * Record count.
+	 *
+	 * @return the int
+	 */
+	public int recordCount() {
+		return RECORD_COUNT.getUnsignedByte(buffer());
+	}
+
+	/**
+	 * Rx port.
+	 *
+	 * @return the int
+	 */
+	public int rxPort() {
+		return RX_PORT.getUnsignedByte(buffer());
+	}
+
+	/**
+	 * Rx port.
+	 *
+	 * @param rxPort the rx port
+	 * @return the type 3 descriptor
+	 */
+	public Type3Descriptor rxPort(int rxPort) {
+		RX_PORT.setInt(rxPort, buffer());
+
+		return this;
+	}
+
+	/**
+	 * Timestamp.
+	 *
+	 * @return the long
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#timestamp()
+	 */
+	@Override
+	public long timestamp() {
+		return TIMESTAMP.getLong(buffer());
+	}
+
+	/**
+	 * Wire length.
+	 *
+	 * @return the int
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#wireLength()
+	 */
+	@Override
+	public int wireLength() {
+		return WIRELEN.getUnsignedShort(buffer());
+	}
+
+	/**
+	 * Builds the detailed string.
+	 *
+	 * @param b      the b
+	 * @param detail the detail
+	 * @return the string builder
+	 * @see com.slytechs.jnet.protocol.descriptor.PacketDescriptor#buildDetailedString(java.lang.StringBuilder,
+	 *      com.slytechs.jnet.jnetruntime.util.Detail)
+	 */
+	@Override
+	public StringBuilder buildDetailedString(StringBuilder b, Detail detail) {
+		if (detail.isLow()) {
+			b.append("")
+					.append("len=").append(captureLength())
+					.append(", rxPort").append(rxPort())
+					.append(", l2=%d (%s)".formatted(l2FrameType(),
+							L2FrameType.valueOfL2FrameType(l2FrameType())))
+					.append(", rc=").append(recordCount())
+					.append(", ts=\"%tT\"".formatted(timestamp()));
+
+		} else {
+			b.append("")
+					.append("  timestamp=\"%tc\"%n".formatted(timestamp()))
+					.append("  captureLength=%d bytes%n".formatted(captureLength()))
+					.append("  wireLength=%d bytes%n".formatted(wireLength()))
+					.append("  rxPort=%d%n".formatted(rxPort()));
+
+			if (detail.isHigh())
+				b.append("")
+						.append("  isL3Fragment=%s%n".formatted(isL3Fragment()))
+						.append("  isL3LastFragment=%s%n".formatted(isL3LastFragment()))
+						.append("  isTruncated=%s%n".formatted(isTruncated()));
+
+			b.append("")
+					.append("  l2FrameType=%d (%s)%n".formatted(l2FrameType(),
+							L2FrameType.valueOfL2FrameType(l2FrameType())))
+					.append("  recordCount=%d%n".formatted(recordCount()));
+		}
+
+		if (detail.isHigh()) {
+			long[] records = listHeaders();
+			int lastId = -1;
+
+			for (int i = 0; i < records.length; i++) {
+				long record = records[i];
+				int pack = PackId.decodeRecordPackId(record);
+				int id = PackId.decodeRecordId(record);
+				int offset = PackId.decodeRecordOffset(record);
+				int length = PackId.decodeRecordSize(record);
+
+				String name = (pack != ProtocolPackTable.PACK_ID_OPTIONS)
+						? Pack.toString(lastId = id)
+						: Pack.toString(lastId, id);
+
+				b.append("    [%d]=0x%08X (id=0x%08X [%4s:%-20s], off=%2d, len=%2d)%n"
+						.formatted(
+								i,
+								compactRecord(i),
+								id,
+								ProtocolPackTable.valueOfPackId(pack).name(),
+								name,
+								offset,
+								length));
+			}
+		}
+
+		return b;
+	}
+
+	/**
+	 * With binding.
+	 *
+	 * @param buffer the buffer
+	 * @return the type 3 descriptor
+	 * @see com.slytechs.jnet.jnetruntime.MemoryBinding#withBinding(java.nio.ByteBuffer)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Type3Descriptor withBinding(ByteBuffer buffer) {
+		return super.withBinding(buffer);
+	}
+}
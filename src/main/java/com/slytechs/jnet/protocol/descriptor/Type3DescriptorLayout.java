@@ -0,0 +1,319 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.descriptor;
+
+import static com.slytechs.jnet.jnetruntime.internal.layout.BinaryLayout.*;
+import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.slytechs.jnet.jnetruntime.internal.layout.BinaryLayout;
+import com.slytechs.jnet.jnetruntime.internal.layout.BitField;
+import com.slytechs.jnet.jnetruntime.internal.layout.PredefinedLayout.Int16;
+import com.slytechs.jnet.jnetruntime.internal.layout.PredefinedLayout.Int32;
+import com.slytechs.jnet.jnetruntime.internal.layout.PredefinedLayout.Int64;
+import com.slytechs.jnet.protocol.HeaderOptionInfo;
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.core.constants.Icmp6IdNsOptions;
+import com.slytechs.jnet.protocol.core.constants.Icmp6Mlr2RecordType;
+import com.slytechs.jnet.protocol.core.constants.Ip4IdOptions;
+import com.slytechs.jnet.protocol.core.constants.Ip6IdOption;
+import com.slytechs.jnet.protocol.core.constants.TcpOptionId;
+import com.slytechs.jnet.protocol.pack.PackId;
+import com.slytechs.jnet.protocol.pack.ProtocolPackTable;
+
+/**
+ * Type3 (compact) struct/layout definition.
+ * <p>
+ * Each header record is 32-bits wide and encodes an 8-bit index into the
+ * compact id table, a 12-bit offset and a 12-bit length. Indexes below
+ * {@value #INDEX_OPTIONS_START} are CORE protocol ordinals, while the remaining
+ * indexes map to header options. Option offsets are encoded relative to the
+ * offset of their parent header, which is the nearest preceding non-option
+ * record.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+enum Type3DescriptorLayout implements BitField.Proxy {
+
+	/** The timestamp. */
+	TIMESTAMP("timestamp"),
+
+	/** The caplen. */
+	CAPLEN("caplen"),
+
+	/** The wirelen. */
+	WIRELEN("wirelen"),
+
+	/** The rx port. */
+	RX_PORT("rx_port"),
+
+	/** The l2 type. */
+	L2_TYPE("l2_type"),
+
+	/** is l3 a fragment. */
+	L3_IS_FRAG("l3_is_frag"),
+
+	/** is l3 the last fragment. */
+	L3_LAST_FRAG("l3_last_frag"),
+
+	/** records which could not be encoded in compact form were dropped. */
+	TRUNCATED("truncated"),
+
+	/** The record count. */
+	RECORD_COUNT("record_count"),
+
+	/** The record. */
+	RECORD("record"),
+
+	;
+
+	/** Index of the first option entry in the compact id table. */
+	public static final int INDEX_OPTIONS_START = 128;
+
+	/** The Constant RECORD_MASK_INDEX. */
+	private static final int RECORD_MASK_INDEX = 0x0000_00FF;
+
+	/** The Constant RECORD_MASK_OFFSET. */
+	private static final int RECORD_MASK_OFFSET = 0x000F_FF00;
+
+	/** The Constant RECORD_SHIFT_OFFSET. */
+	private static final int RECORD_SHIFT_OFFSET = 8;
+
+	/** The Constant RECORD_SHIFT_LENGTH. */
+	private static final int RECORD_SHIFT_LENGTH = 20;
+
+	/** Max offset or length value which fits into a compact record. */
+	public static final int RECORD_MAX_VALUE = 0xFFF;
+
+	/**
+	 * The Class Struct.
+	 */
+	private static class Struct {
+
+		/** The Constant TYPE3_STRUCT. */
+		private static final BinaryLayout TYPE3_STRUCT = structLayout(
+				/* length: 16-80 bytes */
+
+				/* Word0&1 */
+				Int64.BITS_64.withName("timestamp"),
+
+				/* Word2 */
+				Int16.BITS_16.withName("caplen"),
+				Int16.BITS_16.withName("wirelen"),
+
+				/* Word3 */
+				Int16.BITS_08.withName("rx_port"),
+				Int16.BITS_04.withName("l2_type"),
+				Int16.BITS_01.withName("l3_is_frag"),
+				Int16.BITS_01.withName("l3_last_frag"),
+				Int16.BITS_01.withName("truncated"),
+				Int16.BITS_01.withName("reserved"),
+				Int16.BITS_08.withName("record_count"),
+				Int16.BITS_08.withName("reserved2"),
+
+				/* Word4-19 */
+				sequenceLayout(DESC_TYPE3_RECORD_MAX_COUNT, Int32.BITS_32).withName("record")
+
+		);
+	}
+
+	/**
+	 * Table of fully qualified header IDs, indexed by the 8-bit compact index.
+	 * CORE protocols are indexed by their ordinal and options are appended
+	 * starting at {@link Type3DescriptorLayout#INDEX_OPTIONS_START} in ascending
+	 * numerical ID order, which keeps the table stable between runs.
+	 */
+	private static class IdTable {
+
+		/** Compact index to header ID. */
+		private static final int[] IDS = new int[256];
+
+		/** Sorted option IDs, position plus INDEX_OPTIONS_START is the index. */
+		private static final int[] OPTION_IDS;
+
+		static {
+			Arrays.fill(IDS, PackId.ID_NOT_FOUND);
+
+			for (Field f : CoreId.class.getFields()) {
+				if (!Modifier.isStatic(f.getModifiers())
+						|| (f.getType() != int.class)
+						|| !f.getName().startsWith("CORE_ID_"))
+					continue;
+
+				int id;
+				try {
+					id = f.getInt(null);
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+
+				int ordinal = PackId.decodeIdOrdinal(id);
+				if ((ordinal < INDEX_OPTIONS_START) && (PackId.decodePackId(id) == ProtocolPackTable.PACK_ID_CORE))
+					IDS[ordinal] = id;
+			}
+
+			OPTION_IDS = Stream.<HeaderOptionInfo[]>of(
+					Ip4IdOptions.values(),
+					Ip6IdOption.values(),
+					TcpOptionId.values(),
+					Icmp6IdNsOptions.values(),
+					Icmp6Mlr2RecordType.values())
+					.flatMap(Arrays::stream)
+					.mapToInt(HeaderOptionInfo::id)
+					.filter(id -> PackId.decodeIdOrdinal(id) != PackId.ID_ORDINAL_CLASS)
+					.distinct()
+					.sorted()
+					.limit(IDS.length - INDEX_OPTIONS_START)
+					.toArray();
+
+			IntStream.range(0, OPTION_IDS.length)
+					.forEach(i -> IDS[INDEX_OPTIONS_START + i] = OPTION_IDS[i]);
+		}
+	}
+
+	/**
+	 * Decode the full header ID from a compact record.
+	 *
+	 * @param record the compact record
+	 * @return the header id or {@link PackId#ID_NOT_FOUND}
+	 */
+	public static int decodeRecordId(int record) {
+		return IdTable.IDS[record & RECORD_MASK_INDEX];
+	}
+
+	/**
+	 * Decode the compact index from a compact record.
+	 *
+	 * @param record the compact record
+	 * @return the index
+	 */
+	public static int decodeRecordIndex(int record) {
+		return record & RECORD_MASK_INDEX;
+	}
+
+	/**
+	 * Decode the length from a compact record.
+	 *
+	 * @param record the compact record
+	 * @return the length in bytes
+	 */
+	public static int decodeRecordLength(int record) {
+		return record >>> RECORD_SHIFT_LENGTH;
+	}
+
+	/**
+	 * Decode the offset from a compact record. For option records, the offset is
+	 * relative to the parent header.
+	 *
+	 * @param record the compact record
+	 * @return the offset in bytes
+	 */
+	public static int decodeRecordOffset(int record) {
+		return (record & RECORD_MASK_OFFSET) >> RECORD_SHIFT_OFFSET;
+	}
+
+	/**
+	 * Encode a compact record.
+	 *
+	 * @param index  the compact index
+	 * @param offset the offset, relative to the parent header for options
+	 * @param length the length
+	 * @return the compact record
+	 */
+	public static int encodeRecord(int index, int offset, int length) {
+		return (index & RECORD_MASK_INDEX)
+				| ((offset << RECORD_SHIFT_OFFSET) & RECORD_MASK_OFFSET)
+				| (length << RECORD_SHIFT_LENGTH);
+	}
+
+	/**
+	 * Find the compact index for a header ID.
+	 *
+	 * @param id the header id
+	 * @return the index or -1 if the ID can not be represented in compact form
+	 */
+	public static int indexOfId(int id) {
+		int pack = PackId.decodePackId(id);
+		int ordinal = PackId.decodeIdOrdinal(id);
+
+		if ((pack == ProtocolPackTable.PACK_ID_CORE) && (ordinal < INDEX_OPTIONS_START))
+			return (IdTable.IDS[ordinal] == id) ? ordinal : -1;
+
+		if (pack == ProtocolPackTable.PACK_ID_OPTIONS) {
+			int i = Arrays.binarySearch(IdTable.OPTION_IDS, id);
+
+			return (i < 0) ? -1 : (i + INDEX_OPTIONS_START);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Checks if the compact record is a header option record.
+	 *
+	 * @param record the compact record
+	 * @return true, if option record
+	 */
+	public static boolean isOptionRecord(int record) {
+		return (record & RECORD_MASK_INDEX) >= INDEX_OPTIONS_START;
+	}
+
+	/**
+	 * Expands a compact record to a full 64-bit {@link PackId} record.
+	 *
+	 * @param record       the compact record
+	 * @param parentOffset the offset of the parent header, used for options
+	 * @return the 64-bit record
+	 */
+	public static long expandRecord(int record, int parentOffset) {
+		int offset = decodeRecordOffset(record);
+		if (isOptionRecord(record))
+			offset += parentOffset;
+
+		return PackId.encodeRecord(decodeRecordId(record), offset, decodeRecordLength(record));
+	}
+
+	/** The field. */
+	private final BitField field;
+
+	/**
+	 * Instantiates a new type 3 layout.
+	 *
+	 * @param path the path
+	 */
+	Type3DescriptorLayout(String path) {
+		this.field = Struct.TYPE3_STRUCT.bitField(path);
+	}
+
+	/**
+	 * Proxy bit field.
+	 *
+	 * @return the bit field
+	 * @see com.slytechs.jnet.jnetruntime.internal.layout.BitField.Proxy#proxyBitField()
+	 */
+	@Override
+	public BitField proxyBitField() {
+		return field;
+	}
+}
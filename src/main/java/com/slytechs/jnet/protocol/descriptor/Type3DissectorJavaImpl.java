@@ -0,0 +1,134 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.descriptor;
+
+import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
+import static com.slytechs.jnet.protocol.descriptor.Type3DescriptorLayout.*;
+
+import java.nio.ByteBuffer;
+
+import com.slytechs.jnet.protocol.pack.PackId;
+
+/**
+ * Descriptor type 3 (compact) java based packet dissector. The protocol
+ * dissection is shared with the type 2 dissector, only the descriptor encoding
+ * differs. Each 64-bit type 2 record is packed into a 32-bit compact record
+ * when the descriptor is written.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+class Type3DissectorJavaImpl extends Type2DissectorJavaImpl {
+
+	/**
+	 * Instantiates a new java dissector type 3.
+	 */
+	Type3DissectorJavaImpl() {
+	}
+
+	/**
+	 * Write descriptor.
+	 *
+	 * @param desc the desc
+	 * @return the int
+	 * @see com.slytechs.jnet.protocol.descriptor.Type2DissectorJavaImpl#writeDescriptor(java.nio.ByteBuffer)
+	 */
+	@Override
+	public int writeDescriptor(ByteBuffer desc) {
+		int len = writeCompactDescriptor(desc);
+
+		desc.position(desc.position() + len);
+
+		return len;
+	}
+
+	/**
+	 * Write compact descriptor. Records which can not be represented in compact
+	 * form, either due to their protocol ID or their offset/length being out of
+	 * range, are dropped along with any options belonging to them and the
+	 * descriptor is flagged as truncated.
+	 *
+	 * @param desc the desc
+	 * @return number of bytes written
+	 */
+	public final int writeCompactDescriptor(ByteBuffer desc) {
+		boolean truncated = false;
+		boolean parentDropped = false;
+		int parentOffset = 0;
+		int count = 0;
+
+		for (int i = 0; i < recordCount; i++) {
+			final long r = record[i];
+			final int index = indexOfId(PackId.decodeRecordId(r));
+			final int offset = PackId.decodeRecordOffset(r);
+			final int length = PackId.decodeRecordSize(r);
+			final boolean option = (index >= INDEX_OPTIONS_START);
+
+			if (option && parentDropped) {
+				truncated = true;
+				continue;
+			}
+
+			final int encodedOffset = option ? (offset - parentOffset) : offset;
+
+			if ((index == -1)
+					|| (count == DESC_TYPE3_RECORD_MAX_COUNT)
+					|| (encodedOffset < 0) || (encodedOffset > RECORD_MAX_VALUE)
+					|| (length > RECORD_MAX_VALUE)) {
+
+				truncated = true;
+				parentDropped = !option;
+				continue;
+			}
+
+			if (!option) {
+				parentOffset = offset;
+				parentDropped = false;
+			}
+
+			desc.putInt(DESC_TYPE3_BYTE_SIZE_MIN + (count * DESC_TYPE3_RECORD_BYTE_SIZE),
+					encodeRecord(index, encodedOffset, length));
+			count++;
+		}
+
+		TIMESTAMP.setLong(timestamp, desc);
+
+		CAPLEN.setInt(captureLength, desc);
+		WIRELEN.setInt(wireLength, desc);
+
+		RX_PORT.setInt(rxPort, desc);
+		L2_TYPE.setInt(l2Type, desc);
+		L3_IS_FRAG.setInt(l3IsFrag ? 1 : 0, desc);
+		L3_LAST_FRAG.setInt(l3LastFrag ? 1 : 0, desc);
+		TRUNCATED.setInt(truncated ? 1 : 0, desc);
+		RECORD_COUNT.setInt(count, desc);
+
+		return DESC_TYPE3_BYTE_SIZE_MIN + (count * DESC_TYPE3_RECORD_BYTE_SIZE);
+	}
+
+	/**
+	 * To string.
+	 *
+	 * @return the string
+	 * @see com.slytechs.jnet.protocol.descriptor.Type2DissectorJavaImpl#toString()
+	 */
+	@Override
+	public String toString() {
+		return "JavaDissectorType3 [" + super.toString() + "]";
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import java.util.Arrays;
+
+/**
+ * An intrusive doubly linked list of datagram indexes, ordered from oldest to
+ * newest. Used to select eviction victims in O(1) time.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class IpfAgeList {
+
+	/** The Constant NONE. */
+	static final int NONE = -1;
+
+	/** The next. */
+	private final int[] next;
+
+	/** The prev. */
+	private final int[] prev;
+
+	/** The linked flags. */
+	private final boolean[] linked;
+
+	/** The head, the oldest entry. */
+	private int head = NONE;
+
+	/** The tail, the newest entry. */
+	private int tail = NONE;
+
+	/**
+	 * Instantiates a new ipf age list.
+	 *
+	 * @param capacity the max number of indexes
+	 */
+	IpfAgeList(int capacity) {
+		this.next = new int[capacity];
+		this.prev = new int[capacity];
+		this.linked = new boolean[capacity];
+
+		Arrays.fill(next, NONE);
+		Arrays.fill(prev, NONE);
+	}
+
+	/**
+	 * Adds an index as the newest entry.
+	 *
+	 * @param index the index
+	 */
+	void add(int index) {
+		prev[index] = tail;
+		next[index] = NONE;
+
+		if (tail == NONE)
+			head = index;
+		else
+			next[tail] = index;
+
+		tail = index;
+		linked[index] = true;
+	}
+
+	/**
+	 * The oldest entry.
+	 *
+	 * @return the index or {@link #NONE} if list is empty
+	 */
+	int oldest() {
+		return head;
+	}
+
+	/**
+	 * Removes an index. Does nothing if the index is not in the list.
+	 *
+	 * @param index the index
+	 */
+	void remove(int index) {
+		if (!linked[index])
+			return;
+
+		if (prev[index] == NONE)
+			head = next[index];
+		else
+			next[prev[index]] = next[index];
+
+		if (next[index] == NONE)
+			tail = prev[index];
+		else
+			prev[next[index]] = prev[index];
+
+		linked[index] = false;
+	}
+
+	/**
+	 * Marks an index as the newest entry.
+	 *
+	 * @param index the index
+	 */
+	void touch(int index) {
+		if (tail == index)
+			return;
+
+		remove(index);
+		add(index);
+	}
+}
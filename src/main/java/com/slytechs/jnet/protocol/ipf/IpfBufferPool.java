@@ -0,0 +1,136 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of fixed size, direct reassembly buffers. All buffers are carved out
+ * of a single off-heap memory segment allocated up front from the reassembler's
+ * arena, so reassembly never allocates memory on the fast path and the total
+ * memory used is fixed by the pool size.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class IpfBufferPool {
+
+	/** Value returned when no buffers are available. */
+	static final int NO_BUFFER = -1;
+
+	/** The buffer size. */
+	private final int bufferSize;
+
+	/** The buffers. */
+	private final ByteBuffer[] buffers;
+
+	/** The free stack. */
+	private final int[] free;
+
+	/** The free count. */
+	private int freeCount;
+
+	/**
+	 * Instantiates a new ipf buffer pool.
+	 *
+	 * @param count      number of buffers in the pool
+	 * @param bufferSize the size of each buffer in bytes
+	 * @param arena      the arena from which pool memory is allocated
+	 */
+	IpfBufferPool(int count, int bufferSize, Arena arena) {
+		if (count <= 0 || bufferSize <= 0)
+			throw new IllegalArgumentException("invalid pool size %d x %d bytes"
+					.formatted(count, bufferSize));
+
+		MemorySegment segment = arena.allocate((long) count * bufferSize, Long.BYTES);
+
+		this.bufferSize = bufferSize;
+		this.buffers = new ByteBuffer[count];
+		this.free = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			buffers[i] = segment.asSlice((long) i * bufferSize, bufferSize).asByteBuffer();
+			free[i] = count - i - 1;
+		}
+
+		this.freeCount = count;
+	}
+
+	/**
+	 * Allocate a buffer from the pool.
+	 *
+	 * @return the buffer index or {@link #NO_BUFFER} if pool is exhausted
+	 */
+	int allocate() {
+		if (freeCount == 0)
+			return NO_BUFFER;
+
+		return free[--freeCount];
+	}
+
+	/**
+	 * Buffer at index.
+	 *
+	 * @param index the index
+	 * @return the byte buffer
+	 */
+	ByteBuffer buffer(int index) {
+		return buffers[index];
+	}
+
+	/**
+	 * Size of each buffer in bytes.
+	 *
+	 * @return the int
+	 */
+	int bufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Number of buffers in the pool.
+	 *
+	 * @return the int
+	 */
+	int capacity() {
+		return buffers.length;
+	}
+
+	/**
+	 * Number of buffers available for allocation.
+	 *
+	 * @return the int
+	 */
+	int available() {
+		return freeCount;
+	}
+
+	/**
+	 * Release a buffer back to the pool.
+	 *
+	 * @param index the buffer index
+	 */
+	void release(int index) {
+		if (freeCount == free.length)
+			throw new IllegalStateException("buffer pool overflow");
+
+		free[freeCount++] = index;
+	}
+}
@@ -0,0 +1,663 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
+
+import java.nio.ByteBuffer;
+
+import com.slytechs.jnet.jnetruntime.time.TimestampUnit;
+import com.slytechs.jnet.protocol.core.InetChecksum;
+import com.slytechs.jnet.protocol.descriptor.IpfFragment;
+
+/**
+ * State of a single IP datagram being reassembled. Datagram instances are
+ * pre-allocated, one per pool buffer, and reused for the lifetime of the
+ * reassembler.
+ * <p>
+ * Fragment data is copied into the reassembly buffer at its fragment offset,
+ * after a reserved area large enough to hold the IP header. The header of the
+ * first fragment is copied immediately in front of the data, so that the
+ * completed datagram is contiguous in memory and no further copies are needed.
+ * The link layer headers of the first fragment are in turn copied in front of
+ * the IP header, so that the datagram can also be viewed as a complete,
+ * unfragmented frame.
+ * </p>
+ * <p>
+ * Missing data is tracked using the hole descriptor list of RFC 815. Each hole
+ * descriptor is stored in the first bytes of the hole itself, inside the
+ * reassembly buffer, and holds the end of the hole and the start of the next
+ * hole. Since all fragments except the last are a multiple of 8 bytes long,
+ * every hole is large enough to hold its own descriptor. Adding a fragment only
+ * visits the current holes and never allocates, and the datagram is complete
+ * when the hole list is empty.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class IpfDatagram {
+
+	/** Bytes reserved in front of the data for the IP header. */
+	static final int HEADER_RESERVE = 256;
+
+	/**
+	 * Max number of fragments recorded in the fragment table of a datagram. A
+	 * datagram may have more fragments, they are reassembled but left out of the
+	 * table.
+	 */
+	static final int MAX_FRAGMENTS = 32;
+
+	/** Result of adding a fragment. */
+	static final int FRAG_OK = 0;
+
+	/** Fragment was an exact duplicate of a previous fragment. */
+	static final int FRAG_DUPLICATE = 1;
+
+	/** Fragment can not be added, the datagram must be dropped. */
+	static final int FRAG_DROP = -1;
+
+	/**
+	 * Fragment extends the datagram beyond the max IP length field value, the
+	 * datagram must be dropped.
+	 */
+	static final int FRAG_OVERSIZE = -2;
+
+	/**
+	 * Fragment data or header was not fully captured, the datagram must be
+	 * dropped.
+	 */
+	static final int FRAG_TRUNCATED = -3;
+
+	/** Max value of the IPv4 total length and IPv6 payload length fields. */
+	private static final int IP_LENGTH_MAX = 0xFFFF;
+
+	/** Size of a hole descriptor, which is also the fragment size granularity. */
+	private static final int HOLE_SIZE = 8;
+
+	/** Hole descriptor field holding the end of the hole, exclusive. */
+	private static final int HOLE_END = 0;
+
+	/** Hole descriptor field holding the start of the next hole. */
+	private static final int HOLE_NEXT = 4;
+
+	/** End of the list. */
+	private static final int NO_HOLE = -1;
+
+	/** End of the trailing hole, until the last fragment is received. */
+	private static final int INFINITY = Integer.MAX_VALUE;
+
+	/** The pool buffer index. */
+	private final int index;
+
+	/** The reassembly buffer. */
+	private final ByteBuffer data;
+
+	/** The key. */
+	private final ByteBuffer key = ByteBuffer.allocate(DESC_IPF_FRAG_IPv6_KEY_BYTE_SIZE);
+
+	/** The key hash. */
+	private int hash;
+
+	/** The ip 4 flag. */
+	private boolean ip4;
+
+	/** The next header of the fragmented payload. */
+	private int nextHeader;
+
+	/** The header length, or 0 if first fragment has not been seen. */
+	private int headerLength;
+
+	/** The length of the link layer headers preceding the IP header. */
+	private int linkLength;
+
+	/** The total data length, or 0 if last fragment has not been seen. */
+	private int totalLength;
+
+	/** The start of the first hole, or {@link #NO_HOLE} if there are no holes. */
+	private int holeHead;
+
+	/** The received bytes, not counting overlapping data. */
+	private int receivedBytes;
+
+	/** The overlap bytes. */
+	private int overlapBytes;
+
+	/** The highest data offset received. */
+	private int reach;
+
+	/** The fragment count. */
+	private int fragCount;
+
+	/** Set when fragments were left out of the fragment table. */
+	private boolean tableTruncated;
+
+	/** The frag frame numbers. */
+	private final long[] fragFrameNo = new long[MAX_FRAGMENTS];
+
+	/** The frag offsets. */
+	private final int[] fragOffset = new int[MAX_FRAGMENTS];
+
+	/** The frag lengths. */
+	private final int[] fragLength = new int[MAX_FRAGMENTS];
+
+	/** The frag overlay bytes. */
+	private final int[] fragOverlay = new int[MAX_FRAGMENTS];
+
+	/** The first timestamp. */
+	private long firstTimestamp;
+
+	/** The last timestamp. */
+	private long lastTimestamp;
+
+	/** The timestamp unit. */
+	private TimestampUnit timestampUnit;
+
+	/** The tracking index datagram ID. */
+	private int trackingId = IpfTrackingIndex.NO_ID;
+
+	/**
+	 * Instantiates a new ipf datagram.
+	 *
+	 * @param index the pool buffer index
+	 * @param data  the reassembly buffer
+	 */
+	IpfDatagram(int index, ByteBuffer data) {
+		this.index = index;
+		this.data = data;
+	}
+
+	/**
+	 * Adds a fragment to the datagram.
+	 *
+	 * @param packet    the packet containing the fragment
+	 * @param frag      the fragment descriptor
+	 * @param frameNo   the frame number of the packet
+	 * @param timestamp the timestamp of the packet
+	 * @return one of {@link #FRAG_OK}, {@link #FRAG_DUPLICATE}, {@link #FRAG_DROP},
+	 *         {@link #FRAG_OVERSIZE} or {@link #FRAG_TRUNCATED}
+	 */
+	int addFragment(ByteBuffer packet, IpfFragment frag, long frameNo, long timestamp) {
+		final int offset = frag.fragOffset();
+		final int length = frag.dataLength();
+		final int end = offset + length;
+		final boolean last = frag.isLastFrag();
+
+		if (length == 0)
+			return FRAG_DROP;
+
+		/* Lengths come from the IP header, not from what was captured */
+		if ((frag.dataOffset() + length) > packet.limit())
+			return FRAG_TRUNCATED;
+
+		if ((offset == 0) && ((frag.headerOffset() + frag.headerAndRequiredOptionsLength()) > packet.limit()))
+			return FRAG_TRUNCATED;
+
+		if (exceedsIpLength(Math.max(end, reach),
+				(offset == 0) ? frag.headerAndRequiredOptionsLength() : headerLength))
+			return FRAG_OVERSIZE;
+
+		if ((offset == 0) && ((frag.headerOffset() + frag.headerAndRequiredOptionsLength()) > HEADER_RESERVE))
+			return FRAG_DROP;
+
+		/* A hole always follows a fragment which is not last, it must fit as well */
+		if ((HEADER_RESERVE + end + (last ? 0 : HOLE_SIZE)) > data.capacity())
+			return FRAG_DROP;
+
+		if (!last && (((length % HOLE_SIZE) != 0) || ((totalLength > 0) && (end > totalLength))))
+			return FRAG_DROP;
+
+		if (last && (((totalLength > 0) && (end != totalLength)) || (reach > end)))
+			return FRAG_DROP;
+
+		if (!intersectsHole(offset, end))
+			return FRAG_DUPLICATE;
+
+		final int filled = fillHoles(offset, end, last);
+
+		recordFragment(frameNo, offset, length, length - filled);
+
+		receivedBytes += filled;
+		overlapBytes += length - filled;
+
+		if (end > reach)
+			reach = end;
+
+		/* Copied last, as the data overwrites the descriptors of the filled holes */
+		data.put(HEADER_RESERVE + offset, packet, frag.dataOffset(), length);
+
+		if (offset == 0) {
+			headerLength = frag.headerAndRequiredOptionsLength();
+			linkLength = frag.headerOffset();
+			data.put(HEADER_RESERVE - headerLength, packet, frag.headerOffset(), headerLength);
+			data.put(HEADER_RESERVE - headerLength - linkLength, packet, 0, linkLength);
+		}
+
+		if (last)
+			totalLength = end;
+
+		lastTimestamp = timestamp;
+
+		return FRAG_OK;
+	}
+
+	/**
+	 * Checks if the reassembled datagram would not be representable in the IP
+	 * length field. If the first fragment has not been seen, the smallest possible
+	 * header is assumed.
+	 *
+	 * @param dataLength   the datagram payload length
+	 * @param headerLength the IP header length, or 0 if not known
+	 * @return true, if the IP length field would overflow
+	 */
+	private boolean exceedsIpLength(int dataLength, int headerLength) {
+		final int ipLength = ip4
+				? Math.max(headerLength, IPv4_HEADER_LEN) + dataLength
+				: Math.max(headerLength - IPv6_HEADER_LEN, 0) + dataLength;
+
+		return ipLength > IP_LENGTH_MAX;
+	}
+
+	/**
+	 * Removes the range of a fragment from the hole list, as in RFC 815. Holes
+	 * partially covered by the fragment are split and any remainder is written
+	 * back as a new hole descriptor, outside of the fragment range.
+	 *
+	 * @param offset the fragment start
+	 * @param end    the fragment end, exclusive
+	 * @param last   true if this is the last fragment
+	 * @return number of bytes of the fragment which filled a hole
+	 */
+	private int fillHoles(int offset, int end, boolean last) {
+		int filled = 0;
+		int prev = NO_HOLE;
+		int hole = holeHead;
+
+		while (hole != NO_HOLE) {
+			final int holeEnd = data.getInt(HEADER_RESERVE + hole + HOLE_END);
+			final int next = data.getInt(HEADER_RESERVE + hole + HOLE_NEXT);
+
+			if ((offset >= holeEnd) || (end <= hole)) {
+				prev = hole;
+				hole = next;
+				continue;
+			}
+
+			filled += Math.min(end, holeEnd) - Math.max(offset, hole);
+
+			/* Replace the hole with its uncovered parts, if any */
+			int link = next;
+			int tail = prev;
+
+			if ((end < holeEnd) && !last) {
+				writeHole(end, holeEnd, link);
+				link = tail = end;
+			}
+
+			if (offset > hole) {
+				writeHole(hole, offset, link);
+				link = hole;
+
+				if (tail == prev)
+					tail = hole;
+			}
+
+			if (prev == NO_HOLE)
+				holeHead = link;
+			else
+				data.putInt(HEADER_RESERVE + prev + HOLE_NEXT, link);
+
+			prev = tail;
+			hole = next;
+		}
+
+		return filled;
+	}
+
+	/**
+	 * Checks if any part of a fragment falls into a hole.
+	 *
+	 * @param offset the fragment start
+	 * @param end    the fragment end, exclusive
+	 * @return true, if at least one byte of the fragment is missing from the
+	 *         datagram
+	 */
+	private boolean intersectsHole(int offset, int end) {
+		for (int hole = holeHead; hole != NO_HOLE; hole = data.getInt(HEADER_RESERVE + hole + HOLE_NEXT)) {
+			if ((offset < data.getInt(HEADER_RESERVE + hole + HOLE_END)) && (end > hole))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Write a hole descriptor into the first bytes of the hole.
+	 *
+	 * @param start the hole start
+	 * @param end   the hole end, exclusive
+	 * @param next  the start of the next hole
+	 */
+	private void writeHole(int start, int end, int next) {
+		data.putInt(HEADER_RESERVE + start + HOLE_END, end);
+		data.putInt(HEADER_RESERVE + start + HOLE_NEXT, next);
+	}
+
+	/**
+	 * Duration of reassembly in milliseconds.
+	 *
+	 * @return the long
+	 */
+	long durationMilli() {
+		return TimestampUnit.EPOCH_MILLI.convert(lastTimestamp, timestampUnit) - firstMilli();
+	}
+
+	/**
+	 * Timestamp of the first fragment received, in milliseconds.
+	 *
+	 * @return the long
+	 */
+	long firstMilli() {
+		return TimestampUnit.EPOCH_MILLI.convert(firstTimestamp, timestampUnit);
+	}
+
+	/**
+	 * Completes the reassembly by updating the IP header to describe the
+	 * unfragmented datagram.
+	 *
+	 * @return the reassembled datagram, starting with the IP header
+	 */
+	ByteBuffer finish() {
+		final int ipOffset = HEADER_RESERVE - headerLength;
+
+		if (ip4) {
+			data.putShort(ipOffset + IPv4_FIELD_TOTAL_LEN, (short) (headerLength + totalLength));
+
+			int flags = data.getShort(ipOffset + IPv4_FIELD_FLAGS) & IPv4_FLAG16_DF;
+			data.putShort(ipOffset + IPv4_FIELD_FLAGS, (short) flags);
+
+			data.putShort(ipOffset + IPv4_FIELD_CHECKSUM, (short) 0);
+			data.putShort(ipOffset + IPv4_FIELD_CHECKSUM, (short) ~InetChecksum.sum(data, ipOffset, headerLength));
+
+		} else {
+			data.putShort(ipOffset + IPv6_FIELD_PAYLOAD_LENGTH,
+					(short) (headerLength - IPv6_HEADER_LEN + totalLength));
+
+			/* Last next header field of the unfragmentable part, now points to payload */
+			int nextField = IPv6_FIELD_NEXT_HOP;
+			int offset = IPv6_HEADER_LEN;
+			while (offset < headerLength) {
+				nextField = offset;
+				offset += (Byte.toUnsignedInt(data.get(ipOffset + offset + 1)) << 3) + 8;
+			}
+
+			data.put(ipOffset + nextField, (byte) nextHeader);
+		}
+
+		return data.slice(ipOffset, headerLength + totalLength);
+	}
+
+	/**
+	 * The completed datagram as an unfragmented frame, including the link layer
+	 * headers of the first fragment. Only valid after {@link #finish()}.
+	 *
+	 * @return the frame, starting with the link layer headers
+	 */
+	ByteBuffer frame() {
+		final int frameOffset = HEADER_RESERVE - headerLength - linkLength;
+
+		return data.slice(frameOffset, linkLength + headerLength + totalLength);
+	}
+
+	/**
+	 * Offset of the fragmented IP payload within {@link #frame()}. Headers at or
+	 * beyond this offset were only present in one of the fragments.
+	 *
+	 * @return the payload offset in the frame
+	 */
+	int framePayloadOffset() {
+		return linkLength + headerLength;
+	}
+
+	/**
+	 * Records a fragment in the fragment table, sorted by offset. Once the table is
+	 * full, it keeps the fragments with the lowest offsets.
+	 *
+	 * @param frameNo      the frame number
+	 * @param offset       the fragment offset
+	 * @param length       the fragment length
+	 * @param overlayBytes the bytes overlapping previous fragments
+	 */
+	private void recordFragment(long frameNo, int offset, int length, int overlayBytes) {
+		int pos = fragCount;
+		while ((pos > 0) && (fragOffset[pos - 1] > offset))
+			pos--;
+
+		if (fragCount == MAX_FRAGMENTS)
+			tableTruncated = true;
+
+		if (pos == MAX_FRAGMENTS)
+			return;
+
+		final int moved = Math.min(fragCount, MAX_FRAGMENTS - 1) - pos;
+
+		System.arraycopy(fragFrameNo, pos, fragFrameNo, pos + 1, moved);
+		System.arraycopy(fragOffset, pos, fragOffset, pos + 1, moved);
+		System.arraycopy(fragLength, pos, fragLength, pos + 1, moved);
+		System.arraycopy(fragOverlay, pos, fragOverlay, pos + 1, moved);
+
+		fragFrameNo[pos] = frameNo;
+		fragOffset[pos] = offset;
+		fragLength[pos] = length;
+		fragOverlay[pos] = overlayBytes;
+
+		if (fragCount < MAX_FRAGMENTS)
+			fragCount++;
+	}
+
+	/**
+	 * Checks if fragments were left out of the fragment table, because the
+	 * datagram has more than {@link #MAX_FRAGMENTS} fragments.
+	 *
+	 * @return true, if the fragment table is truncated
+	 */
+	boolean isTableTruncated() {
+		return tableTruncated;
+	}
+
+	/**
+	 * Fragment count.
+	 *
+	 * @return the int
+	 */
+	int fragmentCount() {
+		return fragCount;
+	}
+
+	/**
+	 * Fragment frame no.
+	 *
+	 * @param i the fragment index
+	 * @return the long
+	 */
+	long fragmentFrameNo(int i) {
+		return fragFrameNo[i];
+	}
+
+	/**
+	 * Fragment length.
+	 *
+	 * @param i the fragment index
+	 * @return the int
+	 */
+	int fragmentLength(int i) {
+		return fragLength[i];
+	}
+
+	/**
+	 * Fragment offset.
+	 *
+	 * @param i the fragment index
+	 * @return the int
+	 */
+	int fragmentOffset(int i) {
+		return fragOffset[i];
+	}
+
+	/**
+	 * Fragment overlay bytes.
+	 *
+	 * @param i the fragment index
+	 * @return the int
+	 */
+	int fragmentOverlayBytes(int i) {
+		return fragOverlay[i];
+	}
+
+	/**
+	 * Hash.
+	 *
+	 * @return the int
+	 */
+	int hash() {
+		return hash;
+	}
+
+	/**
+	 * Number of bytes missing from the datagram payload. If the last fragment has
+	 * not been seen, the highest data offset received is used as the datagram
+	 * length.
+	 *
+	 * @return the int
+	 */
+	int holeBytes() {
+		return ((totalLength > 0) ? totalLength : reach) - receivedBytes;
+	}
+
+	/**
+	 * Index.
+	 *
+	 * @return the int
+	 */
+	int index() {
+		return index;
+	}
+
+	/**
+	 * Checks if all fragments have been received.
+	 *
+	 * @return true, if is complete
+	 */
+	boolean isComplete() {
+		return (holeHead == NO_HOLE) && (headerLength > 0);
+	}
+
+	/**
+	 * Checks if is ip 4.
+	 *
+	 * @return true, if is ip 4
+	 */
+	boolean isIp4() {
+		return ip4;
+	}
+
+	/**
+	 * Key.
+	 *
+	 * @return the byte buffer
+	 */
+	ByteBuffer key() {
+		return key;
+	}
+
+	/**
+	 * Open the datagram for a new reassembly.
+	 *
+	 * @param frag          the first fragment received
+	 * @param hash          the key hash
+	 * @param timestamp     the timestamp of first fragment
+	 * @param timestampUnit the timestamp unit
+	 */
+	void open(IpfFragment frag, int hash, long timestamp, TimestampUnit timestampUnit) {
+		this.key.clear();
+		this.key.put(frag.keyBuffer());
+		this.key.flip();
+
+		this.hash = hash;
+		this.ip4 = frag.isIp4();
+		this.nextHeader = frag.nextHeader();
+		this.headerLength = 0;
+		this.linkLength = 0;
+		this.totalLength = 0;
+		this.receivedBytes = 0;
+		this.overlapBytes = 0;
+		this.reach = 0;
+		this.holeHead = 0;
+		writeHole(0, INFINITY, NO_HOLE);
+		this.fragCount = 0;
+		this.tableTruncated = false;
+		this.firstTimestamp = this.lastTimestamp = timestamp;
+		this.timestampUnit = timestampUnit;
+		this.trackingId = IpfTrackingIndex.NO_ID;
+	}
+
+	/**
+	 * Overlap bytes.
+	 *
+	 * @return the int
+	 */
+	int overlapBytes() {
+		return overlapBytes;
+	}
+
+	/**
+	 * Received bytes.
+	 *
+	 * @return the int
+	 */
+	int receivedBytes() {
+		return receivedBytes;
+	}
+
+	/**
+	 * Sets the tracking index datagram ID.
+	 *
+	 * @param id the datagram ID
+	 */
+	void setTrackingId(int id) {
+		this.trackingId = id;
+	}
+
+	/**
+	 * Total length of the datagram payload, if known.
+	 *
+	 * @return the length or 0 if last fragment has not been seen
+	 */
+	int totalLength() {
+		return totalLength;
+	}
+
+	/**
+	 * The tracking index datagram ID.
+	 *
+	 * @return the datagram ID or {@link IpfTrackingIndex#NO_ID} if not tracked
+	 */
+	int trackingId() {
+		return trackingId;
+	}
+}
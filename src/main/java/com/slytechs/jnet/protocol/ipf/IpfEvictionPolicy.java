@@ -0,0 +1,39 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+/**
+ * Policy applied when the IP reassembly memory budget is exhausted and a
+ * fragment belonging to a new datagram arrives.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public enum IpfEvictionPolicy {
+
+	/** Evict the datagram whose first fragment arrived the earliest. */
+	OLDEST_FIRST,
+
+	/** Evict the datagram which least recently received a fragment. */
+	LEAST_RECENTLY_USED,
+
+	/** Keep existing datagrams and drop the fragment of the new datagram. */
+	DROP_NEW,
+
+	;
+}
@@ -0,0 +1,689 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
+
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import com.slytechs.jnet.jnetruntime.time.TimestampUnit;
+import com.slytechs.jnet.protocol.Packet;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.descriptor.IpfBuffer;
+import com.slytechs.jnet.protocol.descriptor.IpfFragDissector;
+import com.slytechs.jnet.protocol.descriptor.IpfFragment;
+import com.slytechs.jnet.protocol.descriptor.IpfReassembly;
+import com.slytechs.jnet.protocol.descriptor.IpfReassemblyLayout;
+import com.slytechs.jnet.protocol.descriptor.IpfTracking;
+import com.slytechs.jnet.protocol.descriptor.IpfTrackingLayout;
+import com.slytechs.jnet.protocol.descriptor.PacketDescriptor;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector;
+import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+
+/**
+ * IPv4 and IPv6 fragment reassembler. Fragments are matched to their datagram
+ * using an off-heap hash table keyed on the fragment's identifier, protocol and
+ * source and destination addresses. Fragment data is copied directly into a
+ * pooled, pre-allocated reassembly buffer.
+ * <p>
+ * All reassembly memory is allocated up front from a single off-heap arena and
+ * is bounded by the memory budget given at construction. When the budget is
+ * exhausted, the configured {@link IpfEvictionPolicy} decides whether an
+ * existing incomplete datagram is evicted or the new fragment is dropped.
+ * Counters and memory pressure metrics are available from
+ * {@link #statistics()}. The reassembler must be closed to release its memory.
+ * </p>
+ * <p>
+ * When the last missing fragment of a datagram is received, the IP header is
+ * updated to describe the unfragmented datagram and both an
+ * {@link IpfReassembly} and an {@link IpfBuffer} descriptor are attached to the
+ * packet's descriptor chain. The reassembled datagram is then available using
+ * {@link com.slytechs.jnet.protocol.core.Ip#getReassembledBuffer()}. The
+ * reassembled datagram and its descriptors remain valid until the next call to
+ * one of the {@code reassemble} methods.
+ * </p>
+ * <p>
+ * The completed datagram, preceded by the link layer headers of its first
+ * fragment, is also dissected again as an unfragmented frame, and the
+ * resulting {@link Type2Descriptor} is chained to the completing packet through
+ * its {@link IpfBuffer}. Headers only present in the first fragment, such as
+ * TCP or UDP, can then be retrieved from the completing packet using
+ * {@link Packet#getHeader(com.slytechs.jnet.protocol.Header)} as if the packet
+ * had never been fragmented. Only headers inside the fragmented IP payload are
+ * retrieved this way, and like the datagram itself, they are overwritten by the
+ * next reassembly.
+ * </p>
+ * <p>
+ * Every fragment accepted by the reassembler is also given an
+ * {@link IpfTracking} descriptor, listing the frame numbers of the fragments of
+ * its datagram seen so far, which backs
+ * {@link com.slytechs.jnet.protocol.core.Ip#getIpfFrameIndexes()}. When an
+ * {@link IpfTrackingIndex} is set, the frame numbers of every fragment are
+ * also recorded in the index under the datagram ID reported by the tracking
+ * descriptor, for lookups long after the datagram has been reassembled.
+ * </p>
+ * <p>
+ * Incomplete datagrams expire after a timeout, measured from the arrival of
+ * their first fragment. Time is driven by packet timestamps, so expiry is
+ * deterministic for both live and offline captures. Each expired datagram is
+ * reported to the timeout action, if one is set, as an {@link IpfReassembly}
+ * descriptor with its timeout flag and hole statistics set.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class IpfReassembler implements AutoCloseable {
+
+	/** The Constant DEFAULT_MEMORY_BUDGET, 4 MiB. */
+	public static final long DEFAULT_MEMORY_BUDGET = 4L * 1024 * 1024;
+
+	/** The Constant DEFAULT_MAX_DATAGRAM_SIZE. */
+	public static final int DEFAULT_MAX_DATAGRAM_SIZE = 65535;
+
+	/** The Constant DEFAULT_TIMEOUT_MILLI. */
+	public static final long DEFAULT_TIMEOUT_MILLI = 30_000;
+
+	/** The Constant TIMER_TICK_MILLI. */
+	private static final long TIMER_TICK_MILLI = 10;
+
+	/** The arena. */
+	private final Arena arena = Arena.ofShared();
+
+	/** The eviction policy. */
+	private final IpfEvictionPolicy policy;
+
+	/** The statistics. */
+	private final IpfStatistics stats;
+
+	/** The table. */
+	private final IpfTable table;
+
+	/** The pool. */
+	private final IpfBufferPool pool;
+
+	/** The datagrams. */
+	private final IpfDatagram[] datagrams;
+
+	/** The expiration timers. */
+	private final IpfTimerWheel timers;
+
+	/** The datagrams in order of age, used for eviction. */
+	private final IpfAgeList ageList;
+
+	/** The timeout. */
+	private long timeoutMilli = DEFAULT_TIMEOUT_MILLI;
+
+	/** The timeout action. */
+	private Consumer<IpfReassembly> timeoutAction;
+
+	/** The expire handler. */
+	private final IntConsumer expireHandler = this::expireDatagram;
+
+	/** The timeout descriptor buffer. */
+	private final ByteBuffer timeoutBuffer = ByteBuffer
+			.allocateDirect(DESC_IPF_REASSEMBLY_BYTE_SIZE)
+			.order(ByteOrder.nativeOrder());
+
+	/** The timeout descriptor. */
+	private final IpfReassembly timeoutReassembly = new IpfReassembly(timeoutBuffer);
+
+	/** The fragment dissector. */
+	private final IpfFragDissector dissector = new IpfFragDissector();
+
+	/** The fragment descriptor buffer. */
+	private final ByteBuffer fragBuffer = ByteBuffer
+			.allocateDirect(DESC_IPF_FRAG_BYTE_SIZE)
+			.order(ByteOrder.nativeOrder());
+
+	/** The fragment descriptor. */
+	private final IpfFragment fragment = new IpfFragment(fragBuffer);
+
+	/** The reassembly descriptor buffer. */
+	private final ByteBuffer reassemblyBuffer = ByteBuffer
+			.allocateDirect(DESC_IPF_REASSEMBLY_BYTE_SIZE)
+			.order(ByteOrder.nativeOrder());
+
+	/** The reassembly descriptor. */
+	private final IpfReassembly reassembly = new IpfReassembly();
+
+	/** The reassembled datagram descriptor. */
+	private final IpfBuffer ipfBuffer = new IpfBuffer();
+
+	/** The reassembled frame dissector, a max size datagram and its link headers exceed 64KB. */
+	private final PacketDissector frameDissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2)
+			.enableLargeFrames(true);
+
+	/** The reassembled frame descriptor buffer. */
+	private final ByteBuffer frameDescriptorBuffer = ByteBuffer
+			.allocateDirect(DESC_TYPE2_EXT_BYTE_SIZE_MAX)
+			.order(ByteOrder.nativeOrder());
+
+	/** The reassembled frame descriptor. */
+	private final Type2Descriptor frameDescriptor = new Type2Descriptor();
+
+	/** The reassembled frame of the last completed datagram. */
+	private ByteBuffer completedFrame;
+
+	/** Offset of the fragmented IP payload within the completed frame. */
+	private int completedPayloadOffset;
+
+	/** The tracking descriptor buffer. */
+	private final ByteBuffer trackingBuffer = ByteBuffer
+			.allocateDirect(DESC_IPF_TRACKING_BYTE_SIZE)
+			.order(ByteOrder.nativeOrder());
+
+	/** The tracking descriptor. */
+	private final IpfTracking tracking = new IpfTracking();
+
+	/** The tracking index, or null if not indexing. */
+	private IpfTrackingIndex trackingIndex;
+
+	/** The tracked flag, true if the last fragment was written to the tracking buffer. */
+	private boolean tracked;
+
+	/** The index of last completed datagram, released on the next call. */
+	private int completed = IpfBufferPool.NO_BUFFER;
+
+	/**
+	 * Instantiates a new ipf reassembler with default settings.
+	 */
+	public IpfReassembler() {
+		this(DEFAULT_MEMORY_BUDGET, DEFAULT_MAX_DATAGRAM_SIZE, IpfEvictionPolicy.OLDEST_FIRST);
+	}
+
+	/**
+	 * Instantiates a new ipf reassembler.
+	 *
+	 * @param memoryBudget    the max number of bytes used by reassembly buffers
+	 * @param maxDatagramSize the max size of a reassembled datagram, excluding the
+	 *                        IP header
+	 * @param policy          the policy applied when the memory budget is
+	 *                        exhausted
+	 */
+	public IpfReassembler(long memoryBudget, int maxDatagramSize, IpfEvictionPolicy policy) {
+		final int bufferSize = IpfDatagram.HEADER_RESERVE + maxDatagramSize;
+		final long maxDatagrams = memoryBudget / bufferSize;
+
+		if ((maxDatagrams < 1) || (maxDatagrams > (1 << 24)))
+			throw new IllegalArgumentException("memory budget %d bytes invalid for datagram size %d"
+					.formatted(memoryBudget, maxDatagramSize));
+
+		final int count = (int) maxDatagrams;
+
+		this.policy = policy;
+		this.stats = new IpfStatistics(count * (long) bufferSize);
+		this.table = new IpfTable(count * 2, arena);
+		this.pool = new IpfBufferPool(count, bufferSize, arena);
+		this.datagrams = new IpfDatagram[count];
+		this.timers = new IpfTimerWheel(count, TIMER_TICK_MILLI);
+		this.ageList = new IpfAgeList(count);
+
+		for (int i = 0; i < count; i++)
+			datagrams[i] = new IpfDatagram(i, pool.buffer(i));
+	}
+
+	/**
+	 * Allocate a new datagram, applying the eviction policy if the memory budget
+	 * is exhausted.
+	 *
+	 * @return the datagram index or {@link IpfBufferPool#NO_BUFFER}
+	 */
+	private int allocate() {
+		int index = pool.allocate();
+
+		if ((index == IpfBufferPool.NO_BUFFER) && (policy != IpfEvictionPolicy.DROP_NEW)) {
+			final int victim = ageList.oldest();
+
+			if (victim != IpfAgeList.NONE) {
+				retire(datagrams[victim]);
+				release(victim);
+				stats.evictions++;
+
+				index = pool.allocate();
+			}
+		}
+
+		if (index != IpfBufferPool.NO_BUFFER)
+			stats.allocated(pool.bufferSize());
+
+		return index;
+	}
+
+	/**
+	 * Close the reassembler, releasing all of its memory. Any reassembled datagram
+	 * still referenced by a descriptor becomes invalid.
+	 *
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		arena.close();
+	}
+
+	/**
+	 * Number of datagrams currently being reassembled.
+	 *
+	 * @return the int
+	 */
+	public int activeCount() {
+		return table.size();
+	}
+
+	/**
+	 * Drop a datagram, releasing all of its resources.
+	 *
+	 * @param dgram the datagram
+	 */
+	private void drop(IpfDatagram dgram) {
+		retire(dgram);
+		release(dgram.index());
+		stats.drops++;
+	}
+
+	/**
+	 * Expire all incomplete datagrams whose timeout has elapsed at the given time.
+	 * Expiry is also performed automatically as packets are reassembled.
+	 *
+	 * @param timestamp     the current time
+	 * @param timestampUnit the timestamp unit
+	 * @return number of datagrams expired
+	 */
+	public int expire(long timestamp, TimestampUnit timestampUnit) {
+		return timers.advance(TimestampUnit.EPOCH_MILLI.convert(timestamp, timestampUnit), expireHandler);
+	}
+
+	/**
+	 * Expire all incomplete datagrams immediately, for example at the end of a
+	 * capture.
+	 *
+	 * @return number of datagrams expired
+	 */
+	public int expireAll() {
+		int count = 0;
+
+		for (IpfDatagram dgram : datagrams) {
+			if (timers.isScheduled(dgram.index())) {
+				expireDatagram(dgram.index());
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Expire a datagram, reporting it to the timeout action.
+	 *
+	 * @param index the datagram index
+	 */
+	private void expireDatagram(int index) {
+		IpfDatagram dgram = datagrams[index];
+
+		if (timeoutAction != null) {
+			writeReassembly(dgram, false, dgram.receivedBytes(), timeoutBuffer);
+			timeoutAction.accept(timeoutReassembly);
+		}
+
+		retire(dgram);
+		release(index);
+		stats.timeouts++;
+	}
+
+	/**
+	 * Process a packet, which if it is an IP fragment, is added to its datagram.
+	 *
+	 * @param packet the packet
+	 * @return true, if the packet completed the reassembly of a datagram
+	 */
+	public boolean reassemble(Packet packet) {
+		PacketDescriptor desc = packet.descriptor();
+
+		dissector.reset();
+		if (dissector.dissectPacket(packet.buffer().duplicate(),
+				desc.timestamp(),
+				desc.captureLength(),
+				desc.wireLength()) == 0)
+			return false;
+
+		dissector.writeDescriptor(fragBuffer.clear());
+		fragBuffer.clear();
+
+		return reassemble(packet.buffer(), fragment, desc);
+	}
+
+	/**
+	 * Process an IP fragment which has already been dissected.
+	 *
+	 * @param packet   the packet data, starting at offset 0
+	 * @param fragment the fragment descriptor of the packet
+	 * @param desc     the packet descriptor, to which reassembly descriptors are
+	 *                 added once reassembly completes
+	 * @return true, if the packet completed the reassembly of a datagram
+	 */
+	public boolean reassemble(ByteBuffer packet, IpfFragment fragment, PacketDescriptor desc) {
+		ByteBuffer datagram = reassemble(packet, fragment, desc.timestamp(), desc.timestampUnit(), desc.frameNo());
+
+		/* Unbind all first, since unbinding a descriptor also unbinds its old chain */
+		tracking.unbind();
+		frameDescriptor.unbind();
+		ipfBuffer.unbind();
+		reassembly.unbind();
+
+		if (tracked) {
+			tracking.bind(trackingBuffer);
+			tracking.setFrameIndex(trackingIndex);
+
+			desc.addDescriptor(tracking);
+		}
+
+		if (datagram == null)
+			return false;
+
+		final int frameLength = completedFrame.remaining();
+
+		frameDissector.reset();
+		frameDissector.dissectPacket(completedFrame.duplicate(), desc.timestamp(), frameLength, frameLength);
+		frameDissector.writeDescriptor(frameDescriptorBuffer.clear());
+		frameDescriptorBuffer.clear();
+
+		frameDescriptor.bind(frameDescriptorBuffer);
+		frameDescriptor.timestampUnit(desc.timestampUnit());
+		frameDescriptor.frameNo(desc.frameNo());
+
+		reassembly.bind(reassemblyBuffer);
+		ipfBuffer.bind(datagram);
+		ipfBuffer.setFrame(completedFrame, frameDescriptor, completedPayloadOffset);
+
+		desc.addDescriptor(frameDescriptor);
+		desc.addDescriptor(ipfBuffer);
+		desc.addDescriptor(reassembly);
+
+		return true;
+	}
+
+	/**
+	 * Process an IP fragment which has already been dissected. When a datagram is
+	 * completed, its reassembly descriptor is written to the
+	 * {@link #reassemblyBuffer()}. If the fragment was accepted, its tracking
+	 * descriptor is written to the {@link #trackingBuffer()}.
+	 *
+	 * @param packet        the packet data, starting at offset 0
+	 * @param fragment      the fragment descriptor of the packet
+	 * @param timestamp     the packet timestamp
+	 * @param timestampUnit the timestamp unit
+	 * @param frameNo       the packet frame number
+	 * @return the reassembled datagram, or null if no datagram was completed
+	 */
+	ByteBuffer reassemble(ByteBuffer packet, IpfFragment fragment, long timestamp, TimestampUnit timestampUnit,
+			long frameNo) {
+		if (completed != IpfBufferPool.NO_BUFFER) {
+			release(completed);
+			completed = IpfBufferPool.NO_BUFFER;
+		}
+
+		tracked = false;
+
+		timers.advance(TimestampUnit.EPOCH_MILLI.convert(timestamp, timestampUnit), expireHandler);
+
+		if (!fragment.isFrag())
+			return null;
+
+		stats.fragments++;
+
+		ByteBuffer key = fragment.keyBuffer();
+		int hash = IpfTable.hash(key);
+		int index = table.get(key, hash);
+
+		IpfDatagram dgram;
+		if (index == IpfTable.NOT_FOUND) {
+			index = allocate();
+			if (index == IpfBufferPool.NO_BUFFER) {
+				stats.drops++;
+				return null;
+			}
+
+			if (!table.put(key, hash, index)) {
+				release(index);
+				stats.drops++;
+				return null;
+			}
+
+			dgram = datagrams[index];
+			dgram.open(fragment, hash, timestamp, timestampUnit);
+			timers.schedule(index, dgram.firstMilli() + timeoutMilli);
+			ageList.add(index);
+
+			if (trackingIndex != null)
+				dgram.setTrackingId(trackingIndex.open());
+
+		} else {
+			dgram = datagrams[index];
+
+			if (policy == IpfEvictionPolicy.LEAST_RECENTLY_USED)
+				ageList.touch(index);
+		}
+
+		int status = dgram.addFragment(packet, fragment, frameNo, timestamp);
+		if (status == IpfDatagram.FRAG_OVERSIZE) {
+			stats.oversized++;
+			drop(dgram);
+			return null;
+		}
+
+		if (status == IpfDatagram.FRAG_TRUNCATED) {
+			stats.truncated++;
+			drop(dgram);
+			return null;
+		}
+
+		if (status == IpfDatagram.FRAG_DROP) {
+			drop(dgram);
+			return null;
+		}
+
+		final boolean complete = (status == IpfDatagram.FRAG_OK) && dgram.isComplete();
+
+		if (dgram.trackingId() != IpfTrackingIndex.NO_ID)
+			trackingIndex.add(dgram.trackingId(), frameNo);
+
+		writeTracking(dgram, complete, trackingBuffer.clear());
+		tracked = true;
+
+		if (!complete)
+			return null;
+
+		ByteBuffer datagram = dgram.finish();
+		completedFrame = dgram.frame();
+		completedPayloadOffset = dgram.framePayloadOffset();
+		retire(dgram);
+		completed = dgram.index();
+		stats.reassembled++;
+
+		writeReassembly(dgram, true, datagram.limit(), reassemblyBuffer.clear());
+
+		return datagram;
+	}
+
+	/**
+	 * The reassembly descriptor buffer of the last completed datagram.
+	 *
+	 * @return the byte buffer
+	 */
+	ByteBuffer reassemblyBuffer() {
+		return reassemblyBuffer;
+	}
+
+	/**
+	 * Release a datagram buffer back to the pool.
+	 *
+	 * @param index the datagram index
+	 */
+	private void release(int index) {
+		pool.release(index);
+		stats.released(pool.bufferSize());
+	}
+
+	/**
+	 * Retire a datagram, removing it from lookup, expiry and eviction tracking.
+	 * The datagram buffer remains allocated until released.
+	 *
+	 * @param dgram the datagram
+	 */
+	private void retire(IpfDatagram dgram) {
+		timers.cancel(dgram.index());
+		table.remove(dgram.key(), dgram.hash());
+		ageList.remove(dgram.index());
+	}
+
+	/**
+	 * Sets the tracking index, in which the frame numbers of all fragments of
+	 * datagrams started after this call are recorded. The index is not closed by
+	 * this reassembler.
+	 *
+	 * @param index the tracking index, or null to stop indexing
+	 * @return this reassembler
+	 */
+	public IpfReassembler setTrackingIndex(IpfTrackingIndex index) {
+		this.trackingIndex = index;
+
+		return this;
+	}
+
+	/**
+	 * Sets the action invoked for each incomplete datagram which expires. The
+	 * descriptor passed to the action is only valid for the duration of the call.
+	 *
+	 * @param action the timeout action, or null to silently drop expired datagrams
+	 * @return this reassembler
+	 */
+	public IpfReassembler setTimeoutAction(Consumer<IpfReassembly> action) {
+		this.timeoutAction = action;
+
+		return this;
+	}
+
+	/**
+	 * Sets the reassembly timeout, measured from the first fragment of a datagram.
+	 * The new timeout applies to datagrams started after this call.
+	 *
+	 * @param timeout the timeout
+	 * @param unit    the unit
+	 * @return this reassembler
+	 */
+	public IpfReassembler setTimeout(long timeout, TimeUnit unit) {
+		if (timeout <= 0)
+			throw new IllegalArgumentException("invalid timeout " + timeout);
+
+		this.timeoutMilli = unit.toMillis(timeout);
+
+		return this;
+	}
+
+	/**
+	 * Reassembly counters and memory pressure metrics.
+	 *
+	 * @return the live statistics of this reassembler
+	 */
+	public IpfStatistics statistics() {
+		return stats;
+	}
+
+	/**
+	 * The tracking descriptor buffer of the last accepted fragment.
+	 *
+	 * @return the byte buffer
+	 */
+	ByteBuffer trackingBuffer() {
+		return trackingBuffer;
+	}
+
+	/**
+	 * Write the tracking descriptor of a fragment, a snapshot of its datagram's
+	 * state after the fragment was added.
+	 *
+	 * @param dgram    the datagram
+	 * @param complete true if the fragment completed the datagram
+	 * @param buffer   the descriptor buffer
+	 */
+	private void writeTracking(IpfDatagram dgram, boolean complete, ByteBuffer buffer) {
+		final int count = dgram.fragmentCount();
+		final int holeBytes = complete ? 0 : dgram.holeBytes();
+
+		IpfTrackingLayout.FLAGS.setInt(0, buffer);
+		IpfTrackingLayout.IP_IS_REASSEMBLED.setInt(complete ? 1 : 0, buffer);
+		IpfTrackingLayout.IP_IS_COMPLETE.setInt(complete ? 1 : 0, buffer);
+		IpfTrackingLayout.IP_IS_HOLE.setInt((holeBytes > 0) ? 1 : 0, buffer);
+		IpfTrackingLayout.IP_IS_OVERLAP.setInt((dgram.overlapBytes() > 0) ? 1 : 0, buffer);
+		IpfTrackingLayout.IP_IS_TABLE_TRUNCATED.setInt(dgram.isTableTruncated() ? 1 : 0, buffer);
+		IpfTrackingLayout.TABLE_SIZE.setInt(count, buffer);
+		IpfTrackingLayout.DATAGRAM_ID.setInt(dgram.trackingId(), buffer);
+		IpfTrackingLayout.REASSEMBLED_BYTES.setInt(dgram.receivedBytes(), buffer);
+		IpfTrackingLayout.HOLE_BYTES.setInt(holeBytes, buffer);
+		IpfTrackingLayout.OVERLAP_BYTES.setInt(dgram.overlapBytes(), buffer);
+		IpfTrackingLayout.REASSEMBLED_MILLI.setLong(dgram.durationMilli(), buffer);
+
+		for (int i = 0; i < count; i++) {
+			IpfTrackingLayout.FRAG_PKT_INDEX.setLong(dgram.fragmentFrameNo(i), buffer, i);
+			IpfTrackingLayout.FRAG_OFFSET.setInt(dgram.fragmentOffset(i), buffer, i);
+			IpfTrackingLayout.FRAG_LENGTH.setInt(dgram.fragmentLength(i), buffer, i);
+		}
+	}
+
+	/**
+	 * Write the reassembly descriptor of a completed or expired datagram.
+	 *
+	 * @param dgram            the datagram
+	 * @param complete         true if reassembly completed, false if it expired
+	 * @param reassembledBytes the reassembled bytes
+	 * @param buffer           the descriptor buffer
+	 */
+	private void writeReassembly(IpfDatagram dgram, boolean complete, int reassembledBytes, ByteBuffer buffer) {
+		final int count = dgram.fragmentCount();
+		final int holeBytes = complete ? 0 : dgram.holeBytes();
+
+		IpfReassemblyLayout.FLAGS.setInt(0, buffer);
+		IpfReassemblyLayout.IP_TYPE.setInt(dgram.isIp4() ? 1 : 0, buffer);
+		IpfReassemblyLayout.IP_IS_REASSEMBLED.setInt(complete ? 1 : 0, buffer);
+		IpfReassemblyLayout.IP_IS_COMPLETE.setInt(complete ? 1 : 0, buffer);
+		IpfReassemblyLayout.IP_IS_TIMEOUT.setInt(complete ? 0 : 1, buffer);
+		IpfReassemblyLayout.IP_IS_HOLE.setInt((holeBytes > 0) ? 1 : 0, buffer);
+		IpfReassemblyLayout.IP_IS_OVERLAP.setInt((dgram.overlapBytes() > 0) ? 1 : 0, buffer);
+		IpfReassemblyLayout.IP_IS_TABLE_TRUNCATED.setInt(dgram.isTableTruncated() ? 1 : 0, buffer);
+		IpfReassemblyLayout.TABLE_SIZE.setInt(count, buffer);
+		IpfReassemblyLayout.REASSEMBLED_BYTES.setInt(reassembledBytes, buffer);
+		IpfReassemblyLayout.HOLE_BYTES.setInt(holeBytes, buffer);
+		IpfReassemblyLayout.OVERLAP_BYTES.setInt(dgram.overlapBytes(), buffer);
+		IpfReassemblyLayout.REASSEMBLED_MILLI.setInt((int) dgram.durationMilli(), buffer);
+
+		for (int i = 0; i < count; i++) {
+			IpfReassemblyLayout.FRAG_PKT_INDEX.setLong(dgram.fragmentFrameNo(i), buffer, i);
+			IpfReassemblyLayout.FRAG_OFFSET.setInt(dgram.fragmentOffset(i), buffer, i);
+			IpfReassemblyLayout.FRAG_LENGTH.setInt(dgram.fragmentLength(i), buffer, i);
+			IpfReassemblyLayout.FRAG_OVERLAY_BYTES.setInt(dgram.fragmentOverlayBytes(i), buffer, i);
+		}
+	}
+}
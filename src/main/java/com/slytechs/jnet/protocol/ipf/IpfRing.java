@@ -0,0 +1,324 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.slytechs.jnet.jnetruntime.time.TimestampUnit;
+
+/**
+ * A bounded, lock-free, multi-producer single-consumer ring of fixed size
+ * slots. Each slot holds a direct data buffer, a direct descriptor buffer and
+ * a few packet attributes. All slot memory is carved out of a single off-heap
+ * segment allocated up front, so handing data off through the ring never
+ * allocates.
+ * <p>
+ * A producer {@link #claim() claims} a slot, fills it in and then
+ * {@link #publish(int) publishes} it. The consumer {@link #peek() peeks} at
+ * the oldest published slot, reads it and {@link #consume(int) consumes} it,
+ * returning the slot to producers. Slot ownership is handed over using a
+ * per-slot sequence number, as in D. Vyukov's bounded queue, so slot contents
+ * written before publishing are visible to the consumer and vice versa.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class IpfRing {
+
+	/** Value returned when no slot is available. */
+	static final int NO_SLOT = -1;
+
+	/** The mask. */
+	private final int mask;
+
+	/** The slot sequence numbers. */
+	private final AtomicLongArray sequence;
+
+	/** The next position to claim, shared by producers. */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** The next position to consume, owned by the consumer. */
+	private long head;
+
+	/** The max data length of each slot. */
+	private final int dataSize;
+
+	/** The slot data buffers. */
+	private final ByteBuffer[] data;
+
+	/** The slot descriptor buffers. */
+	private final ByteBuffer[] descriptor;
+
+	/** The slot data lengths. */
+	private final int[] length;
+
+	/** The slot timestamps. */
+	private final long[] timestamp;
+
+	/** The slot timestamp units. */
+	private final TimestampUnit[] timestampUnit;
+
+	/** The slot frame numbers. */
+	private final long[] frameNo;
+
+	/** The slot tags, free for use by the producer. */
+	private final int[] tag;
+
+	/**
+	 * Instantiates a new ipf ring.
+	 *
+	 * @param capacity       number of slots, rounded up to a power of 2
+	 * @param dataSize       the size of each slot's data buffer in bytes
+	 * @param descriptorSize the size of each slot's descriptor buffer in bytes
+	 * @param arena          the arena from which ring memory is allocated
+	 */
+	IpfRing(int capacity, int dataSize, int descriptorSize, Arena arena) {
+		if ((capacity <= 0) || (capacity > (1 << 24)) || (dataSize <= 0) || (descriptorSize < 0))
+			throw new IllegalArgumentException("invalid ring size %d x %d bytes"
+					.formatted(capacity, dataSize));
+
+		final int slots = slotCount(capacity);
+		final long stride = align(dataSize) + align(descriptorSize);
+
+		MemorySegment segment = arena.allocate(slots * stride, Long.BYTES);
+
+		this.mask = slots - 1;
+		this.dataSize = dataSize;
+		this.sequence = new AtomicLongArray(slots);
+		this.data = new ByteBuffer[slots];
+		this.descriptor = new ByteBuffer[slots];
+		this.length = new int[slots];
+		this.timestamp = new long[slots];
+		this.timestampUnit = new TimestampUnit[slots];
+		this.frameNo = new long[slots];
+		this.tag = new int[slots];
+
+		for (int i = 0; i < slots; i++) {
+			final long base = i * stride;
+
+			data[i] = segment.asSlice(base, dataSize).asByteBuffer();
+			descriptor[i] = segment.asSlice(base + align(dataSize), descriptorSize)
+					.asByteBuffer()
+					.order(ByteOrder.nativeOrder());
+
+			sequence.set(i, i);
+		}
+	}
+
+	/**
+	 * Memory used by a ring.
+	 *
+	 * @param capacity       number of slots, rounded up to a power of 2
+	 * @param dataSize       the size of each slot's data buffer in bytes
+	 * @param descriptorSize the size of each slot's descriptor buffer in bytes
+	 * @return the size in bytes
+	 */
+	static long byteSize(int capacity, int dataSize, int descriptorSize) {
+		return slotCount(capacity) * (align(dataSize) + align(descriptorSize));
+	}
+
+	/**
+	 * Number of slots for a capacity, rounded up to a power of 2.
+	 *
+	 * @param capacity the capacity
+	 * @return the int
+	 */
+	private static int slotCount(int capacity) {
+		return (Integer.bitCount(capacity) == 1) ? capacity : Integer.highestOneBit(capacity) << 1;
+	}
+
+	/**
+	 * Align to 8 bytes.
+	 *
+	 * @param size the size
+	 * @return the aligned size
+	 */
+	private static long align(int size) {
+		return (size + 7L) & ~7L;
+	}
+
+	/**
+	 * Number of slots.
+	 *
+	 * @return the int
+	 */
+	int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * Claims a free slot, called by any producer.
+	 *
+	 * @return the slot or {@link #NO_SLOT} if the ring is full
+	 */
+	int claim() {
+		long pos = tail.get();
+
+		for (;;) {
+			final int slot = (int) pos & mask;
+			final long diff = sequence.get(slot) - pos;
+
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1))
+					return slot;
+
+				pos = tail.get();
+
+			} else if (diff < 0) {
+				return NO_SLOT;
+
+			} else {
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Publishes a claimed slot to the consumer.
+	 *
+	 * @param slot the slot
+	 */
+	void publish(int slot) {
+		sequence.setRelease(slot, sequence.getPlain(slot) + 1);
+	}
+
+	/**
+	 * The oldest published slot, called by the consumer only.
+	 *
+	 * @return the slot or {@link #NO_SLOT} if the ring is empty
+	 */
+	int peek() {
+		final int slot = (int) head & mask;
+
+		return (sequence.getAcquire(slot) == (head + 1)) ? slot : NO_SLOT;
+	}
+
+	/**
+	 * Consumes the slot returned by {@link #peek()}, returning it to producers.
+	 *
+	 * @param slot the slot
+	 */
+	void consume(int slot) {
+		sequence.setRelease(slot, head + mask + 1);
+		head++;
+	}
+
+	/**
+	 * Checks if no slots are published, called by the consumer only.
+	 *
+	 * @return true, if is empty
+	 */
+	boolean isEmpty() {
+		return peek() == NO_SLOT;
+	}
+
+	/**
+	 * The data buffer of a slot, with its limit set to the slot's data length.
+	 * Producers must {@link #set} the slot's attributes first.
+	 *
+	 * @param slot the slot
+	 * @return the byte buffer
+	 */
+	ByteBuffer data(int slot) {
+		return data[slot].limit(length[slot]).position(0);
+	}
+
+	/**
+	 * Max data length of each slot.
+	 *
+	 * @return the int
+	 */
+	int dataSize() {
+		return dataSize;
+	}
+
+	/**
+	 * The descriptor buffer of a slot.
+	 *
+	 * @param slot the slot
+	 * @return the byte buffer
+	 */
+	ByteBuffer descriptor(int slot) {
+		return descriptor[slot].clear();
+	}
+
+	/**
+	 * Frame no.
+	 *
+	 * @param slot the slot
+	 * @return the long
+	 */
+	long frameNo(int slot) {
+		return frameNo[slot];
+	}
+
+	/**
+	 * Sets the packet attributes of a slot. The data length must not exceed
+	 * {@link #dataSize()}.
+	 *
+	 * @param slot          the slot
+	 * @param length        the data length
+	 * @param timestamp     the timestamp
+	 * @param timestampUnit the timestamp unit
+	 * @param frameNo       the frame number
+	 * @param tag           the tag
+	 */
+	void set(int slot, int length, long timestamp, TimestampUnit timestampUnit, long frameNo, int tag) {
+		this.length[slot] = length;
+		this.timestamp[slot] = timestamp;
+		this.timestampUnit[slot] = timestampUnit;
+		this.frameNo[slot] = frameNo;
+		this.tag[slot] = tag;
+	}
+
+	/**
+	 * Tag.
+	 *
+	 * @param slot the slot
+	 * @return the int
+	 */
+	int tag(int slot) {
+		return tag[slot];
+	}
+
+	/**
+	 * Timestamp.
+	 *
+	 * @param slot the slot
+	 * @return the long
+	 */
+	long timestamp(int slot) {
+		return timestamp[slot];
+	}
+
+	/**
+	 * Timestamp unit.
+	 *
+	 * @param slot the slot
+	 * @return the timestamp unit
+	 */
+	TimestampUnit timestampUnit(int slot) {
+		return timestampUnit[slot];
+	}
+}
@@ -0,0 +1,578 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
+
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+
+import com.slytechs.jnet.protocol.Packet;
+import com.slytechs.jnet.protocol.descriptor.IpfBuffer;
+import com.slytechs.jnet.protocol.descriptor.IpfFragDissector;
+import com.slytechs.jnet.protocol.descriptor.IpfFragment;
+import com.slytechs.jnet.protocol.descriptor.IpfReassembly;
+import com.slytechs.jnet.protocol.descriptor.PacketDescriptor;
+
+/**
+ * A multi-threaded IP fragment reassembler. Reassembly is partitioned into
+ * shards by the hash of each fragment's key, so that all fragments of a
+ * datagram are always reassembled by the same shard. Each shard is owned by a
+ * single worker thread and runs its own {@link IpfReassembler}, so no locks are
+ * taken on the reassembly path.
+ * <p>
+ * Each dissector thread obtains its own {@link Output} using
+ * {@link #newOutput()} and submits packets through it. Fragments are copied
+ * into a slot of the owning shard's bounded, lock-free, multi-producer
+ * single-consumer ring. When the ring is full, the fragment is rejected and
+ * counted as a drop, so a flood of fragments can not grow memory use.
+ * Completed datagrams are copied into a slot of a similar ring of the output
+ * which submitted the final fragment, and retrieved from it as an
+ * {@link IpfReassembly} descriptor chained to an {@link IpfBuffer} descriptor.
+ * </p>
+ * <p>
+ * All ring slots are direct buffers allocated up front, so neither hand-off
+ * allocates. Shard rings are carved out of the memory budget, the remainder of
+ * which is divided evenly between the shard reassemblers. Each output
+ * additionally reserves room for {@link #DEFAULT_COMPLETION_CAPACITY} datagrams
+ * of the max datagram size.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class IpfShardedReassembler implements AutoCloseable {
+
+	/**
+	 * Per dissector thread context, used to submit fragments and receive
+	 * completed datagrams. An output must only be used by a single thread.
+	 */
+	public final class Output {
+
+		/** The fragment dissector. */
+		private final IpfFragDissector dissector = new IpfFragDissector();
+
+		/** The fragment descriptor buffer. */
+		private final ByteBuffer fragBuffer = ByteBuffer
+				.allocate(DESC_IPF_FRAG_BYTE_SIZE)
+				.order(ByteOrder.nativeOrder());
+
+		/** The fragment descriptor. */
+		private final IpfFragment fragment = new IpfFragment(fragBuffer);
+
+		/** The output ID, used by shards to find the output. */
+		private final int id;
+
+		/** The completed datagrams. */
+		private final IpfRing completed;
+
+		/** The reassembly descriptor, rebound on each poll. */
+		private final IpfReassembly reassembly = new IpfReassembly();
+
+		/** The datagram descriptor, rebound on each poll. */
+		private final IpfBuffer ipfBuffer = new IpfBuffer();
+
+		/** The slot of the last polled datagram, released on the next poll. */
+		private int polled = IpfRing.NO_SLOT;
+
+		/**
+		 * Instantiates a new output.
+		 *
+		 * @param id the output ID
+		 */
+		private Output(int id) {
+			this.id = id;
+			this.completed = new IpfRing(DEFAULT_COMPLETION_CAPACITY, datagramSize,
+					DESC_IPF_REASSEMBLY_BYTE_SIZE, arena);
+		}
+
+		/**
+		 * Retrieves the next completed datagram. The reassembled datagram is
+		 * available through the {@link IpfBuffer} descriptor chained to the
+		 * returned reassembly descriptor. The returned descriptors and datagram are
+		 * only valid until the next call to this method.
+		 *
+		 * @return the reassembly descriptor, or null if none are available
+		 */
+		public IpfReassembly poll() {
+			/* Unbinding the reassembly also unbinds its chained ipf buffer */
+			reassembly.unbind();
+
+			if (polled != IpfRing.NO_SLOT) {
+				completed.consume(polled);
+				polled = IpfRing.NO_SLOT;
+			}
+
+			final int slot = completed.peek();
+			if (slot == IpfRing.NO_SLOT)
+				return null;
+
+			polled = slot;
+
+			reassembly.bind(completed.descriptor(slot));
+			ipfBuffer.bind(completed.data(slot));
+			reassembly.addDescriptor(ipfBuffer);
+
+			return reassembly;
+		}
+
+		/**
+		 * Submit a packet for reassembly. Packets which are not IP fragments are
+		 * ignored.
+		 *
+		 * @param packet the packet
+		 * @return true, if the packet was an IP fragment and was accepted by its
+		 *         shard, false if it was not a fragment or the shard's ring was full
+		 */
+		public boolean submit(Packet packet) {
+			PacketDescriptor desc = packet.descriptor();
+
+			dissector.reset();
+			if (dissector.dissectPacket(packet.buffer().duplicate(),
+					desc.timestamp(),
+					desc.captureLength(),
+					desc.wireLength()) == 0)
+				return false;
+
+			dissector.writeDescriptor(fragBuffer.clear());
+			fragBuffer.clear();
+
+			final Shard shard = shards[shardIndexOf(IpfTable.hash(fragment.keyBuffer()))];
+			final IpfRing queue = shard.queue;
+			final int caplen = desc.captureLength();
+
+			final int slot = (caplen <= queue.dataSize()) ? queue.claim() : IpfRing.NO_SLOT;
+			if (slot == IpfRing.NO_SLOT) {
+				rejected.increment();
+
+				return false;
+			}
+
+			queue.set(slot, caplen, desc.timestamp(), desc.timestampUnit(), desc.frameNo(), id);
+			queue.data(slot).put(0, packet.buffer(), 0, caplen);
+			queue.descriptor(slot).put(0, fragBuffer, 0, DESC_IPF_FRAG_BYTE_SIZE);
+			queue.publish(slot);
+
+			if (shard.parked)
+				LockSupport.unpark(shard.thread);
+
+			return true;
+		}
+	}
+
+	/**
+	 * A reassembly shard, owned by a single worker thread.
+	 */
+	private final class Shard implements Runnable {
+
+		/** The shard index. */
+		private final int index;
+
+		/** The reassembler. */
+		private final IpfReassembler reassembler;
+
+		/** The hand-off ring. */
+		private final IpfRing queue;
+
+		/** The fragment descriptor, rebound for each fragment. */
+		private final IpfFragment fragment = new IpfFragment();
+
+		/** The statistics published by the worker thread. */
+		private final IpfStatistics published;
+
+		/** Guards the published statistics. */
+		private final StampedLock publishLock = new StampedLock();
+
+		/** The parked flag, set while the worker waits for fragments. */
+		private volatile boolean parked;
+
+		/** The worker thread. */
+		private final Thread thread;
+
+		/**
+		 * Instantiates a new shard.
+		 *
+		 * @param index       the shard index
+		 * @param reassembler the reassembler
+		 * @param queue       the hand-off ring
+		 */
+		Shard(int index, IpfReassembler reassembler, IpfRing queue) {
+			this.index = index;
+			this.reassembler = reassembler;
+			this.queue = queue;
+			this.published = new IpfStatistics(reassembler.statistics().memoryBudget());
+			this.thread = new Thread(this, "ipf-shard-" + index);
+			this.thread.setDaemon(true);
+		}
+
+		/**
+		 * Reassemble a single fragment, handing off the completed datagram if any.
+		 *
+		 * @param slot the ring slot holding the fragment
+		 */
+		private void process(int slot) {
+			fragment.unbind();
+			fragment.bind(queue.descriptor(slot));
+
+			ByteBuffer datagram = reassembler.reassemble(
+					queue.data(slot),
+					fragment,
+					queue.timestamp(slot),
+					queue.timestampUnit(slot),
+					queue.frameNo(slot));
+
+			if (datagram == null)
+				return;
+
+			final IpfRing ring = outputs[queue.tag(slot)].completed;
+			final int length = datagram.remaining();
+
+			final int out = (length <= ring.dataSize()) ? ring.claim() : IpfRing.NO_SLOT;
+			if (out == IpfRing.NO_SLOT) {
+				undelivered.increment();
+
+				return;
+			}
+
+			ring.set(out, length, queue.timestamp(slot), queue.timestampUnit(slot), queue.frameNo(slot), index);
+			ring.data(out).put(0, datagram, 0, length);
+			ring.descriptor(out).put(0, reassembler.reassemblyBuffer(), 0, DESC_IPF_REASSEMBLY_BYTE_SIZE);
+			ring.publish(out);
+		}
+
+		/**
+		 * Publishes the reassembler's statistics, called by the worker thread.
+		 */
+		private void publishStatistics() {
+			final long stamp = publishLock.writeLock();
+
+			published.copy(reassembler.statistics());
+
+			publishLock.unlockWrite(stamp);
+		}
+
+		/**
+		 * A consistent copy of the last published statistics.
+		 *
+		 * @return the statistics
+		 */
+		IpfStatistics statistics() {
+			IpfStatistics copy = new IpfStatistics(published.memoryBudget());
+
+			long stamp = publishLock.tryOptimisticRead();
+			copy.copy(published);
+
+			if (!publishLock.validate(stamp)) {
+				stamp = publishLock.readLock();
+				try {
+					copy.copy(published);
+				} finally {
+					publishLock.unlockRead(stamp);
+				}
+			}
+
+			return copy;
+		}
+
+		/**
+		 * Worker thread loop. Statistics are published whenever the ring is
+		 * drained, and periodically while it is not. Fragments which fail to be
+		 * processed are counted as errors and skipped.
+		 *
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			int processed = 0;
+
+			for (;;) {
+				final int slot = queue.peek();
+
+				if (slot == IpfRing.NO_SLOT) {
+					publishStatistics();
+
+					if (!running)
+						break;
+
+					parked = true;
+					if (queue.isEmpty() && running)
+						LockSupport.parkNanos(this, PARK_NANOS);
+					parked = false;
+
+					continue;
+				}
+
+				/* A bad fragment must not stop the worker, nor stall its ring */
+				try {
+					process(slot);
+				} catch (RuntimeException e) {
+					reassembler.statistics().errors++;
+				} finally {
+					queue.consume(slot);
+				}
+
+				if (++processed == PUBLISH_INTERVAL) {
+					publishStatistics();
+					processed = 0;
+				}
+			}
+		}
+	}
+
+	/** The Constant DEFAULT_QUEUE_CAPACITY, fragments per shard. */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/** The Constant DEFAULT_MAX_FRAGMENT_SIZE, the max captured fragment length. */
+	public static final int DEFAULT_MAX_FRAGMENT_SIZE = 2048;
+
+	/** The Constant DEFAULT_COMPLETION_CAPACITY, datagrams per output. */
+	public static final int DEFAULT_COMPLETION_CAPACITY = 16;
+
+	/** Max time a worker waits before checking its ring again. */
+	private static final long PARK_NANOS = 100_000;
+
+	/** Number of fragments processed between statistics updates. */
+	private static final int PUBLISH_INTERVAL = 1024;
+
+	/** The arena, holding all ring memory. */
+	private final Arena arena = Arena.ofShared();
+
+	/** The shards. */
+	private final Shard[] shards;
+
+	/** The max size of a reassembled datagram, including its IP header. */
+	private final int datagramSize;
+
+	/** The outputs, indexed by output ID. */
+	private volatile Output[] outputs = new Output[0];
+
+	/** The fragments rejected because a shard ring was full. */
+	private final LongAdder rejected = new LongAdder();
+
+	/** The completed datagrams dropped because an output ring was full. */
+	private final LongAdder undelivered = new LongAdder();
+
+	/** The running flag. */
+	private volatile boolean running = true;
+
+	/**
+	 * Instantiates a new sharded reassembler, with one shard per available
+	 * processor and default settings.
+	 */
+	public IpfShardedReassembler() {
+		this(Runtime.getRuntime().availableProcessors(),
+				(IpfReassembler.DEFAULT_MEMORY_BUDGET
+						+ IpfRing.byteSize(DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_FRAGMENT_SIZE, DESC_IPF_FRAG_BYTE_SIZE))
+						* Runtime.getRuntime().availableProcessors(),
+				IpfReassembler.DEFAULT_MAX_DATAGRAM_SIZE,
+				IpfEvictionPolicy.OLDEST_FIRST);
+	}
+
+	/**
+	 * Instantiates a new sharded reassembler, with default ring sizes.
+	 *
+	 * @param shardCount      the number of shards and worker threads
+	 * @param memoryBudget    the total memory budget, divided evenly between all
+	 *                        shards
+	 * @param maxDatagramSize the max size of a reassembled datagram, excluding the
+	 *                        IP header
+	 * @param policy          the policy applied when a shard's memory budget is
+	 *                        exhausted
+	 */
+	public IpfShardedReassembler(int shardCount, long memoryBudget, int maxDatagramSize,
+			IpfEvictionPolicy policy) {
+		this(shardCount, memoryBudget, maxDatagramSize, policy, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_FRAGMENT_SIZE,
+				true);
+	}
+
+	/**
+	 * Instantiates a new sharded reassembler.
+	 *
+	 * @param shardCount      the number of shards and worker threads
+	 * @param memoryBudget    the total memory budget, divided evenly between all
+	 *                        shards, including their rings
+	 * @param maxDatagramSize the max size of a reassembled datagram, excluding the
+	 *                        IP header
+	 * @param policy          the policy applied when a shard's memory budget is
+	 *                        exhausted
+	 * @param queueCapacity   the number of fragment slots of each shard's ring,
+	 *                        rounded up to a power of 2
+	 * @param maxFragmentSize the max captured length of a fragment, larger
+	 *                        fragments are rejected
+	 */
+	public IpfShardedReassembler(int shardCount, long memoryBudget, int maxDatagramSize,
+			IpfEvictionPolicy policy, int queueCapacity, int maxFragmentSize) {
+		this(shardCount, memoryBudget, maxDatagramSize, policy, queueCapacity, maxFragmentSize, true);
+	}
+
+	/**
+	 * Instantiates a new sharded reassembler.
+	 *
+	 * @param shardCount      the number of shards and worker threads
+	 * @param memoryBudget    the total memory budget
+	 * @param maxDatagramSize the max size of a reassembled datagram
+	 * @param policy          the eviction policy
+	 * @param queueCapacity   the number of fragment slots of each shard's ring
+	 * @param maxFragmentSize the max captured length of a fragment
+	 * @param start           if false, worker threads are not started until
+	 *                        {@link #start()}
+	 */
+	IpfShardedReassembler(int shardCount, long memoryBudget, int maxDatagramSize,
+			IpfEvictionPolicy policy, int queueCapacity, int maxFragmentSize, boolean start) {
+		if (shardCount <= 0)
+			throw new IllegalArgumentException("invalid shard count " + shardCount);
+
+		final long shardBudget = memoryBudget / shardCount;
+		final long queueBytes = IpfRing.byteSize(queueCapacity, maxFragmentSize, DESC_IPF_FRAG_BYTE_SIZE);
+
+		if (shardBudget <= queueBytes)
+			throw new IllegalArgumentException("memory budget %d bytes too small for %d shard rings of %d bytes"
+					.formatted(memoryBudget, shardCount, queueBytes));
+
+		this.datagramSize = IpfDatagram.HEADER_RESERVE + maxDatagramSize;
+		this.shards = new Shard[shardCount];
+
+		for (int i = 0; i < shardCount; i++)
+			shards[i] = new Shard(i,
+					new IpfReassembler(shardBudget - queueBytes, maxDatagramSize, policy),
+					new IpfRing(queueCapacity, maxFragmentSize, DESC_IPF_FRAG_BYTE_SIZE, arena));
+
+		if (start)
+			start();
+	}
+
+	/**
+	 * Starts all worker threads.
+	 */
+	void start() {
+		for (Shard shard : shards)
+			shard.thread.start();
+	}
+
+	/**
+	 * Stops all worker threads, after all pending fragments have been processed,
+	 * and releases all reassembly memory. Completed datagrams not yet polled are
+	 * discarded.
+	 *
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		running = false;
+
+		boolean interrupted = false;
+
+		for (Shard shard : shards) {
+			LockSupport.unpark(shard.thread);
+
+			while (shard.thread.isAlive()) {
+				try {
+					shard.thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+
+			shard.reassembler.close();
+		}
+
+		arena.close();
+
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Creates a new output for a dissector thread.
+	 *
+	 * @return the output
+	 */
+	public synchronized Output newOutput() {
+		if (!running)
+			throw new IllegalStateException("reassembler is closed");
+
+		Output output = new Output(outputs.length);
+
+		Output[] copy = Arrays.copyOf(outputs, outputs.length + 1);
+		copy[output.id] = output;
+		outputs = copy;
+
+		return output;
+	}
+
+	/**
+	 * Number of shards.
+	 *
+	 * @return the int
+	 */
+	public int shardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * Selects the shard owning a fragment key. The high bits of the hash are used,
+	 * since the low bits index each shard's hash table.
+	 *
+	 * @param hash the fragment key hash
+	 * @return the shard index
+	 */
+	int shardIndexOf(int hash) {
+		return (int) ((Integer.toUnsignedLong(hash) * shards.length) >>> 32);
+	}
+
+	/**
+	 * Statistics of a single shard, as last published by its worker thread.
+	 *
+	 * @param index the shard index
+	 * @return a snapshot of the shard's statistics
+	 */
+	IpfStatistics shardStatistics(int index) {
+		return shards[index].statistics();
+	}
+
+	/**
+	 * Combined statistics of all shards. Fragments rejected because a shard's
+	 * ring was full, and completed datagrams which did not fit into their
+	 * output's ring, are counted as drops.
+	 * <p>
+	 * Each worker thread publishes its counters whenever its ring is drained and
+	 * periodically under load, so while workers are running the returned counters
+	 * may lag behind slightly. After {@link #close()} they are exact.
+	 * </p>
+	 *
+	 * @return a snapshot of the combined statistics
+	 */
+	public IpfStatistics statistics() {
+		long budget = 0;
+		for (Shard shard : shards)
+			budget += shard.published.memoryBudget();
+
+		IpfStatistics total = new IpfStatistics(budget);
+		for (Shard shard : shards)
+			total.add(shard.statistics());
+
+		total.drops += rejected.sum() + undelivered.sum();
+
+		return total;
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+/**
+ * IP reassembly counters and memory pressure metrics. Counters are updated by
+ * the owning reassembler and should be read from the same thread.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class IpfStatistics {
+
+	/** The memory budget. */
+	final long memoryBudget;
+
+	/** The fragments. */
+	long fragments;
+
+	/** The reassembled. */
+	long reassembled;
+
+	/** The timeouts. */
+	long timeouts;
+
+	/** The evictions. */
+	long evictions;
+
+	/** The drops. */
+	long drops;
+
+	/** The oversized datagrams. */
+	long oversized;
+
+	/** The datagrams with truncated fragments. */
+	long truncated;
+
+	/** The fragments which failed to be processed. */
+	long errors;
+
+	/** The bytes in use. */
+	long bytesInUse;
+
+	/** The bytes high water mark. */
+	long bytesHighWater;
+
+	/** The datagrams in use. */
+	int datagramsInUse;
+
+	/** The datagrams high water mark. */
+	int datagramsHighWater;
+
+	/**
+	 * Instantiates a new ipf statistics.
+	 *
+	 * @param memoryBudget the memory budget in bytes
+	 */
+	IpfStatistics(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Account for a buffer being allocated.
+	 *
+	 * @param bytes the buffer size
+	 */
+	void allocated(int bytes) {
+		bytesInUse += bytes;
+		datagramsInUse++;
+
+		if (bytesInUse > bytesHighWater)
+			bytesHighWater = bytesInUse;
+
+		if (datagramsInUse > datagramsHighWater)
+			datagramsHighWater = datagramsInUse;
+	}
+
+	/**
+	 * Account for a buffer being released.
+	 *
+	 * @param bytes the buffer size
+	 */
+	void released(int bytes) {
+		bytesInUse -= bytes;
+		datagramsInUse--;
+	}
+
+	/**
+	 * Copies the counters of another statistics object into this one.
+	 *
+	 * @param other the other statistics
+	 */
+	void copy(IpfStatistics other) {
+		fragments = other.fragments;
+		reassembled = other.reassembled;
+		timeouts = other.timeouts;
+		evictions = other.evictions;
+		drops = other.drops;
+		oversized = other.oversized;
+		truncated = other.truncated;
+		errors = other.errors;
+		bytesInUse = other.bytesInUse;
+		bytesHighWater = other.bytesHighWater;
+		datagramsInUse = other.datagramsInUse;
+		datagramsHighWater = other.datagramsHighWater;
+	}
+
+	/**
+	 * Adds the counters of another statistics object to this one. High water marks
+	 * are summed as well, so that on an aggregate they are an upper bound of the
+	 * combined peak, which may never have been reached at any one moment.
+	 *
+	 * @param other the other statistics
+	 */
+	void add(IpfStatistics other) {
+		fragments += other.fragments;
+		reassembled += other.reassembled;
+		timeouts += other.timeouts;
+		evictions += other.evictions;
+		drops += other.drops;
+		oversized += other.oversized;
+		truncated += other.truncated;
+		errors += other.errors;
+		bytesInUse += other.bytesInUse;
+		bytesHighWater += other.bytesHighWater;
+		datagramsInUse += other.datagramsInUse;
+		datagramsHighWater += other.datagramsHighWater;
+	}
+
+	/**
+	 * Number of bytes reserved by datagrams currently being reassembled.
+	 *
+	 * @return the long
+	 */
+	public long bytesInUse() {
+		return bytesInUse;
+	}
+
+	/**
+	 * Highest number of bytes ever in use. On statistics aggregated across several
+	 * reassemblers, the sum of their high water marks, an upper bound.
+	 *
+	 * @return the long
+	 */
+	public long bytesHighWater() {
+		return bytesHighWater;
+	}
+
+	/**
+	 * Number of datagrams currently being reassembled.
+	 *
+	 * @return the int
+	 */
+	public int datagramsInUse() {
+		return datagramsInUse;
+	}
+
+	/**
+	 * Highest number of datagrams ever being reassembled at the same time. On
+	 * statistics aggregated across several reassemblers, the sum of their high
+	 * water marks, an upper bound.
+	 *
+	 * @return the int
+	 */
+	public int datagramsHighWater() {
+		return datagramsHighWater;
+	}
+
+	/**
+	 * Number of fragments dropped, either due to the {@link IpfEvictionPolicy#DROP_NEW}
+	 * policy or because the fragment could not be reassembled.
+	 *
+	 * @return the long
+	 */
+	public long drops() {
+		return drops;
+	}
+
+	/**
+	 * Number of datagrams dropped because their reassembled length would exceed the
+	 * max value of the IP length field. These are also counted as {@link #drops()}.
+	 *
+	 * @return the long
+	 */
+	public long oversized() {
+		return oversized;
+	}
+
+	/**
+	 * Number of datagrams dropped because a fragment was not fully captured, such
+	 * as with a snap length shorter than the IP length. These are also counted as
+	 * {@link #drops()}.
+	 *
+	 * @return the long
+	 */
+	public long truncated() {
+		return truncated;
+	}
+
+	/**
+	 * Number of fragments which failed to be processed, due to an unexpected
+	 * error, and were skipped.
+	 *
+	 * @return the long
+	 */
+	public long errors() {
+		return errors;
+	}
+
+	/**
+	 * Number of incomplete datagrams evicted to stay within the memory budget.
+	 *
+	 * @return the long
+	 */
+	public long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Number of fragments processed.
+	 *
+	 * @return the long
+	 */
+	public long fragments() {
+		return fragments;
+	}
+
+	/**
+	 * Memory budget in bytes.
+	 *
+	 * @return the long
+	 */
+	public long memoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Memory pressure, the fraction of the memory budget currently in use.
+	 *
+	 * @return value between 0 and 1
+	 */
+	public double pressure() {
+		return (memoryBudget == 0) ? 0 : (double) bytesInUse / (double) memoryBudget;
+	}
+
+	/**
+	 * Number of datagrams successfully reassembled.
+	 *
+	 * @return the long
+	 */
+	public long reassembled() {
+		return reassembled;
+	}
+
+	/**
+	 * Number of incomplete datagrams which timed out.
+	 *
+	 * @return the long
+	 */
+	public long timeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * To string.
+	 *
+	 * @return the string
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "IpfStatistics [fragments=" + fragments
+				+ ", reassembled=" + reassembled
+				+ ", timeouts=" + timeouts
+				+ ", evictions=" + evictions
+				+ ", drops=" + drops
+				+ ", oversized=" + oversized
+				+ ", truncated=" + truncated
+				+ ", errors=" + errors
+				+ ", bytesInUse=" + bytesInUse
+				+ ", bytesHighWater=" + bytesHighWater
+				+ ", memoryBudget=" + memoryBudget
+				+ "]";
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import static com.slytechs.jnet.protocol.core.constants.CoreConstants.*;
+
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An open-addressing hash table, stored off-heap, which maps IP fragment keys
+ * to datagram indexes. Each slot occupies a single 64 byte cache line and
+ * stores the full key, so no key objects are ever allocated on the java heap.
+ * Collisions are resolved using linear probing and entries are removed using
+ * backward shift deletion, which keeps probe sequences short without the use
+ * of tombstones.
+ * <p>
+ * Keys are the byte sequences returned by
+ * {@link com.slytechs.jnet.protocol.descriptor.IpfFragment#keyBuffer()}, which
+ * are always a multiple of 4 bytes long.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class IpfTable {
+
+	/** The Constant SLOT_SIZE. */
+	private static final int SLOT_SIZE = 64;
+
+	/** The Constant SLOT_STATE. */
+	private static final int SLOT_STATE = 0;
+
+	/** The Constant SLOT_HASH. */
+	private static final int SLOT_HASH = 4;
+
+	/** The Constant SLOT_VALUE. */
+	private static final int SLOT_VALUE = 8;
+
+	/** The Constant SLOT_KEY_LENGTH. */
+	private static final int SLOT_KEY_LENGTH = 12;
+
+	/** The Constant SLOT_KEY. */
+	private static final int SLOT_KEY = 16;
+
+	/** The Constant STATE_EMPTY. */
+	private static final int STATE_EMPTY = 0;
+
+	/** The Constant STATE_USED. */
+	private static final int STATE_USED = 1;
+
+	/** Value returned when a key is not found. */
+	static final int NOT_FOUND = -1;
+
+	static {
+		assert (SLOT_KEY + DESC_IPF_FRAG_IPv6_KEY_BYTE_SIZE) <= SLOT_SIZE;
+	}
+
+	/**
+	 * Hash a fragment key. The key length must be a multiple of 4 bytes.
+	 *
+	 * @param key the key, from position 0 to limit
+	 * @return the hash
+	 */
+	static int hash(ByteBuffer key) {
+		final int len = key.limit();
+		int h = 0x9E3779B9 ^ len;
+
+		for (int i = 0; i < len; i += 4) {
+			int k = key.getInt(i) * 0xCC9E2D51;
+			k = Integer.rotateLeft(k, 15) * 0x1B873593;
+
+			h = Integer.rotateLeft(h ^ k, 13) * 5 + 0xE6546B64;
+		}
+
+		/* Murmur3 finalizer */
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+
+		return h;
+	}
+
+	/** The table. */
+	private final ByteBuffer table;
+
+	/** The capacity. */
+	private final int capacity;
+
+	/** The mask. */
+	private final int mask;
+
+	/** The max size. */
+	private final int maxSize;
+
+	/** The size. */
+	private int size;
+
+	/**
+	 * Instantiates a new ipf table.
+	 *
+	 * @param capacity the capacity, rounded up to the next power of 2
+	 * @param arena    the arena from which table memory is allocated
+	 */
+	IpfTable(int capacity, Arena arena) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("invalid table capacity " + capacity);
+
+		this.capacity = Integer.highestOneBit(capacity - 1) << 1 | (capacity == 1 ? 1 : 0);
+		this.mask = this.capacity - 1;
+		this.maxSize = (this.capacity * 3) >> 2; // 75% load factor
+		this.table = arena.allocate((long) this.capacity * SLOT_SIZE, SLOT_SIZE)
+				.asByteBuffer()
+				.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Capacity.
+	 *
+	 * @return the int
+	 */
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Clear all entries.
+	 */
+	void clear() {
+		for (int i = 0; i < capacity; i++)
+			table.putInt(i * SLOT_SIZE + SLOT_STATE, STATE_EMPTY);
+
+		size = 0;
+	}
+
+	/**
+	 * Find the slot of a key.
+	 *
+	 * @param key  the key
+	 * @param hash the key hash
+	 * @return the slot or {@link #NOT_FOUND}
+	 */
+	private int findSlot(ByteBuffer key, int hash) {
+		int slot = hash & mask;
+
+		for (int probe = 0; probe < capacity; probe++, slot = (slot + 1) & mask) {
+			final int base = slot * SLOT_SIZE;
+
+			if (table.getInt(base + SLOT_STATE) == STATE_EMPTY)
+				return NOT_FOUND;
+
+			if ((table.getInt(base + SLOT_HASH) == hash) && keyEquals(base, key))
+				return slot;
+		}
+
+		return NOT_FOUND;
+	}
+
+	/**
+	 * Gets the value mapped to a key.
+	 *
+	 * @param key  the key
+	 * @param hash the key hash
+	 * @return the value or {@link #NOT_FOUND}
+	 */
+	int get(ByteBuffer key, int hash) {
+		int slot = findSlot(key, hash);
+		if (slot == NOT_FOUND)
+			return NOT_FOUND;
+
+		return table.getInt(slot * SLOT_SIZE + SLOT_VALUE);
+	}
+
+	/**
+	 * Compare key at slot.
+	 *
+	 * @param base the slot base offset
+	 * @param key  the key
+	 * @return true, if equal
+	 */
+	private boolean keyEquals(int base, ByteBuffer key) {
+		final int len = key.limit();
+		if (table.getInt(base + SLOT_KEY_LENGTH) != len)
+			return false;
+
+		for (int i = 0; i < len; i += 4)
+			if (table.getInt(base + SLOT_KEY + i) != key.getInt(i))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Checks if table is full, as defined by its load factor.
+	 *
+	 * @return true, if full
+	 */
+	boolean isFull() {
+		return size >= maxSize;
+	}
+
+	/**
+	 * Put a new key into the table. The key must not already exist in the table.
+	 *
+	 * @param key   the key
+	 * @param hash  the key hash
+	 * @param value the value
+	 * @return true, if successful or false if table is full
+	 */
+	boolean put(ByteBuffer key, int hash, int value) {
+		if (isFull())
+			return false;
+
+		int slot = hash & mask;
+		while (table.getInt(slot * SLOT_SIZE + SLOT_STATE) != STATE_EMPTY)
+			slot = (slot + 1) & mask;
+
+		final int base = slot * SLOT_SIZE;
+		final int len = key.limit();
+
+		table.putInt(base + SLOT_STATE, STATE_USED);
+		table.putInt(base + SLOT_HASH, hash);
+		table.putInt(base + SLOT_VALUE, value);
+		table.putInt(base + SLOT_KEY_LENGTH, len);
+
+		for (int i = 0; i < len; i += 4)
+			table.putInt(base + SLOT_KEY + i, key.getInt(i));
+
+		size++;
+
+		return true;
+	}
+
+	/**
+	 * Removes a key from the table.
+	 *
+	 * @param key  the key
+	 * @param hash the key hash
+	 * @return the value that was mapped to the key or {@link #NOT_FOUND}
+	 */
+	int remove(ByteBuffer key, int hash) {
+		int hole = findSlot(key, hash);
+		if (hole == NOT_FOUND)
+			return NOT_FOUND;
+
+		final int value = table.getInt(hole * SLOT_SIZE + SLOT_VALUE);
+
+		/* Backward shift deletion */
+		int next = hole;
+		while (true) {
+			next = (next + 1) & mask;
+
+			final int nextBase = next * SLOT_SIZE;
+			if (table.getInt(nextBase + SLOT_STATE) == STATE_EMPTY)
+				break;
+
+			final int home = table.getInt(nextBase + SLOT_HASH) & mask;
+
+			/* Entry can stay if its home slot is cyclically within (hole, next] */
+			boolean inRange = (hole <= next)
+					? ((hole < home) && (home <= next))
+					: ((hole < home) || (home <= next));
+			if (inRange)
+				continue;
+
+			table.put(hole * SLOT_SIZE, table, nextBase, SLOT_SIZE);
+			hole = next;
+		}
+
+		table.putInt(hole * SLOT_SIZE + SLOT_STATE, STATE_EMPTY);
+		size--;
+
+		return value;
+	}
+
+	/**
+	 * Number of entries in the table.
+	 *
+	 * @return the int
+	 */
+	int size() {
+		return size;
+	}
+}
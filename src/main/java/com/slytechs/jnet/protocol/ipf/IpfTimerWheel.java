@@ -0,0 +1,306 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A hierarchical timing wheel used to expire incomplete datagrams. The wheel is
+ * driven by packet timestamps, not wall clock time, so that offline captures
+ * expire datagrams exactly as they would have been expired live.
+ * <p>
+ * Timers are identified by small integer IDs, the datagram indexes, and are
+ * kept in intrusive doubly linked lists stored in primitive arrays. Scheduling
+ * and cancelling a timer are O(1) operations, and each timer is cascaded down
+ * at most once per wheel level, so expiry is O(1) amortized regardless of the
+ * number of outstanding datagrams.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class IpfTimerWheel {
+
+	/** The Constant LEVEL0_BITS. */
+	private static final int LEVEL0_BITS = 8;
+
+	/** The Constant LEVELN_BITS. */
+	private static final int LEVELN_BITS = 6;
+
+	/** The Constant LEVELN_COUNT, number of upper levels. */
+	private static final int LEVELN_COUNT = 3;
+
+	/** The Constant LEVEL0_SIZE. */
+	private static final int LEVEL0_SIZE = 1 << LEVEL0_BITS;
+
+	/** The Constant LEVELN_SIZE. */
+	private static final int LEVELN_SIZE = 1 << LEVELN_BITS;
+
+	/** The Constant LEVEL0_MASK. */
+	private static final int LEVEL0_MASK = LEVEL0_SIZE - 1;
+
+	/** The Constant LEVELN_MASK. */
+	private static final int LEVELN_MASK = LEVELN_SIZE - 1;
+
+	/** The Constant MAX_DELTA, in ticks. */
+	private static final long MAX_DELTA = (1L << (LEVEL0_BITS + LEVELN_BITS * LEVELN_COUNT)) - 1;
+
+	/** The Constant NONE. */
+	private static final int NONE = -1;
+
+	/** Slot list heads, level 0 followed by each upper level. */
+	private final int[] heads = new int[LEVEL0_SIZE + LEVELN_SIZE * LEVELN_COUNT];
+
+	/** The next. */
+	private final int[] next;
+
+	/** The prev. */
+	private final int[] prev;
+
+	/** The slot of each timer, or NONE if not scheduled. */
+	private final int[] slot;
+
+	/** The expiration tick of each timer. */
+	private final long[] expires;
+
+	/** The tick resolution in milliseconds. */
+	private final long tickMilli;
+
+	/** The current tick. */
+	private long currentTick;
+
+	/** The started flag. */
+	private boolean started;
+
+	/** The number of scheduled timers. */
+	private int size;
+
+	/**
+	 * Instantiates a new ipf timer wheel.
+	 *
+	 * @param capacity  the max number of timer IDs
+	 * @param tickMilli the tick resolution in milliseconds
+	 */
+	IpfTimerWheel(int capacity, long tickMilli) {
+		if (tickMilli <= 0)
+			throw new IllegalArgumentException("invalid tick resolution " + tickMilli);
+
+		this.tickMilli = tickMilli;
+		this.next = new int[capacity];
+		this.prev = new int[capacity];
+		this.slot = new int[capacity];
+		this.expires = new long[capacity];
+
+		Arrays.fill(heads, NONE);
+		Arrays.fill(slot, NONE);
+	}
+
+	/**
+	 * Advance the wheel to a new time, expiring all timers which are due.
+	 *
+	 * @param nowMilli the current time in milliseconds
+	 * @param action   action invoked with the ID of each expired timer
+	 * @return number of timers expired
+	 */
+	int advance(long nowMilli, IntConsumer action) {
+		final long nowTick = nowMilli / tickMilli;
+
+		if (!started || (size == 0)) {
+			if (!started || (nowTick > currentTick))
+				currentTick = nowTick;
+
+			started = true;
+			return 0;
+		}
+
+		int count = 0;
+
+		while ((currentTick <= nowTick) && (size > 0)) {
+			final int index = (int) (currentTick & LEVEL0_MASK);
+
+			if (index == 0)
+				for (int level = 0; level < LEVELN_COUNT; level++)
+					if (cascade(level) != 0)
+						break;
+
+			int id = detach(index);
+			while (id != NONE) {
+				final int nextId = next[id];
+
+				slot[id] = NONE;
+				size--;
+				count++;
+
+				action.accept(id);
+
+				id = nextId;
+			}
+
+			currentTick++;
+		}
+
+		if (currentTick <= nowTick)
+			currentTick = nowTick;
+
+		return count;
+	}
+
+	/**
+	 * Cancel a timer. Does nothing if the timer is not scheduled.
+	 *
+	 * @param id the timer ID
+	 */
+	void cancel(int id) {
+		final int s = slot[id];
+		if (s == NONE)
+			return;
+
+		if (prev[id] == NONE)
+			heads[s] = next[id];
+		else
+			next[prev[id]] = next[id];
+
+		if (next[id] != NONE)
+			prev[next[id]] = prev[id];
+
+		slot[id] = NONE;
+		size--;
+	}
+
+	/**
+	 * Cascade all timers in the current slot of an upper level down to lower
+	 * levels.
+	 *
+	 * @param level the upper level, starting at 0
+	 * @return the slot index within the level that was cascaded
+	 */
+	private int cascade(int level) {
+		final int shift = LEVEL0_BITS + LEVELN_BITS * level;
+		final int index = (int) ((currentTick >>> shift) & LEVELN_MASK);
+
+		int id = detach(LEVEL0_SIZE + LEVELN_SIZE * level + index);
+		while (id != NONE) {
+			final int nextId = next[id];
+
+			link(id, slotOf(expires[id]));
+
+			id = nextId;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Detach the entire list of a slot.
+	 *
+	 * @param s the slot
+	 * @return the head of the detached list
+	 */
+	private int detach(int s) {
+		final int head = heads[s];
+		heads[s] = NONE;
+
+		return head;
+	}
+
+	/**
+	 * Checks if a timer is scheduled.
+	 *
+	 * @param id the timer ID
+	 * @return true, if is scheduled
+	 */
+	boolean isScheduled(int id) {
+		return slot[id] != NONE;
+	}
+
+	/**
+	 * Link a timer at the head of a slot list.
+	 *
+	 * @param id the timer ID
+	 * @param s  the slot
+	 */
+	private void link(int id, int s) {
+		final int head = heads[s];
+
+		next[id] = head;
+		prev[id] = NONE;
+
+		if (head != NONE)
+			prev[head] = id;
+
+		heads[s] = id;
+		slot[id] = s;
+	}
+
+	/**
+	 * Schedule a timer, replacing any previous schedule for the same ID.
+	 *
+	 * @param id           the timer ID
+	 * @param expiresMilli the expiration time in milliseconds
+	 */
+	void schedule(int id, long expiresMilli) {
+		cancel(id);
+
+		if (!started) {
+			currentTick = expiresMilli / tickMilli;
+			started = true;
+		}
+
+		long tick = expiresMilli / tickMilli;
+		if (tick < currentTick)
+			tick = currentTick;
+		else if ((tick - currentTick) > MAX_DELTA)
+			tick = currentTick + MAX_DELTA;
+
+		expires[id] = tick;
+		link(id, slotOf(tick));
+		size++;
+	}
+
+	/**
+	 * Calculates the slot of an expiration tick, relative to the current tick.
+	 *
+	 * @param tick the expiration tick
+	 * @return the slot
+	 */
+	private int slotOf(long tick) {
+		final long delta = tick - currentTick;
+
+		if (delta < LEVEL0_SIZE)
+			return (int) (Math.max(tick, currentTick) & LEVEL0_MASK);
+
+		for (int level = 0; level < LEVELN_COUNT; level++) {
+			final int shift = LEVEL0_BITS + LEVELN_BITS * level;
+
+			if ((delta >>> (shift + LEVELN_BITS)) == 0)
+				return LEVEL0_SIZE + LEVELN_SIZE * level + (int) ((tick >>> shift) & LEVELN_MASK);
+		}
+
+		throw new IllegalStateException("timer delta out of range " + delta);
+	}
+
+	/**
+	 * Number of scheduled timers.
+	 *
+	 * @return the int
+	 */
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,494 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+import com.slytechs.jnet.protocol.descriptor.IpfTracking;
+
+/**
+ * A capture wide index of the frame numbers of every fragment of every IP
+ * datagram seen by a reassembler. Each datagram is assigned a sequential
+ * datagram ID when its first fragment is received, which is also reported in
+ * the {@link com.slytechs.jnet.protocol.descriptor.IpfTracking} descriptor.
+ * <p>
+ * Frame numbers are stored off-heap as zig-zag, variable length encoded deltas
+ * from the previous fragment of the same datagram, typically 1 or 2 bytes per
+ * fragment. Each datagram has a fixed 32 byte record, whose last 8 bytes hold
+ * the first deltas inline, so datagrams of a few fragments need no other
+ * memory. Deltas which do not fit inline are appended to a chain of blocks,
+ * whose payload capacity doubles from 16 up to 240 bytes, so the unused space
+ * of a chain stays proportional to the number of deltas in it. Looking up the frames of a
+ * datagram is O(fragments) regardless of the size of the capture. Index memory
+ * grows in large chunks and is released when the index is closed.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class IpfTrackingIndex implements IpfTracking.FrameIndex, AutoCloseable {
+
+	/** Value returned for a datagram ID when tracking is disabled. */
+	public static final int NO_ID = -1;
+
+	/** The datagram record size. */
+	private static final int RECORD_SIZE = 32;
+
+	/** The record head block field. */
+	private static final int RECORD_HEAD = 0;
+
+	/** The record tail block field. */
+	private static final int RECORD_TAIL = 4;
+
+	/** The record fragment count field. */
+	private static final int RECORD_COUNT = 8;
+
+	/** The record used inline bytes field. */
+	private static final int RECORD_INLINE_USED = 12;
+
+	/** The record last frame number field. */
+	private static final int RECORD_LAST = 16;
+
+	/** The record inline deltas. */
+	private static final int RECORD_INLINE = 24;
+
+	/** The inline deltas capacity. */
+	private static final int INLINE_SIZE = RECORD_SIZE - RECORD_INLINE;
+
+	/** The block next block field. */
+	private static final int BLOCK_NEXT = 0;
+
+	/** The block used payload bytes field. */
+	private static final int BLOCK_USED = 4;
+
+	/** The block payload capacity field. */
+	private static final int BLOCK_CAPACITY = 6;
+
+	/** The block payload offset. */
+	private static final int BLOCK_PAYLOAD = 8;
+
+	/** Payload capacity of the first block of a datagram. */
+	private static final int BLOCK_PAYLOAD_MIN = 16;
+
+	/** Payload capacity of the largest blocks. */
+	private static final int BLOCK_PAYLOAD_MAX = 240;
+
+	/** Block references are in units of 8 bytes. */
+	private static final int BLOCK_UNIT_SHIFT = 3;
+
+	/** Number of records in each record chunk, must be a power of 2. */
+	private static final int CHUNK_ENTRIES = 16 * 1024;
+
+	/** The chunk shift. */
+	private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_ENTRIES);
+
+	/** The chunk mask. */
+	private static final int CHUNK_MASK = CHUNK_ENTRIES - 1;
+
+	/** Number of bytes in each block chunk, must be a power of 2. */
+	private static final int BLOCK_CHUNK_SIZE = 1024 * 1024;
+
+	/** The block chunk shift. */
+	private static final int BLOCK_CHUNK_SHIFT = Integer.numberOfTrailingZeros(BLOCK_CHUNK_SIZE);
+
+	/** The block chunk mask. */
+	private static final long BLOCK_CHUNK_MASK = BLOCK_CHUNK_SIZE - 1;
+
+	/** No block. */
+	private static final int NO_BLOCK = -1;
+
+	/**
+	 * Number of bytes needed to encode a value as a varint.
+	 *
+	 * @param value the value
+	 * @return the int
+	 */
+	private static int varintLength(long value) {
+		return (64 - Long.numberOfLeadingZeros(value | 1) + 6) / 7;
+	}
+
+	/**
+	 * Writes a value as a varint.
+	 *
+	 * @param seg    the segment
+	 * @param offset the offset
+	 * @param value  the value
+	 */
+	private static void writeVarint(MemorySegment seg, long offset, long value) {
+		while ((value & ~0x7FL) != 0) {
+			seg.set(ValueLayout.JAVA_BYTE, offset++, (byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		seg.set(ValueLayout.JAVA_BYTE, offset, (byte) value);
+	}
+
+	/**
+	 * Decodes a run of deltas into frame numbers, continuing from the last frame
+	 * number already decoded.
+	 *
+	 * @param seg   the segment
+	 * @param pos   the offset of the first delta
+	 * @param end   the end of the run
+	 * @param dst   the frame numbers
+	 * @param i     the number of frame numbers already decoded
+	 * @param count the max number of frame numbers to decode
+	 * @return the number of frame numbers decoded so far
+	 */
+	private static int decodeRun(MemorySegment seg, long pos, long end, long[] dst, int i, int count) {
+		long frameNo = (i == 0) ? 0 : dst[i - 1];
+
+		while ((i < count) && (pos < end)) {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = seg.get(ValueLayout.JAVA_BYTE, pos++);
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			frameNo += (value >>> 1) ^ -(value & 1);
+			dst[i++] = frameNo;
+		}
+
+		return i;
+	}
+
+	/** The arena. */
+	private final Arena arena = Arena.ofShared();
+
+	/** The record chunks. */
+	private MemorySegment[] records = new MemorySegment[16];
+
+	/** The block chunks. */
+	private MemorySegment[] blocks = new MemorySegment[16];
+
+	/** The datagram count. */
+	private int datagramCount;
+
+	/** The offset of the next block to allocate, across all block chunks. */
+	private long blockTop;
+
+	/** The fragment count. */
+	private long fragmentCount;
+
+	/**
+	 * Instantiates a new, empty ipf tracking index.
+	 */
+	public IpfTrackingIndex() {
+	}
+
+	/**
+	 * Adds the frame number of a fragment to a datagram.
+	 *
+	 * @param id      the datagram ID
+	 * @param frameNo the frame number of the fragment
+	 */
+	public void add(int id, long frameNo) {
+		final MemorySegment rec = record(id);
+		final long recOffset = recordOffset(id);
+
+		final long delta = frameNo - rec.get(ValueLayout.JAVA_LONG, recOffset + RECORD_LAST);
+
+		/* Zig-zag encoding keeps small negative deltas small */
+		final long value = (delta << 1) ^ (delta >> 63);
+		final int length = varintLength(value);
+
+		int tail = rec.get(ValueLayout.JAVA_INT, recOffset + RECORD_TAIL);
+		final int inlineUsed = rec.get(ValueLayout.JAVA_SHORT, recOffset + RECORD_INLINE_USED);
+
+		if ((tail == NO_BLOCK) && (inlineUsed + length <= INLINE_SIZE)) {
+			writeVarint(rec, recOffset + RECORD_INLINE + inlineUsed, value);
+			rec.set(ValueLayout.JAVA_SHORT, recOffset + RECORD_INLINE_USED, (short) (inlineUsed + length));
+
+		} else {
+			if ((tail == NO_BLOCK) || (blockUsed(tail) + length > blockCapacity(tail))) {
+				final int capacity = (tail == NO_BLOCK)
+						? BLOCK_PAYLOAD_MIN
+						: Math.min(blockCapacity(tail) * 2, BLOCK_PAYLOAD_MAX);
+				final int newBlock = allocateBlock(capacity);
+
+				if (tail == NO_BLOCK)
+					rec.set(ValueLayout.JAVA_INT, recOffset + RECORD_HEAD, newBlock);
+				else
+					block(tail).set(ValueLayout.JAVA_INT, blockOffset(tail) + BLOCK_NEXT, newBlock);
+
+				rec.set(ValueLayout.JAVA_INT, recOffset + RECORD_TAIL, newBlock);
+				tail = newBlock;
+			}
+
+			final MemorySegment blk = block(tail);
+			final long offset = blockOffset(tail);
+			final int used = blockUsed(tail);
+
+			writeVarint(blk, offset + BLOCK_PAYLOAD + used, value);
+			blk.set(ValueLayout.JAVA_SHORT, offset + BLOCK_USED, (short) (used + length));
+		}
+
+		rec.set(ValueLayout.JAVA_LONG, recOffset + RECORD_LAST, frameNo);
+		rec.set(ValueLayout.JAVA_INT, recOffset + RECORD_COUNT,
+				rec.get(ValueLayout.JAVA_INT, recOffset + RECORD_COUNT) + 1);
+
+		fragmentCount++;
+	}
+
+	/**
+	 * Allocate a new, empty block. Blocks never span block chunks.
+	 *
+	 * @param capacity the payload capacity in bytes, a multiple of 8
+	 * @return the block reference
+	 */
+	private int allocateBlock(int capacity) {
+		final int size = BLOCK_PAYLOAD + capacity;
+
+		final long remaining = BLOCK_CHUNK_SIZE - (blockTop & BLOCK_CHUNK_MASK);
+		if (remaining < size)
+			blockTop += remaining;
+
+		if ((blockTop >>> BLOCK_UNIT_SHIFT) > Integer.MAX_VALUE)
+			throw new IllegalStateException("tracking index is full");
+
+		final int chunk = (int) (blockTop >>> BLOCK_CHUNK_SHIFT);
+
+		if (chunk == blocks.length)
+			blocks = Arrays.copyOf(blocks, chunk * 2);
+
+		if (blocks[chunk] == null)
+			blocks[chunk] = arena.allocate(BLOCK_CHUNK_SIZE, Long.BYTES);
+
+		final int ref = (int) (blockTop >>> BLOCK_UNIT_SHIFT);
+		blockTop += size;
+
+		final long offset = blockOffset(ref);
+		blocks[chunk].set(ValueLayout.JAVA_INT, offset + BLOCK_NEXT, NO_BLOCK);
+		blocks[chunk].set(ValueLayout.JAVA_SHORT, offset + BLOCK_USED, (short) 0);
+		blocks[chunk].set(ValueLayout.JAVA_SHORT, offset + BLOCK_CAPACITY, (short) capacity);
+
+		return ref;
+	}
+
+	/**
+	 * The chunk containing a block.
+	 *
+	 * @param ref the block reference
+	 * @return the memory segment
+	 */
+	private MemorySegment block(int ref) {
+		return blocks[(int) (((long) ref << BLOCK_UNIT_SHIFT) >>> BLOCK_CHUNK_SHIFT)];
+	}
+
+	/**
+	 * Payload capacity of a block.
+	 *
+	 * @param ref the block reference
+	 * @return the int
+	 */
+	private int blockCapacity(int ref) {
+		return block(ref).get(ValueLayout.JAVA_SHORT, blockOffset(ref) + BLOCK_CAPACITY);
+	}
+
+	/**
+	 * Offset of a block within its chunk.
+	 *
+	 * @param ref the block reference
+	 * @return the long
+	 */
+	private static long blockOffset(int ref) {
+		return ((long) ref << BLOCK_UNIT_SHIFT) & BLOCK_CHUNK_MASK;
+	}
+
+	/**
+	 * Used payload bytes of a block.
+	 *
+	 * @param ref the block reference
+	 * @return the int
+	 */
+	private int blockUsed(int ref) {
+		return block(ref).get(ValueLayout.JAVA_SHORT, blockOffset(ref) + BLOCK_USED);
+	}
+
+	/**
+	 * Number of off-heap bytes allocated by this index.
+	 *
+	 * @return the long
+	 */
+	public long byteSize() {
+		long size = 0;
+
+		for (MemorySegment chunk : records)
+			if (chunk != null)
+				size += chunk.byteSize();
+
+		for (MemorySegment chunk : blocks)
+			if (chunk != null)
+				size += chunk.byteSize();
+
+		return size;
+	}
+
+	/**
+	 * Number of off-heap bytes used by datagram records and blocks, excluding
+	 * memory allocated in advance.
+	 *
+	 * @return the long
+	 */
+	public long usedByteSize() {
+		return ((long) datagramCount * RECORD_SIZE) + blockTop;
+	}
+
+	/**
+	 * Close the index, releasing all of its memory.
+	 *
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		arena.close();
+	}
+
+	/**
+	 * Number of fragments tracked for a datagram.
+	 *
+	 * @param id the datagram ID
+	 * @return the int
+	 */
+	@Override
+	public int count(int id) {
+		return record(id).get(ValueLayout.JAVA_INT, recordOffset(id) + RECORD_COUNT);
+	}
+
+	/**
+	 * Number of datagrams tracked.
+	 *
+	 * @return the int
+	 */
+	public int datagramCount() {
+		return datagramCount;
+	}
+
+	/**
+	 * Number of fragments tracked across all datagrams.
+	 *
+	 * @return the long
+	 */
+	public long fragmentCount() {
+		return fragmentCount;
+	}
+
+	/**
+	 * Frame numbers of all the fragments of a datagram, in the order the fragments
+	 * were received.
+	 *
+	 * @param id the datagram ID
+	 * @return array of frame numbers, never null
+	 */
+	public long[] frames(int id) {
+		long[] frames = new long[count(id)];
+		frames(id, frames);
+
+		return frames;
+	}
+
+	/**
+	 * Copies the frame numbers of the fragments of a datagram, in the order the
+	 * fragments were received, into an array.
+	 *
+	 * @param id  the datagram ID
+	 * @param dst the destination array
+	 * @return the number of frame numbers copied, at most {@code dst.length}
+	 */
+	@Override
+	public int frames(int id, long[] dst) {
+		final MemorySegment rec = record(id);
+		final long recOffset = recordOffset(id);
+		final int count = Math.min(dst.length, rec.get(ValueLayout.JAVA_INT, recOffset + RECORD_COUNT));
+
+		final long inline = recOffset + RECORD_INLINE;
+		int i = decodeRun(rec, inline, inline + rec.get(ValueLayout.JAVA_SHORT, recOffset + RECORD_INLINE_USED),
+				dst, 0, count);
+
+		for (int blk = rec.get(ValueLayout.JAVA_INT, recOffset + RECORD_HEAD); (i < count) && (blk != NO_BLOCK);
+				blk = block(blk).get(ValueLayout.JAVA_INT, blockOffset(blk) + BLOCK_NEXT)) {
+			final long payload = blockOffset(blk) + BLOCK_PAYLOAD;
+
+			i = decodeRun(block(blk), payload, payload + blockUsed(blk), dst, i, count);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Open a new datagram.
+	 *
+	 * @return the new datagram ID
+	 */
+	public int open() {
+		if (datagramCount == Integer.MAX_VALUE)
+			throw new IllegalStateException("tracking index is full");
+
+		final int id = datagramCount;
+		final int chunk = id >>> CHUNK_SHIFT;
+
+		if (chunk == records.length)
+			records = Arrays.copyOf(records, chunk * 2);
+
+		if (records[chunk] == null)
+			records[chunk] = arena.allocate((long) CHUNK_ENTRIES * RECORD_SIZE, Long.BYTES);
+
+		datagramCount++;
+
+		final long offset = recordOffset(id);
+		records[chunk].set(ValueLayout.JAVA_INT, offset + RECORD_HEAD, NO_BLOCK);
+		records[chunk].set(ValueLayout.JAVA_INT, offset + RECORD_TAIL, NO_BLOCK);
+		records[chunk].set(ValueLayout.JAVA_INT, offset + RECORD_COUNT, 0);
+		records[chunk].set(ValueLayout.JAVA_SHORT, offset + RECORD_INLINE_USED, (short) 0);
+		records[chunk].set(ValueLayout.JAVA_LONG, offset + RECORD_LAST, 0L);
+
+		return id;
+	}
+
+	/**
+	 * The chunk containing a datagram record.
+	 *
+	 * @param id the datagram ID
+	 * @return the memory segment
+	 * @throws IllegalArgumentException if the datagram ID is invalid
+	 */
+	private MemorySegment record(int id) {
+		if (id < 0 || id >= datagramCount)
+			throw new IllegalArgumentException("invalid datagram id " + id);
+
+		return records[id >>> CHUNK_SHIFT];
+	}
+
+	/**
+	 * Offset of a datagram record within its chunk.
+	 *
+	 * @param id the datagram ID
+	 * @return the long
+	 */
+	private static long recordOffset(int id) {
+		return (long) (id & CHUNK_MASK) * RECORD_SIZE;
+	}
+}
@@ -0,0 +1,10 @@
+/**
+ * IP fragment reassembly. Provides services which track IPv4 and IPv6 fragments
+ * and reassemble them into complete datagrams.
+ * <p>
+ * Reassembled datagrams are made available to the application through
+ * descriptors added to the packet's descriptor chain, which in turn are
+ * accessible using the {@code Ip} header API.
+ * </p>
+ */
+package com.slytechs.jnet.protocol.ipf;
@@ -289,7 +289,7 @@ public final class MetaHeader
 	 * @return the byte buffer
 	 */
 	public ByteBuffer buffer() {
-		return header.buffer();
+		return header.headerBuffer();
 	}
 
 	/**
@@ -20,11 +20,11 @@ package com.slytechs.jnet.protocol.pack;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.slytechs.jnet.jnetruntime.internal.util.Reflections;
 import com.slytechs.jnet.protocol.Header;
@@ -183,19 +183,93 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 		}
 	}
 
-	/** The Constant packTable. */
-	private static final Pack<?>[] packTable = new Pack[ProtocolPackTable.values().length];
+	/**
+	 * An immutable snapshot of the pack registry. Readers load the current
+	 * snapshot through a single volatile reference and never lock. Loading or
+	 * unloading a pack publishes a new snapshot, copied on write.
+	 *
+	 * @param packs   the packs, indexed by pack ordinal
+	 * @param headers the header information of all loaded packs, indexed by
+	 *                {@code (pack << 8) | ordinal} of the header id
+	 * @param version the registry version, incremented with each new snapshot
+	 */
+	private record Snapshot(Pack<?>[] packs, HeaderInfo[] headers, long version) {
+
+		/**
+		 * Creates the next snapshot, with one pack replaced.
+		 *
+		 * @param id   the pack to replace
+		 * @param pack the new pack
+		 * @return the new snapshot
+		 */
+		Snapshot with(ProtocolPackTable id, Pack<?> pack) {
+			Pack<?>[] copy = packs.clone();
+			copy[id.ordinal()] = pack;
+
+			return new Snapshot(copy, flattenHeaders(copy), version + 1);
+		}
+	}
+
+	/** The current registry snapshot. */
+	private static volatile Snapshot snapshot;
 
 	static {
 		ProtocolPackTable[] values = ProtocolPackTable.values();
+		Pack<?>[] packs = new Pack[values.length];
 
 		for (int i = 0; i < values.length; i++)
-			packTable[i] = new PackNotLoaded(values[i]);
+			packs[i] = new PackNotLoaded(values[i]);
+
+		packs[ProtocolPackTable.OPTS.ordinal()] = new PackVariableOptions();
+		snapshot = new Snapshot(packs, flattenHeaders(packs), 0);
 
 		if (!loadPack(ProtocolPackTable.CORE))
 			throw new IllegalStateException("unable to load core protocol pack");
+	}
+
+	/**
+	 * Flattens the header information of all loaded packs into a single table.
+	 *
+	 * @param packs the packs
+	 * @return the header table
+	 */
+	private static HeaderInfo[] flattenHeaders(Pack<?>[] packs) {
+		HeaderInfo[] table = new HeaderInfo[packs.length << PackId.PACK_SHIFT_PACK];
+
+		for (Pack<?> pack : packs) {
+			if (!pack.isPackLoaded() || pack.isOptions())
+				continue;
+
+			for (HeaderInfo info : pack.toArray())
+				table[info.id() & PackId.PACK_MASK_PACK_ORDINAL] = info;
+		}
+
+		return table;
+	}
+
+	/**
+	 * The version of the pack registry, which changes each time a pack is loaded or
+	 * unloaded. Dissectors compare it to the version they were built with, to pick
+	 * up newly loaded packs without locking.
+	 *
+	 * @return the registry version
+	 */
+	public static long registryVersion() {
+		return snapshot.version();
+	}
+
+	/**
+	 * Gets the information for a protocol header of any loaded pack. The lookup is
+	 * a single array access, suitable for per packet use.
+	 *
+	 * @param id the header id
+	 * @return the header information or null if not found
+	 */
+	public static HeaderInfo headerInfo(int id) {
+		final HeaderInfo[] table = snapshot.headers();
+		final int index = id & PackId.PACK_MASK_PACK_ORDINAL;
 
-		packTable[ProtocolPackTable.OPTS.ordinal()] = new PackVariableOptions();
+		return (index < table.length) ? table[index] : null;
 	}
 
 	/**
@@ -203,18 +277,14 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	 *
 	 * @param id the header id
 	 * @return optional header information
+	 * @see #headerInfo(int)
 	 */
 	public static Optional<? extends HeaderInfo> lookupHeader(int id) {
-		int packId = PackId.decodePackId(id);
-		Pack<?> pack = getLoadedPack(packId);
-		if (pack == null)
-			return Optional.empty();
-
-		if (pack.isOptions())
+		if (PackId.decodePackId(id) == ProtocolPackTable.PACK_ID_OPTIONS)
 			throw new IllegalStateException("id[0x%X] is of unknown OPTIONAL pack"
 					.formatted(id));
 
-		return pack.findHeader(id);
+		return Optional.ofNullable(headerInfo(id));
 	}
 
 	/**
@@ -226,11 +296,11 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	 * @return optional header information
 	 */
 	public static Optional<? extends HeaderInfo> findExtension(int id, int extensionId) {
-		Optional<? extends HeaderInfo> parent = lookupHeader(id);
-		if (parent.isEmpty())
+		HeaderInfo parent = headerInfo(id);
+		if (parent == null)
 			return Optional.empty();
 
-		var extInfos = parent.get().getOptionInfos();
+		var extInfos = parent.getOptionInfos();
 		int extOrdinal = PackId.decodeIdOrdinal(extensionId);
 
 		return Optional.of(extInfos[extOrdinal]);
@@ -243,9 +313,11 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	 * @return the string
 	 */
 	public static String toString(int id) {
-		return lookupHeader(id)
-				.map(HeaderInfo::abbr)
-				.orElse("N/A(%d)".formatted(id));
+		HeaderInfo info = headerInfo(id);
+
+		return (info != null)
+				? info.abbr()
+				: "N/A(%d)".formatted(id);
 	}
 
 	/**
@@ -257,9 +329,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	 */
 	public static String toString(int id, int extId) {
 
-		var parent = lookupHeader(id)
-				.map(HeaderInfo::abbr)
-				.orElse("N/A(%d)".formatted(id));
+		var parent = toString(id);
 
 		var ext = findExtension(id, extId)
 				.map(HeaderInfo::abbr)
@@ -286,7 +356,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	private static <E extends Enum<? extends HeaderInfo>> int countAllPackExtensions() {
 		int count = 0;
 
-		for (Pack<?> pack : packTable) {
+		for (Pack<?> pack : snapshot.packs()) {
 			if (!pack.isPackLoaded() || (pack.protocolPackTable == ProtocolPackTable.OPTS))
 				continue;
 
@@ -349,7 +419,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	public static <T_PACK extends Pack<?>> T_PACK getDetectedPack(int packId) {
 		int packOrdinal = PackId.decodePackOrdinal(packId);
 
-		Pack<?> pack = packTable[packOrdinal];
+		Pack<?> pack = snapshot.packs()[packOrdinal];
 		if (!pack.isDetectable())
 			return null;
 
@@ -367,7 +437,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	public static <T_PACK extends Pack<?>> T_PACK getLoadedPack(int packId) {
 		int packOrdinal = PackId.decodePackOrdinal(packId);
 
-		Pack<?> pack = packTable[packOrdinal];
+		Pack<?> pack = snapshot.packs()[packOrdinal];
 		if (!pack.isPackLoaded())
 			return null;
 
@@ -420,7 +490,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	 * @return the list
 	 */
 	public static List<Pack<?>> listAllDeclaredPacks() {
-		return Arrays.asList(packTable);
+		return List.of(snapshot.packs());
 	}
 
 	/**
@@ -429,8 +499,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	 * @return the list
 	 */
 	public static List<Pack<?>> listAllDetectablePacks() {
-		return Arrays.asList(packTable)
-				.stream()
+		return Stream.of(snapshot.packs())
 				.filter(Pack::isDetectable)
 				.collect(Collectors.toList());
 	}
@@ -441,8 +510,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	 * @return the list
 	 */
 	public static List<Pack<?>> listAllLoadedPacks() {
-		return Arrays.asList(packTable)
-				.stream()
+		return Stream.of(snapshot.packs())
 				.filter(Pack::isPackLoaded)
 				.collect(Collectors.toList());
 	}
@@ -467,7 +535,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 		mutable.add(core);
 		mutable.addAll(list);
 
-		return PacketDissectorExtension.wrap(mutable);
+		return PacketDissectorExtension.index(mutable);
 	}
 
 	/**
@@ -483,13 +551,15 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	}
 
 	/**
-	 * Load pack.
+	 * Load pack, and publish a new registry snapshot. Dissectors already running
+	 * pick up the pack's dissector extension on their next
+	 * {@link com.slytechs.jnet.protocol.descriptor.PacketDissector#refreshExtensions()}.
 	 *
 	 * @param protocolPackTable the pack info
 	 * @return true, if successful
 	 */
 	public static synchronized boolean loadPack(ProtocolPackTable protocolPackTable) {
-		if (packTable[protocolPackTable.ordinal()].isPackLoaded())
+		if (snapshot.packs()[protocolPackTable.ordinal()].isPackLoaded())
 			return true;
 
 		String moduleName = protocolPackTable.getPackModuleName();
@@ -499,7 +569,7 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 		if (pack == null)
 			return false;
 
-		packTable[protocolPackTable.ordinal()] = pack;
+		snapshot = snapshot.with(protocolPackTable, pack);
 
 		return true;
 	}
@@ -556,10 +626,10 @@ public abstract class Pack<E extends Enum<? extends HeaderInfo>> {
 	 */
 	public static synchronized boolean unloadPack(ProtocolPackTable protocolPackTable) {
 
-		if (!packTable[protocolPackTable.ordinal()].isPackLoaded())
+		if (!snapshot.packs()[protocolPackTable.ordinal()].isPackLoaded())
 			return false;
 
-		packTable[protocolPackTable.ordinal()] = new PackNotLoaded(protocolPackTable);
+		snapshot = snapshot.with(protocolPackTable, new PackNotLoaded(protocolPackTable));
 
 		return true;
 	}
@@ -278,7 +278,7 @@ public interface PackId {
 	 * @return the int
 	 */
 	static int decodeRecordOffset(long record) {
-		return (int) ((record & RECORD_MASK_OFFSET) >> RECORD_SHIFT_OFFSET);
+		return (int) ((record & RECORD_MASK_OFFSET) >>> RECORD_SHIFT_OFFSET);
 	}
 
 	/**
@@ -482,13 +482,7 @@ public interface PackId {
 	 * @return the pack id
 	 */
 	static PackId peek(int id) {
-		int packComponent = decodePackId(id);
-		Pack<?> pack = Pack.getLoadedPack(packComponent);
-		if (pack == null)
-			return null;
-
-		var hdr = pack.findHeader(id);
-		if (hdr.isPresent() && hdr.get() instanceof PackId packId)
+		if (Pack.headerInfo(id) instanceof PackId packId)
 			return packId;
 
 		return null;
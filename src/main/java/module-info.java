@@ -46,6 +46,7 @@ module com.slytechs.jnet.protocol {
 	exports com.slytechs.jnet.protocol.core;
 	exports com.slytechs.jnet.protocol.core.constants;
 	exports com.slytechs.jnet.protocol.descriptor;
+	exports com.slytechs.jnet.protocol.ipf;
 	exports com.slytechs.jnet.protocol.meta;
 	
 	requires com.slytechs.jnet.jnetruntime;
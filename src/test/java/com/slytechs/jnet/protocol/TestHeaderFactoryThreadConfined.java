@@ -0,0 +1,87 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.core.Ip4;
+import com.slytechs.jnet.protocol.core.Udp;
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestHeaderFactoryThreadConfined {
+
+	@Test
+	void headersAreReusedOnOwnerThread() {
+		HeaderFactory factory = HeaderFactory.threadConfined();
+
+		Header ip4 = factory.get(CoreId.CORE_ID_IPv4);
+		assertTrue(ip4 instanceof Ip4);
+		assertSame(ip4, factory.get(CoreId.CORE_ID_IPv4));
+
+		Header udp = factory.get(CoreId.CORE_ID_UDP);
+		assertTrue(udp instanceof Udp);
+		assertNotSame(ip4, udp);
+
+		factory.release(ip4);
+		assertSame(ip4, factory.get(CoreId.CORE_ID_IPv4), "released header is reused");
+		assertSame(udp, factory.get(CoreId.CORE_ID_UDP));
+	}
+
+	@Test
+	void accessFromAnotherThreadFailsWithAssertionsEnabled() throws InterruptedException {
+		assumeTrue(HeaderFactoryThreadConfinedImpl.class.desiredAssertionStatus(),
+				"thread confinement is only checked with -ea");
+
+		HeaderFactory factory = HeaderFactory.threadConfined();
+		Header ip4 = factory.get(CoreId.CORE_ID_IPv4);
+
+		AtomicReference<Throwable> get = new AtomicReference<>();
+		AtomicReference<Throwable> release = new AtomicReference<>();
+
+		Thread other = new Thread(() -> {
+			try {
+				factory.get(CoreId.CORE_ID_IPv4);
+			} catch (Throwable e) {
+				get.set(e);
+			}
+
+			try {
+				factory.release(ip4);
+			} catch (Throwable e) {
+				release.set(e);
+			}
+		});
+
+		other.start();
+		other.join();
+
+		assertTrue(get.get() instanceof AssertionError);
+		assertTrue(release.get() instanceof AssertionError);
+		assertSame(ip4, factory.get(CoreId.CORE_ID_IPv4), "owner thread is unaffected");
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.core.Ip4;
+import com.slytechs.jnet.protocol.core.Tcp;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+import com.slytechs.jnet.protocol.meta.MetaHeader;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestHeaderInPlaceBinding {
+
+	private static final byte[] DST_MAC = { 0, 1, 2, 3, 4, 5 };
+	private static final byte[] SRC_MAC = { 0, 6, 7, 8, 9, 10 };
+
+	private static Packet buildTcpPacket(boolean vlan, int src, int dst, int srcPort, int dstPort) {
+		ByteBuffer data = ByteBuffer.allocate(256);
+		ByteBuffer desc = ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+		Type2Descriptor descriptor = new Type2Descriptor().withBinding(desc);
+
+		PacketBuilder builder = new PacketBuilder(data).ethernet(DST_MAC, SRC_MAC);
+		if (vlan)
+			builder.vlan(0, 100);
+
+		builder
+				.ip4(src, dst)
+				.tcp(srcPort, dstPort, 1, 0, 0x02)
+				.payload(16)
+				.build(descriptor);
+
+		return new Packet(data.flip(), descriptor);
+	}
+
+	@Test
+	void headerIsBoundInPlaceAtHeaderOffset() throws HeaderNotFound {
+		Packet packet = buildTcpPacket(false, 0x0A000001, 0x0A000002, 1024, 80);
+
+		Ip4 ip4 = packet.getHeader(new Ip4());
+		assertEquals(packet.buffer().limit(), ip4.buffer().limit(), "bound to whole packet");
+		assertEquals(14, ip4.base());
+		assertEquals(0x0A000001, ip4.srcAsInt());
+		assertEquals(0x0A000002, ip4.dstGetAsInt());
+
+		Tcp tcp = packet.getHeader(new Tcp());
+		assertEquals(packet.buffer().limit(), tcp.buffer().limit(), "bound to whole packet");
+		assertEquals(34, tcp.base());
+		assertEquals(1024, tcp.source());
+		assertEquals(80, tcp.destination());
+	}
+
+	@Test
+	void rebindToSecondPacketMovesBaseWithoutNewBuffer() throws HeaderNotFound {
+		Packet first = buildTcpPacket(false, 0x0A000001, 0x0A000002, 1024, 80);
+		Packet second = buildTcpPacket(true, 0xC0A80001, 0xC0A80002, 5000, 443);
+
+		Ip4 ip4 = new Ip4();
+		Tcp tcp = new Tcp();
+
+		assertSame(ip4, first.getHeader(ip4));
+		assertSame(tcp, first.getHeader(tcp));
+		assertEquals(0x0A000001, ip4.srcAsInt());
+		assertEquals(1024, tcp.source());
+
+		assertSame(ip4, second.getHeader(ip4));
+		assertSame(tcp, second.getHeader(tcp));
+		assertEquals(second.buffer().limit(), ip4.buffer().limit(), "bound to whole packet");
+		assertEquals(second.buffer().limit(), tcp.buffer().limit(), "bound to whole packet");
+		assertEquals(18, ip4.base());
+		assertEquals(38, tcp.base());
+		assertEquals(0xC0A80001, ip4.srcAsInt());
+		assertEquals(0xC0A80002, ip4.dstGetAsInt());
+		assertEquals(5000, tcp.source());
+		assertEquals(443, tcp.destination());
+
+		assertSame(ip4, first.getHeader(ip4));
+		assertEquals(first.buffer().limit(), ip4.buffer().limit(), "bound to whole packet");
+		assertEquals(14, ip4.base());
+		assertEquals(0x0A000002, ip4.dstGetAsInt());
+	}
+
+	@Test
+	void metaHeaderBufferViewsOnlyTheBoundHeader() throws HeaderNotFound {
+		Packet first = buildTcpPacket(false, 0x0A000001, 0x0A000002, 1024, 80);
+		Packet second = buildTcpPacket(true, 0xC0A80001, 0xC0A80002, 5000, 443);
+
+		Ip4 ip4 = new Ip4();
+
+		first.getHeader(ip4);
+		ByteBuffer view = new MetaHeader(first, ip4).buffer();
+		assertEquals(20, view.remaining());
+		assertEquals(0x45, Byte.toUnsignedInt(view.get(0)));
+		assertEquals(0x0A000001, view.getInt(12));
+
+		second.getHeader(ip4);
+		view = new MetaHeader(second, ip4).buffer();
+		assertEquals(20, view.remaining());
+		assertEquals(0xC0A80001, view.getInt(12));
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.core.Ip4;
+import com.slytechs.jnet.protocol.core.Tcp;
+import com.slytechs.jnet.protocol.core.Udp;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.core.constants.TcpFlag;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector;
+import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestPacketBuilder {
+
+	private static final byte[] DST_MAC = { 0, 1, 2, 3, 4, 5 };
+	private static final byte[] SRC_MAC = { 0, 6, 7, 8, 9, 10 };
+
+	@Test
+	void builtPacketMatchesDissectedPacket() throws HeaderNotFound {
+		ByteBuffer data = ByteBuffer.allocate(128);
+		ByteBuffer desc = ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+		Type2Descriptor descriptor = new Type2Descriptor().withBinding(desc);
+
+		int len = new PacketBuilder(data)
+				.ethernet(DST_MAC, SRC_MAC)
+				.vlan(0, 32)
+				.ip4(0x0A000001, 0x0A000002)
+				.udp(1024, 5000)
+				.payload(new byte[] { 1, 2, 3 })
+				.build(descriptor);
+
+		assertEquals(14 + 4 + 20 + 8 + 3, len);
+		assertEquals(len, data.position());
+		assertEquals(4, descriptor.recordCount());
+
+		Packet packet = new Packet(data.flip(), descriptor);
+		Ip4 ip4 = packet.getHeader(new Ip4());
+		Udp udp = packet.getHeader(new Udp());
+
+		assertEquals(len - 18, ip4.totalLength());
+		assertEquals(0x0A000002, ip4.dstGetAsInt());
+		assertEquals(11, udp.length());
+		assertEquals(5000, udp.dstPort());
+
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2)
+				.verifyChecksums(true);
+		dissector.dissectPacket(packet);
+		assertEquals(CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX, dissector.writeDescriptor(descriptor));
+
+		assertEquals(4, descriptor.recordCount());
+		assertEquals(len, descriptor.captureLength());
+		assertEquals(CoreConstants.DESC_CSUM_FLAG_VERIFIED, descriptor.checksumFlags());
+
+		descriptor.hash32(0xFFFF_FFFF);
+		descriptor.color(0xFFFF_FFFF);
+		assertEquals(CoreConstants.DESC_CSUM_FLAG_VERIFIED, descriptor.checksumFlags(),
+				"flags are not overwritten by hash or color");
+	}
+
+	@Test
+	void superFrameUsesLargeFrameDescriptor() throws HeaderNotFound {
+		ByteBuffer data = ByteBuffer.allocate(Packet.MAX_SUPER_FRAME_LENGTH);
+		ByteBuffer desc = ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+		Type2Descriptor descriptor = new Type2Descriptor().withBinding(desc);
+
+		int len = buildSuperFrame(data, descriptor);
+
+		assertTrue(descriptor.isLargeFrame());
+		assertEquals(len, descriptor.captureLength());
+		assertEquals(CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX, descriptor.byteSize());
+
+		Packet packet = new Packet(data.flip(), descriptor);
+		Ip4 ip4 = packet.getHeader(new Ip4());
+		assertEquals(0, ip4.totalLength());
+		assertEquals(len - 34, ip4.payloadLength());
+
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2)
+				.enableLargeFrames(true);
+		dissector.dissectPacket(packet);
+		assertEquals(CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX, dissector.writeDescriptor(descriptor));
+
+		assertEquals(3, descriptor.recordCount());
+		assertEquals(len, descriptor.wireLength());
+		assertEquals(100_000, packet.payloadLength());
+		assertEquals(80, packet.getHeader(new Tcp()).destination());
+	}
+
+	@Test
+	void superFrameLengthsSaturateWithoutLargeFrames() {
+		ByteBuffer data = ByteBuffer.allocate(Packet.MAX_SUPER_FRAME_LENGTH);
+		ByteBuffer desc = ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+		Type2Descriptor descriptor = new Type2Descriptor().withBinding(desc);
+
+		assertThrows(BufferOverflowException.class, () -> buildSuperFrame(data, descriptor),
+				"no room for the extension word");
+
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2);
+		dissector.dissectPacket(data.flip());
+		assertEquals(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX, dissector.writeDescriptor(descriptor));
+
+		assertFalse(descriptor.isLargeFrame());
+		assertEquals(CoreConstants.DESC_TYPE2_LENGTH_MAX, descriptor.captureLength());
+		assertEquals(CoreConstants.DESC_TYPE2_LENGTH_MAX, descriptor.wireLength());
+		assertEquals(3, descriptor.recordCount());
+	}
+
+	private static int buildSuperFrame(ByteBuffer data, Type2Descriptor descriptor) {
+		return new PacketBuilder(data)
+				.ethernet(DST_MAC, SRC_MAC)
+				.ip4(0x0A000001, 0x0A000002)
+				.tcp(1024, 80, 1, 0, TcpFlag.TCP_FLAG_ACK)
+				.payload(100_000)
+				.build(descriptor);
+	}
+
+	@Test
+	void headerAfterPayloadThrows() {
+		PacketBuilder builder = new PacketBuilder(ByteBuffer.allocate(64))
+				.ethernet(DST_MAC, SRC_MAC)
+				.payload(4);
+
+		assertThrows(IllegalStateException.class, () -> builder.ip4(1, 2));
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestPacketPool {
+
+	@Test
+	void releasedPacketIsReused() {
+		PacketPool pool = new PacketPool();
+
+		Packet packet = pool.allocate().retain();
+		assertEquals(2, packet.refCount());
+
+		assertFalse(packet.release());
+		assertTrue(packet.release());
+
+		assertSame(packet, pool.allocate());
+		assertEquals(1, pool.allocatedCount());
+	}
+
+	@Test
+	void releaseAfterLastReleaseThrows() {
+		PacketPool pool = new PacketPool(PacketDescriptorType.TYPE2, 128, 16, true);
+
+		Packet packet = pool.allocate();
+		packet.release();
+
+		assertThrows(IllegalStateException.class, packet::release);
+		assertThrows(IllegalStateException.class, packet::retain);
+		assertThrows(IllegalStateException.class, () -> new Packet().retain());
+	}
+
+	@Test
+	void packetsReleasedOnAnotherThreadAreReused() throws InterruptedException {
+		PacketPool pool = new PacketPool(PacketDescriptorType.TYPE2, 128, 16, false);
+
+		Packet[] packets = new Packet[8];
+		for (int i = 0; i < packets.length; i++)
+			packets[i] = pool.allocate();
+
+		Thread releaser = new Thread(() -> {
+			for (Packet packet : packets)
+				packet.release();
+		});
+
+		releaser.start();
+		releaser.join();
+
+		Set<Packet> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (int i = 0; i < packets.length; i++)
+			reused.add(pool.allocate());
+
+		assertEquals(packets.length, reused.size());
+		for (Packet packet : packets)
+			assertTrue(reused.contains(packet));
+
+		assertEquals(packets.length, pool.allocatedCount());
+	}
+
+	@Test
+	void freeListIsBounded() {
+		PacketPool pool = new PacketPool(PacketDescriptorType.TYPE2, 128, 2, false);
+
+		Packet[] packets = { pool.allocate(), pool.allocate(), pool.allocate() };
+		for (Packet packet : packets)
+			packet.release();
+
+		pool.allocate();
+		pool.allocate();
+		assertEquals(3, pool.allocatedCount());
+
+		pool.allocate();
+		assertEquals(4, pool.allocatedCount());
+	}
+}
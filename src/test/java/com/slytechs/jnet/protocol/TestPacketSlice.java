@@ -0,0 +1,94 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.core.Udp;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestPacketSlice {
+
+	private static final byte[] DST_MAC = { 0, 1, 2, 3, 4, 5 };
+	private static final byte[] SRC_MAC = { 0, 6, 7, 8, 9, 10 };
+
+	private static Packet buildUdpPacket() {
+		ByteBuffer data = ByteBuffer.allocate(256);
+		ByteBuffer desc = ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+		Type2Descriptor descriptor = new Type2Descriptor().withBinding(desc);
+
+		new PacketBuilder(data)
+				.ethernet(DST_MAC, SRC_MAC)
+				.ip4(0x0A000001, 0x0A000002)
+				.udp(1024, 5000)
+				.payload(100)
+				.build(descriptor);
+
+		return new Packet(data.flip(), descriptor);
+	}
+
+	@Test
+	void sliceKeepsHeadersAndPayloadBytes() throws HeaderNotFound {
+		Packet packet = buildUdpPacket();
+
+		int snaplen = packet.snapLength(CoreId.CORE_ID_UDP, 0, 4);
+		assertEquals(14 + 20 + 8 + 4, snaplen);
+
+		ByteBuffer data = ByteBuffer.allocate(256);
+		ByteBuffer desc = ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+
+		assertEquals(snaplen, packet.sliceTo(snaplen, data, desc));
+
+		Type2Descriptor descriptor = new Type2Descriptor().withBinding(desc.flip());
+		assertEquals(descriptor.byteSize(), desc.limit());
+		assertEquals(snaplen, descriptor.captureLength());
+		assertEquals(packet.wireLength(), descriptor.wireLength());
+		assertEquals(3, descriptor.recordCount());
+
+		Packet slice = new Packet(data.flip(), descriptor);
+		assertTrue(slice.isTruncated());
+		assertEquals(5000, slice.getHeader(new Udp()).dstPort());
+	}
+
+	@Test
+	void truncateDropsRecordsPastSnapLength() {
+		Packet packet = buildUdpPacket();
+		Type2Descriptor descriptor = packet.descriptor();
+
+		descriptor.truncate(14 + 10);
+
+		assertEquals(24, descriptor.captureLength());
+		assertEquals(1, descriptor.recordCount());
+		assertTrue(packet.hasHeader(CoreId.CORE_ID_ETHER, 0));
+		assertFalse(packet.hasHeader(CoreId.CORE_ID_IPv4, 0));
+	}
+}
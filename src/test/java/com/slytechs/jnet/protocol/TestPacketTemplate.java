@@ -0,0 +1,96 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.core.Ip4;
+import com.slytechs.jnet.protocol.core.Tcp;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.core.constants.TcpFlag;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector;
+import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestPacketTemplate {
+
+	private static final byte[] DST_MAC = { 0, 1, 2, 3, 4, 5 };
+	private static final byte[] SRC_MAC = { 0, 6, 7, 8, 9, 10 };
+	private static final byte[] TS_OPTION = { 8, 10, 0, 0, 0, 1, 0, 0, 0, 0 };
+
+	@Test
+	void patchedCopyHasValidChecksums() throws HeaderNotFound {
+		ByteBuffer data = ByteBuffer.allocate(128);
+		ByteBuffer desc = ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+		Type2Descriptor descriptor = new Type2Descriptor().withBinding(desc);
+
+		int len = new PacketBuilder(data)
+				.ethernet(DST_MAC, SRC_MAC)
+				.ip4(0x0A000001, 0x0A000002)
+				.tcp(1024, 80, 1000, 0, TcpFlag.TCP_FLAG_ACK)
+				.tcpOption(TS_OPTION)
+				.payload(new byte[] { 1, 2, 3, 4, 5 })
+				.build(descriptor);
+
+		PacketTemplate template = new PacketTemplate(new Packet(data.flip(), descriptor));
+		assertEquals(len, template.length());
+
+		int seq = template.field("tcp.seq");
+		int id = template.field("ip.id");
+		int src = template.field("ip.src");
+		int ts = template.field("tcp.opt.ts.send_ts");
+		assertThrows(IllegalArgumentException.class, () -> template.field("udp.srcport"));
+
+		ByteBuffer copy = ByteBuffer.allocate(128);
+		ByteBuffer copyDesc = ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+
+		template.copyTo(copy, copyDesc)
+				.set(seq, 0xFFFF_0001L)
+				.set(id, 77)
+				.set(src, 0xC0A80101)
+				.set(ts, 12345);
+
+		assertEquals(len, copy.position());
+
+		Type2Descriptor copyDescriptor = new Type2Descriptor().withBinding(copyDesc.clear());
+		Packet packet = new Packet(copy.flip(), copyDescriptor);
+
+		assertEquals(0xFFFF_0001L, packet.getHeader(new Tcp()).seq());
+		assertEquals(77, packet.getHeader(new Ip4()).identification());
+		assertEquals(0xC0A80101, packet.getHeader(new Ip4()).srcAsInt());
+
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2)
+				.verifyChecksums(true);
+		dissector.dissectPacket(packet);
+		dissector.writeDescriptor(copyDescriptor);
+
+		assertEquals(CoreConstants.DESC_CSUM_FLAG_VERIFIED, copyDescriptor.checksumFlags());
+	}
+}
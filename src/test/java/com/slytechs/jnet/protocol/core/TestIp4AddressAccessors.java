@@ -0,0 +1,89 @@
+/*
+ * Sly Technologies Free License
+ * 
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.slytechs.com/free-license-text
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import com.slytechs.jnet.jnetruntime.util.HexStrings;
+import com.slytechs.jnet.protocol.HeaderNotFound;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector;
+import com.slytechs.test.Tests;
+
+/**
+ * Allocation-free IP address accessor tests
+ * 
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+@Tag("osi-layer3")
+@Tag("ip")
+@Tag("IPv4")
+class TestIp4AddressAccessors {
+
+	static final PacketDissector DISSECTOR = PacketDissector
+			.dissector(PacketDescriptorType.TYPE2);
+
+	static final ByteBuffer DESC_BUFFER = ByteBuffer
+			.allocateDirect(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+			.order(ByteOrder.nativeOrder());
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeEach
+	void setUp(TestInfo info) throws Exception {
+		DISSECTOR.reset();
+
+		DESC_BUFFER.clear();
+		while (DESC_BUFFER.remaining() > 0)
+			DESC_BUFFER.put((byte) 0);
+
+		DESC_BUFFER.clear();
+
+		Tests.displayTestName(info);
+	}
+
+	@Test
+	void test_Ip4_dstInto() throws HeaderNotFound {
+		var packet = TestPackets.VLAN_1500BYTES.toPacket();
+		packet.descriptor().bind(DESC_BUFFER);
+
+		DISSECTOR.dissectPacket(packet);
+		DISSECTOR.writeDescriptor(packet.descriptor());
+
+		var ip4 = packet.getHeader(new Ip4());
+		var address = new Ip4Address();
+		var EXPECTED_IP = HexStrings.parseHexString("83972015");
+
+		assertSame(address, ip4.dstInto(address));
+		assertArrayEquals(EXPECTED_IP, address.toArray());
+		assertEquals(0x83972015, ip4.dstGetAsInt());
+		assertThrows(IllegalArgumentException.class, () -> ip4.dstInto(new Ip6Address()));
+	}
+}
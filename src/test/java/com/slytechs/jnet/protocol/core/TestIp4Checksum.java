@@ -0,0 +1,132 @@
+/*
+ * Sly Technologies Free License
+ * 
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.slytechs.com/free-license-text
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.core;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+
+import com.slytechs.jnet.protocol.HeaderNotFound;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector;
+import com.slytechs.test.Tests;
+
+/**
+ * IPv4 checksum maintenance and verification tests
+ * 
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+@Tag("osi-layer3")
+@Tag("ip")
+@Tag("IPv4")
+@Tag("checksum")
+class TestIp4Checksum {
+
+	static final PacketDissector DISSECTOR = PacketDissector
+			.dissector(PacketDescriptorType.TYPE2);
+
+	static final ByteBuffer DESC_BUFFER = ByteBuffer
+			.allocateDirect(CoreConstants.DESC_TYPE2_EXT_BYTE_SIZE_MAX)
+			.order(ByteOrder.nativeOrder());
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@BeforeEach
+	void setUp(TestInfo info) throws Exception {
+		DISSECTOR.reset();
+
+		DESC_BUFFER.clear();
+		while (DESC_BUFFER.remaining() > 0)
+			DESC_BUFFER.put((byte) 0);
+
+		DESC_BUFFER.clear();
+
+		Tests.displayTestName(info);
+	}
+
+	@Test
+	void test_Ip4_ttlIncrementalChecksum() throws HeaderNotFound {
+		var packet = TestPackets.VLAN_1500BYTES.toPacket();
+		packet.descriptor().bind(DESC_BUFFER);
+
+		DISSECTOR.dissectPacket(packet);
+		DISSECTOR.writeDescriptor(packet.descriptor());
+
+		var ip4 = packet.getHeader(new Ip4());
+		int sum = onesComplementSum(ip4.headerBuffer());
+		int ttl = ip4.ttl();
+
+		assertEquals(ttl - 1, ip4.ttlDecrement());
+		ip4.srcAsInt(0x0A000001);
+
+		assertEquals(0x0A000001, ip4.srcAsInt());
+		assertEquals(sum, onesComplementSum(ip4.headerBuffer()));
+	}
+
+	@Test
+	void test_Ip4_checksumValid() throws HeaderNotFound {
+		var dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2)
+				.verifyChecksums(true);
+		var packet = TestPackets.VLAN_1500BYTES.toPacket();
+		packet.descriptor().bind(DESC_BUFFER);
+
+		dissector.dissectPacket(packet);
+		dissector.writeDescriptor(packet.descriptor());
+
+		var ip4 = packet.getHeader(new Ip4());
+		ip4.checksum(0);
+		ip4.checksum(~InetChecksum.sum(ip4.headerBuffer(), 0, ip4.headerLength()) & 0xFFFF);
+
+		dissector.reset();
+		dissector.dissectPacket(packet);
+		dissector.writeDescriptor(packet.descriptor());
+
+		assertTrue(packet.getHeader(new Ip4()).checksumValid());
+
+		ip4.checksum(ip4.checksum() ^ 1);
+
+		dissector.reset();
+		dissector.dissectPacket(packet);
+		dissector.writeDescriptor(packet.descriptor());
+
+		assertFalse(packet.getHeader(new Ip4()).checksumValid());
+		assertEquals(CoreConstants.DESC_CSUM_FLAG_VERIFIED,
+				packet.descriptor().checksumFlags() & CoreConstants.DESC_CSUM_FLAG_VERIFIED);
+	}
+
+	private static int onesComplementSum(ByteBuffer header) {
+		int sum = 0;
+		for (int i = 0; i < header.limit(); i += 2)
+			sum += Short.toUnsignedInt(header.getShort(i));
+
+		while ((sum >>> 16) != 0)
+			sum = (sum & 0xFFFF) + (sum >>> 16);
+
+		return sum;
+	}
+}
@@ -19,6 +19,7 @@ package com.slytechs.jnet.protocol.core;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.foreign.Arena;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -118,4 +119,22 @@ class TestUdpHeader {
 		assertEquals(74, udp.length());
 	}
 
+	@Test
+	void test_Udp_retainInArena() throws HeaderNotFound {
+		var packet = TestPackets.ETH_IPv4_UDP_SNMP.toPacket();
+		packet.descriptor().bind(DESC_BUFFER);
+
+		DISSECTOR.dissectPacket(packet);
+		DISSECTOR.writeDescriptor(packet.descriptor());
+
+		var udp = new Udp();
+		try (Arena arena = Arena.ofConfined()) {
+			var retained = packet.retainIn(arena);
+
+			assertEquals(60376, retained.getHeader(udp).srcPort());
+		}
+
+		assertThrows(IllegalStateException.class, udp::srcPort);
+	}
+
 }
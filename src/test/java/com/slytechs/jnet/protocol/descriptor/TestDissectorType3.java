@@ -0,0 +1,107 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.descriptor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.jnetruntime.util.HexStrings;
+import com.slytechs.jnet.protocol.Packet;
+import com.slytechs.jnet.protocol.core.Ip4;
+import com.slytechs.jnet.protocol.core.Tcp;
+import com.slytechs.jnet.protocol.core.TcpMssOption;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestDissectorType3 {
+
+	private static final byte[] PACKET_IP4_TCP = HexStrings.parseHexString(""
+			+ "0026622f4787 001d60b30184 0800"
+			+ "4500003c cb5b4000 400628e4 c0a8018c ae8fd5b8"
+			+ "e14e00508e50190100000000a00216d08f470000020405b40402080a0021d25a0000000001030307");
+
+	private static Type2Descriptor dissectType2(byte[] packet) {
+		ByteBuffer dsc = ByteBuffer.allocate(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2);
+		dissector.dissectPacket(ByteBuffer.wrap(packet), 0, packet.length, packet.length);
+		dissector.writeDescriptor(dsc);
+		dsc.clear();
+
+		return new Type2Descriptor().withBinding(dsc);
+	}
+
+	private static Type3Descriptor dissectType3(byte[] packet) {
+		ByteBuffer dsc = ByteBuffer.allocate(CoreConstants.DESC_TYPE3_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE3);
+		dissector.dissectPacket(ByteBuffer.wrap(packet), 0, packet.length, packet.length);
+		dissector.writeDescriptor(dsc);
+		dsc.clear();
+
+		return new Type3Descriptor().withBinding(dsc);
+	}
+
+	@Test
+	void type3RecordsMatchType2() {
+		Type2Descriptor type2 = dissectType2(PACKET_IP4_TCP);
+		Type3Descriptor type3 = dissectType3(PACKET_IP4_TCP);
+
+		assertFalse(type3.isTruncated(), "truncated");
+		assertEquals(PACKET_IP4_TCP.length, type3.captureLength(), "captureLength");
+		assertEquals(type2.l2FrameType(), type3.l2FrameType(), "l2FrameType");
+		assertArrayEquals(type2.listHeaders(), type3.listHeaders());
+	}
+
+	@Test
+	void type3FitsSingleCacheLine() {
+		Type3Descriptor type3 = dissectType3(PACKET_IP4_TCP);
+
+		assertTrue(type3.byteSize() <= 64, "byteSize=" + type3.byteSize());
+	}
+
+	@Test
+	void type3OptionLookupRelativeToParent() {
+		Type3Descriptor type3 = dissectType3(PACKET_IP4_TCP);
+
+		try (Packet packet = new Packet(type3)) {
+			packet.bind(PACKET_IP4_TCP);
+
+			Ip4 ip4 = new Ip4();
+			Tcp tcp = new Tcp();
+			TcpMssOption mss = new TcpMssOption();
+
+			assertTrue(packet.hasHeader(ip4), "ip4");
+			assertTrue(packet.hasHeader(tcp), "tcp");
+			assertTrue(tcp.hasOption(mss), "mss");
+			assertEquals(1460, mss.mss());
+		}
+	}
+
+}
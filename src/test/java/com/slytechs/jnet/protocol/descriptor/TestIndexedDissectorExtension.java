@@ -0,0 +1,172 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.descriptor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector.RecordRecorder;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestIndexedDissectorExtension {
+
+	private static class StubExtension implements PacketDissectorExtension {
+
+		private final int[] ports;
+		private final int[] etherTypes;
+		private long signature;
+		private long signatureMask;
+		private int calls;
+
+		StubExtension(int[] ports, int[] etherTypes) {
+			this.ports = ports;
+			this.etherTypes = etherTypes;
+		}
+
+		StubExtension(int[] ports, byte[] signature, byte[] signatureMask) {
+			this(ports, PacketDissectorExtension.NONE);
+			this.signature = PacketDissectorExtension.prefixSignature(signature);
+			this.signatureMask = PacketDissectorExtension.prefixMask(signatureMask);
+		}
+
+		@Override
+		public boolean dissectPorts(ByteBuffer buffer, int offset, int encapsId, int src, int dst) {
+			calls++;
+			return ports != null;
+		}
+
+		@Override
+		public boolean dissectType(ByteBuffer buffer, int offset, int encapsId, int type) {
+			calls++;
+			return etherTypes != null;
+		}
+
+		@Override
+		public int[] ports() {
+			return ports;
+		}
+
+		@Override
+		public int[] etherTypes() {
+			return etherTypes;
+		}
+
+		@Override
+		public long signature() {
+			return signature;
+		}
+
+		@Override
+		public long signatureMask() {
+			return signatureMask;
+		}
+
+		@Override
+		public void setRecorder(RecordRecorder recorder) {
+		}
+
+		@Override
+		public void setExtensions(PacketDissectorExtension ext) {
+		}
+
+		@Override
+		public void reset() {
+		}
+	}
+
+	@Test
+	void dispatchesOnlyToDeclaringExtension() {
+		StubExtension dns = new StubExtension(new int[] { 53 }, PacketDissectorExtension.NONE);
+		StubExtension http = new StubExtension(new int[] { 80, 8080 }, PacketDissectorExtension.NONE);
+		StubExtension any = new StubExtension(null, null);
+
+		PacketDissectorExtension ext = PacketDissectorExtension.index(List.of(dns, http, any));
+		ByteBuffer payload = ByteBuffer.allocate(16);
+
+		assertTrue(ext.dissectPorts(payload, 0, CoreId.CORE_ID_UDP, 40000, 53));
+		assertTrue(ext.dissectPorts(payload, 0, CoreId.CORE_ID_TCP, 8080, 40000));
+		assertEquals(1, dns.calls);
+		assertEquals(1, http.calls);
+		assertEquals(0, any.calls);
+
+		assertFalse(ext.dissectPorts(payload, 0, CoreId.CORE_ID_TCP, 40000, 443));
+		assertFalse(ext.dissectType(null, 0, CoreId.CORE_ID_ETHER, 0x88CC));
+		assertEquals(1, dns.calls);
+		assertEquals(1, http.calls);
+		assertEquals(2, any.calls);
+	}
+
+	@Test
+	void signatureRejectsPayloadWithoutCall() {
+		/* TLS handshake record, any TLS 1.x version */
+		StubExtension tls = new StubExtension(new int[] { 443 },
+				new byte[] { 0x16, 0x03 },
+				new byte[] { (byte) 0xFF, (byte) 0xFF });
+
+		PacketDissectorExtension ext = PacketDissectorExtension.index(List.of(tls));
+
+		ByteBuffer handshake = ByteBuffer.wrap(new byte[] { 0, 0, 0x16, 0x03, 0x01, 0x02, 0x00 });
+		ByteBuffer encrypted = ByteBuffer.wrap(new byte[] { 0, 0, 0x5A, 0x13, 0x77, 0x10, 0x04, 0x3C, 0x01, 0x02 });
+		ByteBuffer truncated = ByteBuffer.wrap(new byte[] { 0, 0, 0x16 });
+
+		assertTrue(ext.dissectPorts(handshake, 2, CoreId.CORE_ID_TCP, 40000, 443));
+		assertFalse(ext.dissectPorts(encrypted, 2, CoreId.CORE_ID_TCP, 40000, 443));
+		assertFalse(ext.dissectPorts(truncated, 2, CoreId.CORE_ID_TCP, 40000, 443));
+		assertEquals(1, tls.calls);
+	}
+
+	@Test
+	void sourcePortIsTriedWhenDestinationPortDoesNotMatch() {
+		StubExtension tls = new StubExtension(new int[] { 443 },
+				new byte[] { 0x16, 0x03 },
+				new byte[] { (byte) 0xFF, (byte) 0xFF });
+		StubExtension dns = new StubExtension(new int[] { 53 }, PacketDissectorExtension.NONE);
+
+		PacketDissectorExtension ext = PacketDissectorExtension.index(List.of(tls, dns));
+
+		ByteBuffer handshake = ByteBuffer.wrap(new byte[] { 0x16, 0x03, 0x01, 0x02, 0x00 });
+		ByteBuffer query = ByteBuffer.wrap(new byte[] { 0x12, 0x34, 0x01, 0x00, 0x00, 0x01 });
+
+		assertTrue(ext.dissectPorts(query, 0, CoreId.CORE_ID_UDP, 53, 443), "signature mismatch on dst");
+		assertEquals(0, tls.calls);
+		assertEquals(1, dns.calls);
+
+		assertTrue(ext.dissectPorts(handshake, 0, CoreId.CORE_ID_TCP, 53, 443));
+		assertEquals(1, tls.calls);
+		assertEquals(1, dns.calls, "src not tried after dst matched");
+
+		assertFalse(ext.dissectPorts(query, 0, CoreId.CORE_ID_TCP, 443, 443));
+		assertEquals(1, tls.calls);
+	}
+
+	@Test
+	void invalidKeyThrows() {
+		StubExtension bad = new StubExtension(new int[] { 0x10000 }, null);
+
+		assertThrows(IllegalArgumentException.class, () -> PacketDissectorExtension.index(List.of(bad)));
+	}
+}
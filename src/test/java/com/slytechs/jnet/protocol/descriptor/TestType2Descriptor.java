@@ -0,0 +1,192 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.descriptor;
+
+import static com.slytechs.jnet.protocol.core.constants.CoreId.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.L2FrameType;
+import com.slytechs.jnet.protocol.pack.PackId;
+
+/**
+ * Type2 descriptor header lookup tests.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestType2Descriptor {
+
+	/** Writes a prepared descriptor image, as a dissector would. */
+	private static class ImageDissector implements PacketDissector {
+
+		private final ByteBuffer image;
+
+		ImageDissector(ByteBuffer image) {
+			this.image = image;
+		}
+
+		@Override
+		public int dissectPacket(ByteBuffer buffer, long timestamp, int caplen, int wirelen) {
+			return caplen;
+		}
+
+		@Override
+		public boolean isNative() {
+			return false;
+		}
+
+		@Override
+		public void reset() {
+		}
+
+		@Override
+		public PacketDissector setDatalinkType(L2FrameType l2Type) {
+			return this;
+		}
+
+		@Override
+		public int writeDescriptor(ByteBuffer buffer) {
+			buffer.put(0, image, 0, image.limit());
+
+			return image.limit();
+		}
+	}
+
+	private static ByteBuffer newBuffer() {
+		return ByteBuffer.allocateDirect(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+	}
+
+	private static Type2Descriptor encode(ByteBuffer buffer, long... records) {
+		return new Type2Descriptor()
+				.withBinding(buffer)
+				.encode(0, 64, 64, records, records.length);
+	}
+
+	@Test
+	void lookupAtDepthWalksRepeatedHeaders() {
+		Type2Descriptor desc = encode(newBuffer(),
+				PackId.encodeRecord(CORE_ID_ETHER, 0, 14),
+				PackId.encodeRecord(CORE_ID_VLAN, 14, 4),
+				PackId.encodeRecord(CORE_ID_VLAN, 18, 4),
+				PackId.encodeRecord(CORE_ID_IPv4, 22, 20));
+
+		HeaderDescriptor hd = new HeaderDescriptor();
+
+		assertEquals(2, desc.headerCount(CORE_ID_VLAN));
+		assertTrue(desc.lookupHeader(CORE_ID_VLAN, 0, hd));
+		assertEquals(14, hd.getOffset());
+		assertTrue(desc.lookupHeader(CORE_ID_VLAN, 1, hd));
+		assertEquals(18, hd.getOffset());
+		assertFalse(desc.lookupHeader(CORE_ID_VLAN, 2, hd));
+
+		assertTrue(desc.lookupHeader(CORE_ID_VLAN, 0, hd), "lookup below the last depth");
+		assertEquals(14, hd.getOffset());
+	}
+
+	@Test
+	void lookupCursorIsResetWhenDissectorRewritesDescriptor() {
+		Type2Descriptor desc = encode(newBuffer(),
+				PackId.encodeRecord(CORE_ID_ETHER, 0, 14),
+				PackId.encodeRecord(CORE_ID_VLAN, 14, 4),
+				PackId.encodeRecord(CORE_ID_IPv4, 18, 20));
+
+		HeaderDescriptor hd = new HeaderDescriptor();
+		assertTrue(desc.lookupHeader(CORE_ID_VLAN, 0, hd));
+
+		/* Same record at the same index, but now preceded by another VLAN */
+		ByteBuffer image = newBuffer();
+		encode(image,
+				PackId.encodeRecord(CORE_ID_VLAN, 0, 4),
+				PackId.encodeRecord(CORE_ID_VLAN, 14, 4),
+				PackId.encodeRecord(CORE_ID_IPv4, 18, 20));
+
+		new ImageDissector(image).writeDescriptor(desc);
+
+		assertTrue(desc.lookupHeader(CORE_ID_VLAN, 1, hd));
+		assertEquals(14, hd.getOffset());
+		assertTrue(desc.lookupHeader(CORE_ID_VLAN, 0, hd));
+		assertEquals(0, hd.getOffset());
+	}
+
+	private static HeaderDescriptor[] newDescriptors(int count) {
+		HeaderDescriptor[] descriptors = new HeaderDescriptor[count];
+		for (int i = 0; i < count; i++)
+			descriptors[i] = new HeaderDescriptor();
+
+		return descriptors;
+	}
+
+	@Test
+	void lookupHeadersReportsMissingHeaders() {
+		Type2Descriptor desc = encode(newBuffer(),
+				PackId.encodeRecord(CORE_ID_ETHER, 0, 14),
+				PackId.encodeRecord(CORE_ID_IPv4, 14, 20),
+				PackId.encodeRecord(CORE_ID_UDP, 34, 8));
+
+		int[] ids = { CORE_ID_ETHER, CORE_ID_IPv4, CORE_ID_TCP, CORE_ID_UDP };
+		HeaderDescriptor[] hd = newDescriptors(ids.length);
+
+		assertEquals(0b1011, desc.lookupHeaders(ids, hd, ids.length));
+		assertEquals(0, hd[0].getOffset());
+		assertEquals(14, hd[1].getOffset());
+		assertEquals(34, hd[3].getOffset());
+	}
+
+	@Test
+	void lookupHeadersResolvesClassAndExactIdToSameRecord() {
+		Type2Descriptor desc = encode(newBuffer(),
+				PackId.encodeRecord(CORE_ID_ETHER, 0, 14),
+				PackId.encodeRecord(CORE_ID_IPv4, 14, 20),
+				PackId.encodeRecord(CORE_ID_UDP, 34, 8));
+
+		int[] ids = { CORE_ID_IP, CORE_ID_IPv4 };
+		HeaderDescriptor[] hd = newDescriptors(ids.length);
+
+		assertEquals(0b11, desc.lookupHeaders(ids, hd, ids.length));
+		assertEquals(14, hd[0].getOffset());
+		assertEquals(14, hd[1].getOffset());
+		assertEquals(20, hd[0].getLength());
+		assertEquals(20, hd[1].getLength());
+	}
+
+	@Test
+	void lookupHeadersAssignsRepeatedIdsInDepthOrder() {
+		Type2Descriptor desc = encode(newBuffer(),
+				PackId.encodeRecord(CORE_ID_ETHER, 0, 14),
+				PackId.encodeRecord(CORE_ID_VLAN, 14, 4),
+				PackId.encodeRecord(CORE_ID_VLAN, 18, 4),
+				PackId.encodeRecord(CORE_ID_IPv4, 22, 20));
+
+		int[] ids = { CORE_ID_IP, CORE_ID_VLAN, CORE_ID_VLAN, CORE_ID_VLAN, CORE_ID_IPv4 };
+		HeaderDescriptor[] hd = newDescriptors(ids.length);
+
+		assertEquals(0b10111, desc.lookupHeaders(ids, hd, ids.length));
+		assertEquals(22, hd[0].getOffset());
+		assertEquals(14, hd[1].getOffset());
+		assertEquals(18, hd[2].getOffset());
+		assertEquals(22, hd[4].getOffset());
+	}
+}
@@ -0,0 +1,382 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.jnetruntime.time.TimestampUnit;
+import com.slytechs.jnet.protocol.Packet;
+import com.slytechs.jnet.protocol.core.Ip4;
+import com.slytechs.jnet.protocol.core.Udp;
+import com.slytechs.jnet.protocol.core.Vlan;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.core.constants.IpfDescriptorType;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.descriptor.IpfReassembly;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector;
+import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestIpfReassembler {
+
+	private static byte[] ip4Fragment(int fragOffset, boolean mf, int payloadLength) {
+		return ip4Fragment(0x1234, fragOffset, mf, payloadLength);
+	}
+
+	private static byte[] ip4Fragment(int ident, int fragOffset, boolean mf, int payloadLength) {
+		ByteBuffer b = ByteBuffer.allocate(14 + 20 + payloadLength);
+
+		b.put(new byte[12]).putShort((short) 0x0800);
+
+		b.put((byte) 0x45).put((byte) 0)
+				.putShort((short) (20 + payloadLength))
+				.putShort((short) ident)
+				.putShort((short) ((mf ? 0x2000 : 0) | (fragOffset >> 3)))
+				.put((byte) 64).put((byte) 17)
+				.putShort((short) 0)
+				.put(new byte[] { 10, 0, 0, 1 })
+				.put(new byte[] { 10, 0, 0, 2 });
+
+		for (int i = 0; i < payloadLength; i++)
+			b.put((byte) (fragOffset + i));
+
+		return b.array();
+	}
+
+	private static byte[] vlanTagged(byte[] frame) {
+		ByteBuffer b = ByteBuffer.allocate(frame.length + 4);
+
+		b.put(frame, 0, 12)
+				.putShort((short) 0x8100)
+				.putShort((short) 100)
+				.put(frame, 12, frame.length - 12);
+
+		return b.array();
+	}
+
+	private static Packet newPacket(byte[] data) {
+		ByteBuffer dsc = ByteBuffer.allocate(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2);
+		dissector.dissectPacket(ByteBuffer.wrap(data), 0, data.length, data.length);
+		dissector.writeDescriptor(dsc);
+		dsc.clear();
+
+		Packet packet = new Packet(new Type2Descriptor().withBinding(dsc));
+		packet.bind(data);
+
+		return packet;
+	}
+
+	@Test
+	void reassembleTwoIp4FragmentsOutOfOrder() {
+		try (IpfReassembler reassembler = new IpfReassembler();
+				Packet last = newPacket(ip4Fragment(16, false, 8));
+				Packet first = newPacket(ip4Fragment(0, true, 16))) {
+
+			assertFalse(reassembler.reassemble(last));
+			assertEquals(1, reassembler.activeCount());
+
+			assertTrue(reassembler.reassemble(first));
+			assertEquals(0, reassembler.activeCount());
+
+			Ip4 ip4 = new Ip4();
+			assertTrue(first.hasHeader(ip4));
+
+			ByteBuffer datagram = ip4.getReassembledBuffer();
+			assertNotNull(datagram);
+			assertEquals(20 + 24, datagram.remaining());
+			assertEquals(20 + 24, Short.toUnsignedInt(datagram.getShort(2)), "total length");
+			assertEquals(0, datagram.getShort(6), "flags and fragment offset");
+
+			for (int i = 0; i < 24; i++)
+				assertEquals(i, datagram.get(20 + i));
+
+			IpfReassembly reassembly = first.descriptor(IpfDescriptorType.IPF_REASSEMBLY);
+			assertTrue(reassembly.isComplete());
+			assertTrue(reassembly.isIp4());
+			assertEquals(2, reassembly.tableSize());
+			assertFalse(reassembly.isTableTruncated());
+			assertEquals(0, reassembly.fragmentOffset(0));
+			assertEquals(16, reassembly.fragmentOffset(1));
+			assertEquals(1, reassembler.statistics().reassembled());
+		}
+	}
+
+	@Test
+	void transportHeaderAvailableFromCompletingFragment() {
+		try (IpfReassembler reassembler = new IpfReassembler();
+				Packet first = newPacket(ip4Fragment(0, true, 16));
+				Packet last = newPacket(ip4Fragment(16, false, 8))) {
+
+			assertFalse(reassembler.reassemble(first));
+
+			Udp udp = new Udp();
+			assertFalse(last.hasHeader(udp));
+
+			assertTrue(reassembler.reassemble(last));
+			assertTrue(last.hasHeader(udp));
+			assertEquals(0x0001, udp.srcPort());
+			assertEquals(0x0203, udp.dstPort());
+		}
+	}
+
+	@Test
+	void linkAndIpHeadersAreNotTakenFromReassembledFrame() {
+		try (IpfReassembler reassembler = new IpfReassembler();
+				Packet first = newPacket(vlanTagged(ip4Fragment(0, true, 16)));
+				Packet last = newPacket(ip4Fragment(16, false, 8))) {
+
+			assertFalse(reassembler.reassemble(first));
+			assertTrue(reassembler.reassemble(last));
+
+			assertTrue(last.hasHeader(new Udp()));
+			assertFalse(last.hasHeader(new Vlan()), "vlan tag of the first fragment");
+			assertEquals(0, last.headerCount(CoreId.CORE_ID_VLAN));
+
+			Ip4 ip4 = new Ip4();
+			assertTrue(last.hasHeader(ip4));
+			assertEquals(16, ip4.fragOffsetBytes(), "ip header of the completing fragment");
+		}
+	}
+
+	@Test
+	void reassembledHeaderIsOnlyValidUntilNextReassembly() {
+		try (IpfReassembler reassembler = new IpfReassembler();
+				Packet first = newPacket(ip4Fragment(0, true, 16));
+				Packet last = newPacket(ip4Fragment(16, false, 8));
+				Packet other = newPacket(ip4Fragment(0x5678, 0, true, 16))) {
+
+			assertFalse(reassembler.reassemble(first));
+			assertTrue(reassembler.reassemble(last));
+			assertTrue(last.hasHeader(new Udp()));
+
+			assertFalse(reassembler.reassemble(other));
+			assertFalse(last.hasHeader(new Udp()), "reassembled frame was released");
+		}
+	}
+
+	@Test
+	void overlappingAndDuplicateFragmentsFillHoles() {
+		try (IpfReassembler reassembler = new IpfReassembler();
+				Packet middle = newPacket(ip4Fragment(8, true, 16));
+				Packet duplicate = newPacket(ip4Fragment(8, true, 8));
+				Packet last = newPacket(ip4Fragment(24, false, 8));
+				Packet first = newPacket(ip4Fragment(0, true, 16))) {
+
+			assertFalse(reassembler.reassemble(middle));
+			assertFalse(reassembler.reassemble(duplicate));
+			assertFalse(reassembler.reassemble(last));
+			assertTrue(reassembler.reassemble(first));
+
+			Ip4 ip4 = new Ip4();
+			assertTrue(first.hasHeader(ip4));
+
+			ByteBuffer datagram = ip4.getReassembledBuffer();
+			assertEquals(20 + 32, datagram.remaining());
+
+			for (int i = 0; i < 32; i++)
+				assertEquals(i, datagram.get(20 + i));
+
+			IpfReassembly reassembly = first.descriptor(IpfDescriptorType.IPF_REASSEMBLY);
+			assertEquals(3, reassembly.tableSize());
+			assertTrue(reassembly.isOverlap());
+			assertEquals(8, reassembly.overlapBytes());
+			assertEquals(0, reassembly.holeBytes());
+		}
+	}
+
+	@Test
+	void datagramExceedingIpTotalLengthIsDropped() {
+		try (IpfReassembler reassembler = new IpfReassembler();
+				Packet first = newPacket(ip4Fragment(0, true, 16));
+				Packet last = newPacket(ip4Fragment(65520, false, 8))) {
+
+			assertFalse(reassembler.reassemble(first));
+			assertFalse(reassembler.reassemble(last));
+			assertEquals(0, reassembler.activeCount());
+
+			IpfStatistics stats = reassembler.statistics();
+			assertEquals(1, stats.oversized());
+			assertEquals(1, stats.drops());
+			assertEquals(0, stats.reassembled());
+		}
+	}
+
+	@Test
+	void fragmentShorterThanIpTotalLengthIsDropped() {
+		byte[] truncated = Arrays.copyOf(ip4Fragment(0, true, 16), 14 + 20 + 8);
+
+		try (IpfReassembler reassembler = new IpfReassembler();
+				Packet snapped = newPacket(truncated);
+				Packet first = newPacket(ip4Fragment(0, true, 16));
+				Packet last = newPacket(ip4Fragment(16, false, 8))) {
+
+			assertFalse(reassembler.reassemble(snapped));
+			assertEquals(0, reassembler.activeCount());
+
+			IpfStatistics stats = reassembler.statistics();
+			assertEquals(1, stats.truncated());
+			assertEquals(1, stats.drops());
+
+			assertFalse(reassembler.reassemble(first));
+			assertTrue(reassembler.reassemble(last));
+			assertEquals(1, stats.reassembled());
+		}
+	}
+
+	@Test
+	void datagramWithMoreFragmentsThanTableIsReassembled() {
+		final int count = 40;
+
+		try (IpfReassembler reassembler = new IpfReassembler()) {
+
+			/* In reverse, so later fragments sort ahead of a full table */
+			Packet packet = null;
+			for (int i = count - 1; i >= 0; i--) {
+				packet = newPacket(ip4Fragment(i * 8, i < (count - 1), 8));
+
+				assertEquals(i == 0, reassembler.reassemble(packet));
+			}
+
+			Ip4 ip4 = new Ip4();
+			assertTrue(packet.hasHeader(ip4));
+
+			ByteBuffer datagram = ip4.getReassembledBuffer();
+			assertEquals(20 + (count * 8), datagram.remaining());
+			for (int i = 0; i < (count * 8); i++)
+				assertEquals((byte) i, datagram.get(20 + i));
+
+			IpfReassembly reassembly = packet.descriptor(IpfDescriptorType.IPF_REASSEMBLY);
+			assertTrue(reassembly.isComplete());
+			assertTrue(reassembly.isTableTruncated());
+			assertEquals(32, reassembly.tableSize());
+			assertEquals(0, reassembly.fragmentOffset(0));
+			assertEquals(31 * 8, reassembly.fragmentOffset(31));
+			assertEquals(1, reassembler.statistics().reassembled());
+		}
+	}
+
+	@Test
+	void frameIndexesIncludeFragmentsBeyondDescriptorTable() {
+		final int copies = 40;
+
+		try (IpfReassembler reassembler = new IpfReassembler();
+				IpfTrackingIndex index = new IpfTrackingIndex()) {
+
+			reassembler.setTrackingIndex(index);
+
+			Packet packet = null;
+			for (int i = 0; i < copies; i++) {
+				packet = newPacket(ip4Fragment(8, true, 8));
+				packet.descriptor().frameNo(i);
+
+				assertFalse(reassembler.reassemble(packet));
+			}
+
+			Ip4 ip4 = new Ip4();
+			assertTrue(packet.hasHeader(ip4));
+			assertEquals(1, ip4.getIpfTrackingDescriptor().tableSize());
+
+			long[] frames = ip4.getIpfFrameIndexes();
+			assertEquals(copies, frames.length);
+			assertTrue(frames.length > (CoreConstants.DESC_IPF_TRACKING_BYTE_SIZE
+					- CoreConstants.DESC_IPF_TRACKING_BYTE_MIN_SIZE) / CoreConstants.DESC_IPF_TRACKING_RECORD_SIZE);
+			assertEquals(copies - 1, frames[copies - 1]);
+		}
+	}
+
+	@Test
+	void incompleteDatagramExpiresWithHoleStatistics() {
+		AtomicInteger holeBytes = new AtomicInteger(-1);
+
+		try (IpfReassembler reassembler = new IpfReassembler();
+				Packet last = newPacket(ip4Fragment(16, false, 8))) {
+
+			reassembler.setTimeoutAction(r -> {
+				assertTrue(r.isTimeout());
+				assertFalse(r.isComplete());
+				assertTrue(r.isHole());
+				holeBytes.set(r.holeBytes());
+			});
+
+			assertFalse(reassembler.reassemble(last));
+
+			assertEquals(0, reassembler.expire(IpfReassembler.DEFAULT_TIMEOUT_MILLI - 1000, TimestampUnit.EPOCH_MILLI));
+			assertEquals(1, reassembler.activeCount());
+
+			assertEquals(1, reassembler.expire(IpfReassembler.DEFAULT_TIMEOUT_MILLI + 1000, TimestampUnit.EPOCH_MILLI));
+			assertEquals(0, reassembler.activeCount());
+			assertEquals(16, holeBytes.get());
+			assertEquals(1, reassembler.statistics().timeouts());
+		}
+	}
+
+	@Test
+	void memoryBudgetEvictsOldestDatagram() {
+		final int datagramSize = 1500;
+		final long budget = IpfDatagram.HEADER_RESERVE + datagramSize;
+
+		try (IpfReassembler reassembler = new IpfReassembler(budget, datagramSize, IpfEvictionPolicy.OLDEST_FIRST);
+				Packet first = newPacket(ip4Fragment(1, 0, true, 16));
+				Packet second = newPacket(ip4Fragment(2, 0, true, 16))) {
+
+			assertFalse(reassembler.reassemble(first));
+			assertFalse(reassembler.reassemble(second));
+
+			IpfStatistics stats = reassembler.statistics();
+			assertEquals(1, stats.evictions());
+			assertEquals(1, stats.datagramsInUse());
+			assertEquals(budget, stats.bytesHighWater());
+			assertEquals(1.0, stats.pressure());
+		}
+	}
+
+	@Test
+	void memoryBudgetDropsNewDatagram() {
+		final int datagramSize = 1500;
+		final long budget = IpfDatagram.HEADER_RESERVE + datagramSize;
+
+		try (IpfReassembler reassembler = new IpfReassembler(budget, datagramSize, IpfEvictionPolicy.DROP_NEW);
+				Packet first = newPacket(ip4Fragment(1, 0, true, 16));
+				Packet second = newPacket(ip4Fragment(2, 0, true, 16))) {
+
+			assertFalse(reassembler.reassemble(first));
+			assertFalse(reassembler.reassemble(second));
+
+			IpfStatistics stats = reassembler.statistics();
+			assertEquals(0, stats.evictions());
+			assertEquals(1, stats.drops());
+			assertEquals(1, reassembler.activeCount());
+		}
+	}
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.slytechs.jnet.protocol.Packet;
+import com.slytechs.jnet.protocol.core.constants.CoreConstants;
+import com.slytechs.jnet.protocol.core.constants.IpfDescriptorType;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.descriptor.IpfBuffer;
+import com.slytechs.jnet.protocol.descriptor.IpfReassembly;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector;
+import com.slytechs.jnet.protocol.descriptor.Type2Descriptor;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestIpfShardedReassembler {
+
+	private static final int SHARDS = 4;
+	private static final long BUDGET = SHARDS * 1024L * 1024;
+	private static final int DATAGRAM_SIZE = 1500;
+	private static final int QUEUE_CAPACITY = 64;
+	private static final int FRAGMENT_SIZE = 2048;
+
+	private static byte[] ip4Fragment(int ident, int fragOffset, boolean mf, int payloadLength) {
+		ByteBuffer b = ByteBuffer.allocate(14 + 20 + payloadLength);
+
+		b.put(new byte[12]).putShort((short) 0x0800);
+
+		b.put((byte) 0x45).put((byte) 0)
+				.putShort((short) (20 + payloadLength))
+				.putShort((short) ident)
+				.putShort((short) ((mf ? 0x2000 : 0) | (fragOffset >> 3)))
+				.put((byte) 64).put((byte) 17)
+				.putShort((short) 0)
+				.put(new byte[] { 10, 0, 0, 1 })
+				.put(new byte[] { 10, 0, 0, 2 });
+
+		for (int i = 0; i < payloadLength; i++)
+			b.put((byte) (fragOffset + i));
+
+		return b.array();
+	}
+
+	private static Packet newPacket(byte[] data) {
+		ByteBuffer dsc = ByteBuffer.allocate(CoreConstants.DESC_TYPE2_BYTE_SIZE_MAX)
+				.order(ByteOrder.nativeOrder());
+
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2);
+		dissector.dissectPacket(ByteBuffer.wrap(data), 0, data.length, data.length);
+		dissector.writeDescriptor(dsc);
+		dsc.clear();
+
+		Packet packet = new Packet(new Type2Descriptor().withBinding(dsc));
+		packet.bind(data);
+
+		return packet;
+	}
+
+	private static IpfReassembly pollWithin(IpfShardedReassembler.Output output, long millis) {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+
+		IpfReassembly reassembly;
+		while (((reassembly = output.poll()) == null) && (System.nanoTime() < deadline))
+			Thread.onSpinWait();
+
+		return reassembly;
+	}
+
+	private static void awaitFragments(IpfShardedReassembler reassembler, long count) {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+		while ((reassembler.statistics().fragments() < count) && (System.nanoTime() < deadline))
+			Thread.onSpinWait();
+
+		assertEquals(count, reassembler.statistics().fragments());
+	}
+
+	@Test
+	void fragmentsOfDatagramRouteToOneShard() {
+		IpfShardedReassembler reassembler = new IpfShardedReassembler(SHARDS, BUDGET, DATAGRAM_SIZE,
+				IpfEvictionPolicy.OLDEST_FIRST, QUEUE_CAPACITY, FRAGMENT_SIZE);
+
+		try (reassembler;
+				Packet first = newPacket(ip4Fragment(7, 0, true, 16));
+				Packet last = newPacket(ip4Fragment(7, 16, false, 8))) {
+
+			IpfShardedReassembler.Output output = reassembler.newOutput();
+			assertTrue(output.submit(first));
+			assertTrue(output.submit(last));
+
+			IpfReassembly reassembly = pollWithin(output, 5000);
+			assertNotNull(reassembly);
+			assertTrue(reassembly.isComplete());
+
+			IpfBuffer buffer = (IpfBuffer) reassembly.peekDescriptor(IpfDescriptorType.IPF_BUFFER);
+			ByteBuffer datagram = buffer.datagram();
+			assertEquals(20 + 24, datagram.remaining());
+			for (int i = 0; i < 24; i++)
+				assertEquals(i, datagram.get(20 + i));
+		}
+
+		int owners = 0;
+		for (int i = 0; i < SHARDS; i++) {
+			long fragments = reassembler.shardStatistics(i).fragments();
+			assertTrue((fragments == 0) || (fragments == 2), "fragments split across shards");
+
+			if (fragments == 2)
+				owners++;
+		}
+
+		assertEquals(1, owners);
+		assertEquals(1, reassembler.statistics().reassembled());
+	}
+
+	@Test
+	void completionReturnsToOutputOfLastFragmentAcrossShards() throws InterruptedException {
+		final int count = 32;
+
+		IpfShardedReassembler reassembler = new IpfShardedReassembler(SHARDS, BUDGET, DATAGRAM_SIZE,
+				IpfEvictionPolicy.OLDEST_FIRST, QUEUE_CAPACITY, FRAGMENT_SIZE);
+
+		int[] received = new int[1];
+
+		try (reassembler) {
+			IpfShardedReassembler.Output firsts = reassembler.newOutput();
+			IpfShardedReassembler.Output lasts = reassembler.newOutput();
+
+			for (int ident = 0; ident < count; ident++)
+				assertTrue(firsts.submit(newPacket(ip4Fragment(ident, 0, true, 16))));
+
+			awaitFragments(reassembler, count);
+
+			Thread other = new Thread(() -> {
+				for (int ident = 0; ident < count; ident++)
+					lasts.submit(newPacket(ip4Fragment(ident, 16, false, 8)));
+
+				while ((received[0] < count) && (pollWithin(lasts, 5000) != null))
+					received[0]++;
+			});
+			other.start();
+			other.join();
+
+			assertNull(firsts.poll());
+		}
+
+		assertEquals(count, received[0]);
+
+		int used = 0;
+		for (int i = 0; i < SHARDS; i++)
+			if (reassembler.shardStatistics(i).reassembled() > 0)
+				used++;
+
+		assertTrue(used > 1, "datagrams not spread across shards");
+		assertEquals(count, reassembler.statistics().reassembled());
+	}
+
+	@Test
+	void fullShardRingRejectsFragment() {
+		IpfShardedReassembler reassembler = new IpfShardedReassembler(1, BUDGET, DATAGRAM_SIZE,
+				IpfEvictionPolicy.OLDEST_FIRST, 2, FRAGMENT_SIZE, false);
+
+		try (reassembler) {
+			IpfShardedReassembler.Output output = reassembler.newOutput();
+
+			assertTrue(output.submit(newPacket(ip4Fragment(1, 0, true, 16))));
+			assertTrue(output.submit(newPacket(ip4Fragment(2, 0, true, 16))));
+			assertFalse(output.submit(newPacket(ip4Fragment(3, 0, true, 16))));
+
+			assertEquals(1, reassembler.statistics().drops());
+
+			reassembler.start();
+		}
+
+		IpfStatistics stats = reassembler.statistics();
+		assertEquals(2, stats.fragments());
+		assertEquals(1, stats.drops());
+	}
+
+	@Test
+	void failedFragmentIsSkippedByWorker() {
+		IpfShardedReassembler reassembler = new IpfShardedReassembler(1, BUDGET, DATAGRAM_SIZE,
+				IpfEvictionPolicy.OLDEST_FIRST, QUEUE_CAPACITY, FRAGMENT_SIZE);
+
+		try (reassembler;
+				Packet bad = newPacket(ip4Fragment(3, 0, true, 16));
+				Packet first = newPacket(ip4Fragment(7, 0, true, 16));
+				Packet last = newPacket(ip4Fragment(7, 16, false, 8))) {
+
+			/* Accepted by the output, fails on the worker thread */
+			bad.descriptor().timestampUnit(null);
+
+			IpfShardedReassembler.Output output = reassembler.newOutput();
+			assertTrue(output.submit(bad));
+			assertTrue(output.submit(first));
+			assertTrue(output.submit(last));
+
+			IpfReassembly reassembly = pollWithin(output, 5000);
+			assertNotNull(reassembly);
+			assertTrue(reassembly.isComplete());
+		}
+
+		IpfStatistics stats = reassembler.statistics();
+		assertEquals(1, stats.errors());
+		assertEquals(2, stats.fragments());
+		assertEquals(1, stats.reassembled());
+	}
+}
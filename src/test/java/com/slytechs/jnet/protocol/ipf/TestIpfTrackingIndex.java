@@ -0,0 +1,91 @@
+/*
+ * Sly Technologies Free License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Licensed under the Sly Technologies Free License (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.slytechs.com/free-license-text
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.slytechs.jnet.protocol.ipf;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ *
+ */
+class TestIpfTrackingIndex {
+
+	@Test
+	void interleavedDatagramsKeepTheirFrames() {
+		try (IpfTrackingIndex index = new IpfTrackingIndex()) {
+			int a = index.open();
+			int b = index.open();
+
+			index.add(a, 5_000_000_000L);
+			index.add(b, 7);
+			index.add(a, 4_999_999_990L);
+			index.add(b, 9);
+
+			assertArrayEquals(new long[] { 5_000_000_000L, 4_999_999_990L }, index.frames(a));
+			assertArrayEquals(new long[] { 7, 9 }, index.frames(b));
+			assertEquals(2, index.datagramCount());
+			assertEquals(4, index.fragmentCount());
+		}
+	}
+
+	@Test
+	void framesSpanMultipleBlocks() {
+		try (IpfTrackingIndex index = new IpfTrackingIndex()) {
+			int id = index.open();
+
+			long[] expected = new long[500];
+			for (int i = 0; i < expected.length; i++) {
+				expected[i] = 1000L + i * 300L;
+				index.add(id, expected[i]);
+			}
+
+			assertEquals(expected.length, index.count(id));
+			assertArrayEquals(expected, index.frames(id));
+
+			long[] head = new long[3];
+			assertEquals(3, index.frames(id, head));
+			assertEquals(1300L, head[1]);
+		}
+	}
+
+	@Test
+	void shortDatagramsAreStoredInline() {
+		try (IpfTrackingIndex index = new IpfTrackingIndex()) {
+			final int count = 10_000;
+
+			for (int i = 0; i < count; i++) {
+				int id = index.open();
+				index.add(id, i * 3L);
+				index.add(id, i * 3L + 1);
+			}
+
+			assertEquals(count * 32L, index.usedByteSize());
+			assertArrayEquals(new long[] { 300, 301 }, index.frames(100));
+		}
+	}
+
+	@Test
+	void invalidDatagramIdThrows() {
+		try (IpfTrackingIndex index = new IpfTrackingIndex()) {
+			assertThrows(IllegalArgumentException.class, () -> index.frames(0));
+		}
+	}
+}
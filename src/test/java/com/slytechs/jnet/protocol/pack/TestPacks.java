@@ -17,10 +17,15 @@
  */
 package com.slytechs.jnet.protocol.pack;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.slytechs.jnet.protocol.core.constants.CoreId;
+import com.slytechs.jnet.protocol.core.constants.PacketDescriptorType;
+import com.slytechs.jnet.protocol.descriptor.PacketDissector;
 import com.slytechs.jnet.protocol.pack.Pack;
 import com.slytechs.test.Tests;
 
@@ -51,4 +56,34 @@ class TestPacks {
 		Pack.listAllDeclaredPacks().forEach(Tests.out::println);
 	}
 
+	@Test
+	void headerInfoResolvesCoreIds() {
+		for (CoreId core : CoreId.values())
+			assertSame(core, Pack.headerInfo(core.id()));
+
+		assertEquals(CoreId.CORE_ID_TCP, Pack.headerInfo(CoreId.CORE_ID_TCP).id());
+		assertNull(Pack.headerInfo(0xFFFF));
+	}
+
+	@Test
+	void loadedPackDoesNotChangeRegistry() {
+		PacketDissector dissector = PacketDissector.javaDissector(PacketDescriptorType.TYPE2);
+		long version = Pack.registryVersion();
+
+		assertTrue(Pack.loadPack(ProtocolPackTable.CORE));
+		assertEquals(version, Pack.registryVersion());
+		assertFalse(dissector.refreshExtensions());
+	}
+
+	@Test
+	void recordOffsetRoundTripsPast32K() {
+		for (int offset : new int[] { 0x7FFF, 0x8000, 0xFFFF }) {
+			long record = PackId.encodeRecord(CoreId.CORE_ID_TCP, offset, 20);
+
+			assertEquals(offset, PackId.decodeRecordOffset(record));
+			assertEquals(20, PackId.decodeRecordSize(record));
+			assertEquals(CoreId.CORE_ID_TCP, PackId.decodeRecordId(record));
+		}
+	}
+
 }